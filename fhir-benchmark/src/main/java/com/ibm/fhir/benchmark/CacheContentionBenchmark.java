@@ -0,0 +1,77 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ibm.fhir.core.util.BoundedCache;
+import com.ibm.fhir.core.util.LRUCache;
+
+/**
+ * Compares the synchronized LRUCache with BoundedCache under contention, using a key space that is mostly
+ * (hit) or partly (hit and evict) covered by the cache, as for the FHIRPath expression and identifier caches.
+ */
+public class CacheContentionBenchmark {
+    private static final int MAX_ENTRIES = 512;
+
+    @State(Scope.Benchmark)
+    public static class CacheState {
+        // the number of distinct keys requested; more keys than MAX_ENTRIES forces evictions
+        @Param({ "256", "1024" })
+        public int keyCount;
+
+        public String[] keys;
+        public Map<String, String> lruCache;
+        public BoundedCache<String, String> boundedCache;
+
+        @Setup
+        public void setUp() {
+            keys = new String[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = "Observation.component[" + i + "].value";
+            }
+            lruCache = LRUCache.createLRUCache(MAX_ENTRIES);
+            boundedCache = BoundedCache.createBoundedCache(MAX_ENTRIES);
+        }
+
+        String nextKey() {
+            return keys[ThreadLocalRandom.current().nextInt(keyCount)];
+        }
+    }
+
+    @Benchmark
+    public String benchmarkLRUCache(CacheState state) {
+        return state.lruCache.computeIfAbsent(state.nextKey(), String::toUpperCase);
+    }
+
+    @Benchmark
+    public String benchmarkBoundedCache(CacheState state) {
+        return state.boundedCache.computeIfAbsent(state.nextKey(), String::toUpperCase);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(CacheContentionBenchmark.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(3)
+                .threads(64)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
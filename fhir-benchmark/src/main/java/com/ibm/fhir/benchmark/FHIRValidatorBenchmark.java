@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -56,6 +56,15 @@ public class FHIRValidatorBenchmark {
         state.validator.validate(state.evaluationContext);
     }
     
+    /**
+     * Validate the resource the way the server does on create/update: builds a new evaluation context (and FHIRPath tree)
+     * each time, and validates against any resource-asserted profiles using the cached validation plans.
+     */
+    @Benchmark
+    public void benchmarkValidatorResource(FHIRValidatorState state) throws Exception {
+        state.validator.validate(state.resource);
+    }
+
     @Benchmark
     public void benchmarkHAPIValidator(FHIRValidatorState state) throws Exception {
         state.fhirValidator.validateWithResult(state.baseResource);
@@ -6,6 +6,7 @@
 
 package com.ibm.fhir.bulkexport.common;
 
+import java.time.Instant;
 import java.util.List;
 
 import com.ibm.cloud.objectstorage.services.s3.model.PartETag;
@@ -26,6 +27,10 @@ public class CheckPointUserData implements java.io.Serializable {
     private int currentPartResourceNum = 0;
     // One resource type can have 0 to multiple typeFilters, indexOfCurrentTypeFilter is used to tell the currently processed typeFilter.
     private int indexOfCurrentTypeFilter;
+    // The key of the last resource written for the current resource type when reading with FHIRPersistence.export;
+    // a null lastExportedLastUpdated means nothing has been written yet for the current resource type.
+    private Instant lastExportedLastUpdated;
+    private long lastExportedResourceId;
 
     public CheckPointUserData(int pageNum, String uploadId, List<PartETag> cosDataPacks, int partNum, int indexOfCurrentResourceType, int indexOfCurrentTypeFilter) {
         super();
@@ -38,8 +43,12 @@ public class CheckPointUserData implements java.io.Serializable {
     }
 
     public static CheckPointUserData fromTransientUserData(TransientUserData userData) {
-        return new CheckPointUserData(userData.getPageNum(), userData.getUploadId(), userData.getCosDataPacks(),
+        CheckPointUserData checkPointData = new CheckPointUserData(userData.getPageNum(), userData.getUploadId(), userData.getCosDataPacks(),
                 userData.getPartNum(), userData.getIndexOfCurrentResourceType(), userData.getIndexOfCurrentTypeFilter());
+        checkPointData.setLastPageNum(userData.getLastPageNum());
+        checkPointData.setLastExportedLastUpdated(userData.getLastExportedLastUpdated());
+        checkPointData.setLastExportedResourceId(userData.getLastExportedResourceId());
+        return checkPointData;
     }
 
     public int getPageNum() {
@@ -114,4 +123,20 @@ public class CheckPointUserData implements java.io.Serializable {
         this.indexOfCurrentTypeFilter = indexOfCurrentTypeFilter;
     }
 
+    public Instant getLastExportedLastUpdated() {
+        return lastExportedLastUpdated;
+    }
+
+    public void setLastExportedLastUpdated(Instant lastExportedLastUpdated) {
+        this.lastExportedLastUpdated = lastExportedLastUpdated;
+    }
+
+    public long getLastExportedResourceId() {
+        return lastExportedResourceId;
+    }
+
+    public void setLastExportedResourceId(long lastExportedResourceId) {
+        this.lastExportedResourceId = lastExportedResourceId;
+    }
+
 }
@@ -24,8 +24,12 @@ public class TransientUserData extends CheckPointUserData {
     }
 
     public static TransientUserData fromCheckPointUserData(CheckPointUserData checkPointData) {
-        return new TransientUserData(checkPointData.getPageNum(), checkPointData.getUploadId(),
+        TransientUserData userData = new TransientUserData(checkPointData.getPageNum(), checkPointData.getUploadId(),
                 checkPointData.getCosDataPacks(), checkPointData.getPartNum(), checkPointData.getIndexOfCurrentResourceType(), checkPointData.getIndexOfCurrentTypeFilter());
+        userData.setLastPageNum(checkPointData.getLastPageNum());
+        userData.setLastExportedLastUpdated(checkPointData.getLastExportedLastUpdated());
+        userData.setLastExportedResourceId(checkPointData.getLastExportedResourceId());
+        return userData;
     }
 
     public ByteArrayOutputStream getBufferStream() {
@@ -8,6 +8,7 @@ package com.ibm.fhir.bulkexport.system;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -40,6 +41,7 @@ import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
 import com.ibm.fhir.persistence.helper.FHIRTransactionHelper;
 import com.ibm.fhir.search.context.FHIRSearchContext;
+import com.ibm.fhir.search.date.DateTimeHandler;
 import com.ibm.fhir.search.util.SearchUtil;
 
 /**
@@ -65,6 +67,9 @@ public class ChunkReader extends AbstractItemReader {
 
     FHIRPersistence fhirPersistence;
     List<String> resourceTypes;
+    // The fhir.search.fromdate and fhir.search.todate bounds for FHIRPersistence.export
+    Instant fhirSearchFromInstant = null;
+    Instant fhirSearchToInstant = null;
 
     /**
      * Fhir tenant id.
@@ -184,6 +189,8 @@ public class ChunkReader extends AbstractItemReader {
                     // More resource types to read, so reset pageNum, partNum and move resource type index to the next and reset indexOfCurrentTypeFilter.
                     pageNum = 1;
                     chunkData.setPartNum(1);
+                    chunkData.setLastExportedLastUpdated(null);
+                    chunkData.setLastExportedResourceId(0);
                     indexOfCurrentResourceType++;
                     indexOfCurrentTypeFilter = 0;
                     isDoDuplicationCheck = false;
@@ -198,6 +205,34 @@ public class ChunkReader extends AbstractItemReader {
 
         Class<? extends Resource> resourceType = ModelSupport
                 .getResourceType(resourceTypes.get(indexOfCurrentResourceType));
+
+        if (chunkData == null) {
+            chunkData = new TransientUserData(pageNum, null, new ArrayList<PartETag>(), 1, 0, 0);
+            if (isSingleCosObject) {
+                chunkData.setSingleCosObject(true);
+            }
+            jobContext.setTransientUserData(chunkData);
+        }
+
+        Object result;
+        if (fhirPersistence.isExportSupported() && searchParametersForResoureTypes.get(resourceType) == null) {
+            result = exportPage(resourceType, chunkData);
+        } else {
+            result = searchPage(resourceType, chunkData);
+        }
+
+        chunkData.setPageNum(pageNum);
+        chunkData.setIndexOfCurrentResourceType(indexOfCurrentResourceType);
+        chunkData.setIndexOfCurrentTypeFilter(indexOfCurrentTypeFilter);
+
+        return result;
+    }
+
+    /**
+     * Read the next page of the current resource type with a search; used when the resource type has typeFilters
+     * or the persistence layer doesn't support export.
+     */
+    private List<Resource> searchPage(Class<? extends Resource> resourceType, TransientUserData chunkData) throws Exception {
         FHIRSearchContext searchContext;
         FHIRPersistenceContext persistenceContext;
         Map<String, List<String>> queryParameters = new HashMap<>();
@@ -234,20 +269,7 @@ public class ChunkReader extends AbstractItemReader {
         resources = fhirPersistence.search(persistenceContext, resourceType).getResource();
         txn.unenroll();
         pageNum++;
-
-        if (chunkData == null) {
-            chunkData = new TransientUserData(pageNum, null, new ArrayList<PartETag>(), 1, 0, 0);
-            chunkData.setLastPageNum(searchContext.getLastPageNumber());
-            if (isSingleCosObject) {
-                chunkData.setSingleCosObject(true);
-            }
-            jobContext.setTransientUserData(chunkData);
-        } else {
-            chunkData.setPageNum(pageNum);
-            chunkData.setIndexOfCurrentResourceType(indexOfCurrentResourceType);
-            chunkData.setIndexOfCurrentTypeFilter(indexOfCurrentTypeFilter);
-            chunkData.setLastPageNum(searchContext.getLastPageNumber());
-        }
+        chunkData.setLastPageNum(searchContext.getLastPageNumber());
 
         if (resources != null) {
             logger.fine("readItem: loaded resources number - " + resources.size());
@@ -259,6 +281,41 @@ public class ChunkReader extends AbstractItemReader {
         return resources;
     }
 
+    /**
+     * Read the next page of the current resource type with FHIRPersistence.export, seeking past the key of the
+     * last resource written instead of re-running a search with an ever-increasing offset. The stored payloads
+     * are copied into the chunk buffer without being parsed and re-serialized.
+     */
+    private Integer exportPage(Class<? extends Resource> resourceType, TransientUserData chunkData) throws Exception {
+        // Read one resource more than the page size to find out whether this is the last page without a count query;
+        // the extra resource is not written and is read again as the first resource of the next page.
+        int[] written = { 0 };
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(fhirPersistence.getTransaction());
+        txn.enroll();
+        int exported = fhirPersistence.export(FHIRPersistenceContextFactory.createPersistenceContext(null), resourceType,
+                fhirSearchFromInstant, fhirSearchToInstant, chunkData.getLastExportedLastUpdated(), chunkData.getLastExportedResourceId(),
+                pageSize + 1, payload -> {
+                    if (written[0] < pageSize) {
+                        payload.transferTo(chunkData.getBufferStream());
+                        chunkData.getBufferStream().write(Constants.NDJSON_LINESEPERATOR);
+                        chunkData.setLastExportedLastUpdated(payload.getLastUpdated());
+                        chunkData.setLastExportedResourceId(payload.getResourceId());
+                        written[0]++;
+                    }
+                });
+        txn.unenroll();
+        pageNum++;
+
+        // There is no count to compute the last page number from, so mark the current page as the last one once the
+        // export runs out of resources; the writer and checkpoint algorithm depend on pageNum > lastPageNum for that.
+        chunkData.setLastPageNum(exported > pageSize ? pageNum : pageNum - 1);
+        chunkData.setCurrentPartResourceNum(chunkData.getCurrentPartResourceNum() + written[0]);
+        logger.fine("readItem: exported resources number - " + written[0] + "; Bufferred data size - "
+                + chunkData.getBufferStream().size());
+
+        return written[0];
+    }
+
     @Override
     public void open(Serializable checkpoint) throws Exception {
         if (checkpoint != null) {
@@ -298,6 +355,13 @@ public class ChunkReader extends AbstractItemReader {
         FHIRPersistenceHelper fhirPersistenceHelper = new FHIRPersistenceHelper();
         fhirPersistence = fhirPersistenceHelper.getFHIRPersistenceImplementation();
 
+        if (fhirSearchFromDate != null) {
+            fhirSearchFromInstant = DateTimeHandler.generateValue(DateTimeHandler.parse(fhirSearchFromDate));
+        }
+        if (fhirSearchToDate != null) {
+            fhirSearchToInstant = DateTimeHandler.generateValue(DateTimeHandler.parse(fhirSearchToDate));
+        }
+
         resourceTypes = Arrays.asList(fhirResourceType.split("\\s*,\\s*"));
         searchParametersForResoureTypes = BulkDataUtils.getSearchParemetersFromTypeFilters(fhirTypeFilters);
     }
@@ -7,6 +7,7 @@
 package com.ibm.fhir.bulkimport;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -29,6 +30,7 @@ import com.ibm.fhir.model.resource.OperationOutcome;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.util.FHIRUtil;
 import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.SingleResourceResult;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
@@ -186,29 +188,52 @@ public class ChunkWriter extends AbstractItemWriter {
             @SuppressWarnings("unchecked")
             List<Resource> fhirResourceList = (List<Resource>) objResJsonList;
 
-            for (Resource fhirResource : fhirResourceList) {
-                try {
-                    String id = fhirResource.getId();
+            // Store the whole list with one batch when the persistence layer supports it
+            if (fhirPersistence.isCreateOrUpdateBatchSupported()) {
+                List<Resource> validResourceList = new ArrayList<>(fhirResourceList.size());
+                for (Resource fhirResource : fhirResourceList) {
                     processedNum++;
                     // Skip the resources which failed the validation
-                    if (failValidationIds.contains(id)) {
+                    if (failValidationIds.contains(fhirResource.getId())) {
                         continue;
                     }
-                    OperationOutcome operationOutcome =
-                            fhirPersistence.update(persistenceContext, id, fhirResource).getOutcome();
-                    succeededNum++;
-                    if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES && operationOutcome != null) {
-                        FHIRGenerator.generator(Format.JSON).generate(operationOutcome, chunkData.getBufferStreamForImport());
-                        chunkData.getBufferStreamForImport().write(Constants.NDJSON_LINESEPERATOR);
+                    validResourceList.add(fhirResource);
+                }
+                if (validResourceList.isEmpty()) {
+                    continue;
+                }
+                // A resource which can't be stored fails on its own. If writing the batch fails, some of its resources
+                // may already have been written, so the exception is passed on for the JavaBatch framework to roll back
+                // the transaction of the chunk instead of storing the resources again one at a time.
+                for (SingleResourceResult<Resource> result : fhirPersistence.createOrUpdateBatch(persistenceContext, validResourceList)) {
+                    OperationOutcome operationOutcome = result.getOutcome();
+                    if (result.isSuccess()) {
+                        succeededNum++;
+                        if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES && operationOutcome != null) {
+                            FHIRGenerator.generator(Format.JSON).generate(operationOutcome, chunkData.getBufferStreamForImport());
+                            chunkData.getBufferStreamForImport().write(Constants.NDJSON_LINESEPERATOR);
+                        }
+                    } else {
+                        failedNum++;
+                        if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES) {
+                            FHIRGenerator.generator(Format.JSON).generate(operationOutcome, chunkData.getBufferStreamForImportError());
+                            chunkData.getBufferStreamForImportError().write(Constants.NDJSON_LINESEPERATOR);
+                        }
                     }
-                } catch (FHIROperationException e) {
-                    logger.warning("Failed to import '" + fhirResource.getId() + "' due to error: " + e.getMessage());
+                }
+                continue;
+            }
+
+            for (Resource fhirResource : fhirResourceList) {
+                processedNum++;
+                // Skip the resources which failed the validation
+                if (failValidationIds.contains(fhirResource.getId())) {
+                    continue;
+                }
+                if (importResource(fhirPersistence, persistenceContext, fhirResource, chunkData)) {
+                    succeededNum++;
+                } else {
                     failedNum++;
-                    if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES) {
-                        OperationOutcome operationOutCome = FHIRUtil.buildOperationOutcome(e, false);
-                        FHIRGenerator.generator(Format.JSON).generate(operationOutCome, chunkData.getBufferStreamForImportError());
-                        chunkData.getBufferStreamForImportError().write(Constants.NDJSON_LINESEPERATOR);
-                    }
                 }
             }
         }
@@ -233,6 +258,33 @@ public class ChunkWriter extends AbstractItemWriter {
     }
 
 
+    /**
+     * Store a single resource, collecting the OperationOutcome of the write.
+     *
+     * @return true if the resource was stored, false if it failed
+     * @throws Exception if the OperationOutcome can't be collected
+     */
+    private boolean importResource(FHIRPersistence fhirPersistence, FHIRPersistenceContext persistenceContext, Resource fhirResource,
+            ImportTransientUserData chunkData) throws Exception {
+        try {
+            OperationOutcome operationOutcome =
+                    fhirPersistence.update(persistenceContext, fhirResource.getId(), fhirResource).getOutcome();
+            if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES && operationOutcome != null) {
+                FHIRGenerator.generator(Format.JSON).generate(operationOutcome, chunkData.getBufferStreamForImport());
+                chunkData.getBufferStreamForImport().write(Constants.NDJSON_LINESEPERATOR);
+            }
+            return true;
+        } catch (FHIROperationException e) {
+            logger.warning("Failed to import '" + fhirResource.getId() + "' due to error: " + e.getMessage());
+            if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES) {
+                OperationOutcome operationOutCome = FHIRUtil.buildOperationOutcome(e, false);
+                FHIRGenerator.generator(Format.JSON).generate(operationOutCome, chunkData.getBufferStreamForImportError());
+                chunkData.getBufferStreamForImportError().write(Constants.NDJSON_LINESEPERATOR);
+            }
+            return false;
+        }
+    }
+
     private void pushImportOperationOutcomes2COS(ImportTransientUserData chunkData) throws Exception{
         // Create the COS/S3 client if it's not created yet.
         if (cosClient == null) {
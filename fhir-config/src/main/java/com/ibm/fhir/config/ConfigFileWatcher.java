@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the configuration directories on a background thread, and reports when anything in the
+ * config directory or a watched tenant directory is created, modified or deleted.
+ * <p>
+ * Any event in a tenant directory counts as a change, not just one for fhir-server-config.json, because
+ * a file can be replaced without an event for its own name; e.g. a Kubernetes ConfigMap volume is
+ * updated by swapping its {@code ..data} symlink.
+ */
+class ConfigFileWatcher {
+    private static final Logger log = Logger.getLogger(ConfigFileWatcher.class.getName());
+
+    // Called on the watcher thread whenever a change is seen
+    private final Runnable onChange;
+
+    private WatchService watchService;
+
+    // The directories being watched
+    private final Set<Path> watched = new HashSet<>();
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    ConfigFileWatcher(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * Watch the config directory, and the directory of the specified tenant if it exists.
+     *
+     * @param configDir the directory containing the tenant directories
+     * @param tenantId
+     * @return true if a change to the tenant's configuration will be reported
+     */
+    synchronized boolean watchTenant(Path configDir, String tenantId) {
+        if (!watch(configDir)) {
+            return false;
+        }
+        // If the tenant directory doesn't exist yet, its creation will be seen in the config directory
+        Path tenantDir = configDir.resolve(tenantId);
+        return !Files.exists(tenantDir) || watch(tenantDir);
+    }
+
+    private boolean watch(Path dir) {
+        dir = dir.toAbsolutePath().normalize();
+        if (watched.contains(dir)) {
+            return true;
+        }
+        if (!Files.isDirectory(dir)) {
+            return false;
+        }
+        try {
+            if (watchService == null) {
+                start();
+            }
+            WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            keys.put(key, dir);
+            watched.add(dir);
+            log.fine("Watching configuration directory: " + dir);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.FINE, "Unable to watch configuration directory: " + dir, e);
+            return false;
+        }
+    }
+
+    private void start() throws IOException {
+        final WatchService ws = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(() -> run(ws), "fhir-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        this.watchService = ws;
+    }
+
+    /**
+     * Stop watching all directories, e.g. because the config home has changed.
+     */
+    synchronized void reset() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.log(Level.FINE, "Error closing configuration file watcher", e);
+            }
+            watchService = null;
+        }
+        watched.clear();
+        keys.clear();
+    }
+
+    private void run(WatchService ws) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = ws.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            boolean changed = false;
+            synchronized (this) {
+                Path dir = keys.get(key);
+                if (!key.pollEvents().isEmpty()) {
+                    changed = true;
+                }
+                if (!key.reset()) {
+                    // the directory is gone, so it will need to be registered again if it is re-created
+                    keys.remove(key);
+                    if (dir != null) {
+                        watched.remove(dir);
+                    }
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                log.fine("Configuration change detected");
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Error handling configuration change", e);
+                }
+            }
+        }
+    }
+}
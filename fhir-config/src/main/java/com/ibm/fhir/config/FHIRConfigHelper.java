@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -48,12 +48,18 @@ public class FHIRConfigHelper {
     /**
      * This function retrieves the specified property as a generic JsonValue. First we try to retrieve the property from
      * the current tenant's config, and then if not found we'll also look in the "default" config.
+     * The property is retrieved from the configuration snapshot carried by the current request context, if possible.
      * 
      * @param propertyName
      *            the hierarchical name of the property to be retrieved (e.g. "level1/level2/prop1")
      * @return a JsonValue representing the property's value or null if it wasn't found in either config
      */
     private static JsonValue getPropertyFromTenantOrDefault(String propertyName) {
+        TenantConfigSnapshot snapshot = FHIRRequestContext.get().getConfigSnapshot();
+        if (snapshot != null) {
+            return snapshot.getJsonValue(propertyName);
+        }
+
         JsonValue result = null;
 
         PropertyGroup pg = null;
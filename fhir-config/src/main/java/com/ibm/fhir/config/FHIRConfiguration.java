@@ -7,8 +7,13 @@
 package com.ibm.fhir.config;
 
 import java.io.File;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -33,6 +38,9 @@ public class FHIRConfiguration {
     public static final String PROPERTY_CHECK_REFERENCE_TYPES = "fhirServer/core/checkReferenceTypes";
     public static final String PROPERTY_CONDITIONAL_DELETE_MAX_NUMBER = "fhirServer/core/conditionalDeleteMaxNumber";
     public static final String PROPERTY_SERVER_REGISTRY_RESOURCE_PROVIDER_ENABLED = "fhirServer/core/serverRegistryResourceProviderEnabled";
+    public static final String PROPERTY_BATCH_PARALLELISM = "fhirServer/core/batchParallelism";
+    public static final String PROPERTY_HISTORY_KEYSET_PAGING = "fhirServer/core/useKeysetHistoryPaging";
+    public static final String PROPERTY_DEFINITION_WARM_UP_ENABLED = "fhirServer/core/definitionWarmUpEnabled";
 
     public static final String PROPERTY_SEARCH_PARAMETER_FILTER = "fhirServer/searchParameterFilter";
 
@@ -52,6 +60,10 @@ public class FHIRConfiguration {
 
     // Notification config properties
     public static final String PROPERTY_NOTIFICATION_RESOURCE_TYPES = "fhirServer/notifications/common/includeResourceTypes";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_ENABLED = "fhirServer/notifications/common/async/enabled";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_QUEUE_SIZE = "fhirServer/notifications/common/async/queueSize";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_MAX_BATCH_SIZE = "fhirServer/notifications/common/async/maxBatchSize";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_OVERFLOW_POLICY = "fhirServer/notifications/common/async/overflowPolicy";
     public static final String PROPERTY_WEBSOCKET_ENABLED = "fhirServer/notifications/websocket/enabled";
     public static final String PROPERTY_KAFKA_ENABLED = "fhirServer/notifications/kafka/enabled";
     public static final String PROPERTY_KAFKA_TOPICNAME = "fhirServer/notifications/kafka/topicName";
@@ -76,10 +88,23 @@ public class FHIRConfiguration {
     public static final String PROPERTY_JDBC_ENABLE_CODE_SYSTEMS_CACHE = "fhirServer/persistence/jdbc/enableCodeSystemsCache";
     public static final String PROPERTY_JDBC_ENABLE_PARAMETER_NAMES_CACHE = "fhirServer/persistence/jdbc/enableParameterNamesCache";
     public static final String PROPERTY_JDBC_ENABLE_RESOURCE_TYPES_CACHE = "fhirServer/persistence/jdbc/enableResourceTypesCache";
+    public static final String PROPERTY_JDBC_ENABLE_RESOURCE_CACHE = "fhirServer/persistence/jdbc/enableResourceCache";
+    public static final String PROPERTY_JDBC_RESOURCE_CACHE_SIZE = "fhirServer/persistence/jdbc/resourceCacheSize";
+    public static final String PROPERTY_JDBC_ENABLE_SEARCH_RESULT_CACHE = "fhirServer/persistence/jdbc/enableSearchResultCache";
+    public static final String PROPERTY_JDBC_SEARCH_RESULT_CACHE_SIZE = "fhirServer/persistence/jdbc/searchResultCacheSize";
+    public static final String PROPERTY_JDBC_SEARCH_RESULT_CACHE_TTL = "fhirServer/persistence/jdbc/searchResultCacheTTL";
+    public static final String PROPERTY_JDBC_SKIP_UNCHANGED_UPDATES = "fhirServer/persistence/jdbc/skipUnchangedUpdates";
+    public static final String PROPERTY_JDBC_MULTI_ROW_PARAMETER_INSERTS = "fhirServer/persistence/jdbc/multiRowParameterInserts";
 
     // fhir-search - Bounding area
     public static final String PROPERTY_SEARCH_BOUNDING_AREA_RADIUS_TYPE = "fhirServer/search/useBoundingRadius";
 
+    // fhir-search - Keyset (seek) pagination
+    public static final String PROPERTY_SEARCH_KEYSET_PAGING = "fhirServer/search/useKeysetPaging";
+
+    // fhir-search - Default for the _total parameter
+    public static final String PROPERTY_SEARCH_DEFAULT_TOTAL = "fhirServer/search/defaultTotal";
+
     // bulkdata
     // JavaBatch Job id encryption key
     public static final String PROPERTY_BULKDATA_BATCHJOBID_ENCRYPTION_KEY = "fhirServer/bulkdata/bulkDataBatchJobIdEncryptionKey";
@@ -121,6 +146,21 @@ public class FHIRConfiguration {
      */
     private TenantSpecificPropertyGroupCache configCache = new TenantSpecificPropertyGroupCache();
 
+    /**
+     * The resolved configuration of each tenant, keyed by tenant-id.
+     */
+    private final Map<String, TenantConfigSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented whenever the configuration may have changed, which invalidates all the snapshots.
+     */
+    private final AtomicLong configGeneration = new AtomicLong();
+
+    /**
+     * Invalidates the snapshots when a configuration file changes.
+     */
+    private final ConfigFileWatcher configFileWatcher = new ConfigFileWatcher(this::invalidateSnapshots);
+
     /**
      * This method is used to configure an explicit top-level directory where FHIR Server configuration
      * information is expected to reside.
@@ -140,6 +180,10 @@ public class FHIRConfiguration {
         }
 
         configHome = s;
+
+        // Snapshots (and the directories being watched) belong to the old config home
+        _instance.configFileWatcher.reset();
+        _instance.invalidateSnapshots();
     }
 
     /**
@@ -183,6 +227,73 @@ public class FHIRConfiguration {
         synchronized (configCache) {
             configCache.clearCache();
         }
+        invalidateSnapshots();
+    }
+
+    /**
+     * Returns the resolved configuration of the specified tenant; the tenant's configuration properties layered
+     * over the default configuration properties.
+     * <p>
+     * The snapshot is built once and shared until a configuration file changes. Changes are detected by a
+     * background file watcher, so a snapshot can be returned without checking the configuration files. If the
+     * configuration directories can't be watched, then each call checks whether the files have changed.
+     *
+     * @param tenantId
+     *            a shortname representing the tenant
+     * @return the tenant's configuration snapshot, or null if the configuration could not be loaded
+     */
+    public TenantConfigSnapshot getTenantConfigSnapshot(String tenantId) {
+        TenantConfigSnapshot snapshot = snapshots.get(tenantId);
+        if (snapshot != null && isCurrent(snapshot)) {
+            return snapshot;
+        }
+
+        // Start watching before reading the files, so that we can't miss a change
+        long generation = configGeneration.get();
+        boolean watched = configFileWatcher.watchTenant(Paths.get(getConfigHome() + CONFIG_LOCATION), DEFAULT_TENANT_ID)
+                && configFileWatcher.watchTenant(Paths.get(getConfigHome() + CONFIG_LOCATION), tenantId);
+        try {
+            PropertyGroup defaultConfig = loadConfiguration();
+            PropertyGroup tenantConfig = DEFAULT_TENANT_ID.equals(tenantId) ? defaultConfig : loadConfigurationForTenant(tenantId);
+            snapshot = new TenantConfigSnapshot(tenantId, generation, watched, tenantConfig, defaultConfig);
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Error loading configuration for tenant-id '" + tenantId + "': " + e.getMessage());
+            return null;
+        }
+
+        // Only share the snapshot if nothing changed while we were building it
+        if (generation == configGeneration.get()) {
+            snapshots.put(tenantId, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param snapshot
+     * @return true if the snapshot still reflects the configuration files
+     */
+    public boolean isCurrent(TenantConfigSnapshot snapshot) {
+        if (snapshot.getGeneration() != configGeneration.get()) {
+            return false;
+        }
+        if (snapshot.isWatched()) {
+            return true;
+        }
+
+        // No file watcher, so check whether the files have changed
+        try {
+            PropertyGroup defaultConfig = loadConfiguration();
+            PropertyGroup tenantConfig = DEFAULT_TENANT_ID.equals(snapshot.getTenantId()) ? defaultConfig
+                    : loadConfigurationForTenant(snapshot.getTenantId());
+            return snapshot.getDefaultConfig() == defaultConfig && snapshot.getTenantConfig() == tenantConfig;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void invalidateSnapshots() {
+        configGeneration.incrementAndGet();
+        snapshots.clear();
     }
 
     /**
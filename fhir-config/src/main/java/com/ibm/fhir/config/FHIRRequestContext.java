@@ -37,6 +37,9 @@ public class FHIRRequestContext {
     private String originalRequestUri;
     private Map<String, List<String>> httpHeaders;
 
+    // The resolved configuration of this context's tenant, obtained on first use
+    private TenantConfigSnapshot configSnapshot;
+
     // Default to the "strict" handling which means the server will reject unrecognized search parameters and elements
     private HTTPHandlingPreference handlingPreference = HTTPHandlingPreference.STRICT;
 
@@ -83,11 +86,28 @@ public class FHIRRequestContext {
         Matcher matcher = validChars.matcher(tenantId);
         if (matcher.matches()) {
             this.tenantId = tenantId;
+            this.configSnapshot = null;
         } else {
             throw new FHIRException("Invalid tenantId. " + errorMsg);
         }
     }
 
+    /**
+     * Returns the resolved configuration of this context's tenant. The snapshot is kept on the context, so that
+     * retrieving several properties while processing a request only resolves the tenant's configuration once.
+     * A new snapshot is obtained if the configuration changes.
+     *
+     * @return the configuration snapshot, or null if the tenant's configuration could not be loaded
+     */
+    public TenantConfigSnapshot getConfigSnapshot() {
+        TenantConfigSnapshot snapshot = this.configSnapshot;
+        if (snapshot == null || !FHIRConfiguration.getInstance().isCurrent(snapshot)) {
+            snapshot = FHIRConfiguration.getInstance().getTenantConfigSnapshot(tenantId);
+            this.configSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
     /**
      * Setter for the tenant key
      * 
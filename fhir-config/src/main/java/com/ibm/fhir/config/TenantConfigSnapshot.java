@@ -0,0 +1,107 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+/**
+ * An immutable, pre-resolved view of the configuration seen by one tenant.
+ * <p>
+ * Every property of the default configuration and of the tenant's configuration is indexed by its
+ * hierarchical name (e.g. "fhirServer/core/defaultPrettyPrint"), with the tenant's values taking
+ * precedence, so looking up a property is a single map lookup instead of a walk over one or both
+ * configurations.
+ * <p>
+ * Snapshots are created by {@link FHIRConfiguration#getTenantConfigSnapshot(String)}, and are replaced
+ * when the underlying configuration files change.
+ */
+public class TenantConfigSnapshot {
+    private final String tenantId;
+    private final long generation;
+    private final boolean watched;
+    private final PropertyGroup tenantConfig;
+    private final PropertyGroup defaultConfig;
+    private final Map<String, JsonValue> values;
+
+    /**
+     * @param tenantId
+     * @param generation the configuration generation at the time the configurations were loaded
+     * @param watched true if changes to the configuration files will be reported by the file watcher
+     * @param tenantConfig the tenant's configuration, or null if the tenant has none
+     * @param defaultConfig the default configuration, or null if there is none
+     */
+    TenantConfigSnapshot(String tenantId, long generation, boolean watched, PropertyGroup tenantConfig, PropertyGroup defaultConfig) {
+        this.tenantId = tenantId;
+        this.generation = generation;
+        this.watched = watched;
+        this.tenantConfig = tenantConfig;
+        this.defaultConfig = defaultConfig;
+
+        Map<String, JsonValue> values = new HashMap<>();
+        if (defaultConfig != null) {
+            flatten(null, defaultConfig.getJsonObj(), values);
+        }
+        if (tenantConfig != null && tenantConfig != defaultConfig) {
+            flatten(null, tenantConfig.getJsonObj(), values);
+        }
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Add each property of the object, and of its nested objects, to the map. A property whose name contains
+     * the path separator can't be addressed by a hierarchical name, so it is skipped.
+     */
+    private static void flatten(String prefix, JsonObject jsonObj, Map<String, JsonValue> values) {
+        for (Map.Entry<String, JsonValue> entry : jsonObj.entrySet()) {
+            if (entry.getKey().contains(PropertyGroup.PATH_ELEMENT_SEPARATOR)) {
+                continue;
+            }
+            String name = prefix == null ? entry.getKey() : prefix + PropertyGroup.PATH_ELEMENT_SEPARATOR + entry.getKey();
+            values.put(name, entry.getValue());
+            if (entry.getValue().getValueType() == JsonValue.ValueType.OBJECT) {
+                flatten(name, (JsonObject) entry.getValue(), values);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the specified property from the tenant's configuration or, if not found there, from the default
+     * configuration.
+     *
+     * @param propertyName
+     *            the hierarchical name of the property to be retrieved (e.g. "level1/level2/prop1")
+     * @return a JsonValue representing the property's value or null if it wasn't found in either config
+     */
+    public JsonValue getJsonValue(String propertyName) {
+        return values.get(propertyName);
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    boolean isWatched() {
+        return watched;
+    }
+
+    PropertyGroup getTenantConfig() {
+        return tenantConfig;
+    }
+
+    PropertyGroup getDefaultConfig() {
+        return defaultConfig;
+    }
+}
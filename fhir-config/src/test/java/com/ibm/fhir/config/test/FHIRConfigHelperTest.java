@@ -192,7 +192,13 @@ public class FHIRConfigHelperTest {
         pw.println(jsonString);
         pw.close();
 
+        // The change is picked up by a background file watcher, so give it a chance to see the change.
+        long timeout = System.currentTimeMillis() + 30000;
         s = FHIRConfigHelper.getStringProperty("fhirServer/property1", null);
+        while (!"property1Value2".equals(s) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+            s = FHIRConfigHelper.getStringProperty("fhirServer/property1", null);
+        }
         assertNotNull(s);
         assertEquals("property1Value2", s);
 
@@ -0,0 +1,142 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.config.TenantConfigSnapshot;
+
+public class TenantConfigSnapshotTest {
+
+    @BeforeClass
+    public void setup() {
+        FHIRConfiguration.setConfigHome("target/test-classes");
+    }
+
+    @BeforeMethod
+    @AfterMethod
+    public void clearThreadLocal() {
+        FHIRRequestContext.remove();
+    }
+
+    @Test
+    public void testTenantOverridesDefault() throws Exception {
+        TenantConfigSnapshot snapshot = FHIRConfiguration.getInstance().getTenantConfigSnapshot("tenant1");
+        assertNotNull(snapshot);
+        assertEquals(snapshot.getTenantId(), "tenant1");
+
+        assertEquals(((JsonString) snapshot.getJsonValue("collection/tenant")).getString(), "tenant1");
+        assertEquals(((JsonString) snapshot.getJsonValue("collection/groupA/stringProp1")).getString(), "tenant1Value1");
+        assertEquals(((JsonString) snapshot.getJsonValue("collection/groupA/stringProp2")).getString(), "defaultValue2");
+        assertEquals(snapshot.getJsonValue("collection/groupB/boolProp1"), JsonValue.TRUE);
+
+        // an object property comes from the tenant config, as it did before snapshots
+        assertEquals(snapshot.getJsonValue("collection/groupA"),
+            FHIRConfiguration.getInstance().loadConfigurationForTenant("tenant1").getJsonValue("collection/groupA"));
+
+        assertNull(snapshot.getJsonValue("collection/groupA/notThere"));
+        assertNull(snapshot.getJsonValue("notThere/stringProp1"));
+    }
+
+    @Test
+    public void testTenantWithoutConfig() throws Exception {
+        // tenant4 has no fhir-server-config.json, so everything comes from the default config
+        TenantConfigSnapshot snapshot = FHIRConfiguration.getInstance().getTenantConfigSnapshot("tenant4");
+        assertNotNull(snapshot);
+        assertEquals(((JsonString) snapshot.getJsonValue("collection/tenant")).getString(), "default");
+    }
+
+    @Test
+    public void testSnapshotReuse() throws Exception {
+        TenantConfigSnapshot snapshot = FHIRConfiguration.getInstance().getTenantConfigSnapshot("tenant2");
+        assertSame(FHIRConfiguration.getInstance().getTenantConfigSnapshot("tenant2"), snapshot);
+        assertTrue(FHIRConfiguration.getInstance().isCurrent(snapshot));
+
+        // the request context holds on to its tenant's snapshot
+        FHIRRequestContext context = new FHIRRequestContext("tenant2");
+        assertSame(context.getConfigSnapshot(), snapshot);
+
+        // clearing the configuration invalidates the snapshots
+        FHIRConfiguration.getInstance().clearConfiguration();
+        assertFalse(FHIRConfiguration.getInstance().isCurrent(snapshot));
+        TenantConfigSnapshot newSnapshot = context.getConfigSnapshot();
+        assertNotSame(newSnapshot, snapshot);
+        assertEquals(newSnapshot.getTenantId(), "tenant2");
+
+        // changing the tenant of the context switches snapshots
+        context.setTenantId("tenant1");
+        assertEquals(context.getConfigSnapshot().getTenantId(), "tenant1");
+    }
+
+    @Test
+    public void testSymlinkSwap() throws Exception {
+        // Lay out a tenant directory the way a Kubernetes ConfigMap volume does; the config file is a symlink
+        // through the ..data symlink, which is swapped to a new directory when the ConfigMap is updated
+        Path configHome = Files.createTempDirectory(Paths.get("target").toAbsolutePath(), "config-home");
+        Path configDir = Files.createDirectories(configHome.resolve(FHIRConfiguration.CONFIG_LOCATION));
+        Files.copy(Paths.get("target/test-classes/config/default/fhir-server-config.json"),
+            Files.createDirectories(configDir.resolve("default")).resolve(FHIRConfiguration.CONFIG_FILE_BASENAME));
+        Path tenantDir = Files.createDirectories(configDir.resolve("k8s"));
+        writeTenantConfig(tenantDir.resolve("..data_1"), "k8sValue1");
+        Files.createSymbolicLink(tenantDir.resolve("..data"), Paths.get("..data_1"));
+        Files.createSymbolicLink(tenantDir.resolve(FHIRConfiguration.CONFIG_FILE_BASENAME),
+            Paths.get("..data", FHIRConfiguration.CONFIG_FILE_BASENAME));
+
+        FHIRConfiguration.setConfigHome(configHome.toString());
+        try {
+            TenantConfigSnapshot snapshot = FHIRConfiguration.getInstance().getTenantConfigSnapshot("k8s");
+            assertEquals(((JsonString) snapshot.getJsonValue("collection/groupA/stringProp1")).getString(), "k8sValue1");
+
+            // The swap produces events for ..data and ..data_tmp only, never for fhir-server-config.json itself
+            Path newData = writeTenantConfig(tenantDir.resolve("..data_2"), "k8sValue2");
+            Files.setLastModifiedTime(newData.resolve(FHIRConfiguration.CONFIG_FILE_BASENAME),
+                FileTime.fromMillis(System.currentTimeMillis() + 60000));
+            Files.createSymbolicLink(tenantDir.resolve("..data_tmp"), Paths.get("..data_2"));
+            Files.move(tenantDir.resolve("..data_tmp"), tenantDir.resolve("..data"), StandardCopyOption.ATOMIC_MOVE);
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (FHIRConfiguration.getInstance().isCurrent(snapshot) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            assertFalse(FHIRConfiguration.getInstance().isCurrent(snapshot));
+            snapshot = FHIRConfiguration.getInstance().getTenantConfigSnapshot("k8s");
+            assertEquals(((JsonString) snapshot.getJsonValue("collection/groupA/stringProp1")).getString(), "k8sValue2");
+        } finally {
+            FHIRConfiguration.setConfigHome("target/test-classes");
+        }
+    }
+
+    private Path writeTenantConfig(Path dataDir, String value) throws Exception {
+        Files.createDirectories(dataDir);
+        String config = "{\"collection\": {\"tenant\": \"k8s\", \"groupA\": {\"stringProp1\": \"" + value + "\"}}}";
+        Files.write(dataDir.resolve(FHIRConfiguration.CONFIG_FILE_BASENAME), config.getBytes(StandardCharsets.UTF_8));
+        return dataDir;
+    }
+}
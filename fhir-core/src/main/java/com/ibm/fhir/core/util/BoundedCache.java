@@ -0,0 +1,270 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.core.util;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache which approximates Least Recently Used (LRU) eviction using the CLOCK (second chance)
+ * algorithm.
+ * <br>
+ * Unlike {@link LRUCache#createLRUCache(int)}, a cache hit does not reorder a shared linked list under a global lock:
+ * entries are held in a {@link ConcurrentHashMap} and a hit only marks the entry as referenced. When an insert takes the
+ * cache over its maximum size, the inserting thread sweeps the insertion queue, giving referenced entries a second chance
+ * and evicting the first entry that has not been referenced since the last sweep. Only one thread sweeps at a time; other
+ * inserting threads do not wait for it, so the size of the cache may briefly exceed its maximum under concurrent inserts.
+ * <br>
+ * Replaced and removed entries are only marked as dead and are dropped from the insertion queue by the next sweep, so
+ * no operation has to search the queue. A sweep is also started when dead entries make the queue more than twice as
+ * long as the maximum size of the cache.
+ * <br>
+ * Null keys and null values are not supported.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of cached values
+ */
+public class BoundedCache<K, V> {
+    private final int maxEntries;
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+    private final Queue<Node<K, V>> clock = new ConcurrentLinkedQueue<>();
+    // the length of the clock queue (ConcurrentLinkedQueue.size() is not a constant-time operation)
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final int maxClockSize;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private BoundedCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+        }
+        this.maxEntries = maxEntries;
+        this.maxClockSize = (maxEntries > Integer.MAX_VALUE / 2) ? Integer.MAX_VALUE : 2 * maxEntries;
+        this.map = new ConcurrentHashMap<>(Math.min(maxEntries, 1024));
+    }
+
+    /**
+     * Create a cache which holds at most (approximately) maxEntries entries
+     *
+     * @param maxEntries
+     *     the maximum number of entries in the cache
+     * @return a new, empty cache
+     */
+    public static <K, V> BoundedCache<K, V> createBoundedCache(int maxEntries) {
+        return new BoundedCache<>(maxEntries);
+    }
+
+    /**
+     * @param key
+     *     the key whose cached value is to be returned
+     * @return the cached value, or null if there is no value cached for the key
+     */
+    public V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        node.touch();
+        return node.value;
+    }
+
+    /**
+     * Return the value cached for the key, computing and caching it if it is not present.
+     * <br>
+     * Unlike {@link java.util.Map#computeIfAbsent}, the mapping function is not called while holding a lock, so
+     * concurrent callers which miss on the same key may both compute a value; the first value to be cached wins and is
+     * returned to both of them. The mapping function may therefore use the cache itself.
+     *
+     * @param key
+     *     the key whose cached value is to be returned
+     * @param mappingFunction
+     *     the function used to compute the value if it is not cached; if it returns null, nothing is cached
+     * @return the cached or computed value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = mappingFunction.apply(key);
+        if (value == null) {
+            return null;
+        }
+        Node<K, V> node = new Node<>(key, value);
+        Node<K, V> existing = map.putIfAbsent(key, node);
+        if (existing != null) {
+            return existing.value;
+        }
+        added(node);
+        return value;
+    }
+
+    /**
+     * Cache the value for the key, replacing any previously cached value
+     *
+     * @param key
+     *     the key
+     * @param value
+     *     the value to cache
+     */
+    public void put(K key, V value) {
+        Objects.requireNonNull(value);
+        Node<K, V> node = new Node<>(key, value);
+        Node<K, V> existing = map.put(key, node);
+        if (existing != null) {
+            existing.dead = true;
+        }
+        added(node);
+    }
+
+    /**
+     * Remove the value cached for the key, if any
+     *
+     * @param key
+     *     the key
+     * @return the value which was cached for the key, or null if there was none
+     */
+    public V remove(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        node.dead = true;
+        return node.value;
+    }
+
+    /**
+     * Remove all entries from the cache. The hit, miss and eviction counts are not reset.
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            map.clear();
+            clock.clear();
+            clockSize.set(0);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * @return the maximum number of entries in the cache
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the number of lookups which found a cached value
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of lookups which did not find a cached value
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the number of entries which have been evicted to keep the cache within its maximum size
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedCache [size=" + size() + ", maxEntries=" + maxEntries + ", hitCount=" + getHitCount()
+                + ", missCount=" + getMissCount() + ", evictionCount=" + getEvictionCount() + "]";
+    }
+
+    private void added(Node<K, V> node) {
+        clock.offer(node);
+        clockSize.incrementAndGet();
+        if ((map.size() > maxEntries || clockSize.get() > maxClockSize) && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Sweep the clock until the cache is back within its maximum size and the queue is back within its maximum length,
+     * dropping dead nodes as they are reached. Each node is given at most one second chance per call, so the sweep
+     * terminates even if every entry is being hit concurrently.
+     */
+    private void evict() {
+        int budget = 2 * clockSize.get();
+        while ((map.size() > maxEntries || clockSize.get() > maxClockSize) && budget-- > 0) {
+            Node<K, V> node = clock.poll();
+            if (node == null) {
+                return;
+            }
+            clockSize.decrementAndGet();
+            if (node.dead) {
+                continue;
+            }
+            if (map.size() <= maxEntries) {
+                // only compacting the queue; keep the live node
+                requeue(node);
+            } else if (node.referenced) {
+                node.referenced = false;
+                requeue(node);
+            } else if (map.remove(node.key, node)) {
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private void requeue(Node<K, V> node) {
+        clock.offer(node);
+        clockSize.incrementAndGet();
+    }
+
+    private static class Node<K, V> {
+        private final K key;
+        private final V value;
+        private volatile boolean referenced;
+        // set when the node is replaced or removed; it is then dropped from the queue by the next sweep
+        private volatile boolean dead;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        private void touch() {
+            // avoid a write (and the resulting cache line invalidation) when the entry is already marked
+            if (!referenced) {
+                referenced = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.core.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.core.util.BoundedCache;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void testHitsAndMisses() {
+        BoundedCache<String, String> cache = BoundedCache.createBoundedCache(4);
+        assertNull(cache.get("a"));
+        assertEquals(cache.computeIfAbsent("a", k -> k.toUpperCase()), "A");
+        assertEquals(cache.computeIfAbsent("a", k -> "unexpected"), "A");
+        assertEquals(cache.get("a"), "A");
+
+        assertEquals(cache.getMissCount(), 2);
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.size(), 1);
+
+        // null values are not cached
+        assertNull(cache.computeIfAbsent("b", k -> null));
+        assertEquals(cache.size(), 1);
+
+        cache.put("a", "AA");
+        assertEquals(cache.get("a"), "AA");
+        assertEquals(cache.remove("a"), "AA");
+        assertNull(cache.get("a"));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testEviction() {
+        BoundedCache<Integer, Integer> cache = BoundedCache.createBoundedCache(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, i);
+        }
+        // give entry 0 a second chance
+        cache.get(0);
+        cache.put(4, 4);
+
+        assertEquals(cache.size(), 4);
+        assertEquals(cache.getEvictionCount(), 1);
+        assertNotNull(cache.get(0));
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(4));
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        BoundedCache<Integer, Integer> cache = BoundedCache.createBoundedCache(4);
+        // replaced entries are dropped from the clock without evicting live entries
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i % 4, i);
+        }
+        assertEquals(cache.size(), 4);
+        assertEquals(cache.getEvictionCount(), 0);
+        assertEquals(cache.get(3).intValue(), 999);
+
+        // so are removed entries
+        cache.remove(0);
+        cache.remove(1);
+        cache.put(4, 4);
+        cache.put(5, 5);
+        assertEquals(cache.size(), 4);
+        assertEquals(cache.getEvictionCount(), 0);
+        for (int i = 2; i < 6; i++) {
+            assertNotNull(cache.get(i));
+        }
+
+        cache.put(6, 6);
+        assertEquals(cache.size(), 4);
+        assertEquals(cache.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        BoundedCache<Integer, Integer> cache = BoundedCache.createBoundedCache(64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        int key = i % 256;
+                        assertEquals(cache.computeIfAbsent(key, k -> k * 2).intValue(), key * 2);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // once the inserts have finished, the cache is back within its bound
+        cache.put(-1, -1);
+        assertTrue(cache.size() <= cache.getMaxEntries(), cache.toString());
+        assertEquals(cache.getHitCount() + cache.getMissCount(), 8 * 10000);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+}
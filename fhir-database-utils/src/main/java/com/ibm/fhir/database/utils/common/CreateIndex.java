@@ -0,0 +1,92 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.database.utils.common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ibm.fhir.database.utils.api.IDatabaseStatement;
+import com.ibm.fhir.database.utils.api.IDatabaseTranslator;
+
+/**
+ * Create a (non-unique) index on an existing table. Used by table migrations
+ * to add indexes which were not part of the prior version of the table.
+ * <br>
+ * Mirrors the adapter implementations of createIndex: Derby and PostgreSQL don't
+ * support our multi-tenant implementation, so the tenant column is only prefixed
+ * on Db2, and PostgreSQL doesn't support index names prefixed with the schema name.
+ */
+public class CreateIndex implements IDatabaseStatement {
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    private final String schemaName;
+    private final String tableName;
+    private final String indexName;
+    private final String tenantColumnName;
+    private final List<String> indexColumns;
+
+    /**
+     * Public constructor
+     * @param schemaName
+     * @param tableName
+     * @param indexName
+     * @param tenantColumnName the multi-tenant column to prefix to the index, or null
+     * @param indexColumns
+     */
+    public CreateIndex(String schemaName, String tableName, String indexName, String tenantColumnName, String... indexColumns) {
+        DataDefinitionUtil.assertValidName(schemaName);
+        DataDefinitionUtil.assertValidName(tableName);
+        DataDefinitionUtil.assertValidName(indexName);
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+        this.indexName = indexName;
+        this.tenantColumnName = tenantColumnName;
+        this.indexColumns = Arrays.asList(indexColumns);
+    }
+
+    @Override
+    public void run(IDatabaseTranslator translator, Connection c) {
+        try (Statement s = c.createStatement()) {
+            final boolean isPostgreSql = POSTGRESQL.equals(c.getMetaData().getDatabaseProductName());
+            List<String> columns = indexColumns;
+            if (tenantColumnName != null && !translator.isDerby() && !isPostgreSql) {
+                columns = new ArrayList<>(indexColumns.size() + 1);
+                columns.add(tenantColumnName);
+                columns.addAll(indexColumns);
+            }
+            s.executeUpdate(DataDefinitionUtil.createIndex(schemaName, tableName, indexName, columns, !isPostgreSql));
+        }
+        catch (SQLException x) {
+            throw translator.translate(x);
+        }
+    }
+
+    /**
+     * @return the schemaName
+     */
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    /**
+     * @return the indexName
+     */
+    public String getIndexName() {
+        return indexName;
+    }
+
+    /**
+     * @return the tenantColumnName
+     */
+    public String getTenantColumnName() {
+        return tenantColumnName;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -8,11 +8,16 @@ package com.ibm.fhir.database.utils.pool;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.ibm.fhir.database.utils.api.DataAccessException;
@@ -25,22 +30,35 @@ import com.ibm.fhir.database.utils.api.IDatabaseTranslator;
  * get the same connection back. Cooperates with the TransactionFactory
  * to provide a JEE-flavored experience, and makes it easy to write
  * code which will work in both J2SE and JEE environments.
- * 
+ *
+ * The pool can be pre-warmed to a minimum size, can validate connections
+ * when they are borrowed (or only after they have been idle for a while),
+ * and can cap the lifetime of its connections. Free connections are handed
+ * out without taking any lock, and the time taken to borrow and to open
+ * connections is recorded in {@link PoolMetrics}.
+ *
  * Does not support distributed transactions.
  */
 public class PoolConnectionProvider implements IConnectionProvider {
     private static final Logger logger = Logger.getLogger(PoolConnectionProvider.class.getName());
-        
-    // Concurrency control for the pool
-    private final Lock lock = new ReentrantLock();
-    private final Condition waitForConnectionCondition = lock.newCondition();
-    
-    // The number of connections allocated
-    int allocated;
-    
-    // The list of free connections, available to be allocated
-    private Queue<Connection> free = new LinkedList<>();
-    
+
+    // Borrows or connects which take longer than this are logged as warnings
+    private static final long SLOW_WARNING_MS = 5000;
+
+    // Each connection on loan is covered by a permit, so we never have more than
+    // maxPoolSize physical connections (free connections don't hold a permit)
+    private final Semaphore permits;
+
+    // The number of physical connections currently open
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    // The number of connections currently on loan
+    private final AtomicInteger active = new AtomicInteger();
+
+    // The list of free connections, available to be allocated. Most recently
+    // returned connections are at the head, so we keep reusing the warmest ones
+    private final Deque<IdleConnection> free = new ConcurrentLinkedDeque<>();
+
     // The connection provider we are decorating with pooling abilities
     private final IConnectionProvider connectionProvider;
 
@@ -49,15 +67,77 @@ public class PoolConnectionProvider implements IConnectionProvider {
 
     // The maximum number of connections allowed to be active
     private final int maxPoolSize;
-            
+
+    // The number of connections opened by prewarm and kept open by the idle check
+    private final int minPoolSize;
+
+    // Connections older than this are closed instead of being reused. 0 means no limit
+    private final long maxLifetimeNanos;
+
+    // Validate free connections before they are handed out
+    private final boolean validateOnBorrow;
+
+    // Only validate connections which have been idle at least this long
+    private final long validationIdleNanos;
+
+    // The timeout passed to Connection.isValid
+    private final int validationTimeoutSeconds;
+
+    // How long to wait for a connection when the pool is exhausted. 0 means wait forever
+    private final long borrowTimeoutMillis;
+
+    // Runs the idle check, if configured
+    private final ScheduledExecutorService idleCheckExecutor;
+
+    private final PoolMetrics metrics = new PoolMetrics();
+
     /**
      * Public constructor
      * @param cp
      * @param maxPoolSize
      */
     public PoolConnectionProvider(IConnectionProvider cp, int maxPoolSize) {
-        this.connectionProvider = cp;
-        this.maxPoolSize = maxPoolSize;
+        this(builder(cp, maxPoolSize));
+    }
+
+    private PoolConnectionProvider(Builder builder) {
+        if (builder.maxPoolSize < 1) {
+            throw new IllegalArgumentException("maxPoolSize must be at least 1");
+        }
+        if (builder.minPoolSize < 0 || builder.minPoolSize > builder.maxPoolSize) {
+            throw new IllegalArgumentException("minPoolSize must be between 0 and maxPoolSize");
+        }
+        this.connectionProvider = builder.connectionProvider;
+        this.maxPoolSize = builder.maxPoolSize;
+        this.minPoolSize = builder.minPoolSize;
+        this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxLifetimeMillis);
+        this.validateOnBorrow = builder.validateOnBorrow;
+        this.validationIdleNanos = TimeUnit.MILLISECONDS.toNanos(builder.validationIdleMillis);
+        this.validationTimeoutSeconds = builder.validationTimeoutSeconds;
+        this.borrowTimeoutMillis = builder.borrowTimeoutMillis;
+        this.permits = new Semaphore(builder.maxPoolSize, true);
+
+        if (builder.idleCheckIntervalMillis > 0) {
+            this.idleCheckExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "fhir-pool-idle-check");
+                t.setDaemon(true);
+                return t;
+            });
+            this.idleCheckExecutor.scheduleWithFixedDelay(this::checkIdleConnections,
+                builder.idleCheckIntervalMillis, builder.idleCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.idleCheckExecutor = null;
+        }
+    }
+
+    /**
+     * Create a builder for a pool of at most maxPoolSize connections obtained from the given provider
+     * @param cp
+     * @param maxPoolSize
+     * @return
+     */
+    public static Builder builder(IConnectionProvider cp, int maxPoolSize) {
+        return new Builder(cp, maxPoolSize);
     }
 
     @Override
@@ -71,71 +151,227 @@ public class PoolConnectionProvider implements IConnectionProvider {
             }
             return result;
         }
-        
-        // No connection currently on this thread, so try to obtain the underlying
-        // connection from the pool
-        Connection c = null;
-        lock.lock();
+
+        // No connection currently on this thread, so get a permit to borrow one,
+        // waiting for a connection to be returned if they're all in use
+        final long start = System.nanoTime();
+        acquirePermit();
         try {
-            boolean assigned = false;
-            while (!assigned) {
-                if (free.isEmpty()) {
-                    if (this.allocated < this.maxPoolSize) {
-                        this.allocated++;
-                        assigned = true; // get connection outside of lock
-                    }
-                    else {
-                        // block until a connection frees up
-                        logger.info("Max connections allocated, waiting for connection to be freed");
-                        this.waitForConnectionCondition.await();
-                    }
-                }
-                else {
-                    // simply take the next connection from the head of the list
-                    logger.fine("Using db connection from pool");
-                    c = free.poll();
-                    logger.fine("Got db connection from pool: " + c.toString());
-                    assigned = true;
+            result = borrow();
+        }
+        catch (SQLException | RuntimeException x) {
+            // Failed to acquire a connection, so we need to relinquish
+            // our permit and give others a chance
+            permits.release();
+            throw x;
+        }
+        active.incrementAndGet();
+
+        long waitNanos = System.nanoTime() - start;
+        metrics.borrowed(waitNanos);
+        if (TimeUnit.NANOSECONDS.toMillis(waitNanos) > SLOW_WARNING_MS) {
+            logger.warning("Waited " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + "ms for a database connection; "
+                    + describeState());
+        }
+
+        // Set the connection as active on this thread so we will always
+        // use it until the current transaction is complete
+        result.incOpenCount();
+        activeConnection.set(result);
+
+        return result;
+    }
+
+    /**
+     * Take a permit, without blocking if one is available
+     */
+    private void acquirePermit() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+
+        metrics.blocked();
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Max connections allocated, waiting for connection to be freed");
+        }
+        try {
+            if (borrowTimeoutMillis > 0) {
+                if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    metrics.timedOut();
+                    throw new DataAccessException("Timed out after " + borrowTimeoutMillis
+                            + "ms waiting for a database connection; " + describeState());
                 }
             }
+            else {
+                permits.acquire();
+            }
         }
         catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
             throw new DataAccessException("Interrupted waiting for connection");
         }
-        finally {
-            lock.unlock();
+    }
+
+    /**
+     * Take the most recently used free connection which is still good, or open a new
+     * one if there are none. The caller must hold a permit.
+     * @return
+     * @throws SQLException
+     */
+    private PooledConnection borrow() throws SQLException {
+        IdleConnection idle;
+        while ((idle = free.pollFirst()) != null) {
+            final long now = System.nanoTime();
+            if (isExpired(idle.createTime, now)) {
+                metrics.expired();
+                close(idle.connection);
+            }
+            else if (validateOnBorrow && now - idle.lastUsedTime >= validationIdleNanos && !isValid(idle.connection)) {
+                metrics.validationFailed();
+                close(idle.connection);
+            }
+            else {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Got db connection from pool: " + idle.connection.toString());
+                }
+                return new PooledConnection(this, idle.connection, idle.createTime);
+            }
+        }
+
+        // It might take a while to establish a new connection, but we don't
+        // hold any lock, so other threads can still use free connections
+        final long createTime = System.nanoTime();
+        Connection c = connect();
+        return new PooledConnection(this, c, createTime);
+    }
+
+    /**
+     * Open a new physical connection
+     * @return
+     * @throws SQLException
+     */
+    private Connection connect() throws SQLException {
+        final long start = System.nanoTime();
+        Connection c = connectionProvider.getConnection();
+        allocated.incrementAndGet();
+
+        long connectNanos = System.nanoTime() - start;
+        metrics.connected(connectNanos);
+        if (TimeUnit.NANOSECONDS.toMillis(connectNanos) > SLOW_WARNING_MS) {
+            logger.warning("Opening a database connection took " + TimeUnit.NANOSECONDS.toMillis(connectNanos) + "ms");
+        }
+        return c;
+    }
+
+    /**
+     * Close a physical connection which is no longer in the pool
+     * @param c
+     */
+    private void close(Connection c) {
+        allocated.decrementAndGet();
+        try {
+            c.close();
+        }
+        catch (Exception x) {
+            // nothing we can do about it
+            logger.fine("Error closing connection: " + x.getMessage());
         }
-        
-        // It might take a while to establish a new connection, so we do this after
-        // releasing the above lock to try and maximize concurrency.
-        if (c == null) {
+    }
+
+    private boolean isExpired(long createTime, long now) {
+        return maxLifetimeNanos > 0 && now - createTime >= maxLifetimeNanos;
+    }
+
+    private boolean isValid(Connection c) {
+        try {
+            return c.isValid(validationTimeoutSeconds);
+        }
+        catch (SQLException x) {
+            return false;
+        }
+    }
+
+    /**
+     * Open connections until the pool holds at least minPoolSize connections, so that
+     * the first requests don't have to wait for connections to be established
+     * @throws SQLException
+     */
+    public void prewarm() throws SQLException {
+        while (allocated.get() < minPoolSize && permits.tryAcquire()) {
             try {
-                c = connectionProvider.getConnection();
+                final long createTime = System.nanoTime();
+                Connection c = connect();
+                free.offerLast(new IdleConnection(c, createTime, createTime));
             }
-            catch (SQLException x) {
-                // Failed to acquire a connection, so we need to relinquish
-                // our allocation and give others a chance
-                lock.lock();
-                try {
-                    this.allocated--;
-                    this.waitForConnectionCondition.signal();
+            finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Close the free connections which have reached their max lifetime, validate the free
+     * connections which have been idle for at least the validation idle time (if validation
+     * is enabled), then top the pool back up to its minimum size. Called by the idle check
+     * thread if one was configured, but can also be called directly.
+     */
+    public void checkIdleConnections() {
+        try {
+            List<IdleConnection> snapshot = new ArrayList<>(free);
+            for (IdleConnection idle : snapshot) {
+                final long now = System.nanoTime();
+                if (isExpired(idle.createTime, now)) {
+                    // removing a connection from the pool doesn't need a permit
+                    if (free.remove(idle)) {
+                        metrics.expired();
+                        close(idle.connection);
+                    }
                 }
-                finally {
-                    lock.unlock();
+                else if (validateOnBorrow && now - idle.lastUsedTime >= validationIdleNanos) {
+                    // we need a permit to hold the connection while we validate it. If there
+                    // aren't any, the pool is busy and its connections won't stay idle anyway
+                    if (!permits.tryAcquire()) {
+                        break;
+                    }
+                    try {
+                        if (free.remove(idle)) {
+                            if (isValid(idle.connection)) {
+                                free.offerLast(new IdleConnection(idle.connection, idle.createTime, System.nanoTime()));
+                            }
+                            else {
+                                metrics.validationFailed();
+                                close(idle.connection);
+                            }
+                        }
+                    }
+                    finally {
+                        permits.release();
+                    }
                 }
-                throw x;
             }
+
+            prewarm();
+        }
+        catch (Throwable x) {
+            // don't let the exception cancel future runs of the idle check
+            logger.log(Level.WARNING, "Idle connection check failed", x);
         }
+    }
 
-        // Wrap the connection, and set it as active on this thread so we will always
-        // use it until the current transaction is complete
-        result = new PooledConnection(this, c);
-        result.incOpenCount();
-        activeConnection.set(result);
-        
-        return result;
+    /**
+     * Stop the idle check thread (if any) and close all the free connections. Connections
+     * currently on loan are closed when they are returned.
+     */
+    public void shutdown() {
+        if (idleCheckExecutor != null) {
+            idleCheckExecutor.shutdownNow();
+        }
+        IdleConnection idle;
+        while ((idle = free.pollFirst()) != null) {
+            close(idle.connection);
+        }
     }
-    
+
     /**
      * Called when the connection is closed, which in this case is pretty much a NOP,
      * because this connection will stay active on this thread until the transaction
@@ -144,7 +380,7 @@ public class PoolConnectionProvider implements IConnectionProvider {
      */
     protected void returnConnection(PooledConnection pc, boolean reuse) {
         PooledConnection active = activeConnection.get();
-        
+
         // Just look out for programming errors
         if (active == null) {
             throw new IllegalStateException("No active connection");
@@ -156,7 +392,7 @@ public class PoolConnectionProvider implements IConnectionProvider {
 
     /**
      * Remove the active connection on this thread. Called when the transaction completes
-     * @throws SQLException 
+     * @throws SQLException
      */
     protected void clearActiveConnection() throws SQLException {
         PooledConnection pc = activeConnection.get();
@@ -164,8 +400,8 @@ public class PoolConnectionProvider implements IConnectionProvider {
             // If the open count of current connection is bigger than 0, then it means the connection is
             // not "closed" yet, then we need to close it to reduce the open count by 1 before the connection
             // is added back to the connection pool.
-            // This could happen, e.g, in FHIRDbDAOImpl, the external connection is not closed after each 
-            // operation, instead, the connection should be closed only after the whole transaction is committed 
+            // This could happen, e.g, in FHIRDbDAOImpl, the external connection is not closed after each
+            // operation, instead, the connection should be closed only after the whole transaction is committed
             // or rolled back.
             if (pc.getOpenCount() > 0) {
                 pc.close();
@@ -176,33 +412,35 @@ public class PoolConnectionProvider implements IConnectionProvider {
                 // indicates the prior connection wasn't closed
                 logger.warning("PooledConnection open/close mismatch: " + pc.getOpenCount());
             }
-            
-            lock.lock();
-            try {
+
+            final long now = System.nanoTime();
+            if (pc.isReusable() && !isExpired(pc.getCreateTime(), now)) {
+                // underlying connection should still be good, so add it back into the pool.
+                // This happens before the permit is released, so the next borrower will find it
+                logger.fine("Adding connection back to pool");
+                free.offerFirst(new IdleConnection(pc.getWrapped(), pc.getCreateTime(), now));
+            }
+            else {
                 if (pc.isReusable()) {
-                    // underlying connection should still be good, so add it back into the pool
-                    logger.fine("Adding connection back to pool");
-                    free.add(pc.getWrapped());
+                    logger.fine("Connection reached its max lifetime, so closing it");
+                    metrics.expired();
                 }
                 else {
                     // Connection appears to be broken, so just close it and walk away
                     logger.fine("Connection is broken, so closing it");
-                    pc.forceClosed();
-                    // We now have one less allocated connection, so need to reduce our
-                    // count accordingly, which might unblock another thread waiting to
-                    // create a new connection
-                    this.allocated--;
+                    metrics.discarded();
                 }
-                
-                // Wake up a thread waiting for an available connection
-                this.waitForConnectionCondition.signal();
-            }
-            finally {
-                lock.unlock();
+                pc.forceClosed();
+                // We now have one less allocated connection
+                allocated.decrementAndGet();
             }
+
+            // Wake up a thread waiting for an available connection
+            active.decrementAndGet();
+            permits.release();
         }
     }
-    
+
     /**
      * Simple check to see if the exception is related to a connection error,
      * in which case the connection shouldn't be returned to the pool when closed
@@ -237,7 +475,7 @@ public class PoolConnectionProvider implements IConnectionProvider {
             // and so there's nothing to do. Not a problem.
             logger.warning("No connection on this thread");
         }
-        
+
     }
 
     @Override
@@ -264,9 +502,175 @@ public class PoolConnectionProvider implements IConnectionProvider {
         }
     }
 
+    /**
+     * @return the number of physical connections currently open, whether free or on loan
+     */
+    public int getAllocatedCount() {
+        return allocated.get();
+    }
+
+    /**
+     * @return the number of connections currently on loan
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return the number of free connections in the pool
+     */
+    public int getIdleCount() {
+        return free.size();
+    }
+
+    /**
+     * @return the number of threads waiting for a connection
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return the borrow and connect metrics of this pool
+     */
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Summarize the current state of the pool, for logging
+     * @return
+     */
+    public String describeState() {
+        return "active=" + getActiveCount() + ", idle=" + getIdleCount() + ", allocated=" + getAllocatedCount()
+                + ", waiting=" + getWaitingCount() + ", max=" + maxPoolSize;
+    }
+
     @Override
     public void describe(String prefix, StringBuilder cfg, String key) {
-        // Not Implemented
+        cfg.append(prefix + "." + key + ".maxPoolSize=" + maxPoolSize + "\n");
+        cfg.append(prefix + "." + key + ".minPoolSize=" + minPoolSize + "\n");
+        cfg.append(prefix + "." + key + ".state=" + describeState() + "\n");
+        cfg.append(prefix + "." + key + ".metrics=" + metrics + "\n");
+    }
+
+    /**
+     * A free connection
+     */
+    private static class IdleConnection {
+        private final Connection connection;
+
+        // When the connection was opened
+        private final long createTime;
+
+        // When the connection was last returned to the pool or validated
+        private final long lastUsedTime;
+
+        private IdleConnection(Connection connection, long createTime, long lastUsedTime) {
+            this.connection = connection;
+            this.createTime = createTime;
+            this.lastUsedTime = lastUsedTime;
+        }
     }
 
+    /**
+     * Builder for the optional settings of a pool. The defaults give a pool which doesn't
+     * pre-warm, validate or expire its connections, and which waits forever for a connection.
+     */
+    public static class Builder {
+        private final IConnectionProvider connectionProvider;
+        private final int maxPoolSize;
+        private int minPoolSize = 0;
+        private long maxLifetimeMillis = 0;
+        private boolean validateOnBorrow = false;
+        private long validationIdleMillis = 0;
+        private int validationTimeoutSeconds = 5;
+        private long borrowTimeoutMillis = 0;
+        private long idleCheckIntervalMillis = 0;
+
+        private Builder(IConnectionProvider connectionProvider, int maxPoolSize) {
+            this.connectionProvider = connectionProvider;
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        /**
+         * The number of connections opened by {@link PoolConnectionProvider#prewarm()} and
+         * maintained by the idle check
+         * @param minPoolSize
+         * @return
+         */
+        public Builder minPoolSize(int minPoolSize) {
+            this.minPoolSize = minPoolSize;
+            return this;
+        }
+
+        /**
+         * Close connections once they have been open this long, instead of returning them
+         * to the pool. 0 (the default) means connections are kept for as long as they work
+         * @param maxLifetimeMillis
+         * @return
+         */
+        public Builder maxLifetimeMillis(long maxLifetimeMillis) {
+            this.maxLifetimeMillis = maxLifetimeMillis;
+            return this;
+        }
+
+        /**
+         * Validate free connections (using Connection.isValid) before handing them out
+         * and during the idle check
+         * @param validateOnBorrow
+         * @return
+         */
+        public Builder validateOnBorrow(boolean validateOnBorrow) {
+            this.validateOnBorrow = validateOnBorrow;
+            return this;
+        }
+
+        /**
+         * Only validate connections which have been idle for at least this long. 0 (the
+         * default) validates every time
+         * @param validationIdleMillis
+         * @return
+         */
+        public Builder validationIdleMillis(long validationIdleMillis) {
+            this.validationIdleMillis = validationIdleMillis;
+            return this;
+        }
+
+        /**
+         * The timeout passed to Connection.isValid
+         * @param validationTimeoutSeconds
+         * @return
+         */
+        public Builder validationTimeoutSeconds(int validationTimeoutSeconds) {
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+            return this;
+        }
+
+        /**
+         * How long getConnection waits for a connection when they are all in use before
+         * throwing a DataAccessException. 0 (the default) waits forever
+         * @param borrowTimeoutMillis
+         * @return
+         */
+        public Builder borrowTimeoutMillis(long borrowTimeoutMillis) {
+            this.borrowTimeoutMillis = borrowTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Run {@link PoolConnectionProvider#checkIdleConnections()} on a daemon thread at
+         * this interval. 0 (the default) means no idle check thread is started
+         * @param idleCheckIntervalMillis
+         * @return
+         */
+        public Builder idleCheckIntervalMillis(long idleCheckIntervalMillis) {
+            this.idleCheckIntervalMillis = idleCheckIntervalMillis;
+            return this;
+        }
+
+        public PoolConnectionProvider build() {
+            return new PoolConnectionProvider(this);
+        }
+    }
 }
@@ -0,0 +1,220 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.database.utils.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and wait-time histograms for a {@link PoolConnectionProvider}. All methods
+ * are thread-safe, and the values can be read at any time while the pool is in use.
+ */
+public class PoolMetrics {
+
+    // Upper bounds (inclusive, in milliseconds) of the histogram buckets. The last bucket is unbounded
+    private static final long[] BUCKET_LIMITS_MS = { 1, 5, 10, 50, 100, 500, 1000, 5000 };
+
+    // Time taken to hand out a connection, including any time spent waiting for one to be freed
+    private final Histogram borrowWait = new Histogram();
+
+    // Time taken to open a new physical connection
+    private final Histogram connectTime = new Histogram();
+
+    // Number of borrows which had to wait because the pool was exhausted
+    private final LongAdder blockedCount = new LongAdder();
+
+    // Number of borrows which timed out waiting for a connection
+    private final LongAdder timeoutCount = new LongAdder();
+
+    // Number of connections found to be invalid on borrow or while idle
+    private final LongAdder validationFailureCount = new LongAdder();
+
+    // Number of connections closed because they reached their max lifetime
+    private final LongAdder expiredCount = new LongAdder();
+
+    // Number of connections closed because they were broken or rolled back
+    private final LongAdder discardedCount = new LongAdder();
+
+    protected void borrowed(long waitNanos) {
+        borrowWait.record(waitNanos);
+    }
+
+    protected void connected(long connectNanos) {
+        connectTime.record(connectNanos);
+    }
+
+    protected void blocked() {
+        blockedCount.increment();
+    }
+
+    protected void timedOut() {
+        timeoutCount.increment();
+    }
+
+    protected void validationFailed() {
+        validationFailureCount.increment();
+    }
+
+    protected void expired() {
+        expiredCount.increment();
+    }
+
+    protected void discarded() {
+        discardedCount.increment();
+    }
+
+    /**
+     * @return the upper bound in milliseconds of each histogram bucket, except the last (unbounded) one
+     */
+    public static long[] getBucketLimitsMillis() {
+        return BUCKET_LIMITS_MS.clone();
+    }
+
+    /**
+     * @return the borrow wait histogram, with one more bucket than {@link #getBucketLimitsMillis()}
+     */
+    public long[] getBorrowWaitHistogram() {
+        return borrowWait.getCounts();
+    }
+
+    /**
+     * @return the number of connections handed out by the pool
+     */
+    public long getBorrowCount() {
+        return borrowWait.getCount();
+    }
+
+    /**
+     * @return the longest time in milliseconds taken to hand out a connection
+     */
+    public long getMaxBorrowWaitMillis() {
+        return borrowWait.getMaxMillis();
+    }
+
+    /**
+     * @return the connect time histogram, with one more bucket than {@link #getBucketLimitsMillis()}
+     */
+    public long[] getConnectTimeHistogram() {
+        return connectTime.getCounts();
+    }
+
+    /**
+     * @return the number of physical connections opened by the pool
+     */
+    public long getConnectCount() {
+        return connectTime.getCount();
+    }
+
+    /**
+     * @return the longest time in milliseconds taken to open a physical connection
+     */
+    public long getMaxConnectTimeMillis() {
+        return connectTime.getMaxMillis();
+    }
+
+    public long getBlockedCount() {
+        return blockedCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailureCount.sum();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    public long getDiscardedCount() {
+        return discardedCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append("borrows=").append(getBorrowCount());
+        result.append(", blocked=").append(getBlockedCount());
+        result.append(", timeouts=").append(getTimeoutCount());
+        result.append(", maxBorrowWaitMs=").append(getMaxBorrowWaitMillis());
+        result.append(", borrowWaitMs=");
+        appendHistogram(result, getBorrowWaitHistogram());
+        result.append(", connects=").append(getConnectCount());
+        result.append(", maxConnectMs=").append(getMaxConnectTimeMillis());
+        result.append(", connectMs=");
+        appendHistogram(result, getConnectTimeHistogram());
+        result.append(", validationFailures=").append(getValidationFailureCount());
+        result.append(", expired=").append(getExpiredCount());
+        result.append(", discarded=").append(getDiscardedCount());
+        return result.toString();
+    }
+
+    /**
+     * Append the non-empty buckets of the histogram, e.g. {<=1:20, <=50:3, >5000:1}
+     * @param result
+     * @param counts
+     */
+    private static void appendHistogram(StringBuilder result, long[] counts) {
+        result.append("{");
+        boolean first = true;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                if (!first) {
+                    result.append(", ");
+                }
+                first = false;
+                if (i < BUCKET_LIMITS_MS.length) {
+                    result.append("<=").append(BUCKET_LIMITS_MS[i]);
+                } else {
+                    result.append(">").append(BUCKET_LIMITS_MS[BUCKET_LIMITS_MS.length - 1]);
+                }
+                result.append(":").append(counts[i]);
+            }
+        }
+        result.append("}");
+    }
+
+    /**
+     * A fixed-bucket histogram of elapsed times
+     */
+    private static class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_LIMITS_MS.length + 1);
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKET_LIMITS_MS.length && millis > BUCKET_LIMITS_MS[bucket]) {
+                bucket++;
+            }
+            counts.incrementAndGet(bucket);
+            count.increment();
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private long[] getCounts() {
+            long[] result = new long[counts.length()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = counts.get(i);
+            }
+            return result;
+        }
+
+        private long getCount() {
+            return count.sum();
+        }
+
+        private long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -46,14 +46,36 @@ public class PooledConnection implements Connection {
     // Track the open/close pairing
     private int openCount = 0;
 
+    // When the underlying connection was opened (System.nanoTime)
+    private final long createTime;
+
     /**
      * Public constructor
      * @param cp
      * @param wrappee
      */
     public PooledConnection(PoolConnectionProvider cp, Connection wrappee) {
+        this(cp, wrappee, System.nanoTime());
+    }
+
+    /**
+     * Public constructor
+     * @param cp
+     * @param wrappee
+     * @param createTime the System.nanoTime when the underlying connection was opened
+     */
+    public PooledConnection(PoolConnectionProvider cp, Connection wrappee, long createTime) {
         this.pool = cp;
         this.wrapped = wrappee;
+        this.createTime = createTime;
+    }
+
+    /**
+     * Get the System.nanoTime when the underlying connection was opened
+     * @return
+     */
+    public long getCreateTime() {
+        return this.createTime;
     }
 
     /**
@@ -0,0 +1,254 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.database.utils.pool;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.database.utils.api.DataAccessException;
+import com.ibm.fhir.database.utils.api.IConnectionProvider;
+import com.ibm.fhir.database.utils.api.IDatabaseTranslator;
+import com.ibm.fhir.database.utils.derby.DerbyTranslator;
+
+/**
+ * Tests the PoolConnectionProvider using stub connections
+ */
+public class PoolConnectionProviderTest {
+
+    /**
+     * Hands out connections which track whether they are closed and can be made invalid
+     */
+    private static class StubConnectionProvider implements IConnectionProvider {
+        private final AtomicInteger opened = new AtomicInteger();
+        private final AtomicInteger closed = new AtomicInteger();
+        private volatile boolean valid = true;
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            opened.incrementAndGet();
+            final boolean[] isClosed = new boolean[1];
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "close":
+                        if (!isClosed[0]) {
+                            isClosed[0] = true;
+                            closed.incrementAndGet();
+                        }
+                        return null;
+                    case "isClosed":
+                        return isClosed[0];
+                    case "isValid":
+                        return valid && !isClosed[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "StubConnection@" + System.identityHashCode(proxy);
+                    default:
+                        return null;
+                    }
+                });
+        }
+
+        @Override
+        public IDatabaseTranslator getTranslator() {
+            return new DerbyTranslator();
+        }
+
+        @Override
+        public void commitTransaction() throws SQLException {
+        }
+
+        @Override
+        public void rollbackTransaction() throws SQLException {
+        }
+
+        @Override
+        public void describe(String prefix, StringBuilder cfg, String key) {
+        }
+    }
+
+    @Test
+    public void testReuse() throws SQLException {
+        StubConnectionProvider cp = new StubConnectionProvider();
+        PoolConnectionProvider pool = new PoolConnectionProvider(cp, 2);
+
+        Connection c1 = pool.getConnection();
+        Connection c2 = pool.getConnection();
+        assertSame(c2, c1, "same connection on the same thread");
+        assertEquals(pool.getActiveCount(), 1);
+        c2.close();
+        c1.close();
+        pool.commitTransaction();
+        assertEquals(pool.getActiveCount(), 0);
+        assertEquals(pool.getIdleCount(), 1);
+
+        PooledConnection c3 = (PooledConnection) pool.getConnection();
+        assertSame(c3.getWrapped(), ((PooledConnection) c1).getWrapped(), "free connection reused");
+        c3.close();
+        pool.commitTransaction();
+
+        assertEquals(cp.opened.get(), 1);
+        assertEquals(pool.getMetrics().getBorrowCount(), 2);
+        assertEquals(pool.getMetrics().getConnectCount(), 1);
+    }
+
+    @Test
+    public void testPrewarm() throws SQLException {
+        StubConnectionProvider cp = new StubConnectionProvider();
+        PoolConnectionProvider pool = PoolConnectionProvider.builder(cp, 5).minPoolSize(3).build();
+        pool.prewarm();
+        assertEquals(cp.opened.get(), 3);
+        assertEquals(pool.getIdleCount(), 3);
+        assertEquals(pool.getAllocatedCount(), 3);
+
+        Connection c = pool.getConnection();
+        c.close();
+        pool.commitTransaction();
+        assertEquals(cp.opened.get(), 3);
+
+        pool.shutdown();
+        assertEquals(cp.closed.get(), 3);
+        assertEquals(pool.getAllocatedCount(), 0);
+    }
+
+    @Test
+    public void testRollbackDiscards() throws SQLException {
+        StubConnectionProvider cp = new StubConnectionProvider();
+        PoolConnectionProvider pool = new PoolConnectionProvider(cp, 2);
+
+        Connection c = pool.getConnection();
+        c.close();
+        pool.rollbackTransaction();
+        assertEquals(pool.getIdleCount(), 0);
+        assertEquals(pool.getAllocatedCount(), 0);
+        assertEquals(cp.closed.get(), 1);
+        assertEquals(pool.getMetrics().getDiscardedCount(), 1);
+    }
+
+    @Test
+    public void testValidateOnBorrow() throws SQLException {
+        StubConnectionProvider cp = new StubConnectionProvider();
+        PoolConnectionProvider pool = PoolConnectionProvider.builder(cp, 2).validateOnBorrow(true).build();
+
+        PooledConnection c1 = (PooledConnection) pool.getConnection();
+        Connection wrapped = c1.getWrapped();
+        c1.close();
+        pool.commitTransaction();
+
+        cp.valid = false;
+        PooledConnection c2 = (PooledConnection) pool.getConnection();
+        assertNotSame(c2.getWrapped(), wrapped, "invalid connection replaced");
+        c2.close();
+        pool.commitTransaction();
+
+        assertEquals(cp.opened.get(), 2);
+        assertEquals(pool.getMetrics().getValidationFailureCount(), 1);
+        assertEquals(pool.getAllocatedCount(), 1);
+    }
+
+    @Test
+    public void testMaxLifetime() throws Exception {
+        StubConnectionProvider cp = new StubConnectionProvider();
+        PoolConnectionProvider pool = PoolConnectionProvider.builder(cp, 2).maxLifetimeMillis(1).build();
+
+        Connection c = pool.getConnection();
+        Thread.sleep(5);
+        c.close();
+        pool.commitTransaction();
+
+        // expired on return, so not added back to the pool
+        assertEquals(pool.getIdleCount(), 0);
+        assertEquals(cp.closed.get(), 1);
+        assertEquals(pool.getMetrics().getExpiredCount(), 1);
+    }
+
+    @Test
+    public void testIdleCheck() throws Exception {
+        StubConnectionProvider cp = new StubConnectionProvider();
+        PoolConnectionProvider pool = PoolConnectionProvider.builder(cp, 4).minPoolSize(2).validateOnBorrow(true).build();
+        pool.prewarm();
+        assertEquals(pool.getIdleCount(), 2);
+
+        cp.valid = false;
+        pool.checkIdleConnections();
+
+        // both invalid connections replaced (by equally invalid ones, in this case)
+        assertEquals(pool.getMetrics().getValidationFailureCount(), 2);
+        assertEquals(cp.closed.get(), 2);
+        assertEquals(pool.getIdleCount(), 2);
+        assertEquals(pool.getAllocatedCount(), 2);
+    }
+
+    @Test
+    public void testBorrowTimeout() throws Exception {
+        StubConnectionProvider cp = new StubConnectionProvider();
+        PoolConnectionProvider pool = PoolConnectionProvider.builder(cp, 1).borrowTimeoutMillis(50).build();
+
+        Connection c = pool.getConnection();
+        Thread t = new Thread(() -> {
+            try {
+                pool.getConnection();
+                fail("expected timeout");
+            } catch (DataAccessException x) {
+                // expected
+            } catch (SQLException x) {
+                fail(x.getMessage());
+            }
+        });
+        t.start();
+        t.join();
+        c.close();
+        pool.commitTransaction();
+
+        assertEquals(pool.getMetrics().getTimeoutCount(), 1);
+        assertEquals(pool.getMetrics().getBlockedCount(), 1);
+        assertEquals(cp.opened.get(), 1);
+    }
+
+    @Test
+    public void testBlockedBorrow() throws Exception {
+        StubConnectionProvider cp = new StubConnectionProvider();
+        PoolConnectionProvider pool = new PoolConnectionProvider(cp, 1);
+
+        Connection c = pool.getConnection();
+        final Connection[] other = new Connection[1];
+        Thread t = new Thread(() -> {
+            try {
+                other[0] = pool.getConnection();
+                other[0].close();
+                pool.commitTransaction();
+            } catch (SQLException x) {
+                fail(x.getMessage());
+            }
+        });
+        t.start();
+        while (pool.getWaitingCount() == 0) {
+            Thread.sleep(1);
+        }
+        c.close();
+        pool.commitTransaction();
+        t.join();
+
+        assertSame(((PooledConnection) other[0]).getWrapped(), ((PooledConnection) c).getWrapped());
+        assertEquals(cp.opened.get(), 1);
+        assertEquals(pool.getMetrics().getBlockedCount(), 1);
+        assertTrue(pool.getMetrics().getMaxBorrowWaitMillis() >= 0);
+    }
+}
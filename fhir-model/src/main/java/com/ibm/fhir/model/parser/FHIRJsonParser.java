@@ -24,12 +24,16 @@ import java.util.StringJoiner;
 import javax.annotation.Generated;
 import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonBuilderFactory;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonReaderFactory;
 import javax.json.JsonString;
 import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
 
 import com.ibm.fhir.model.parser.FHIRParser;
 import com.ibm.fhir.model.parser.FHIRAbstractParser;
@@ -49,6 +53,8 @@ import net.jcip.annotations.NotThreadSafe;
 public class FHIRJsonParser extends FHIRAbstractParser {
     public static boolean DEBUG = false;
     private static final JsonReaderFactory JSON_READER_FACTORY = Json.createReaderFactory(null);
+    private static final JsonParserFactory JSON_PARSER_FACTORY = Json.createParserFactory(null);
+    private static final JsonBuilderFactory JSON_BUILDER_FACTORY = Json.createBuilderFactory(null);
 
     private final Stack<java.lang.String> stack = new Stack<>();
 
@@ -62,6 +68,15 @@ public class FHIRJsonParser extends FHIRAbstractParser {
     }
 
     public <T extends Resource> T parseAndFilter(InputStream in, Collection<java.lang.String> elementsToInclude) throws FHIRParserException {
+        if (isStreaming()) {
+            try (JsonParser jsonParser = JSON_PARSER_FACTORY.createParser(nonClosingInputStream(in), StandardCharsets.UTF_8)) {
+                return parseAndFilter(jsonParser, elementsToInclude);
+            } catch (FHIRParserException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new FHIRParserException(e.getMessage(), getPath(), e);
+            }
+        }
         try (JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingInputStream(in), StandardCharsets.UTF_8)) {
             JsonObject jsonObject = jsonReader.readObject();
             return parseAndFilter(jsonObject, elementsToInclude);
@@ -78,6 +93,15 @@ public class FHIRJsonParser extends FHIRAbstractParser {
     }
 
     public <T extends Resource> T parseAndFilter(Reader reader, Collection<java.lang.String> elementsToInclude) throws FHIRParserException {
+        if (isStreaming()) {
+            try (JsonParser jsonParser = JSON_PARSER_FACTORY.createParser(nonClosingReader(reader))) {
+                return parseAndFilter(jsonParser, elementsToInclude);
+            } catch (FHIRParserException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new FHIRParserException(e.getMessage(), getPath(), e);
+            }
+        }
         try (JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingReader(reader))) {
             JsonObject jsonObject = jsonReader.readObject();
             return parseAndFilter(jsonObject, elementsToInclude);
@@ -107,6 +131,64 @@ public class FHIRJsonParser extends FHIRAbstractParser {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private <T extends Resource> T parseAndFilter(JsonParser jsonParser, Collection<java.lang.String> elementsToInclude) throws FHIRParserException {
+        try {
+            reset();
+            if (jsonParser.next() != JsonParser.Event.START_OBJECT) {
+                throw new IllegalArgumentException("Expected a JSON object");
+            }
+            JsonObjectBuilder jsonObjectBuilder = JSON_BUILDER_FACTORY.createObjectBuilder();
+            boolean bundle = false;
+            java.util.List<Bundle.Entry> entries = null;
+            while (jsonParser.next() == JsonParser.Event.KEY_NAME) {
+                java.lang.String key = jsonParser.getString();
+                JsonParser.Event event = jsonParser.next();
+                if (bundle && entries == null && "entry".equals(key) && event == JsonParser.Event.START_ARRAY) {
+                    if (elementsToInclude != null && !new ElementFilter(Bundle.class, elementsToInclude).includes(key)) {
+                        jsonParser.skipArray();
+                    } else {
+                        entries = parseBundleEntries(jsonParser);
+                    }
+                    continue;
+                }
+                JsonValue jsonValue = jsonParser.getValue();
+                if ("resourceType".equals(key) && jsonValue instanceof JsonString) {
+                    bundle = "Bundle".equals(((JsonString) jsonValue).getString());
+                }
+                jsonObjectBuilder.add(key, jsonValue);
+            }
+            JsonObject jsonObject = jsonObjectBuilder.build();
+            Class<?> resourceType = getResourceType(jsonObject);
+            if (elementsToInclude != null) {
+                ElementFilter elementFilter = new ElementFilter(resourceType, elementsToInclude);
+                jsonObject = elementFilter.apply(jsonObject);
+            }
+            Resource resource = parseResource(resourceType.getSimpleName(), jsonObject, -1);
+            if (entries != null) {
+                resource = ((Bundle) resource).toBuilder().entry(entries).build();
+            }
+            return (T) resource;
+        } catch (Exception e) {
+            throw new FHIRParserException(e.getMessage(), getPath(), e);
+        }
+    }
+
+    private java.util.List<Bundle.Entry> parseBundleEntries(JsonParser jsonParser) {
+        java.util.List<Bundle.Entry> entries = new java.util.ArrayList<>();
+        stackPush("Bundle", -1);
+        int i = 0;
+        while (jsonParser.next() != JsonParser.Event.END_ARRAY) {
+            entries.add(parseBundleEntry("entry", (JsonObject) jsonParser.getValue(), i++));
+        }
+        stackPop();
+        return entries;
+    }
+
+    private boolean isStreaming() {
+        return getPropertyOrDefault(FHIRParser.PROPERTY_STREAMING, java.lang.Boolean.FALSE, java.lang.Boolean.class);
+    }
+
     private void reset() {
         stack.clear();
     }
@@ -116,6 +198,9 @@ public class FHIRJsonParser extends FHIRAbstractParser {
         if (FHIRParser.PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS.equals(name)) {
             return true;
         }
+        if (FHIRParser.PROPERTY_STREAMING.equals(name)) {
+            return true;
+        }
         return false;
     }
 
@@ -22,6 +22,13 @@ public interface FHIRParser {
      */
     public static final String PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS = "com.ibm.fhir.model.parser.ignoreUnrecognizedElements";
     
+    /**
+     * Property name for a property that controls whether the JSON parser reads the input with a streaming JsonParser
+     * instead of first reading the whole input into a JsonObject. In streaming mode, the entries of a Bundle are
+     * parsed one at a time as they are read, so the JSON representation of the entire Bundle is never held in memory.
+     */
+    public static final String PROPERTY_STREAMING = "com.ibm.fhir.model.parser.streaming";
+    
     /**
      * Read a resource from the passed InputStream. This method does not close the passed InputStream.
      * 
@@ -0,0 +1,123 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.model.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.examples.Index;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRJsonParser;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.parser.exception.FHIRParserException;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Resource;
+
+/**
+ * Tests that the streaming mode of the JSON parser produces the same result as the default mode
+ */
+public class FHIRStreamingJsonParserTest {
+    private static final String BUNDLE =
+            "{\"type\":\"collection\",\"resourceType\":\"Bundle\",\"id\":\"1\",\"entry\":["
+            + "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"a\"}},"
+            + "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"b\",\"active\":true}}],"
+            + "\"total\":2}";
+
+    @Test
+    public void testExamples() throws Exception {
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+        FHIRParser streamingParser = FHIRParser.parser(Format.JSON);
+        streamingParser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+
+        int count = 0;
+        try (BufferedReader index = new BufferedReader(ExamplesUtil.indexReader(Index.IBM_JSON))) {
+            String line;
+            while ((line = index.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length != 2) {
+                    continue;
+                }
+                String file = tokens[1];
+
+                Resource expected = null;
+                String expectedError = null;
+                try (Reader reader = ExamplesUtil.resourceReader(file)) {
+                    expected = parser.parse(reader);
+                } catch (FHIRParserException e) {
+                    expectedError = e.getMessage();
+                }
+
+                try (Reader reader = ExamplesUtil.resourceReader(file)) {
+                    Resource actual = streamingParser.parse(reader);
+                    assertEquals(actual, expected, file);
+                } catch (FHIRParserException e) {
+                    assertNotNull(expectedError, file + ": " + e.getMessage());
+                }
+                count++;
+            }
+        }
+        assertTrue(count > 0);
+    }
+
+    @Test
+    public void testBundle() throws Exception {
+        FHIRJsonParser parser = FHIRParser.parser(Format.JSON).as(FHIRJsonParser.class);
+        Bundle expected = parser.parse(new StringReader(BUNDLE));
+
+        parser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+        Bundle actual = parser.parse(new StringReader(BUNDLE));
+        assertEquals(actual, expected);
+        assertEquals(actual.getEntry().size(), 2);
+    }
+
+    @Test
+    public void testBundleElementFilter() throws Exception {
+        FHIRJsonParser parser = FHIRParser.parser(Format.JSON).as(FHIRJsonParser.class);
+        parser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+
+        Bundle bundle = parser.parseAndFilter(new StringReader(BUNDLE), Collections.singletonList("total"));
+        assertTrue(bundle.getEntry().isEmpty());
+        assertNotNull(bundle.getTotal());
+
+        bundle = parser.parseAndFilter(new StringReader(BUNDLE), Arrays.asList("entry"));
+        assertEquals(bundle.getEntry().size(), 2);
+        assertEquals(bundle.getTotal(), null);
+    }
+
+    @Test
+    public void testBundleEntryPath() throws Exception {
+        String invalid = BUNDLE.replace("\"active\":true", "\"active\":\"yes\"");
+        String expectedPath = null;
+        try {
+            FHIRParser.parser(Format.JSON).parse(new StringReader(invalid));
+            fail();
+        } catch (FHIRParserException e) {
+            expectedPath = e.getPath();
+        }
+
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+        parser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+        try {
+            parser.parse(new StringReader(invalid));
+            fail();
+        } catch (FHIRParserException e) {
+            assertEquals(e.getPath(), expectedPath);
+            assertTrue(e.getPath().startsWith("Bundle.entry[1]"));
+        }
+    }
+}
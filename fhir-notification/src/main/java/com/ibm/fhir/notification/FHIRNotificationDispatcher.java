@@ -0,0 +1,163 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers notification events to subscribers on a dedicated thread, so that slow subscribers
+ * don't hold up the requests which generate the events.
+ *
+ * <p>Events are held in a bounded queue and delivered in the order they were published, in batches
+ * of up to maxBatchSize events. When the queue is full, the overflow policy decides whether the
+ * publishing thread waits for space or the oldest queued event is dropped.
+ */
+public class FHIRNotificationDispatcher {
+    private static final Logger log = Logger.getLogger(FHIRNotificationDispatcher.class.getName());
+
+    public static final String OVERFLOW_POLICY_BLOCK = "block";
+    public static final String OVERFLOW_POLICY_DROP_OLDEST = "dropOldest";
+
+    // How long shutdown waits for queued events to be delivered
+    private static final long SHUTDOWN_WAIT_MS = 10000;
+
+    private final BlockingQueue<FHIRNotificationEvent> queue;
+    private final int maxBatchSize;
+    private final boolean dropOldest;
+    private final Consumer<List<FHIRNotificationEvent>> delivery;
+    private final Thread thread;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * @param queueSize the maximum number of events waiting to be delivered
+     * @param maxBatchSize the maximum number of events delivered to subscribers at once
+     * @param overflowPolicy {@link #OVERFLOW_POLICY_BLOCK} or {@link #OVERFLOW_POLICY_DROP_OLDEST}
+     * @param delivery delivers a batch of events to the subscribers
+     */
+    public FHIRNotificationDispatcher(int queueSize, int maxBatchSize, String overflowPolicy,
+            Consumer<List<FHIRNotificationEvent>> delivery) {
+        if (queueSize < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("queueSize and maxBatchSize must be at least 1");
+        }
+        if (OVERFLOW_POLICY_DROP_OLDEST.equals(overflowPolicy)) {
+            this.dropOldest = true;
+        } else if (OVERFLOW_POLICY_BLOCK.equals(overflowPolicy)) {
+            this.dropOldest = false;
+        } else {
+            throw new IllegalArgumentException("Invalid notification overflow policy: '" + overflowPolicy + "'");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.maxBatchSize = maxBatchSize;
+        this.delivery = delivery;
+        this.thread = new Thread(this::run, "fhir-notification-dispatcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue the event for delivery. Depending on the overflow policy, waits for space if the queue
+     * is full, or drops the oldest queued event to make room.
+     * @param event
+     */
+    public void enqueue(FHIRNotificationEvent event) {
+        if (!running) {
+            log.warning("Notification dispatcher is shut down; dropping event: " + event);
+            return;
+        }
+        if (dropOldest) {
+            while (!queue.offer(event)) {
+                FHIRNotificationEvent dropped = queue.poll();
+                if (dropped != null) {
+                    droppedCount.incrementAndGet();
+                    if (log.isLoggable(Level.FINE)) {
+                        log.fine("Notification queue is full; dropping event: " + dropped);
+                    }
+                }
+            }
+        } else {
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                droppedCount.incrementAndGet();
+                log.warning("Interrupted waiting for space in the notification queue; dropping event: " + event);
+            }
+        }
+    }
+
+    /**
+     * Stop accepting events and wait a limited time for the queued events to be delivered.
+     *
+     * <p>The dispatcher thread is not interrupted, because an interrupt would fail the delivery in
+     * progress; it notices the shutdown the next time it polls the queue, within a second.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            thread.join(SHUTDOWN_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warning("Notification dispatcher shut down with " + queue.size() + " undelivered events");
+        }
+    }
+
+    /**
+     * @return the number of events waiting to be delivered
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void run() {
+        List<FHIRNotificationEvent> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                // after shutdown the loop only gets here while events are left, so this doesn't wait
+                FHIRNotificationEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // nobody else interrupts this thread; keep going until shutdown is requested
+                continue;
+            }
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            deliver(batch);
+            batch.clear();
+        }
+    }
+
+    private void deliver(List<FHIRNotificationEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            delivery.accept(batch);
+        } catch (Throwable t) {
+            log.log(Level.SEVERE, "Unexpected error delivering " + batch.size() + " notification events", t);
+        }
+    }
+}
@@ -15,6 +15,10 @@ public class FHIRNotificationEvent {
     private String resourceId = null;
     private Resource resource = null;
 
+    // The serialized forms of this event, shared by all subscribers
+    private volatile String jsonString = null;
+    private volatile String jsonStringWithResource = null;
+
     public FHIRNotificationEvent() {
     }
 
@@ -24,6 +28,7 @@ public class FHIRNotificationEvent {
 
     public void setResourceId(String resourceId) {
         this.resourceId = resourceId;
+        clearJsonStrings();
     }
 
     public String getLastUpdated() {
@@ -32,6 +37,7 @@ public class FHIRNotificationEvent {
 
     public void setLastUpdated(String lastUpdated) {
         this.lastUpdated = lastUpdated;
+        clearJsonStrings();
     }
 
     public String getLocation() {
@@ -40,6 +46,7 @@ public class FHIRNotificationEvent {
 
     public void setLocation(String location) {
         this.location = location;
+        clearJsonStrings();
     }
 
     public String getOperationType() {
@@ -48,6 +55,7 @@ public class FHIRNotificationEvent {
 
     public void setOperationType(String operationType) {
         this.operationType = operationType;
+        clearJsonStrings();
     }
 
     @Override
@@ -68,5 +76,33 @@ public class FHIRNotificationEvent {
 
     public void setResource(Resource resource) {
         this.resource = resource;
+        clearJsonStrings();
+    }
+
+    /**
+     * @param includeResource whether the serialized form includes the resource
+     * @return the serialized form of this event previously saved by {@link #setJsonString(boolean, String)}, or null
+     */
+    public String getJsonString(boolean includeResource) {
+        return includeResource ? jsonStringWithResource : jsonString;
+    }
+
+    /**
+     * Save the serialized form of this event, so that it only needs to be serialized once no matter how many
+     * subscribers publish it. Cleared whenever the event is modified.
+     * @param includeResource whether the serialized form includes the resource
+     * @param jsonString the serialized form
+     */
+    public void setJsonString(boolean includeResource, String jsonString) {
+        if (includeResource) {
+            this.jsonStringWithResource = jsonString;
+        } else {
+            this.jsonString = jsonString;
+        }
+    }
+
+    private void clearJsonStrings() {
+        this.jsonString = null;
+        this.jsonStringWithResource = null;
     }
 }
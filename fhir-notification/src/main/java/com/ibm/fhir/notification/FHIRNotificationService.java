@@ -15,6 +15,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.PropertyGroup;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.notification.exception.FHIRNotificationException;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
@@ -31,6 +32,12 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
     private static final FHIRNotificationService INSTANCE = new FHIRNotificationService();
     private Set<String> includedResourceTypes = Collections.synchronizedSortedSet(new TreeSet<String>());
 
+    private static final int DEFAULT_ASYNC_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_ASYNC_MAX_BATCH_SIZE = 100;
+
+    // Delivers events off the request thread, if async notifications are enabled
+    private volatile FHIRNotificationDispatcher dispatcher = null;
+
     private FHIRNotificationService() {
         log.entering(this.getClass().getName(), "FHIRNotificationService");
         try {
@@ -38,6 +45,7 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
         // interceptor methods to trigger the 'publish' of the notification events.
         FHIRPersistenceInterceptorMgr.getInstance().addPrioritizedInterceptor(this);
         initNotificationResourceTypes();
+        initDispatcher();
         } catch (Throwable t) {
             throw new RuntimeException("Unexpected error during initialization.", t);
         }
@@ -57,17 +65,37 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
                 + (includedResourceTypes.isEmpty() ? "ALL" : "\n" + includedResourceTypes.toString()));
     }
 
+    private void initDispatcher() throws Exception {
+        PropertyGroup fhirConfig = FHIRConfiguration.getInstance().loadConfiguration();
+        if (fhirConfig.getBooleanProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_ENABLED, Boolean.FALSE)) {
+            int queueSize = fhirConfig.getIntProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_QUEUE_SIZE, DEFAULT_ASYNC_QUEUE_SIZE);
+            int maxBatchSize = fhirConfig.getIntProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_MAX_BATCH_SIZE, DEFAULT_ASYNC_MAX_BATCH_SIZE);
+            String overflowPolicy = fhirConfig.getStringProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_OVERFLOW_POLICY,
+                FHIRNotificationDispatcher.OVERFLOW_POLICY_BLOCK);
+            dispatcher = new FHIRNotificationDispatcher(queueSize, maxBatchSize, overflowPolicy, this::deliver);
+            log.info("Notification events will be published asynchronously; queueSize=" + queueSize
+                + ", maxBatchSize=" + maxBatchSize + ", overflowPolicy=" + overflowPolicy);
+        }
+    }
+
     public static FHIRNotificationService getInstance() {
         return INSTANCE;
     }
 
     /**
-     * Method for broadcasting message to each subscriber.
+     * Method for broadcasting message to each subscriber. If async notifications are enabled, the event
+     * is queued and delivered to the subscribers on the dispatcher thread.
      *
      * @param event
      */
     public void publish(FHIRNotificationEvent event) {
         log.entering(this.getClass().getName(), "publish");
+        FHIRNotificationDispatcher dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            dispatcher.enqueue(event);
+            log.exiting(this.getClass().getName(), "publish");
+            return;
+        }
         for (FHIRNotificationSubscriber subscriber : subscribers) {
             try {
                 subscriber.notify(event);
@@ -79,6 +107,34 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
         log.exiting(this.getClass().getName(), "publish");
     }
 
+    /**
+     * Deliver a batch of events queued by the dispatcher to each subscriber.
+     *
+     * @param events
+     */
+    private void deliver(List<FHIRNotificationEvent> events) {
+        for (FHIRNotificationSubscriber subscriber : subscribers) {
+            try {
+                subscriber.notify(events);
+            } catch (FHIRNotificationException e) {
+                subscribers.remove(subscriber);
+                log.log(Level.WARNING, FHIRNotificationService.class.getName() + ": unable to publish events", e);
+            }
+        }
+    }
+
+    /**
+     * Stop the async dispatcher, if any, after giving it a chance to deliver the queued events.
+     * Events published after this are delivered synchronously.
+     */
+    public void shutdown() {
+        FHIRNotificationDispatcher dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            this.dispatcher = null;
+            dispatcher.shutdown();
+        }
+    }
+
     /**
      * Method to subscribe the target notification implementation
      *
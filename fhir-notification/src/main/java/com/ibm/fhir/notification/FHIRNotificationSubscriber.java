@@ -1,11 +1,13 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 
 package com.ibm.fhir.notification;
 
+import java.util.List;
+
 import com.ibm.fhir.notification.exception.FHIRNotificationException;
 
 public interface FHIRNotificationSubscriber {
@@ -15,4 +17,17 @@ public interface FHIRNotificationSubscriber {
      * @throws FHIRNotificationException
      */
     void notify(FHIRNotificationEvent event) throws FHIRNotificationException;
+
+    /**
+     * Notify subscriber of a batch of events, in the order they occurred. Called instead of
+     * {@link #notify(FHIRNotificationEvent)} when the notification service dispatches events asynchronously.
+     * The default implementation notifies the subscriber of each event in turn.
+     * @param events
+     * @throws FHIRNotificationException
+     */
+    default void notify(List<FHIRNotificationEvent> events) throws FHIRNotificationException {
+        for (FHIRNotificationEvent event : events) {
+            notify(event);
+        }
+    }
 }
@@ -39,7 +39,8 @@ public class FHIRNotificationUtil {
     }
     
     /**
-     * Serializes the notification event into a JSON string.
+     * Serializes the notification event into a JSON string. The result is saved on the event, so an event
+     * published to several subscribers is only serialized once.
      * @param event the FHIRNotificationEvent structure to be serialized
      * @param includeResource a flag that controls whether or not the resource object within
      * the event structure should be included in the serialized message.
@@ -47,6 +48,15 @@ public class FHIRNotificationUtil {
      * @throws FHIRException 
      */
     public static String toJsonString(FHIRNotificationEvent event, boolean includeResource) throws FHIRException {
+        String jsonString = event.getJsonString(includeResource);
+        if (jsonString == null) {
+            jsonString = buildJsonString(event, includeResource);
+            event.setJsonString(includeResource, jsonString);
+        }
+        return jsonString;
+    }
+
+    private static String buildJsonString(FHIRNotificationEvent event, boolean includeResource) throws FHIRException {
         JsonObjectBuilder builder = JSON_BUILDER_FACTORY.createObjectBuilder();
         builder.add("lastUpdated", event.getLastUpdated());
         builder.add("location", event.getLocation());
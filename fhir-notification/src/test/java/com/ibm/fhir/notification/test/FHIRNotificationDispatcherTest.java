@@ -0,0 +1,181 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.notification.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.notification.FHIRNotificationDispatcher;
+import com.ibm.fhir.notification.FHIRNotificationEvent;
+
+/**
+ * Tests the ordering, batching, overflow policies and shutdown of the notification dispatcher.
+ */
+public class FHIRNotificationDispatcherTest {
+
+    @Test
+    public void testOrderAndBatching() throws Exception {
+        TestDelivery delivery = new TestDelivery();
+        FHIRNotificationDispatcher dispatcher =
+                new FHIRNotificationDispatcher(100, 5, FHIRNotificationDispatcher.OVERFLOW_POLICY_BLOCK, delivery);
+
+        // hold up the first batch, so that the rest of the events pile up in the queue
+        dispatcher.enqueue(event(0));
+        delivery.awaitFirstDelivery();
+        for (int i = 1; i <= 20; i++) {
+            dispatcher.enqueue(event(i));
+        }
+        delivery.release();
+        dispatcher.shutdown();
+
+        assertEquals(delivery.getResourceIds(), ids(0, 20));
+        List<Integer> sizes = delivery.batches.stream().map(List::size).collect(Collectors.toList());
+        assertEquals(sizes, Arrays.asList(1, 5, 5, 5, 5));
+        assertEquals(dispatcher.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void testBlockPolicy() throws Exception {
+        TestDelivery delivery = new TestDelivery();
+        FHIRNotificationDispatcher dispatcher =
+                new FHIRNotificationDispatcher(2, 1, FHIRNotificationDispatcher.OVERFLOW_POLICY_BLOCK, delivery);
+
+        dispatcher.enqueue(event(0));
+        delivery.awaitFirstDelivery();
+        dispatcher.enqueue(event(1));
+        dispatcher.enqueue(event(2));
+
+        // the queue is full, so the publisher waits until there's space
+        Thread publisher = new Thread(() -> dispatcher.enqueue(event(3)));
+        publisher.start();
+        publisher.join(500);
+        assertTrue(publisher.isAlive(), "expected the publisher to wait for space in the queue");
+        assertEquals(dispatcher.getQueuedCount(), 2);
+
+        delivery.release();
+        publisher.join(10000);
+        assertFalse(publisher.isAlive());
+        dispatcher.shutdown();
+
+        assertEquals(delivery.getResourceIds(), ids(0, 3));
+        assertEquals(dispatcher.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void testDropOldestPolicy() throws Exception {
+        TestDelivery delivery = new TestDelivery();
+        FHIRNotificationDispatcher dispatcher =
+                new FHIRNotificationDispatcher(2, 1, FHIRNotificationDispatcher.OVERFLOW_POLICY_DROP_OLDEST, delivery);
+
+        dispatcher.enqueue(event(0));
+        delivery.awaitFirstDelivery();
+        dispatcher.enqueue(event(1));
+        dispatcher.enqueue(event(2));
+
+        // the queue is full, so the oldest queued event makes room without waiting
+        dispatcher.enqueue(event(3));
+        assertEquals(dispatcher.getDroppedCount(), 1);
+        assertEquals(dispatcher.getQueuedCount(), 2);
+
+        delivery.release();
+        dispatcher.shutdown();
+
+        assertEquals(delivery.getResourceIds(), Arrays.asList("0", "2", "3"));
+    }
+
+    @Test
+    public void testDeliverQueuedEventsOnShutdown() throws Exception {
+        TestDelivery delivery = new TestDelivery();
+        FHIRNotificationDispatcher dispatcher =
+                new FHIRNotificationDispatcher(100, 2, FHIRNotificationDispatcher.OVERFLOW_POLICY_BLOCK, delivery);
+
+        // shut down while the first batch is being delivered, with the rest still queued
+        dispatcher.enqueue(event(0));
+        delivery.awaitFirstDelivery();
+        for (int i = 1; i <= 9; i++) {
+            dispatcher.enqueue(event(i));
+        }
+        Thread stopper = new Thread(dispatcher::shutdown);
+        stopper.start();
+        Thread.sleep(200);
+        delivery.release();
+        stopper.join(10000);
+        assertFalse(stopper.isAlive());
+
+        assertEquals(delivery.getResourceIds(), ids(0, 9));
+        assertEquals(dispatcher.getQueuedCount(), 0);
+        assertFalse(delivery.interrupted, "expected the deliveries to run without the interrupt flag set");
+
+        // events published after shutdown are not delivered
+        dispatcher.enqueue(event(10));
+        assertEquals(delivery.getResourceIds(), ids(0, 9));
+    }
+
+    private static FHIRNotificationEvent event(int i) {
+        FHIRNotificationEvent event = new FHIRNotificationEvent();
+        event.setResourceId(Integer.toString(i));
+        event.setOperationType("create");
+        return event;
+    }
+
+    private static List<String> ids(int first, int last) {
+        List<String> ids = new ArrayList<>();
+        for (int i = first; i <= last; i++) {
+            ids.add(Integer.toString(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Records the batches it is given, and holds up the first batch until it is released.
+     */
+    private static class TestDelivery implements Consumer<List<FHIRNotificationEvent>> {
+        private final List<List<FHIRNotificationEvent>> batches = new CopyOnWriteArrayList<>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean interrupted = false;
+
+        @Override
+        public void accept(List<FHIRNotificationEvent> batch) {
+            // the dispatcher reuses its batch list, so take a copy
+            batches.add(new ArrayList<>(batch));
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                interrupted = true;
+            }
+        }
+
+        void awaitFirstDelivery() throws InterruptedException {
+            assertTrue(started.await(10, TimeUnit.SECONDS), "expected the first event to be delivered");
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        List<String> getResourceIds() {
+            return batches.stream().flatMap(List::stream).map(FHIRNotificationEvent::getResourceId).collect(Collectors.toList());
+        }
+    }
+}
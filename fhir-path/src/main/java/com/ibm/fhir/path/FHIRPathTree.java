@@ -12,28 +12,50 @@ import java.time.LocalTime;
 import java.time.Year;
 import java.time.YearMonth;
 import java.time.ZonedDateTime;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.type.Element;
 import com.ibm.fhir.model.type.Quantity;
+import com.ibm.fhir.model.util.ModelSupport;
+import com.ibm.fhir.model.visitor.DefaultVisitor;
 import com.ibm.fhir.model.visitor.PathAwareVisitor;
+import com.ibm.fhir.model.visitor.Visitable;
 
 /**
  * A tree of {@link FHIRPathNode} nodes created from a {@link Resource} or an {@link Element}
+ *
+ * <p>A tree created by {@link #tree(Resource)} or {@link #tree(Element)} contains a node for every element when it is
+ * created. A tree created by {@link #lazyTree(Resource)} or {@link #lazyTree(Element)} only creates the children of a
+ * node (one level at a time) when they are first navigated to, so expressions which only touch a few elements of a large
+ * resource don't pay for the rest of it. Both kinds of tree contain the same nodes, with the same names, paths, values
+ * and order of children.
  */
 public class FHIRPathTree {
     private final FHIRPathNode root;
     private final Map<String, FHIRPathNode> pathNodeMap;
+    private final boolean lazy;
     
     private FHIRPathTree(FHIRPathNode root, Map<String, FHIRPathNode> pathNodeMap) {
         this.root = root;
         this.pathNodeMap = Collections.unmodifiableMap(pathNodeMap);
+        this.lazy = false;
+    }
+    
+    private FHIRPathTree(Visitable visitable) {
+        this.pathNodeMap = new ConcurrentHashMap<>();
+        this.lazy = true;
+        this.root = LevelVisitor.build(this, visitable, null, null);
     }
     
     /**
@@ -55,7 +77,20 @@ public class FHIRPathTree {
      *     the node at the location given by the path parameter if exists, otherwise null
      */
     public FHIRPathNode getNode(String path) {
-        return pathNodeMap.get(path);
+        FHIRPathNode node = pathNodeMap.get(path);
+        if (node == null && lazy && path != null) {
+            // navigate to the node from its parent, creating the nodes along the way
+            int index = path.lastIndexOf(".");
+            if (index != -1) {
+                FHIRPathNode parent = getNode(path.substring(0, index));
+                if (parent != null) {
+                    // creates the children of the parent, if they haven't been created yet
+                    parent.children().size();
+                    node = pathNodeMap.get(path);
+                }
+            }
+        }
+        return node;
     }
     
     /**
@@ -73,7 +108,7 @@ public class FHIRPathTree {
         
         int index = node.path().lastIndexOf(".");
         if (index != -1) {
-            return pathNodeMap.get(node.path().substring(0, index));
+            return getNode(node.path().substring(0, index));
         }
         
         return null;
@@ -113,6 +148,278 @@ public class FHIRPathTree {
         return new FHIRPathTree(visitor.getRoot(), visitor.getPathNodeMap());
     }
     
+    /**
+     * Static factory method for creating FHIRPathTree instances from a {@link Resource} where nodes are created on demand
+     * 
+     * @param resource
+     *     the resource
+     * @return
+     *     a new FHIRPathTree instance
+     */
+    public static FHIRPathTree lazyTree(Resource resource) {
+        Objects.requireNonNull(resource);
+        return new FHIRPathTree(resource);
+    }
+    
+    /**
+     * Static factory method for creating FHIRPathTree instances from an {@link Element} where nodes are created on demand
+     * 
+     * @param element
+     *     the element
+     * @return
+     *     a new FHIRPathTree instance
+     */
+    public static FHIRPathTree lazyTree(Element element) {
+        Objects.requireNonNull(element);
+        return new FHIRPathTree(element);
+    }
+    
+    /**
+     * Indicates whether the nodes of this FHIRPathTree are created on demand
+     * 
+     * @return
+     *     true if this FHIRPathTree was created by one of the lazyTree factory methods, otherwise false
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+    
+    private static String segment(String elementName, int elementIndex) {
+        if (ModelSupport.isKeyword(elementName)) {
+            elementName = ModelSupport.delimit(elementName);
+        }
+        return (elementIndex != -1) ? elementName + "[" + elementIndex + "]" : elementName;
+    }
+    
+    /**
+     * A child of a node in a lazy tree which has not been created yet
+     */
+    private static class ChildRef {
+        private final String name;
+        private final int index;
+        private final Visitable visitable;
+        
+        private ChildRef(String name, int index, Visitable visitable) {
+            this.name = name;
+            this.index = index;
+            this.visitable = visitable;
+        }
+    }
+    
+    /**
+     * The children of a node in a lazy tree; the child nodes are created when the collection is first used
+     */
+    private static class LazyChildren extends AbstractCollection<FHIRPathNode> {
+        private final FHIRPathTree tree;
+        private final String path;
+        private List<Object> entries;
+        private volatile List<FHIRPathNode> children;
+        
+        private LazyChildren(FHIRPathTree tree, String path, List<Object> entries) {
+            this.tree = tree;
+            this.path = path;
+            this.entries = entries;
+        }
+        
+        private List<FHIRPathNode> children() {
+            List<FHIRPathNode> children = this.children;
+            if (children == null) {
+                synchronized (this) {
+                    children = this.children;
+                    if (children == null) {
+                        children = new ArrayList<>(entries.size());
+                        for (Object entry : entries) {
+                            if (entry instanceof ChildRef) {
+                                children.add(LevelVisitor.build(tree, null, (ChildRef) entry, path));
+                            } else {
+                                // value node
+                                children.add((FHIRPathNode) entry);
+                            }
+                        }
+                        this.children = children;
+                        entries = null;
+                    }
+                }
+            }
+            return children;
+        }
+        
+        @Override
+        public Iterator<FHIRPathNode> iterator() {
+            return children().iterator();
+        }
+        
+        @Override
+        public int size() {
+            return children().size();
+        }
+    }
+    
+    /**
+     * Builds a single node of a lazy tree: visits the element or resource and its direct children, but not their
+     * descendants
+     */
+    private static class LevelVisitor extends DefaultVisitor {
+        private final FHIRPathTree tree;
+        private final String parentPath;
+        private int depth = 0;
+        private String path;
+        private FHIRPathNode.Builder builder;
+        private FHIRPathSystemValue value;
+        private final List<Object> entries = new ArrayList<>();
+        
+        private LevelVisitor(FHIRPathTree tree, String parentPath) {
+            super(true);
+            this.tree = tree;
+            this.parentPath = parentPath;
+        }
+        
+        /**
+         * Build the node for the root of a tree (if childRef is null) or for a child of the node with the passed path
+         */
+        private static FHIRPathNode build(FHIRPathTree tree, Visitable visitable, ChildRef childRef, String parentPath) {
+            LevelVisitor visitor = new LevelVisitor(tree, parentPath);
+            if (childRef == null) {
+                visitable.accept(visitor);
+            } else {
+                childRef.visitable.accept(childRef.name, childRef.index, visitor);
+            }
+            FHIRPathNode node = visitor.build();
+            tree.pathNodeMap.put(node.path(), node);
+            return node;
+        }
+        
+        private FHIRPathNode build() {
+            builder.path(path);
+            // replace the children collected by the builder with children which are created on demand
+            ((FHIRPathAbstractNode.Builder) builder).children = entries.isEmpty() ?
+                    Collections.emptyList() : new LazyChildren(tree, path, entries);
+            return builder.build();
+        }
+        
+        private void start(String elementName, int elementIndex, FHIRPathNode.Builder builder) {
+            if (depth == 0) {
+                String segment = segment(elementName, elementIndex);
+                this.path = (parentPath == null) ? segment : parentPath + "." + segment;
+                this.builder = builder;
+            } else if (depth == 1) {
+                // don't visit the children of a child
+                visitChildren = false;
+            }
+            depth++;
+        }
+        
+        private void end(String elementName, int elementIndex, Visitable visitable) {
+            depth--;
+            if (depth == 1) {
+                entries.add(new ChildRef(elementName, elementIndex, visitable));
+                visitChildren = true;
+            }
+        }
+        
+        private void value(FHIRPathSystemValue value) {
+            entries.remove(this.value);
+            this.value = value;
+            entries.add(value);
+            builder.value(value);
+        }
+        
+        @Override
+        public boolean preVisit(Element element) {
+            // only the element being built and its direct children are visited
+            return depth < 2;
+        }
+        
+        @Override
+        public boolean preVisit(Resource resource) {
+            return depth < 2;
+        }
+        
+        @Override
+        public void visitStart(java.lang.String elementName, int elementIndex, Element element) {
+            if (depth == 0) {
+                if (element instanceof Quantity) {
+                    Quantity quantity = (Quantity) element;
+                    FHIRPathNode.Builder builder = FHIRPathQuantityNode.builder(quantity).name(elementName);
+                    start(elementName, elementIndex, builder);
+                    FHIRPathQuantityValue value = FHIRPathQuantityValue.quantityValue(quantity);
+                    if (value != null) {
+                        value(value);
+                    }
+                } else {
+                    start(elementName, elementIndex, FHIRPathElementNode.builder(element).name(elementName));
+                }
+            } else {
+                start(elementName, elementIndex, null);
+            }
+        }
+        
+        @Override
+        public void visitStart(java.lang.String elementName, int elementIndex, Resource resource) {
+            start(elementName, elementIndex, (depth == 0) ? FHIRPathResourceNode.builder(resource).name(elementName) : null);
+        }
+        
+        @Override
+        public void visitEnd(java.lang.String elementName, int elementIndex, Element element) {
+            end(elementName, elementIndex, element);
+        }
+        
+        @Override
+        public void visitEnd(java.lang.String elementName, int elementIndex, Resource resource) {
+            end(elementName, elementIndex, resource);
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, BigDecimal value) {
+            value(FHIRPathDecimalValue.decimalValue(elementName, value));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, byte[] value) {
+            value(FHIRPathStringValue.stringValue(elementName, Base64.getEncoder().encodeToString(value)));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, java.lang.Boolean value) {
+            value(FHIRPathBooleanValue.booleanValue(elementName, value));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, java.lang.Integer value) {
+            value(FHIRPathIntegerValue.integerValue(elementName, value));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, java.lang.String value) {
+            value(FHIRPathStringValue.stringValue(elementName, value));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, LocalDate value) {
+            value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, LocalTime value) {
+            value(FHIRPathTimeValue.timeValue(elementName, value));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, Year value) {
+            value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, YearMonth value) {
+            value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
+        }
+        
+        @Override
+        public void visit(java.lang.String elementName, ZonedDateTime value) {
+            value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
+        }
+    }
+    
     private static class BuildingVisitor extends PathAwareVisitor {
         private Stack<FHIRPathNode.Builder> builderStack = new Stack<>();
         private FHIRPathNode root;
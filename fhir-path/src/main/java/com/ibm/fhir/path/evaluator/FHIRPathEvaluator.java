@@ -6,7 +6,7 @@
 
 package com.ibm.fhir.path.evaluator;
 
-import static com.ibm.fhir.core.util.LRUCache.createLRUCache;
+import static com.ibm.fhir.core.util.BoundedCache.createBoundedCache;
 import static com.ibm.fhir.path.FHIRPathDateTimeValue.dateTimeValue;
 import static com.ibm.fhir.path.FHIRPathDateValue.dateValue;
 import static com.ibm.fhir.path.FHIRPathDecimalValue.decimalValue;
@@ -64,6 +64,7 @@ import java.util.stream.Collectors;
 
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import com.ibm.fhir.core.util.BoundedCache;
 import com.ibm.fhir.model.annotation.Constraint;
 import com.ibm.fhir.model.resource.OperationOutcome.Issue;
 import com.ibm.fhir.model.resource.Resource;
@@ -96,7 +97,7 @@ public class FHIRPathEvaluator {
     public static final Collection<FHIRPathNode> SINGLETON_FALSE = singleton(FHIRPathBooleanValue.FALSE);
 
     private static final int EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES = 512;
-    private static final Map<String, ExpressionContext> EXPRESSION_CONTEXT_CACHE = createLRUCache(EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES);
+    private static final BoundedCache<String, ExpressionContext> EXPRESSION_CONTEXT_CACHE = createBoundedCache(EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES);
 
     private final EvaluatingVisitor visitor = new EvaluatingVisitor();
 
@@ -257,6 +258,38 @@ public class FHIRPathEvaluator {
         }
     }
 
+    /**
+     * Evaluate a precompiled FHIRPath expression using an existing EvaluationContext against a collection of FHIRPath nodes
+     *
+     * <p>Callers which evaluate the same expression many times can compile it once with {@link FHIRPathUtil#compile(String)}
+     * and skip the expression cache lookup on each evaluation.
+     *
+     * @param evaluationContext
+     *     the evaluation context
+     * @param expressionContext
+     *     the compiled FHIRPath expression to evaluate
+     * @param initialContext
+     *     the initial context as a non-null, potentially empty collection of FHIRPath nodes
+     * @return
+     *     the result of evaluation as a collection of FHIRPath nodes
+     * @throws NullPointerException
+     *     if any of the parameters are null
+     * @throws FHIRPathException
+     *     if an exception occurs during evaluation
+     */
+    public Collection<FHIRPathNode> evaluate(EvaluationContext evaluationContext, ExpressionContext expressionContext, Collection<FHIRPathNode> initialContext) throws FHIRPathException {
+        Objects.requireNonNull(evaluationContext);
+        Objects.requireNonNull(expressionContext);
+        Objects.requireNonNull(initialContext);
+        try {
+            evaluationContext.setExternalConstant("context", initialContext);
+            setDateTimeConstants(evaluationContext);
+            return visitor.evaluate(evaluationContext, expressionContext, initialContext);
+        } catch (Exception e) {
+            throw new FHIRPathException("An error occurred while evaluating expression: " + expressionContext.getText(), e);
+        }
+    }
+
     private void setDateTimeConstants(EvaluationContext evaluationContext) {
         ZonedDateTime now = ZonedDateTime.now();
         evaluationContext.setExternalConstant("now", singleton(dateTimeValue(now)));
@@ -282,10 +315,10 @@ public class FHIRPathEvaluator {
         private static final String SYSTEM_NAMESPACE = "System";
 
         private static final int IDENTIFIER_CACHE_MAX_ENTRIES = 2048;
-        private static final Map<String, Collection<FHIRPathNode>> IDENTIFIER_CACHE = createLRUCache(IDENTIFIER_CACHE_MAX_ENTRIES);
+        private static final BoundedCache<String, Collection<FHIRPathNode>> IDENTIFIER_CACHE = createBoundedCache(IDENTIFIER_CACHE_MAX_ENTRIES);
 
         private static final int LITERAL_CACHE_MAX_ENTRIES = 128;
-        private static final Map<String, Collection<FHIRPathNode>> LITERAL_CACHE = createLRUCache(LITERAL_CACHE_MAX_ENTRIES);
+        private static final BoundedCache<String, Collection<FHIRPathNode>> LITERAL_CACHE = createBoundedCache(LITERAL_CACHE_MAX_ENTRIES);
 
         private EvaluationContext evaluationContext;
         private final Stack<Collection<FHIRPathNode>> contextStack = new Stack<>();
@@ -1341,11 +1374,14 @@ public class FHIRPathEvaluator {
          * Create an evaluation context where the passed resource is the context root.
          * Sets %resource and %rootResource external constants to the passed resource, but these can be overridden.
          *
+         * <p>The FHIRPath tree for the resource is created lazily (see {@link FHIRPathTree#lazyTree(Resource)}), so
+         * nodes are only created for the parts of the resource that evaluation navigates to.
+         *
          * @param resource
          *     the resource
          */
         public EvaluationContext(Resource resource) {
-            this(FHIRPathTree.tree(resource));
+            this(FHIRPathTree.lazyTree(resource));
             externalConstantMap.put("rootResource", singleton(tree.getRoot()));
             externalConstantMap.put("resource", singleton(tree.getRoot()));
         }
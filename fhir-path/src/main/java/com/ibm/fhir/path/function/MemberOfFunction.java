@@ -6,7 +6,7 @@
 
 package com.ibm.fhir.path.function;
 
-import static com.ibm.fhir.core.util.LRUCache.createLRUCache;
+import static com.ibm.fhir.core.util.BoundedCache.createBoundedCache;
 import static com.ibm.fhir.model.util.ModelSupport.FHIR_STRING;
 import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_FALSE;
 import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_TRUE;
@@ -31,6 +31,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ibm.fhir.core.util.BoundedCache;
 import com.ibm.fhir.model.resource.CodeSystem;
 import com.ibm.fhir.model.resource.ValueSet;
 import com.ibm.fhir.model.resource.ValueSet.Expansion;
@@ -58,7 +59,7 @@ public class MemberOfFunction extends FHIRPathAbstractFunction {
     private static final Logger log = Logger.getLogger(MemberOfFunction.class.getName());
 
     private static final String VERSION_UNKNOWN = "<version unknown>";
-    private static final Map<String, Map<String, Set<String>>> CODE_SET_MAP_CACHE = createLRUCache(1024);
+    private static final BoundedCache<String, Map<String, Set<String>>> CODE_SET_MAP_CACHE = createBoundedCache(1024);
 
     @Override
     public String getName() {
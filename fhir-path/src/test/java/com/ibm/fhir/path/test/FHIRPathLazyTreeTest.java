@@ -0,0 +1,118 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.path.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.examples.Index;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.HumanName;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathTree;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+
+public class FHIRPathLazyTreeTest {
+    @Test
+    public void testLazyTreeMatchesTree() throws Exception {
+        int count = 0;
+        for (String file : readExampleIndex()) {
+            Resource resource;
+            try (Reader reader = ExamplesUtil.resourceReader(file)) {
+                resource = FHIRParser.parser(Format.JSON).parse(reader);
+            }
+            FHIRPathTree tree = FHIRPathTree.tree(resource);
+            FHIRPathTree lazyTree = FHIRPathTree.lazyTree(resource);
+            assertTrue(lazyTree.isLazy());
+            assertFalse(tree.isLazy());
+            assertSameNodes(lazyTree.getRoot(), tree.getRoot(), file);
+
+            // every path of the eager tree resolves in a new lazy tree, without navigating to it first
+            FHIRPathTree unvisited = FHIRPathTree.lazyTree(resource);
+            tree.getRoot().stream().filter(node -> node.path() != null).forEach(node -> {
+                FHIRPathNode lazyNode = unvisited.getNode(node.path());
+                assertNotNull(lazyNode, file + " " + node.path());
+                assertEquals(lazyNode.path(), node.path());
+                FHIRPathNode parent = tree.getParent(node);
+                FHIRPathNode lazyParent = unvisited.getParent(lazyNode);
+                assertEquals(lazyParent == null ? null : lazyParent.path(), parent == null ? null : parent.path());
+            });
+            count++;
+        }
+        assertTrue(count > 0);
+    }
+
+    @Test
+    public void testLazyTreeNavigation() throws Exception {
+        Patient patient = Patient.builder()
+                .id("123")
+                .name(HumanName.builder()
+                    .family(com.ibm.fhir.model.type.String.of("Doe"))
+                    .build())
+                .build();
+        FHIRPathTree tree = FHIRPathTree.lazyTree(patient);
+        assertNull(tree.getNode("Patient.name[1]"));
+        assertNull(tree.getNode("Patient.name[0].foo"));
+
+        FHIRPathNode family = tree.getNode("Patient.name[0].family");
+        assertNotNull(family);
+        assertTrue(family.hasValue());
+        assertEquals(family.getValue().asStringValue().string(), "Doe");
+        assertSame(tree.getParent(family), tree.getNode("Patient.name[0]"));
+
+        EvaluationContext evaluationContext = new EvaluationContext(patient);
+        assertTrue(evaluationContext.getTree().isLazy());
+        assertEquals(FHIRPathEvaluator.evaluator().evaluate(evaluationContext, "Patient.name.family").iterator().next(), family);
+    }
+
+    private void assertSameNodes(FHIRPathNode actual, FHIRPathNode expected, String file) {
+        assertEquals(actual.getClass(), expected.getClass(), file);
+        assertEquals(actual.name(), expected.name(), file);
+        assertEquals(actual.path(), expected.path(), file);
+        assertEquals(actual.type(), expected.type(), file);
+        assertEquals(actual.hasValue(), expected.hasValue(), file + " " + expected.path());
+        if (expected.hasValue()) {
+            assertEquals(actual.getValue(), expected.getValue(), file + " " + expected.path());
+        }
+        assertEquals(actual.children().size(), expected.children().size(), file + " " + expected.path());
+        Iterator<FHIRPathNode> actualChildren = actual.children().iterator();
+        for (FHIRPathNode expectedChild : expected.children()) {
+            assertSameNodes(actualChildren.next(), expectedChild, file);
+        }
+    }
+
+    private List<String> readExampleIndex() throws Exception {
+        List<String> files = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(ExamplesUtil.indexReader(Index.MINIMAL_JSON))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length == 2 && "OK".equals(tokens[0])) {
+                    files.add(tokens[1]);
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -85,6 +85,7 @@ public class JDBCConstants {
 
     public static final String DEFAULT_ORDERING = " ORDER BY RESOURCE_ID ASC ";
     public static final String DEFAULT_ORDERING_WITH_TABLE = " ORDER BY R.RESOURCE_ID ASC ";
+    public static final String DEFAULT_ORDERING_REVERSED = " ORDER BY RESOURCE_ID DESC ";
 
     // MIN / MAX
     public static final String MAX = "MAX";
@@ -7,9 +7,11 @@
 package com.ibm.fhir.persistence.jdbc.dao.api;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import com.ibm.fhir.persistence.ResourcePayloadConsumer;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceVersionIdMismatchException;
@@ -63,6 +65,24 @@ public interface ResourceDAO extends FHIRDbDAO {
     List<Resource> history(String resourceType, String logicalId, Timestamp fromDateTime, int offset, int maxResults)
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
 
+    /**
+     * Reads and returns up to maxResults versions of the Resource with the passed logicalId, ordered by ascending
+     * (LAST_UPDATED, RESOURCE_ID). Rather than skipping an offset, the page is located by seeking past the key of the
+     * last version of the previous page, so every page costs the same. Unlike {@link #history}, the oldest version
+     * comes first, so that versions written while a client is paging land on a later page.
+     * @param resourceType - The name of a FHIR Resource type
+     * @param logicalId - The logical id of a FHIR Resource
+     * @param fromDateTime - The starting date/time of the version history, or null
+     * @param afterLastUpdated - The LAST_UPDATED of the last version of the previous page, or null for the first page
+     * @param afterResourceId - The RESOURCE_ID of the last version of the previous page
+     * @param maxResults - The maximum number of versions to return
+     * @return List<Resource> - An ordered list of Resource versions.
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    List<Resource> historyKeyset(String resourceType, String logicalId, Timestamp fromDateTime, Timestamp afterLastUpdated,
+            long afterResourceId, int maxResults) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
     /**
      * Reads and returns the COUNT of all versions of the Resource with the passed logicalId.
      * If non-null, the passed fromDateTime is used to limit the count of Resource versions to those that were updated after the fromDateTime.
@@ -76,6 +96,24 @@ public interface ResourceDAO extends FHIRDbDAO {
     int historyCount(String resourceType, String logicalId, Timestamp fromDateTime)
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
 
+    /**
+     * Streams the current, non-deleted version of each Resource of the passed type to the passed consumer, ordered by
+     * ascending LAST_UPDATED and then RESOURCE_ID. The rows are read through a single forward-only cursor and each
+     * payload is handed to the consumer as it is fetched; no count query is executed.
+     * @param resourceType - The name of a FHIR Resource type
+     * @param fromLastUpdated - If non-null, the inclusive lower bound on LAST_UPDATED
+     * @param toLastUpdated - If non-null, the exclusive upper bound on LAST_UPDATED
+     * @param afterLastUpdated - If non-null, only rows after (afterLastUpdated, afterResourceId) are read
+     * @param afterResourceId - The RESOURCE_ID of the last row previously read
+     * @param maxResults - The maximum number of rows to read
+     * @param consumer - The consumer which receives each payload
+     * @return int - The number of payloads passed to the consumer
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    int export(String resourceType, Timestamp fromLastUpdated, Timestamp toLastUpdated, Timestamp afterLastUpdated, long afterResourceId,
+            int maxResults, ResourcePayloadConsumer consumer) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
     /**
      * Executes the search contained in the passed SqlQueryData, using it's encapsulated search string and bind variables.
      * @param queryData - Contains a search string and (optionally) bind variables.
@@ -155,6 +193,13 @@ public interface ResourceDAO extends FHIRDbDAO {
      */
     void setPersistenceContext(FHIRPersistenceContext context);
 
+    /**
+     * Sets whether search parameter values are written using multi-row INSERT statements
+     * instead of JDBC statement batches
+     * @param multiRowParameterInserts
+     */
+    void setMultiRowParameterInserts(boolean multiRowParameterInserts);
+
     /**
      * Reads all rows in the resource_types table and returns the data as a Map
      * @return Map<String, Integer> - A map containing key=parameter-name, value=parameter-name-id
@@ -197,4 +242,58 @@ public interface ResourceDAO extends FHIRDbDAO {
     Resource insert(Resource resource, List<ExtractedParameterValue> parameters, ParameterDAO parameterDao)
             throws FHIRPersistenceException;
 
+    /**
+     * Reads and returns the version id of the latest version of each Resource of the passed type with one of the
+     * passed logical ids, using a single query per block of logical ids instead of one read per Resource.
+     * @param resourceType - The name of a FHIR Resource type
+     * @param logicalIds - The logical ids of the Resources
+     * @return Map<String, Integer> - A map containing key=logical-id, value=version-id for each Resource which exists
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    Map<String, Integer> readCurrentVersions(String resourceType, Collection<String> logicalIds)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
+    /**
+     * Reads the version id, deleted flag and fingerprint of the latest version of the Resource with the passed logical
+     * id, without reading the Resource data.
+     * @param logicalId - The logical id of the Resource
+     * @param resourceType - The name of a FHIR Resource type
+     * @return Resource - A Resource DTO without data, or null if the Resource doesn't exist
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    Resource readCurrentFingerprint(String logicalId, String resourceType)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
+    /**
+     * Reads the version id, last updated time and deleted flag of the latest version of the Resource with the passed
+     * logical id, without reading the Resource data.
+     * @param logicalId - The logical id of the Resource
+     * @param resourceType - The name of a FHIR Resource type
+     * @return Resource - A Resource DTO without data, or null if the Resource doesn't exist
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    Resource readCurrentMetadata(String logicalId, String resourceType)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
+    /**
+     * Inserts the passed Resource DTOs and their associated search parameters to the appropriate FHIR resource tables.
+     * All of the Resources are inserted on one connection with one prepared statement, and the search parameters of all
+     * Resources of the same type share the same statement batches, so the number of database round-trips for the
+     * parameters depends on the number of parameters rather than on the number of Resources.
+     * After insert, the generated primary key is acquired and set in each Resource object.
+     * @param resources The Resource Data Transfer Objects
+     * @param parameters The search parameters to be persisted for each of the passed Resources, in the same order
+     * @param parameterDao The Parameter DAO
+     * @return List<Resource> The Resource DTOs
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     * @throws FHIRPersistenceVersionIdMismatchException
+     * @throws FHIRPersistenceException
+     */
+    List<Resource> insertBatch(List<Resource> resources, List<List<ExtractedParameterValue>> parameters, ParameterDAO parameterDao)
+            throws FHIRPersistenceException;
+
 }
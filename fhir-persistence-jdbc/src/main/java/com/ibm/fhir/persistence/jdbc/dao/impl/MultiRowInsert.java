@@ -0,0 +1,176 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.dao.impl;
+
+import static com.ibm.fhir.persistence.jdbc.JDBCConstants.UTC;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Accumulates the rows for a single-row INSERT ... VALUES (...) statement, and writes them using a
+ * multi-row INSERT ... VALUES (...), (...), ... statement, so that many rows cost one statement
+ * execution instead of one per row. Supported by Db2, PostgreSQL and Derby.
+ * <br>
+ * A partial chunk is written as pieces of a power-of-two number of rows (e.g. 13 rows as 8 + 4 + 1), so that
+ * besides the statement for a full chunk there are at most log2(maxRows) statement shapes. Each statement is prepared
+ * once and reused for the life of this object.
+ */
+class MultiRowInsert implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(MultiRowInsert.class.getName());
+    private static final String VALUES = " VALUES ";
+
+    private final Connection connection;
+
+    // "INSERT INTO table (cols) VALUES "
+    private final String insertPrefix;
+
+    // "(?,?,?)", possibly including non-parameter expressions
+    private final String rowValues;
+
+    // The SQL type of each parameter in a row, used to bind nulls
+    private final int[] sqlTypes;
+
+    // The max number of rows written by one statement
+    private final int maxRows;
+
+    private final List<Object[]> rows = new ArrayList<>();
+
+    // The statements by number of rows, each prepared the first time we need it
+    private final Map<Integer, PreparedStatement> statements = new HashMap<>();
+
+    /**
+     * @param connection
+     * @param singleRowInsert an INSERT statement of the form INSERT INTO table (cols) VALUES (...)
+     * @param sqlTypes the java.sql.Types of the parameters of a row, in order
+     * @param maxRows the max number of rows written by one statement
+     */
+    MultiRowInsert(Connection connection, String singleRowInsert, int[] sqlTypes, int maxRows) {
+        int idx = singleRowInsert.lastIndexOf(VALUES);
+        if (idx < 0) {
+            throw new IllegalArgumentException("Not an INSERT ... VALUES statement: " + singleRowInsert);
+        }
+        this.connection = connection;
+        this.insertPrefix = singleRowInsert.substring(0, idx + VALUES.length());
+        this.rowValues = singleRowInsert.substring(idx + VALUES.length()).trim();
+        this.sqlTypes = sqlTypes;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Add a row, writing the pending rows if we now have enough to fill a statement
+     * @param values the parameter values of the row, in the same order as the sql types
+     * @throws SQLException
+     */
+    void addRow(Object... values) throws SQLException {
+        if (values.length != sqlTypes.length) {
+            throw new IllegalArgumentException("Expected " + sqlTypes.length + " values, but got " + values.length);
+        }
+        rows.add(values);
+        if (rows.size() == maxRows) {
+            flush();
+        }
+    }
+
+    /**
+     * @return the number of rows not yet written
+     */
+    int getPendingCount() {
+        return rows.size();
+    }
+
+    /**
+     * Write any pending rows
+     * @throws SQLException
+     */
+    void flush() throws SQLException {
+        try {
+            int start = 0;
+            while (start < rows.size()) {
+                int remaining = rows.size() - start;
+                int rowCount = remaining == maxRows ? maxRows : Integer.highestOneBit(remaining);
+                execute(getStatement(rowCount), rows.subList(start, start + rowCount));
+                start += rowCount;
+            }
+        } finally {
+            // clear even if the execute fails, so a later flush doesn't try the same rows again
+            rows.clear();
+        }
+    }
+
+    private PreparedStatement getStatement(int rowCount) throws SQLException {
+        PreparedStatement ps = statements.get(rowCount);
+        if (ps == null) {
+            ps = connection.prepareStatement(buildInsert(rowCount));
+            statements.put(rowCount, ps);
+        }
+        return ps;
+    }
+
+    private void execute(PreparedStatement ps, List<Object[]> chunk) throws SQLException {
+        int p = 1;
+        for (Object[] row : chunk) {
+            for (int i = 0; i < row.length; i++) {
+                bind(ps, p++, row[i], sqlTypes[i]);
+            }
+        }
+        ps.executeUpdate();
+    }
+
+    private String buildInsert(int rowCount) {
+        StringBuilder result = new StringBuilder(insertPrefix.length() + rowCount * (rowValues.length() + 1));
+        result.append(insertPrefix);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                result.append(',');
+            }
+            result.append(rowValues);
+        }
+        return result.toString();
+    }
+
+    private static void bind(PreparedStatement ps, int index, Object value, int sqlType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else if (value instanceof String) {
+            ps.setString(index, (String) value);
+        } else if (value instanceof Integer) {
+            ps.setInt(index, (Integer) value);
+        } else if (value instanceof Long) {
+            ps.setLong(index, (Long) value);
+        } else if (value instanceof BigDecimal) {
+            ps.setBigDecimal(index, (BigDecimal) value);
+        } else if (value instanceof Double) {
+            ps.setDouble(index, (Double) value);
+        } else if (value instanceof Timestamp) {
+            ps.setTimestamp(index, (Timestamp) value, UTC);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+
+    @Override
+    public void close() {
+        rows.clear();
+        for (PreparedStatement ps : statements.values()) {
+            try {
+                ps.close();
+            } catch (SQLException x) {
+                logger.warning("failed to close statement");
+            }
+        }
+        statements.clear();
+    }
+}
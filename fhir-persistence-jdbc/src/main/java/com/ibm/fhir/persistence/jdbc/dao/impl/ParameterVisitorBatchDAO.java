@@ -41,6 +41,10 @@ import com.ibm.fhir.schema.control.FhirSchemaConstants;
  * per resource type, because the row type array approach apparently won't work with dynamic
  * SQL (EXECUTE ... USING ...). Unfortunately this means we have more database round-trips, we
  * don't have a choice.
+ * <br>
+ * In multi-row mode, the rows for each table are written using multi-row INSERT statements
+ * instead of JDBC statement batches, which means one statement execution per table for
+ * each batchSize rows rather than one per row.
  */
 public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor, AutoCloseable {
     private static final Logger logger = Logger.getLogger(ParameterVisitorBatchDAO.class.getName());
@@ -52,7 +56,7 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
     private final int batchSize;
 
     // FK to the logical resource for the parameters being added
-    private final long logicalResourceId;
+    private long logicalResourceId;
 
     // Maintainers: remember to close all statements in AutoCloseable#close()
     private final String insertString;
@@ -101,6 +105,24 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
     // For looking up code system ids
     private final ICodeSystemCache codeSystemCache;
 
+    // Only used in multi-row mode, in which case they replace the batched statements above
+    private final MultiRowInsert stringRows;
+    private final MultiRowInsert numberRows;
+    private final MultiRowInsert dateRows;
+    private final MultiRowInsert tokenRows;
+    private final MultiRowInsert quantityRows;
+    private final MultiRowInsert locationRows;
+    private final MultiRowInsert resourceStringRows;
+    private final MultiRowInsert resourceDateRows;
+    private final MultiRowInsert resourceTokenRows;
+
+    private static final int[] STRING_TYPES = { Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.BIGINT };
+    private static final int[] NUMBER_TYPES = { Types.INTEGER, Types.DECIMAL, Types.DECIMAL, Types.DECIMAL, Types.BIGINT };
+    private static final int[] DATE_TYPES = { Types.INTEGER, Types.TIMESTAMP, Types.TIMESTAMP, Types.BIGINT };
+    private static final int[] TOKEN_TYPES = { Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.BIGINT };
+    private static final int[] QUANTITY_TYPES = { Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.DECIMAL, Types.DECIMAL, Types.DECIMAL, Types.BIGINT };
+    private static final int[] LOCATION_TYPES = { Types.INTEGER, Types.DOUBLE, Types.DOUBLE, Types.BIGINT };
+
     /**
      * Public constructor
      * @param c
@@ -108,6 +130,17 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
      */
     public ParameterVisitorBatchDAO(Connection c, String adminSchemaName, String tablePrefix, boolean multitenant, long logicalResourceId, int batchSize,
             IParameterNameCache pnc, ICodeSystemCache csc) throws SQLException {
+        this(c, adminSchemaName, tablePrefix, multitenant, logicalResourceId, batchSize, pnc, csc, false);
+    }
+
+    /**
+     * Public constructor
+     * @param c
+     * @param resourceId
+     * @param multiRowInserts write the rows using multi-row INSERT statements of up to batchSize rows
+     */
+    public ParameterVisitorBatchDAO(Connection c, String adminSchemaName, String tablePrefix, boolean multitenant, long logicalResourceId, int batchSize,
+            IParameterNameCache pnc, ICodeSystemCache csc, boolean multiRowInserts) throws SQLException {
         if (batchSize < 1) {
             throw new IllegalArgumentException("batchSize must be >= 1");
         }
@@ -186,6 +219,29 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                 :
                 "INSERT INTO resource_token_values (parameter_name_id, code_system_id, token_value, logical_resource_id) VALUES (?,?,?,?)";
         resourceTokens = c.prepareStatement(insertResourceToken);
+
+        if (multiRowInserts) {
+            stringRows = new MultiRowInsert(c, insertString, STRING_TYPES, batchSize);
+            numberRows = new MultiRowInsert(c, insertNumber, NUMBER_TYPES, batchSize);
+            dateRows = new MultiRowInsert(c, insertDate, DATE_TYPES, batchSize);
+            tokenRows = new MultiRowInsert(c, insertToken, TOKEN_TYPES, batchSize);
+            quantityRows = new MultiRowInsert(c, insertQuantity, QUANTITY_TYPES, batchSize);
+            locationRows = new MultiRowInsert(c, insertLocation, LOCATION_TYPES, batchSize);
+            resourceStringRows = new MultiRowInsert(c, insertResourceString, STRING_TYPES, batchSize);
+            resourceDateRows = new MultiRowInsert(c, insertResourceDate, DATE_TYPES, batchSize);
+            resourceTokenRows = new MultiRowInsert(c, insertResourceToken, TOKEN_TYPES, batchSize);
+        }
+        else {
+            stringRows = null;
+            numberRows = null;
+            dateRows = null;
+            tokenRows = null;
+            quantityRows = null;
+            locationRows = null;
+            resourceStringRows = null;
+            resourceDateRows = null;
+            resourceTokenRows = null;
+        }
     }
 
     /**
@@ -225,6 +281,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                     logger.fine("baseStringValue: " + parameterName + "[" + parameterNameId + "], " + value);
                 }
 
+                if (resourceStringRows != null) {
+                    resourceStringRows.addRow(parameterNameId, value, value != null ? value.toLowerCase() : null, logicalResourceId);
+                    return;
+                }
+
                 resourceStrings.setInt(1, parameterNameId);
                 if (value != null) {
                     resourceStrings.setString(2, value);
@@ -248,6 +309,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                     logger.fine("stringValue: " + parameterName + "[" + parameterNameId + "], " + value);
                 }
 
+                if (stringRows != null) {
+                    stringRows.addRow(parameterNameId, value, value != null ? value.toLowerCase() : null, logicalResourceId);
+                    return;
+                }
+
                 setStringParms(strings, parameterNameId, value);
                 strings.addBatch();
 
@@ -290,6 +356,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                         + value + " [" + valueLow + ", " + valueHigh + "]");
             }
 
+            if (numberRows != null) {
+                numberRows.addRow(parameterNameId, value, valueLow, valueHigh, logicalResourceId);
+                return;
+            }
+
             setNumberParms(numbers, parameterNameId, value, valueLow, valueHigh);
             numbers.addBatch();
 
@@ -327,6 +398,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                 }
 
                 // Insert record into the base level date attribute table
+                if (resourceDateRows != null) {
+                    resourceDateRows.addRow(parameterNameId, dateStart, dateEnd, logicalResourceId);
+                    return;
+                }
+
                 setDateParms(resourceDates, parameterNameId, dateStart, dateEnd);
                 resourceDates.addBatch();
 
@@ -341,6 +417,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                             + "period: [" + dateStart + ", " + dateEnd + "]");
                 }
 
+                if (dateRows != null) {
+                    dateRows.addRow(parameterNameId, dateStart, dateEnd, logicalResourceId);
+                    return;
+                }
+
                 setDateParms(dates, parameterNameId, dateStart, dateEnd);
                 dates.addBatch();
 
@@ -379,6 +460,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                             + codeSystem + "[" + codeSystemId + "], " + tokenValue);
                 }
 
+                if (resourceTokenRows != null) {
+                    resourceTokenRows.addRow(parameterNameId, codeSystemId, tokenValue, logicalResourceId);
+                    return;
+                }
+
                 resourceTokens.setInt(1, parameterNameId);
                 resourceTokens.setInt(2, codeSystemId);
                 resourceTokens.setString(3, tokenValue);
@@ -396,6 +482,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                             + codeSystem + "[" + codeSystemId + "], " + tokenValue);
                 }
 
+                if (tokenRows != null) {
+                    tokenRows.addRow(parameterNameId, codeSystemId, tokenValue, logicalResourceId);
+                    return;
+                }
+
                 setTokenParms(tokens, parameterNameId, codeSystemId, tokenValue);
                 tokens.addBatch();
 
@@ -446,6 +537,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                             + quantityValue + " [" + quantityLow + ", " + quantityHigh + "]");
                 }
 
+                if (quantityRows != null) {
+                    quantityRows.addRow(parameterNameId, getCodeSystemId(codeSystem), code, quantityValue, quantityLow, quantityHigh, logicalResourceId);
+                    return;
+                }
+
                 setQuantityParms(quantities, parameterNameId, codeSystem, code, quantityValue, quantityLow, quantityHigh);
                 quantities.addBatch();
 
@@ -483,6 +579,11 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
         double lng = param.getValueLongitude();
 
         try {
+            if (locationRows != null) {
+                locationRows.addRow(getParameterNameId(parameterName), lat, lng, logicalResourceId);
+                return;
+            }
+
             PreparedStatement insert = connection.prepareStatement(insertLocation);
             setLocationParms(insert, getParameterNameId(parameterName), lat, lng);
             insert.executeUpdate();
@@ -620,10 +721,22 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
         }
     }
 
-    @Override
-    public void close() throws Exception {
-        // flush any stragglers, remembering to reset each count because
-        // close() should be idempotent.
+    /**
+     * Set the logical resource which the parameters visited from now on belong to. This allows
+     * the parameters of several resources of the same type to share the same statement batches.
+     * Rows already added to a batch keep the logical resource id they were added with.
+     * @param logicalResourceId
+     */
+    public void setLogicalResourceId(long logicalResourceId) {
+        this.logicalResourceId = logicalResourceId;
+    }
+
+    /**
+     * Execute any rows still pending in the statement batches
+     * @throws SQLException
+     */
+    public void flush() throws SQLException {
+        // remember to reset each count because close() should be idempotent.
         try {
             if (stringCount > 0) {
                 strings.executeBatch();
@@ -669,6 +782,18 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                 resourceTokens.executeBatch();
                 resourceTokenCount = 0;
             }
+
+            if (stringRows != null) {
+                stringRows.flush();
+                numberRows.flush();
+                dateRows.flush();
+                tokenRows.flush();
+                quantityRows.flush();
+                locationRows.flush();
+                resourceStringRows.flush();
+                resourceDateRows.flush();
+                resourceTokenRows.flush();
+            }
         }
         catch (SQLException x) {
             SQLException batchException = x.getNextException();
@@ -680,7 +805,33 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                 throw x;
             }
         }
+    }
+
+    @Override
+    public void close() throws Exception {
+        // flush any stragglers
+        flush();
+        closeStatements();
+    }
 
+    /**
+     * Close the statements without writing the rows still pending in the batches. Used when the write of the
+     * resources has failed, so that nothing more is written for them.
+     */
+    public void discard() {
+        stringCount = 0;
+        numberCount = 0;
+        dateCount = 0;
+        tokenCount = 0;
+        quantityCount = 0;
+        compositesCount = 0;
+        resourceStringCount = 0;
+        resourceDateCount = 0;
+        resourceTokenCount = 0;
+        closeStatements();
+    }
+
+    private void closeStatements() {
         closeStatement(strings);
         closeStatement(numbers);
         closeStatement(dates);
@@ -690,6 +841,18 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
         closeStatement(resourceStrings);
         closeStatement(resourceDates);
         closeStatement(resourceTokens);
+
+        if (stringRows != null) {
+            stringRows.close();
+            numberRows.close();
+            dateRows.close();
+            tokenRows.close();
+            quantityRows.close();
+            locationRows.close();
+            resourceStringRows.close();
+            resourceDateRows.close();
+            resourceTokenRows.close();
+        }
     }
 
     /**
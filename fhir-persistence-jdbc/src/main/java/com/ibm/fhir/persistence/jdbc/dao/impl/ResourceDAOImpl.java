@@ -6,10 +6,7 @@
 
 package com.ibm.fhir.persistence.jdbc.dao.impl;
 
-import static com.ibm.fhir.persistence.jdbc.JDBCConstants.END;
-import static com.ibm.fhir.persistence.jdbc.JDBCConstants.THEN;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants.UTC;
-import static com.ibm.fhir.persistence.jdbc.JDBCConstants.WHEN;
 
 import java.sql.CallableStatement;
 import java.sql.Connection;
@@ -21,16 +18,21 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.transaction.TransactionSynchronizationRegistry;
 
+import com.ibm.fhir.persistence.ResourcePayload;
+import com.ibm.fhir.persistence.ResourcePayloadConsumer;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceVersionIdMismatchException;
@@ -65,9 +67,27 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
                                                       "LR.LOGICAL_ID = ? AND R.LOGICAL_RESOURCE_ID = LR.LOGICAL_RESOURCE_ID AND R.VERSION_ID = ?";
 
     //                                                                                 0
-    //                                                                                 1 2 3 4 5 6 7 8
+    //                                                                                 1 2 3 4 5 6 7 8 9
     // Don't forget that we must account for IN and OUT parameters.
-    private static final String SQL_INSERT_WITH_PARAMETERS = "CALL %s.add_any_resource(?,?,?,?,?,?,?,?)";
+    private static final String SQL_INSERT_WITH_PARAMETERS = "CALL %s.add_any_resource(?,?,?,?,?,?,?,?,?)";
+
+    // Read the current version id of each of a block of resources identified by their logical-ids
+    private static final String SQL_READ_CURRENT_VERSIONS = "SELECT LR.LOGICAL_ID, R.VERSION_ID " +
+                                                            "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE " +
+                                                            "R.RESOURCE_ID = LR.CURRENT_RESOURCE_ID AND LR.LOGICAL_ID IN ";
+
+    // Read the version id, deleted flag and fingerprint of the current version of the resource, but not its data
+    private static final String SQL_READ_CURRENT_FINGERPRINT = "SELECT R.VERSION_ID, R.IS_DELETED, R.FINGERPRINT " +
+                                                               "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE " +
+                                                               "LR.LOGICAL_ID = ? AND R.RESOURCE_ID = LR.CURRENT_RESOURCE_ID";
+
+    // Read the version id, last updated time and deleted flag of the current version of the resource, but not its data
+    private static final String SQL_READ_CURRENT_METADATA = "SELECT R.VERSION_ID, R.LAST_UPDATED, R.IS_DELETED " +
+                                                            "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE " +
+                                                            "LR.LOGICAL_ID = ? AND R.RESOURCE_ID = LR.CURRENT_RESOURCE_ID";
+
+    // Upper bound on the number of logical-ids bound to a single current versions query
+    private static final int MAX_LOGICAL_IDS_PER_QUERY = 500;
 
     // Read version history of the resource identified by its logical-id
     private static final String SQL_HISTORY = "SELECT R.RESOURCE_ID, R.LOGICAL_RESOURCE_ID, R.VERSION_ID, R.LAST_UPDATED, R.IS_DELETED, R.DATA, LR.LOGICAL_ID " +
@@ -87,6 +107,34 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
     private static final String SQL_HISTORY_FROM_DATETIME_COUNT = "SELECT COUNT(R.VERSION_ID) FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE LR.LOGICAL_ID = ? AND " +
                                                                   "R.LAST_UPDATED >= ? AND R.LOGICAL_RESOURCE_ID = LR.LOGICAL_RESOURCE_ID";
 
+    // Read version history of the resource identified by its logical-id, in (LAST_UPDATED, RESOURCE_ID) order
+    private static final String SQL_HISTORY_KEYSET = "SELECT R.RESOURCE_ID, R.LOGICAL_RESOURCE_ID, R.VERSION_ID, R.LAST_UPDATED, R.IS_DELETED, R.DATA, LR.LOGICAL_ID " +
+                                                     "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE " +
+                                                     "LR.LOGICAL_ID = ? AND R.LOGICAL_RESOURCE_ID = LR.LOGICAL_RESOURCE_ID ";
+
+    private static final String SQL_HISTORY_KEYSET_ORDER_BY = "ORDER BY R.LAST_UPDATED, R.RESOURCE_ID ";
+
+    // Read the current, non-deleted version of each resource for export, in (LAST_UPDATED, RESOURCE_ID) order
+    private static final String SQL_EXPORT = "SELECT R.RESOURCE_ID, R.VERSION_ID, R.LAST_UPDATED, R.DATA, LR.LOGICAL_ID " +
+                                             "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE " +
+                                             "R.RESOURCE_ID = LR.CURRENT_RESOURCE_ID AND R.IS_DELETED <> 'Y' ";
+
+    private static final String SQL_EXPORT_FROM_DATETIME = "AND R.LAST_UPDATED >= ? ";
+
+    private static final String SQL_EXPORT_TO_DATETIME = "AND R.LAST_UPDATED < ? ";
+
+    // Seek past the last row already exported
+    private static final String SQL_EXPORT_AFTER = "AND (R.LAST_UPDATED > ? OR (R.LAST_UPDATED = ? AND R.RESOURCE_ID > ?)) ";
+
+    private static final String SQL_EXPORT_ORDER_BY = "ORDER BY R.LAST_UPDATED, R.RESOURCE_ID ";
+
+    private static final String DB2_FETCH_FIRST_PARMS = "LIMIT ?";
+
+    private static final String DERBY_FETCH_FIRST_PARMS = "FETCH FIRST ? ROWS ONLY";
+
+    // Upper bound on the number of rows the driver fetches per round trip for an export
+    private static final int EXPORT_MAX_FETCH_SIZE = 1000;
+
     private static final String SQL_READ_ALL_RESOURCE_TYPE_NAMES = "SELECT RESOURCE_TYPE_ID, RESOURCE_TYPE FROM RESOURCE_TYPES";
 
     private static final String SQL_READ_RESOURCE_TYPE = "CALL %s.add_resource_type(?, ?)";
@@ -95,7 +143,6 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
                                                     "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE R.LOGICAL_RESOURCE_ID = LR.LOGICAL_RESOURCE_ID AND " +
                                                     "R.RESOURCE_ID IN ";
 
-    private static final String SQL_ORDER_BY_IDS = "ORDER BY CASE R.RESOURCE_ID ";
 
     private static final String DERBY_PAGINATION_PARMS = "OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
 
@@ -108,6 +155,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
     private boolean runningInTrx = false;
     private ResourceTypesCacheUpdater rtCacheUpdater = null;
     private TransactionSynchronizationRegistry trxSynchRegistry;
+    private boolean multiRowParameterInserts = false;
 
     /**
      * Constructs a DAO instance suitable for acquiring connections from a JDBC Datasource object.
@@ -188,7 +236,8 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         try {
             resource.setData(resultSet.getBytes("DATA"));
             resource.setId(resultSet.getLong("RESOURCE_ID"));
-            resource.setLastUpdated(resultSet.getTimestamp("LAST_UPDATED"));
+            // LAST_UPDATED is written in UTC, so read it back the same way
+            resource.setLastUpdated(resultSet.getTimestamp("LAST_UPDATED", UTC));
             resource.setLogicalId(resultSet.getString("LOGICAL_ID"));
             resource.setVersionId(resultSet.getInt("VERSION_ID"));
             resource.setDeleted(resultSet.getString("IS_DELETED").equals("Y") ? true : false);
@@ -241,6 +290,239 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         return resources;
     }
 
+    @Override
+    public List<Resource> historyKeyset(String resourceType, String logicalId, Timestamp fromDateTime, Timestamp afterLastUpdated,
+            long afterResourceId, int maxResults) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "historyKeyset";
+        log.entering(CLASSNAME, METHODNAME);
+
+        List<Resource> resources = null;
+        List<Object> bindVariables = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(String.format(SQL_HISTORY_KEYSET, resourceType, resourceType));
+        bindVariables.add(logicalId);
+
+        if (fromDateTime != null) {
+            sql.append(SQL_EXPORT_FROM_DATETIME);
+            bindVariables.add(fromDateTime);
+        }
+        if (afterLastUpdated != null) {
+            sql.append(SQL_EXPORT_AFTER);
+            bindVariables.add(afterLastUpdated);
+            bindVariables.add(afterLastUpdated);
+            bindVariables.add(afterResourceId);
+        }
+        sql.append(SQL_HISTORY_KEYSET_ORDER_BY);
+        bindVariables.add(maxResults);
+
+        try {
+            sql.append(this.isDb2Database() ? DB2_FETCH_FIRST_PARMS : DERBY_FETCH_FIRST_PARMS);
+            resources = this.runQuery(sql.toString(), bindVariables.toArray());
+        } catch (SQLException e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure running history query");
+            String errMsg = "Failure running history query: " + sql;
+            throw severe(log, fx, errMsg, e);
+        } finally {
+            log.exiting(CLASSNAME, METHODNAME, Arrays.toString(new Object[] {resources}));
+        }
+        return resources;
+    }
+
+    @Override
+    public int export(String resourceType, Timestamp fromLastUpdated, Timestamp toLastUpdated, Timestamp afterLastUpdated, long afterResourceId,
+            int maxResults, ResourcePayloadConsumer consumer) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "export";
+        log.entering(CLASSNAME, METHODNAME);
+
+        int count = 0;
+        Connection connection = null;
+        PreparedStatement stmt = null;
+        ResultSet resultSet = null;
+        List<Object> bindVariables = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(String.format(SQL_EXPORT, resourceType, resourceType));
+
+        if (fromLastUpdated != null) {
+            sql.append(SQL_EXPORT_FROM_DATETIME);
+            bindVariables.add(fromLastUpdated);
+        }
+        if (toLastUpdated != null) {
+            sql.append(SQL_EXPORT_TO_DATETIME);
+            bindVariables.add(toLastUpdated);
+        }
+        if (afterLastUpdated != null) {
+            sql.append(SQL_EXPORT_AFTER);
+            bindVariables.add(afterLastUpdated);
+            bindVariables.add(afterLastUpdated);
+            bindVariables.add(afterResourceId);
+        }
+        sql.append(SQL_EXPORT_ORDER_BY);
+        bindVariables.add(maxResults);
+
+        try {
+            sql.append(this.isDb2Database() ? DB2_FETCH_FIRST_PARMS : DERBY_FETCH_FIRST_PARMS);
+            connection = this.getConnection();
+            stmt = connection.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(Math.min(maxResults, EXPORT_MAX_FETCH_SIZE));
+            for (int i = 0; i < bindVariables.size(); i++) {
+                Object bindVariable = bindVariables.get(i);
+                if (bindVariable instanceof Timestamp) {
+                    stmt.setTimestamp(i + 1, (Timestamp) bindVariable, UTC);
+                } else {
+                    stmt.setObject(i + 1, bindVariable);
+                }
+            }
+            resultSet = stmt.executeQuery();
+            while (resultSet.next()) {
+                // Read LAST_UPDATED with the same calendar it is bound with so that it can be used as the seek key
+                consumer.accept(new ResourcePayload(resultSet.getString("LOGICAL_ID"),
+                        resultSet.getInt("VERSION_ID"),
+                        resultSet.getTimestamp("LAST_UPDATED", UTC).toInstant(),
+                        resultSet.getLong("RESOURCE_ID"),
+                        resultSet.getBytes("DATA")));
+                count++;
+            }
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Successfully exported FHIR resources. SQL=" + sql + "  bindVariables=" + bindVariables + " count=" + count);
+            }
+        } catch (FHIRPersistenceException e) {
+            throw e;
+        } catch (Throwable e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure exporting FHIR resources");
+            String errMsg = "Failure exporting FHIR resources. SQL=" + sql + "  bindVariables=" + bindVariables;
+            throw severe(log, fx, errMsg, e);
+        } finally {
+            this.cleanup(resultSet, stmt, connection);
+            log.exiting(CLASSNAME, METHODNAME, count);
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Integer> readCurrentVersions(String resourceType, Collection<String> logicalIds)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "readCurrentVersions";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Map<String, Integer> versions = new HashMap<>();
+        Connection connection = null;
+        PreparedStatement stmt = null;
+        ResultSet resultSet = null;
+        String stmtString = null;
+        List<String> ids = new ArrayList<>(logicalIds);
+
+        try {
+            connection = this.getConnection();
+            for (int start = 0; start < ids.size(); start += MAX_LOGICAL_IDS_PER_QUERY) {
+                List<String> block = ids.subList(start, Math.min(ids.size(), start + MAX_LOGICAL_IDS_PER_QUERY));
+                stmtString = String.format(SQL_READ_CURRENT_VERSIONS, resourceType, resourceType)
+                        + "(" + String.join(",", Collections.nCopies(block.size(), "?")) + ")";
+                stmt = connection.prepareStatement(stmtString);
+                for (int i = 0; i < block.size(); i++) {
+                    stmt.setString(i + 1, block.get(i));
+                }
+                resultSet = stmt.executeQuery();
+                while (resultSet.next()) {
+                    versions.put(resultSet.getString(1), resultSet.getInt(2));
+                }
+                this.cleanup(resultSet, stmt, null);
+                resultSet = null;
+                stmt = null;
+            }
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Successfully read current versions. resourceType=" + resourceType + " requested=" + ids.size()
+                        + " found=" + versions.size());
+            }
+        } catch (FHIRPersistenceException e) {
+            throw e;
+        } catch (Throwable e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure reading current resource versions");
+            String errMsg = "Failure reading current resource versions. SQL=" + stmtString;
+            throw severe(log, fx, errMsg, e);
+        } finally {
+            this.cleanup(resultSet, stmt, connection);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+        return versions;
+    }
+
+    @Override
+    public Resource readCurrentFingerprint(String logicalId, String resourceType)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "readCurrentFingerprint";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Resource resource = null;
+        Connection connection = null;
+        PreparedStatement stmt = null;
+        ResultSet resultSet = null;
+        String stmtString = null;
+
+        try {
+            connection = this.getConnection();
+            stmtString = String.format(SQL_READ_CURRENT_FINGERPRINT, resourceType, resourceType);
+            stmt = connection.prepareStatement(stmtString);
+            stmt.setString(1, logicalId);
+            resultSet = stmt.executeQuery();
+            if (resultSet.next()) {
+                resource = new Resource();
+                resource.setResourceType(resourceType);
+                resource.setLogicalId(logicalId);
+                resource.setVersionId(resultSet.getInt(1));
+                resource.setDeleted("Y".equals(resultSet.getString(2)));
+                resource.setFingerprint(resultSet.getString(3));
+            }
+        } catch (FHIRPersistenceException e) {
+            throw e;
+        } catch (Throwable e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure reading current resource fingerprint");
+            String errMsg = "Failure reading current resource fingerprint. SQL=" + stmtString;
+            throw severe(log, fx, errMsg, e);
+        } finally {
+            this.cleanup(resultSet, stmt, connection);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+        return resource;
+    }
+
+    @Override
+    public Resource readCurrentMetadata(String logicalId, String resourceType)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "readCurrentMetadata";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Resource resource = null;
+        Connection connection = null;
+        PreparedStatement stmt = null;
+        ResultSet resultSet = null;
+        String stmtString = null;
+
+        try {
+            connection = this.getConnection();
+            stmtString = String.format(SQL_READ_CURRENT_METADATA, resourceType, resourceType);
+            stmt = connection.prepareStatement(stmtString);
+            stmt.setString(1, logicalId);
+            resultSet = stmt.executeQuery();
+            if (resultSet.next()) {
+                resource = new Resource();
+                resource.setResourceType(resourceType);
+                resource.setLogicalId(logicalId);
+                resource.setVersionId(resultSet.getInt(1));
+                // LAST_UPDATED is written in UTC, so read it back the same way
+                resource.setLastUpdated(resultSet.getTimestamp(2, UTC));
+                resource.setDeleted("Y".equals(resultSet.getString(3)));
+            }
+        } catch (FHIRPersistenceException e) {
+            throw e;
+        } catch (Throwable e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure reading current resource metadata");
+            String errMsg = "Failure reading current resource metadata. SQL=" + stmtString;
+            throw severe(log, fx, errMsg, e);
+        } finally {
+            this.cleanup(resultSet, stmt, connection);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+        return resource;
+    }
+
     @Override
     public int historyCount(String resourceType, String logicalId, Timestamp fromDateTime) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "historyCount";
@@ -303,6 +585,18 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         this.context = context;
     }
 
+    @Override
+    public void setMultiRowParameterInserts(boolean multiRowParameterInserts) {
+        this.multiRowParameterInserts = multiRowParameterInserts;
+    }
+
+    /**
+     * @return true if search parameter values are written using multi-row INSERT statements
+     */
+    protected boolean isMultiRowParameterInserts() {
+        return this.multiRowParameterInserts;
+    }
+
     @Override
     public Map<String, Integer> readAllResourceTypeNames()
                                          throws FHIRPersistenceDBConnectException, FHIRPersistenceDataAccessException {
@@ -518,19 +812,21 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             stmt.setString(5, resource.isDeleted() ? "Y": "N");
             stmt.setString(6, UUID.randomUUID().toString());
             stmt.setInt(7, resource.getVersionId());
-            stmt.registerOutParameter(8, Types.BIGINT);
+            stmt.setString(8, resource.getFingerprint());
+            stmt.registerOutParameter(9, Types.BIGINT);
 
             dbCallStartTime = System.nanoTime();
             stmt.execute();
             dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
 
-            resource.setId(stmt.getLong(8));
+            resource.setId(stmt.getLong(9));
 
             // Parameter time
             // TODO FHIR_ADMIN schema name needs to come from the configuration/context
             if (parameters != null) {
                 try (ParameterVisitorBatchDAO pvd = new ParameterVisitorBatchDAO(connection, "FHIR_ADMIN", resource.getResourceType(), true,
-                        resource.getId(), 100, new ParameterNameCacheAdapter(parameterDao), new CodeSystemCacheAdapter(parameterDao))) {
+                        resource.getId(), 100, new ParameterNameCacheAdapter(parameterDao), new CodeSystemCacheAdapter(parameterDao),
+                        multiRowParameterInserts)) {
                     for (ExtractedParameterValue p: parameters) {
                         p.accept(pvd);
                     }
@@ -564,6 +860,123 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         return resource;
     }
 
+    @Override
+    public List<Resource> insertBatch(List<Resource> resources, List<List<ExtractedParameterValue>> parameters, ParameterDAO parameterDao)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "insertBatch";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Connection connection = null;
+        CallableStatement stmt = null;
+        // One parameter visitor per resource type, so that the parameters of all resources of a type share its batches
+        Map<String, ParameterVisitorBatchDAO> visitors = new HashMap<>();
+        long dbCallStartTime = System.nanoTime();
+
+        try {
+            connection = this.getConnection();
+            stmt = connection.prepareCall(getInsertCall(connection.getSchema().trim()));
+
+            Set<String> insertedLogicalIds = new HashSet<>();
+            for (int i = 0; i < resources.size(); i++) {
+                Resource resource = resources.get(i);
+                if (getResourceTypeIdFromCaches(resource.getResourceType()) == null) {
+                    this.addResourceTypeCacheCandidate(resource.getResourceType(), this.readResourceTypeId(resource.getResourceType()));
+                }
+
+                // Storing a later version deletes the parameters of the current version, so any parameters
+                // of the same resource still pending in the batch need to be written before that happens
+                ParameterVisitorBatchDAO pvd = visitors.get(resource.getResourceType());
+                boolean firstVersionInBatch = insertedLogicalIds.add(resource.getResourceType() + "/" + resource.getLogicalId());
+                if (pvd != null && !firstVersionInBatch) {
+                    pvd.flush();
+                }
+
+                stmt.setString(1, resource.getResourceType());
+                stmt.setString(2, resource.getLogicalId());
+                stmt.setBytes(3, resource.getData());
+                stmt.setTimestamp(4, resource.getLastUpdated(), UTC);
+                stmt.setString(5, resource.isDeleted() ? "Y": "N");
+                stmt.setString(6, UUID.randomUUID().toString());
+                stmt.setInt(7, resource.getVersionId());
+                stmt.setString(8, resource.getFingerprint());
+                stmt.registerOutParameter(9, Types.BIGINT);
+                stmt.execute();
+                resource.setId(stmt.getLong(9));
+
+                List<ExtractedParameterValue> resourceParameters = parameters.get(i);
+                if (resourceParameters != null) {
+                    if (pvd == null) {
+                        pvd = createParameterVisitor(connection, resource.getResourceType(), resource.getId(), parameterDao);
+                        visitors.put(resource.getResourceType(), pvd);
+                    } else {
+                        pvd.setLogicalResourceId(resource.getId());
+                    }
+                    for (ExtractedParameterValue p: resourceParameters) {
+                        p.accept(pvd);
+                    }
+                }
+            }
+
+            for (ParameterVisitorBatchDAO pvd : visitors.values()) {
+                pvd.close();
+            }
+            visitors.clear();
+
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Successfully inserted Resources. count=" + resources.size() + " executionTime="
+                        + (System.nanoTime() - dbCallStartTime)/1e6 + "ms");
+            }
+        } catch(FHIRPersistenceDBConnectException | FHIRPersistenceDataAccessException e) {
+            throw e;
+        } catch(SQLIntegrityConstraintViolationException e) {
+            FHIRPersistenceFKVException fx = new FHIRPersistenceFKVException("Encountered FK violation while inserting Resources.");
+            throw severe(log, fx, e);
+        } catch(SQLException e) {
+            if ("99001".equals(e.getSQLState())) {
+                // this is just a concurrency update, so there's no need to log the SQLException here
+                throw new FHIRPersistenceVersionIdMismatchException("Encountered version id mismatch while inserting Resources");
+            } else {
+                FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("SQLException encountered while inserting Resources.");
+                throw severe(log, fx, e);
+            }
+        } catch(Throwable e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure inserting Resources.");
+            throw severe(log, fx, e);
+        } finally {
+            // visitors are only left open here after a failure, so drop their pending rows instead of writing them
+            for (ParameterVisitorBatchDAO pvd : visitors.values()) {
+                pvd.discard();
+            }
+            this.cleanup(stmt, connection);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+
+        return resources;
+    }
+
+    /**
+     * @param schemaName the name of the schema containing the add_any_resource procedure
+     * @return the statement string used to call the add_any_resource procedure
+     */
+    protected String getInsertCall(String schemaName) {
+        return String.format(SQL_INSERT_WITH_PARAMETERS, schemaName);
+    }
+
+    /**
+     * Creates the visitor used to batch the inserts of the search parameters of the given resource type
+     * @param connection
+     * @param resourceType
+     * @param logicalResourceId the logical resource the first parameters visited belong to
+     * @param parameterDao
+     * @return the visitor, which must be closed by the caller
+     * @throws SQLException
+     */
+    protected ParameterVisitorBatchDAO createParameterVisitor(Connection connection, String resourceType, long logicalResourceId,
+            ParameterDAO parameterDao) throws SQLException {
+        return new ParameterVisitorBatchDAO(connection, "FHIR_ADMIN", resourceType, true, logicalResourceId, 100,
+                new ParameterNameCacheAdapter(parameterDao), new CodeSystemCacheAdapter(parameterDao), multiRowParameterInserts);
+    }
+
 
     @Override
     public List<Resource> search(String sqlSelect) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
@@ -604,21 +1017,22 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             stmtString = getSearchByIdsSql(resourceType);
             idQuery.append(stmtString);
             idQuery.append("(");
+            // The ids are bound so that pages of the same size share one statement text. The rows come back
+            // in no particular order; callers place each resource using its id.
             // resourceIds should have a max length of 1000 (the max page size)
-            StringBuilder caseStmts = new StringBuilder();
             for (int i = 0; i < resourceIds.size(); i++) {
                 if (i > 0) {
                     idQuery.append(",");
                 }
-                idQuery.append(resourceIds.get(i));
-
-                // build up the caseStmts here so we only need to iterate the list once
-                caseStmts.append(WHEN + resourceIds.get(i) + THEN + i);
+                idQuery.append("?");
             }
-            idQuery.append(") " + SQL_ORDER_BY_IDS + caseStmts + END);
+            idQuery.append(")");
 
             connection = this.getConnection();
             stmt = connection.prepareStatement(idQuery.toString());
+            for (int i = 0; i < resourceIds.size(); i++) {
+                stmt.setLong(i + 1, resourceIds.get(i));
+            }
             dbCallStartTime = System.nanoTime();
             resultSet = stmt.executeQuery();
             dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
@@ -119,6 +119,7 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
                 resource.isDeleted(),
                 sourceKey,
                 resource.getVersionId(),
+                resource.getFingerprint(),
                 connection,
                 parameterDao
                 );
@@ -155,6 +156,20 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
 
     }
 
+    /**
+     * Inserts the passed FHIR Resources and associated search parameters to a Derby FHIR database.
+     * There is no stored procedure in Derby, so each Resource is stored in turn using the same logic as
+     * {@link #insert(Resource, List, ParameterDAO)}.
+     */
+    @Override
+    public List<Resource> insertBatch(List<Resource> resources, List<List<ExtractedParameterValue>> parameters, ParameterDAO parameterDao)
+            throws FHIRPersistenceException {
+        for (int i = 0; i < resources.size(); i++) {
+            insert(resources.get(i), parameters.get(i), parameterDao);
+        }
+        return resources;
+    }
+
     /**
      * Store the resource in the database, creating a new logical_resource entry if this is
      * the first version of this resource, or creating a new resource entry if this a new
@@ -185,12 +200,13 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
      * @param p_is_deleted
      * @param p_source_key
      * @param p_version
+     * @param p_fingerprint
      *
      * @return the resource_id for the entry we created
      * @throws Exception
      */
     public long storeResource(String tablePrefix, List<ExtractedParameterValue> parameters, String p_logical_id, byte[] p_payload, Timestamp p_last_updated, boolean p_is_deleted,
-        String p_source_key, Integer p_version, Connection conn, ParameterDAO parameterDao) throws Exception {
+        String p_source_key, Integer p_version, String p_fingerprint, Connection conn, ParameterDAO parameterDao) throws Exception {
 
         final String METHODNAME = "storeResource() for " + tablePrefix + " resource";
         logger.entering(CLASSNAME, METHODNAME);
@@ -393,8 +409,8 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
         }
 
         // Finally we get to the big resource data insert
-        String sql3 = "INSERT INTO " + tablePrefix + "_resources (resource_id, logical_resource_id, version_id, data, last_updated, is_deleted) "
-                + "VALUES (?,?,?,?,?,?)";
+        String sql3 = "INSERT INTO " + tablePrefix + "_resources (resource_id, logical_resource_id, version_id, data, last_updated, is_deleted, fingerprint) "
+                + "VALUES (?,?,?,?,?,?,?)";
         try (PreparedStatement stmt = conn.prepareStatement(sql3)) {
             // bind parameters
             stmt.setLong(1, v_resource_id);
@@ -403,6 +419,7 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
             stmt.setBytes(4, p_payload);
             stmt.setTimestamp(5, p_last_updated, UTC);
             stmt.setString(6, p_is_deleted ? "Y" : "N");
+            stmt.setString(7, p_fingerprint);
             stmt.executeUpdate();
         }
 
@@ -423,7 +440,7 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
             if (parameters != null) {
                 // Derby doesn't support partitioned multi-tenancy, so we disable it on the DAO:
                 try (ParameterVisitorBatchDAO pvd = new ParameterVisitorBatchDAO(conn, null, tablePrefix, false, v_logical_resource_id, 100,
-                    new ParameterNameCacheAdapter(parameterDao), new CodeSystemCacheAdapter(parameterDao))) {
+                    new ParameterNameCacheAdapter(parameterDao), new CodeSystemCacheAdapter(parameterDao), isMultiRowParameterInserts())) {
                     for (ExtractedParameterValue p: parameters) {
                         p.accept(pvd);
                     }
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -20,6 +20,7 @@ public class Resource {
     private Timestamp lastUpdated;
     private byte[] data;
     private boolean deleted;
+    private String fingerprint;
 
     
     public Resource() {
@@ -81,6 +82,17 @@ public class Resource {
     public void setDeleted(boolean deleted) {
         this.deleted = deleted;
     }
+
+    /**
+     * @return the salted hash of the resource content (see ResourceFingerprintVisitor), or null if it wasn't computed
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
     
     @Override
     public String toString() {
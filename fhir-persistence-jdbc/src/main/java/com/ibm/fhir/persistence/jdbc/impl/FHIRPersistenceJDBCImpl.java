@@ -8,7 +8,14 @@ package com.ibm.fhir.persistence.jdbc.impl;
 
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_CODE_SYSTEMS_CACHE;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_PARAMETER_NAMES_CACHE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_RESOURCE_CACHE;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_RESOURCE_TYPES_CACHE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_SEARCH_RESULT_CACHE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_RESOURCE_CACHE_SIZE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_SEARCH_RESULT_CACHE_SIZE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_SEARCH_RESULT_CACHE_TTL;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_MULTI_ROW_PARAMETER_INSERTS;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_SKIP_UNCHANGED_UPDATES;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_UPDATE_CREATE_ENABLED;
 import static com.ibm.fhir.model.type.String.string;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants.MAX_NUM_OF_COMPOSITE_COMPONENTS;
@@ -27,12 +34,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -76,9 +85,13 @@ import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
 import com.ibm.fhir.persistence.FHIRPersistence;
 import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
 import com.ibm.fhir.persistence.MultiResourceResult;
+import com.ibm.fhir.persistence.ResourceMetadata;
+import com.ibm.fhir.persistence.ResourcePayload;
+import com.ibm.fhir.persistence.ResourcePayloadConsumer;
 import com.ibm.fhir.persistence.SingleResourceResult;
 import com.ibm.fhir.persistence.context.FHIRHistoryContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
+import com.ibm.fhir.persistence.context.HistoryCursor;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceDeletedException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceNotFoundException;
@@ -103,13 +116,23 @@ import com.ibm.fhir.persistence.jdbc.util.CodeSystemsCache;
 import com.ibm.fhir.persistence.jdbc.util.JDBCParameterBuildingVisitor;
 import com.ibm.fhir.persistence.jdbc.util.JDBCQueryBuilder;
 import com.ibm.fhir.persistence.jdbc.util.ParameterNamesCache;
+import com.ibm.fhir.persistence.jdbc.util.ResourceCache;
+import com.ibm.fhir.persistence.jdbc.util.ResourceCache.CachedResource;
+import com.ibm.fhir.persistence.jdbc.util.ResourceCacheInvalidator;
+import com.ibm.fhir.persistence.jdbc.util.QuerySegmentAggregatorFactory;
 import com.ibm.fhir.persistence.jdbc.util.ResourceTypesCache;
+import com.ibm.fhir.persistence.jdbc.util.SearchResultCache;
+import com.ibm.fhir.persistence.jdbc.util.SearchResultCache.CachedSearchResult;
 import com.ibm.fhir.persistence.jdbc.util.SqlQueryData;
 import com.ibm.fhir.persistence.util.FHIRPersistenceUtil;
+import com.ibm.fhir.persistence.util.ResourceFingerprintVisitor;
+import com.ibm.fhir.persistence.util.SaltHash;
 import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.search.SummaryValueSet;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.date.DateTimeHandler;
+import com.ibm.fhir.search.parameters.KeysetCursor;
 import com.ibm.fhir.search.parameters.QueryParameter;
 import com.ibm.fhir.search.util.SearchUtil;
 
@@ -127,6 +150,9 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
     protected static final String TXN_JNDI_NAME = "java:comp/UserTransaction";
     public static final String TRX_SYNCH_REG_JNDI_NAME = "java:comp/TransactionSynchronizationRegistry";
 
+    // The TransactionSynchronizationRegistry resource holding the resources written by the current transaction
+    private static final String WRITTEN_RESOURCES_KEY = CLASSNAME + ".writtenResources";
+
     private FHIRDbDAO baseDao;
     private ResourceDAO resourceDao;
     private ParameterDAO parameterDao;
@@ -136,6 +162,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
     protected Connection sharedConnection = null;
     protected UserTransaction userTransaction = null;
     protected Boolean updateCreateEnabled = null;
+    protected boolean skipUnchangedUpdates = false;
 
     // only used outside a web container
     private Connection managedConnection;
@@ -153,6 +180,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             throw new IllegalStateException("Unable to load the default fhir-server-config.json");
         }
         this.updateCreateEnabled = fhirConfig.getBooleanProperty(PROPERTY_UPDATE_CREATE_ENABLED, Boolean.TRUE);
+        this.skipUnchangedUpdates = fhirConfig.getBooleanProperty(PROPERTY_JDBC_SKIP_UNCHANGED_UPDATES, Boolean.FALSE);
         this.userTransaction = retrieveUserTransaction(TXN_JNDI_NAME);
 
         ParameterNamesCache.setEnabled(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_PARAMETER_NAMES_CACHE,
@@ -161,9 +189,15 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
                                     Boolean.TRUE));
         ResourceTypesCache.setEnabled(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_RESOURCE_TYPES_CACHE,
                                       Boolean.TRUE));
+        ResourceCache.configure(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_RESOURCE_CACHE, Boolean.FALSE),
+                                fhirConfig.getIntProperty(PROPERTY_JDBC_RESOURCE_CACHE_SIZE, ResourceCache.DEFAULT_MAX_ENTRIES));
+        SearchResultCache.configure(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_SEARCH_RESULT_CACHE, Boolean.FALSE),
+                                    fhirConfig.getIntProperty(PROPERTY_JDBC_SEARCH_RESULT_CACHE_SIZE, SearchResultCache.DEFAULT_MAX_ENTRIES),
+                                    fhirConfig.getIntProperty(PROPERTY_JDBC_SEARCH_RESULT_CACHE_TTL, SearchResultCache.DEFAULT_TTL_SECONDS));
 
         sharedConnection = this.createConnection();
         this.resourceDao = FHIRResourceDAOFactory.getResourceDAO(sharedConnection, this.getTrxSynchRegistry());
+        this.resourceDao.setMultiRowParameterInserts(fhirConfig.getBooleanProperty(PROPERTY_JDBC_MULTI_ROW_PARAMETER_INSERTS, Boolean.FALSE));
         this.parameterDao = new ParameterDAOImpl(this.getTrxSynchRegistry());
 
         log.exiting(CLASSNAME, METHODNAME);
@@ -178,12 +212,14 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         log.entering(CLASSNAME, METHODNAME);
 
         this.updateCreateEnabled = Boolean.parseBoolean(configProps.getProperty("updateCreateEnabled"));
+        this.skipUnchangedUpdates = Boolean.parseBoolean(configProps.getProperty("skipUnchangedUpdates"));
 
         FHIRDbDAO dao = new FHIRDbDAOImpl(configProps);
 
         this.setBaseDao(dao);
         this.setManagedConnection(this.getBaseDao().getConnection());
         this.resourceDao = FHIRResourceDAOFactory.getResourceDAO(this.getManagedConnection());
+        this.resourceDao.setMultiRowParameterInserts(Boolean.parseBoolean(configProps.getProperty("multiRowParameterInserts")));
         this.parameterDao = new ParameterDAOImpl(this.getManagedConnection());
 
         log.exiting(CLASSNAME, METHODNAME);
@@ -198,12 +234,14 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         log.entering(CLASSNAME, METHODNAME);
 
         this.updateCreateEnabled = Boolean.parseBoolean(configProps.getProperty("updateCreateEnabled"));
+        this.skipUnchangedUpdates = Boolean.parseBoolean(configProps.getProperty("skipUnchangedUpdates"));
 
         FHIRDbDAO dao = new FHIRDbDAOImpl(cp.getConnection());
 
         this.setBaseDao(dao);
         this.setManagedConnection(this.getBaseDao().getConnection());
         this.resourceDao = FHIRResourceDAOFactory.getResourceDAO(this.getManagedConnection());
+        this.resourceDao.setMultiRowParameterInserts(Boolean.parseBoolean(configProps.getProperty("multiRowParameterInserts")));
         this.parameterDao = new ParameterDAOImpl(this.getManagedConnection());
 
         log.exiting(CLASSNAME, METHODNAME);
@@ -251,6 +289,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             Timestamp timestamp = FHIRUtilities.convertToTimestamp(lastUpdated.getValue());
             resourceDTO.setLastUpdated(timestamp);
             resourceDTO.setResourceType(updatedResource.getClass().getSimpleName());
+            resourceDTO.setFingerprint(this.computeFingerprint(updatedResource));
 
             // Serialize and compress the Resource
             GZIPOutputStream zipStream = new GZIPOutputStream(stream);
@@ -262,6 +301,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             // Persist the Resource DTO.
             this.getResourceDao().setPersistenceContext(context);
             this.getResourceDao().insert(resourceDTO, this.extractSearchParameters(updatedResource, resourceDTO), this.parameterDao);
+            this.invalidateCachedResource(resourceDTO);
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Persisted FHIR Resource '" + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "' id=" + resourceDTO.getId()
                             + ", version=" + resourceDTO.getVersionId());
@@ -346,6 +386,29 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
                 throw new FHIRPersistenceResourceNotFoundException(msg);
             }
 
+            // If the update doesn't change the content of the current version, return that version instead of storing a new one.
+            if (skipUnchangedUpdates && existingVersion != 0) {
+                T currentResource = this.getUnchangedCurrentVersion(context, logicalId, resource);
+                if (currentResource != null) {
+                    String msg = "Resource '" + resourceType.getSimpleName() + "/" + logicalId + "' is unchanged; update of version "
+                            + currentResource.getMeta().getVersionId().getValue() + " skipped.";
+                    log.fine(msg);
+                    return new SingleResourceResult.Builder<T>()
+                            .success(true)
+                            .resource(currentResource)
+                            .outcome(OperationOutcome.builder()
+                                .issue(OperationOutcome.Issue.builder()
+                                    .severity(IssueSeverity.INFORMATION)
+                                    .code(IssueType.INFORMATIONAL)
+                                    .details(CodeableConcept.builder()
+                                        .text(string(msg))
+                                        .build())
+                                    .build())
+                                .build())
+                            .build();
+                }
+            }
+
             // Bump up the existing version # to get the new version.
             int newVersionNumber = existingVersion + 1;
 
@@ -376,6 +439,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             Timestamp timestamp = FHIRUtilities.convertToTimestamp(lastUpdated.getValue());
             resourceDTO.setLastUpdated(timestamp);
             resourceDTO.setResourceType(updatedResource.getClass().getSimpleName());
+            resourceDTO.setFingerprint(this.computeFingerprint(updatedResource));
 
             // Serialize and compress the Resource
             GZIPOutputStream zipStream = new GZIPOutputStream(stream);
@@ -387,6 +451,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             // Persist the Resource DTO.
             this.getResourceDao().setPersistenceContext(context);
             this.getResourceDao().insert(resourceDTO, this.extractSearchParameters(updatedResource, resourceDTO), this.parameterDao);
+            this.invalidateCachedResource(resourceDTO);
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Persisted FHIR Resource '" + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "' id=" + resourceDTO.getId()
                             + ", version=" + resourceDTO.getVersionId());
@@ -423,111 +488,437 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         }
     }
 
+    @Override
+    public List<SingleResourceResult<Resource>> createOrUpdateBatch(FHIRPersistenceContext context, List<Resource> resources)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "createOrUpdateBatch";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            // Read the current version of all of the resources up front, with one query per resource type
+            Map<String, Set<String>> logicalIdsByType = new HashMap<>();
+            for (Resource resource : resources) {
+                if (resource.getId() != null) {
+                    logicalIdsByType.computeIfAbsent(resource.getClass().getSimpleName(), k -> new HashSet<>()).add(resource.getId());
+                }
+            }
+            Map<String, Map<String, Integer>> currentVersions = new HashMap<>();
+            for (Entry<String, Set<String>> entry : logicalIdsByType.entrySet()) {
+                currentVersions.put(entry.getKey(), this.getResourceDao().readCurrentVersions(entry.getKey(), entry.getValue()));
+            }
+
+            // Prepare each resource before anything is written, so that a resource which can't be stored fails on its own
+            // instead of failing the batch after some of the resources were already written
+            List<SingleResourceResult<Resource>> results = new ArrayList<>(Collections.nCopies(resources.size(), null));
+            List<Integer> storedIndices = new ArrayList<>(resources.size());
+            List<Resource> updatedResources = new ArrayList<>(resources.size());
+            List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOs = new ArrayList<>(resources.size());
+            List<List<ExtractedParameterValue>> parameters = new ArrayList<>(resources.size());
+            for (int i = 0; i < resources.size(); i++) {
+                Resource resource = resources.get(i);
+                String logicalId = resource.getId();
+                String resourceType = resource.getClass().getSimpleName();
+                try {
+                    if (logicalId == null) {
+                        throw new FHIRPersistenceException("Resource of type '" + resourceType + "' has no logical id.");
+                    }
+
+                    // The same resource may appear more than once in the list, so keep track of the version as we go
+                    Map<String, Integer> versions = currentVersions.get(resourceType);
+                    int existingVersion = versions.getOrDefault(logicalId, 0);
+
+                    // If this logical resource didn't exist and the "updateCreate" feature is not enabled,
+                    // then this is an error.
+                    if (existingVersion == 0 && !updateCreateEnabled) {
+                        throw new FHIRPersistenceResourceNotFoundException("Resource '" + resourceType + "/" + logicalId + "' not found.");
+                    }
+                    int newVersionNumber = existingVersion + 1;
+                    if (log.isLoggable(Level.FINE)) {
+                        log.fine("Storing new FHIR Resource '" + resourceType + "/" + logicalId + "', version=" + newVersionNumber);
+                    }
+
+                    // Set the meta fields.
+                    Instant lastUpdated = Instant.now(ZoneOffset.UTC);
+                    Meta meta = resource.getMeta();
+                    Meta.Builder metaBuilder = meta == null ? Meta.builder() : meta.toBuilder();
+                    metaBuilder.versionId(Id.of(Integer.toString(newVersionNumber)));
+                    metaBuilder.lastUpdated(lastUpdated);
+                    Resource updatedResource = resource.toBuilder().meta(metaBuilder.build()).build();
+
+                    // Create the new Resource DTO instance.
+                    com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO = new com.ibm.fhir.persistence.jdbc.dto.Resource();
+                    resourceDTO.setLogicalId(logicalId);
+                    resourceDTO.setVersionId(newVersionNumber);
+                    resourceDTO.setLastUpdated(FHIRUtilities.convertToTimestamp(lastUpdated.getValue()));
+                    resourceDTO.setResourceType(resourceType);
+                    resourceDTO.setFingerprint(this.computeFingerprint(updatedResource));
+
+                    // Serialize and compress the Resource
+                    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                    try (GZIPOutputStream zipStream = new GZIPOutputStream(stream)) {
+                        FHIRGenerator.generator(Format.JSON, false).generate(updatedResource, zipStream);
+                        zipStream.finish();
+                    }
+                    resourceDTO.setData(stream.toByteArray());
+                    List<ExtractedParameterValue> resourceParameters = this.extractSearchParameters(updatedResource, resourceDTO);
+
+                    versions.put(logicalId, newVersionNumber);
+                    storedIndices.add(i);
+                    updatedResources.add(updatedResource);
+                    resourceDTOs.add(resourceDTO);
+                    parameters.add(resourceParameters);
+                } catch (FHIRPersistenceException e) {
+                    log.warning(e.getMessage());
+                    results.set(i, new SingleResourceResult.Builder<Resource>()
+                            .success(false)
+                            .outcome(FHIRUtil.buildOperationOutcome(e, false))
+                            .build());
+                } catch (Exception e) {
+                    // don't include the exception in the outcome to avoid leaking secrets
+                    String msg = "Unexpected error while preparing Resource '" + resourceType + "/" + logicalId + "' to be stored.";
+                    log.log(Level.SEVERE, msg, e);
+                    results.set(i, new SingleResourceResult.Builder<Resource>()
+                            .success(false)
+                            .outcome(FHIRUtil.buildOperationOutcome(msg, IssueType.EXCEPTION, IssueSeverity.ERROR))
+                            .build());
+                }
+            }
+
+            // Persist all of the Resource DTOs.
+            if (!resourceDTOs.isEmpty()) {
+                this.getResourceDao().setPersistenceContext(context);
+                this.getResourceDao().insertBatch(resourceDTOs, parameters, this.parameterDao);
+                for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : resourceDTOs) {
+                    this.invalidateCachedResource(resourceDTO);
+                }
+            }
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Persisted " + resourceDTOs.size() + " of " + resources.size() + " FHIR Resources");
+            }
+
+            for (int i = 0; i < storedIndices.size(); i++) {
+                SingleResourceResult.Builder<Resource> resultBuilder = new SingleResourceResult.Builder<Resource>()
+                        .success(true)
+                        .resource(updatedResources.get(i));
+
+                // Add supplemental issues to an OperationOutcome
+                if (!supplementalIssues.isEmpty()) {
+                    resultBuilder.outcome(OperationOutcome.builder()
+                        .issue(supplementalIssues)
+                        .build());
+                }
+                results.set(storedIndices.get(i), resultBuilder.build());
+            }
+            return results;
+        }
+        catch(FHIRPersistenceFKVException e) {
+            log.log(Level.SEVERE, this.performCacheDiagnostics());
+            throw e;
+        }
+        catch(FHIRPersistenceException e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            // don't chain the exception to avoid leaking secrets
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a createOrUpdateBatch operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
     @Override
     public MultiResourceResult<Resource> search(FHIRPersistenceContext context, Class<? extends Resource> resourceType)
             throws FHIRPersistenceException {
         final String METHODNAME = "search";
         log.entering(CLASSNAME, METHODNAME);
 
-        List<Resource> resources = Collections.emptyList();
         MultiResourceResult.Builder<Resource> resultBuilder = new MultiResourceResult.Builder<>();
+
+        try {
+            List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList = this.searchResourceDTOs(context, resourceType, resultBuilder);
+            if (resourceDTOList == null) {
+                return resultBuilder.success(false).build();
+            }
+
+            List<Resource> resources = this.convertResourceDTOList(resourceDTOList, resourceType,
+                    getElements(context.getSearchContext(), resourceType));
+            return resultBuilder
+                    .success(true)
+                    .resource(resources)
+                    .build();
+        }
+        catch(FHIRPersistenceException e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a search operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    @Override
+    public List<ResourcePayload> searchPayloads(FHIRPersistenceContext context, Class<? extends Resource> resourceType)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "searchPayloads";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList =
+                    this.searchResourceDTOs(context, resourceType, new MultiResourceResult.Builder<>());
+            if (resourceDTOList == null) {
+                return Collections.emptyList();
+            }
+
+            List<ResourcePayload> payloads = new ArrayList<>(resourceDTOList.size());
+            for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : resourceDTOList) {
+                payloads.add(this.convertResourceDTOToPayload(resourceDTO));
+            }
+            return payloads;
+        }
+        catch(FHIRPersistenceException e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a search operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    /**
+     * Runs the search described by the search context of the passed persistence context, and returns the Resource DTOs
+     * of the requested page of the search result set, in order. The paging state of the search context is updated.
+     *
+     * @param context the persistence context of the search
+     * @param resourceType the resource type which is the target of the search
+     * @param resultBuilder receives the OperationOutcome, if the paging context is not valid
+     * @return the Resource DTOs, or null if the search is not valid and the request is not lenient
+     * @throws Exception
+     */
+    private List<com.ibm.fhir.persistence.jdbc.dto.Resource> searchResourceDTOs(FHIRPersistenceContext context,
+            Class<? extends Resource> resourceType, MultiResourceResult.Builder<Resource> resultBuilder) throws Exception {
+        List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList = Collections.emptyList();
         FHIRSearchContext searchContext = context.getSearchContext();
         JDBCQueryBuilder queryBuilder;
         List<Long> sortedIdList;
-        List<com.ibm.fhir.persistence.jdbc.dto.Resource> unsortedResultsList;
         int searchResultCount = 0;
         SqlQueryData countQuery;
         SqlQueryData query;
+        String cacheKey = null;
+        long cacheStamp = 0;
+        List<Long> resultIds = Collections.emptyList();
+
+        checkModifiers(searchContext);
+
+        // A transaction which has written resources must see its own writes, and must not cache what it sees
+        if (SearchResultCache.isEnabled() && !hasCurrentTransactionWritten()) {
+            cacheKey = SearchResultCache.getCacheKey(resourceType, searchContext);
+            if (cacheKey != null) {
+                CachedSearchResult cachedResult = SearchResultCache.get(resourceType.getSimpleName(), cacheKey);
+                if (cachedResult != null) {
+                    cachedResult.applyTo(searchContext);
+                    if (!cachedResult.getResourceIds().isEmpty()) {
+                        resourceDTOList = this.getSortedResourceDTOs(resourceType, cachedResult.getResourceIds());
+                    }
+                    return resourceDTOList;
+                }
+                cacheStamp = SearchResultCache.getInvalidationStamp(resourceType.getSimpleName());
+            }
+        }
 
-        try {
-            checkModifiers(searchContext);
-            queryBuilder = new JDBCQueryBuilder(this.getParameterDao(),
-                                                this.getResourceDao());
+        queryBuilder = new JDBCQueryBuilder(this.getParameterDao(),
+                                            this.getResourceDao());
 
-            countQuery = queryBuilder.buildCountQuery(resourceType, searchContext);
-            if (countQuery != null) {
+        countQuery = queryBuilder.buildCountQuery(resourceType, searchContext);
+        if (countQuery != null) {
+            if (isTotalCountRequired(searchContext)) {
                 searchResultCount = this.getResourceDao().searchCount(countQuery);
                 if (log.isLoggable(Level.FINE)) {
                     log.fine("searchResultCount = " + searchResultCount);
                 }
                 searchContext.setTotalCount(searchResultCount);
+            } else {
+                // Skip the count; the page is read with one extra row to find out whether there is a next page
+                searchContext.setTotalCountKnown(false);
+            }
 
-                List<OperationOutcome.Issue> issues = validatePagingContext(searchContext);
-                if (!issues.isEmpty()) {
-                    resultBuilder.outcome(OperationOutcome.builder()
-                        .issue(issues)
-                        .build());
-                    if (!searchContext.isLenient()) {
-                        return resultBuilder.success(false).build();
-                    }
+            List<OperationOutcome.Issue> issues = validatePagingContext(searchContext, searchContext.isTotalCountKnown());
+            if (!issues.isEmpty()) {
+                resultBuilder.outcome(OperationOutcome.builder()
+                    .issue(issues)
+                    .build());
+                if (!searchContext.isLenient()) {
+                    return null;
                 }
+            }
 
-                // For _summary=count or pageSize == 0, we return only the count
-                if (searchResultCount > 0
-                        && !SummaryValueSet.COUNT.equals(searchContext.getSummaryParameter())
-                        && searchContext.getPageSize() > 0) {
-                    query = queryBuilder.buildQuery(resourceType, searchContext);
-
-                    List<String> elements = searchContext.getElementsParameters();
-
-                    //Only consider _summary if _elements parameter is empty
-                    if (elements == null && searchContext.hasSummaryParameter()) {
-                        Set<String> summaryElements = null;
-                        SummaryValueSet summary = searchContext.getSummaryParameter();
-
-                        switch (summary) {
-                        case TRUE:
-                            summaryElements = JsonSupport.getSummaryElementNames(resourceType);
-                            break;
-                        case TEXT:
-                            summaryElements = SearchUtil.getSummaryTextElementNames(resourceType);
-                            break;
-                        case DATA:
-                            summaryElements = JsonSupport.getSummaryDataElementNames(resourceType);
-                            break;
-                        default:
-                            break;
-                        }
+            // If the page number was adjusted, the cursor no longer identifies the page; fall back to the offset
+            KeysetCursor cursor = searchContext.getCursor();
+            if (cursor != null && cursor.getPageNumber() != searchContext.getPageNumber()) {
+                searchContext.setCursor(null);
+            }
 
-                        if (summaryElements != null) {
-                            elements = new ArrayList<>();
-                            elements.addAll(summaryElements);
-                        }
-                    }
-
-                    if (searchContext.hasSortParameters()) {
-                        // Sorting results of a system-level search is limited, and has a different logic path
-                        // than other sorted searches.
-                        if (resourceType.equals(Resource.class)) {
-                           resources = this.convertResourceDTOList(this.resourceDao.search(query), resourceType, elements);
-                        }
-                        else {
-                            sortedIdList = this.resourceDao.searchForIds(query);
-                            resources = this.buildSortedFhirResources(context, resourceType, sortedIdList, elements);
-                        }
+            // For _summary=count or pageSize == 0, we return only the count
+            if ((searchResultCount > 0 || !searchContext.isTotalCountKnown())
+                    && !SummaryValueSet.COUNT.equals(searchContext.getSummaryParameter())
+                    && searchContext.getPageSize() > 0) {
+                query = queryBuilder.buildQuery(resourceType, searchContext);
+
+                if (searchContext.hasSortParameters()) {
+                    // Sorting results of a system-level search is limited, and has a different logic path
+                    // than other sorted searches.
+                    if (resourceType.equals(Resource.class)) {
+                        resourceDTOList = trimExtraRow(searchContext, this.resourceDao.search(query));
                     }
                     else {
-                        unsortedResultsList = this.getResourceDao().search(query);
-                        resources = this.convertResourceDTOList(unsortedResultsList, resourceType, elements);
+                        sortedIdList = trimExtraRow(searchContext, this.resourceDao.searchForIds(query));
+                        resultIds = sortedIdList;
+                        resourceDTOList = this.getSortedResourceDTOs(resourceType, sortedIdList);
+                    }
+                }
+                else {
+                    resourceDTOList = trimExtraRow(searchContext, this.getResourceDao().search(query));
+                    if (QuerySegmentAggregatorFactory.isKeysetPagingApplicable(searchContext)) {
+                        this.setKeysetCursors(searchContext, resourceDTOList);
+                    }
+                    resultIds = new ArrayList<>(resourceDTOList.size());
+                    for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : resourceDTOList) {
+                        resultIds.add(resourceDTO.getId());
                     }
                 }
             }
 
-            return resultBuilder
-                    .success(true)
-                    .resource(resources)
-                    .build();
+            // Results are only cached when the search was valid, so that any issues are reported each time
+            if (cacheKey != null && issues.isEmpty()) {
+                SearchResultCache.put(cacheStamp, resourceType.getSimpleName(), cacheKey, resultIds, searchContext);
+            }
         }
-        catch(FHIRPersistenceException e) {
-            throw e;
+
+        return resourceDTOList;
+    }
+
+    /**
+     * @return the elements to include in the resources returned by the search, based on the _elements or _summary
+     *         parameter, or null to return the whole resources
+     */
+    private List<String> getElements(FHIRSearchContext searchContext, Class<? extends Resource> resourceType) {
+        List<String> elements = searchContext.getElementsParameters();
+
+        //Only consider _summary if _elements parameter is empty
+        if (elements == null && searchContext.hasSummaryParameter()) {
+            Set<String> summaryElements = null;
+            SummaryValueSet summary = searchContext.getSummaryParameter();
+
+            switch (summary) {
+            case TRUE:
+                summaryElements = JsonSupport.getSummaryElementNames(resourceType);
+                break;
+            case TEXT:
+                summaryElements = SearchUtil.getSummaryTextElementNames(resourceType);
+                break;
+            case DATA:
+                summaryElements = JsonSupport.getSummaryDataElementNames(resourceType);
+                break;
+            default:
+                break;
+            }
+
+            if (summaryElements != null) {
+                elements = new ArrayList<>();
+                elements.addAll(summaryElements);
+            }
         }
-        catch(Throwable e) {
-            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a search operation.");
-            log.log(Level.SEVERE, fx.getMessage(), e);
-            throw fx;
+        return elements;
+    }
+
+    /**
+     * Determine whether the search must count the matching resources. The count is skipped only when the
+     * client asked for _total=none or _total=estimate, and the response doesn't need the count for anything else.
+     */
+    private boolean isTotalCountRequired(FHIRSearchContext searchContext) {
+        TotalValueSet total = searchContext.getTotalParameter();
+        return total == null
+                || TotalValueSet.ACCURATE.equals(total)
+                || SummaryValueSet.COUNT.equals(searchContext.getSummaryParameter())
+                || searchContext.getPageSize() <= 0
+                || searchContext.hasIncludeParameters()
+                || searchContext.hasRevIncludeParameters();
+    }
+
+    /**
+     * When the total count was skipped, the page was read with one extra row. Remove that row, and use it to
+     * set the last page number. For _total=estimate, the total is exact once the last page is reached, unless the
+     * requested page is past the end of the results.
+     *
+     * @param searchContext
+     * @param results the rows read for the page, in the order they were read
+     * @return the rows of the page
+     */
+    private <T> List<T> trimExtraRow(FHIRSearchContext searchContext, List<T> results) {
+        if (searchContext.isTotalCountKnown()) {
+            return results;
+        }
+
+        int pageSize = searchContext.getPageSize();
+        int pageNumber = searchContext.getPageNumber();
+        boolean hasNextPage = results.size() > pageSize;
+        if (hasNextPage) {
+            results = new ArrayList<>(results.subList(0, pageSize));
+        }
+
+        KeysetCursor cursor = searchContext.getCursor();
+        if (cursor != null && KeysetCursor.Direction.PREVIOUS.equals(cursor.getDirection())) {
+            // Paging backwards, the extra row is before this page; we came from the next page
+            searchContext.setLastPageNumber(pageNumber + 1);
+        } else if (hasNextPage) {
+            searchContext.setLastPageNumber(pageNumber + 1);
+        } else if (results.isEmpty() && pageNumber > 1) {
+            // The page is past the end of the results, so the total is left unknown; all we know is that the last
+            // page is before this one, which is enough to not link to a next page
+            searchContext.setLastPageNumber(pageNumber - 1);
+        } else {
+            searchContext.setLastPageNumber(pageNumber);
+            if (TotalValueSet.ESTIMATE.equals(searchContext.getTotalParameter())) {
+                searchContext.setTotalCount((pageNumber - 1) * pageSize + results.size());
+                searchContext.setTotalCountKnown(true);
+            }
         }
-        finally {
-            log.exiting(CLASSNAME, METHODNAME);
+        return results;
+    }
+
+    /**
+     * Restores the ascending order of a page fetched by seeking backwards and records the cursors
+     * for the pages before and after it in the search context.
+     *
+     * @param searchContext
+     * @param resourceDTOList the page of results, in the order they were fetched
+     */
+    private void setKeysetCursors(FHIRSearchContext searchContext, List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList) {
+        if (resourceDTOList.isEmpty()) {
+            return;
+        }
+
+        KeysetCursor cursor = searchContext.getCursor();
+        if (cursor != null && KeysetCursor.Direction.PREVIOUS.equals(cursor.getDirection())) {
+            Collections.reverse(resourceDTOList);
+        }
+
+        int pageNumber = searchContext.getPageNumber();
+        long firstKey = resourceDTOList.get(0).getId();
+        long lastKey = resourceDTOList.get(resourceDTOList.size() - 1).getId();
+        searchContext.setNextCursor(KeysetCursor.next(pageNumber + 1, lastKey));
+        if (pageNumber > 1) {
+            searchContext.setPreviousCursor(KeysetCursor.previous(pageNumber - 1, firstKey));
         }
     }
 
@@ -629,6 +1020,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             // Persist the logically deleted Resource DTO.
             this.getResourceDao().setPersistenceContext(context);
             this.getResourceDao().insert(resourceDTO, null, null);
+            this.invalidateCachedResource(resourceDTO);
 
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Persisted FHIR Resource '" + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "' id=" + resourceDTO.getId()
@@ -700,12 +1092,30 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         }
 
         try {
-            resourceDTO = this.getResourceDao().read(logicalId, resourceType.getSimpleName());
-            if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
-                throw new FHIRPersistenceResourceDeletedException("Resource '" +
-                        resourceType.getSimpleName() + "/" + logicalId + "' is deleted.");
+            // Only the full resource is cached; _summary reads filter the elements while parsing
+            CachedResource cachedResource = elements == null ? ResourceCache.getCurrentVersion(resourceType.getSimpleName(), logicalId) : null;
+            if (cachedResource != null) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.fine("Read FHIR Resource '" + resourceType.getSimpleName() + "/" + logicalId + "' from the resource cache");
+                }
+                if (cachedResource.isDeleted() && !context.includeDeleted()) {
+                    throw new FHIRPersistenceResourceDeletedException("Resource '" +
+                            resourceType.getSimpleName() + "/" + logicalId + "' is deleted.");
+                }
+                resource = resourceType.cast(cachedResource.getResource());
+            } else {
+                long stamp = ResourceCache.getInvalidationStamp();
+                resourceDTO = this.getResourceDao().read(logicalId, resourceType.getSimpleName());
+                if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
+                    throw new FHIRPersistenceResourceDeletedException("Resource '" +
+                            resourceType.getSimpleName() + "/" + logicalId + "' is deleted.");
+                }
+                resource = this.convertResourceDTO(resourceDTO, resourceType, elements);
+                if (resource != null && elements == null && !isWrittenByCurrentTransaction(resourceType.getSimpleName(), logicalId)) {
+                    ResourceCache.putCurrentVersion(stamp, resourceType.getSimpleName(), logicalId, resourceDTO.getVersionId(),
+                            new CachedResource(resource, resourceDTO.isDeleted()));
+                }
             }
-            resource = this.convertResourceDTO(resourceDTO, resourceType, elements);
 
             SingleResourceResult<T> result = new SingleResourceResult.Builder<T>()
                     .success(true)
@@ -751,6 +1161,10 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
                 fromDateTime = FHIRUtilities.convertToTimestamp(since.getValue());
             }
 
+            if (historyContext.isKeysetPaging()) {
+                return this.keysetHistory(historyContext, resourceType, logicalId, fromDateTime);
+            }
+
             resourceCount = this.getResourceDao().historyCount(resourceType.getSimpleName(), logicalId, fromDateTime);
             historyContext.setTotalCount(resourceCount);
 
@@ -796,6 +1210,86 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         }
     }
 
+    /**
+     * Reads a page of the history of a resource by seeking past the (lastUpdated, resourceId) key in the cursor of
+     * the history context, and records the cursor for the next page. The versions are returned oldest first, and
+     * the versions are only counted if the history context requires the total count.
+     */
+    private <T extends Resource> MultiResourceResult<T> keysetHistory(FHIRHistoryContext historyContext, Class<T> resourceType,
+            String logicalId, Timestamp fromDateTime) throws Exception {
+        MultiResourceResult.Builder<T> resultBuilder = new MultiResourceResult.Builder<>();
+        List<OperationOutcome.Issue> issues = new ArrayList<>();
+        HistoryCursor cursor = historyContext.getCursor();
+
+        if (historyContext.getPageSize() < 0) {
+            issues.add(OperationOutcome.Issue.builder()
+                .severity(historyContext.isLenient() ? IssueSeverity.WARNING : IssueSeverity.ERROR)
+                .code(IssueType.INVALID)
+                .details(CodeableConcept.builder()
+                    .text(string("Invalid page size: " + historyContext.getPageSize()))
+                    .build())
+                .build());
+            historyContext.setPageSize(10);
+        }
+        if (cursor == null && historyContext.getPageNumber() != 1) {
+            // the key of the previous page is needed to find the page, so paging has to go through the next links
+            issues.add(OperationOutcome.Issue.builder()
+                .severity(historyContext.isLenient() ? IssueSeverity.WARNING : IssueSeverity.ERROR)
+                .code(IssueType.INVALID)
+                .details(CodeableConcept.builder()
+                    .text(string("Specified page number: " + historyContext.getPageNumber()
+                        + " requires a _cursor; use the next link of the previous page"))
+                    .build())
+                .build());
+            historyContext.setPageNumber(1);
+        }
+        if (!issues.isEmpty()) {
+            resultBuilder.outcome(OperationOutcome.builder()
+                .issue(issues)
+                .build());
+            if (!historyContext.isLenient()) {
+                return resultBuilder.success(false).build();
+            }
+        }
+
+        if (historyContext.isTotalCountRequired()) {
+            historyContext.setTotalCount(this.getResourceDao().historyCount(resourceType.getSimpleName(), logicalId, fromDateTime));
+        }
+
+        int pageNumber = historyContext.getPageNumber();
+        int pageSize = historyContext.getPageSize();
+        List<T> resources = new ArrayList<>();
+        historyContext.setLastPageNumber(pageNumber);
+
+        if (pageSize > 0) {
+            Timestamp afterLastUpdated = cursor != null ? Timestamp.from(cursor.getLastUpdated()) : null;
+            long afterResourceId = cursor != null ? cursor.getResourceId() : 0;
+
+            // Read one extra version to find out whether there is a next page
+            List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList = this.getResourceDao().historyKeyset(resourceType.getSimpleName(),
+                    logicalId, fromDateTime, afterLastUpdated, afterResourceId, pageSize + 1);
+            if (resourceDTOList.size() > pageSize) {
+                resourceDTOList = resourceDTOList.subList(0, pageSize);
+                com.ibm.fhir.persistence.jdbc.dto.Resource last = resourceDTOList.get(pageSize - 1);
+                historyContext.setNextCursor(new HistoryCursor(pageNumber + 1, last.getLastUpdated().toInstant(), last.getId()));
+                historyContext.setLastPageNumber(pageNumber + 1);
+            }
+
+            Map<String,List<Integer>> deletedResourceVersions = historyContext.getDeletedResources();
+            for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : resourceDTOList) {
+                if (resourceDTO.isDeleted()) {
+                    deletedResourceVersions.computeIfAbsent(logicalId, k -> new ArrayList<>()).add(resourceDTO.getVersionId());
+                }
+            }
+            resources = this.convertResourceDTOList(resourceDTOList, resourceType);
+        }
+
+        return resultBuilder
+                .success(true)
+                .resource(resources)
+                .build();
+    }
+
     /**
      * Validate pageSize and pageNumber in the FHIRPagingContext instance and update
      * paging context parameters accordingly.
@@ -806,6 +1300,21 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
      *     a list of operation outcome issues if the paging context has invalid parameters
      */
     private List<OperationOutcome.Issue> validatePagingContext(FHIRPagingContext pagingContext) {
+        return validatePagingContext(pagingContext, true);
+    }
+
+    /**
+     * Validates the paging context parameters. When the total count is not known, the last page number can't be
+     * computed, so the page number is only checked for being at least 1.
+     *
+     * @param pagingContext
+     *     the FHIRPagingContext instance (FHIRSearchContext or FHIRHistoryContext)
+     * @param totalCountKnown
+     *     true if the total count of the paging context has been set
+     * @return
+     *     a list of operation outcome issues if the paging context has invalid parameters
+     */
+    private List<OperationOutcome.Issue> validatePagingContext(FHIRPagingContext pagingContext, boolean totalCountKnown) {
         List<OperationOutcome.Issue> issues = new ArrayList<>();
 
         int pageSize = pagingContext.getPageSize();
@@ -820,8 +1329,11 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             pagingContext.setPageSize(10);
         }
 
-        int lastPageNumber = Math.max(((pagingContext.getTotalCount() + pageSize - 1) / pageSize), 1);
-        pagingContext.setLastPageNumber(lastPageNumber);
+        int lastPageNumber = Integer.MAX_VALUE;
+        if (totalCountKnown) {
+            lastPageNumber = Math.max(((pagingContext.getTotalCount() + pageSize - 1) / pageSize), 1);
+            pagingContext.setLastPageNumber(lastPageNumber);
+        }
 
         int pageNumber = pagingContext.getPageNumber();
         if (pageNumber < 1) {
@@ -863,12 +1375,29 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
 
         try {
             version = Integer.parseInt(versionId);
-            resourceDTO = this.getResourceDao().versionRead(logicalId, resourceType.getSimpleName(), version);
-            if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
-                throw new FHIRPersistenceResourceDeletedException("Resource '" +
-                        resourceType.getSimpleName() + "/" + logicalId + "' version " + versionId + " is deleted.");
+            CachedResource cachedResource = ResourceCache.getVersion(resourceType.getSimpleName(), logicalId, version);
+            if (cachedResource != null) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.fine("Read FHIR Resource '" + resourceType.getSimpleName() + "/" + logicalId + "' version " + versionId
+                            + " from the resource cache");
+                }
+                if (cachedResource.isDeleted() && !context.includeDeleted()) {
+                    throw new FHIRPersistenceResourceDeletedException("Resource '" +
+                            resourceType.getSimpleName() + "/" + logicalId + "' version " + versionId + " is deleted.");
+                }
+                resource = resourceType.cast(cachedResource.getResource());
+            } else {
+                resourceDTO = this.getResourceDao().versionRead(logicalId, resourceType.getSimpleName(), version);
+                if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
+                    throw new FHIRPersistenceResourceDeletedException("Resource '" +
+                            resourceType.getSimpleName() + "/" + logicalId + "' version " + versionId + " is deleted.");
+                }
+                resource = this.convertResourceDTO(resourceDTO, resourceType, null);
+                if (resource != null && !isWrittenByCurrentTransaction(resourceType.getSimpleName(), logicalId)) {
+                    ResourceCache.putVersion(resourceType.getSimpleName(), logicalId, version,
+                            new CachedResource(resource, resourceDTO.isDeleted()));
+                }
             }
-            resource = this.convertResourceDTO(resourceDTO, resourceType, null);
 
             SingleResourceResult<T> result = new SingleResourceResult.Builder<T>()
                     .success(true)
@@ -893,56 +1422,158 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         }
     }
 
+    @Override
+    public ResourcePayload readPayload(FHIRPersistenceContext context, Class<? extends Resource> resourceType, String logicalId)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "readPayload";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO = this.getResourceDao().read(logicalId, resourceType.getSimpleName());
+            if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
+                throw new FHIRPersistenceResourceDeletedException("Resource '" +
+                        resourceType.getSimpleName() + "/" + logicalId + "' is deleted.");
+            }
+            return this.convertResourceDTOToPayload(resourceDTO);
+        }
+        catch(FHIRPersistenceResourceDeletedException e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a read operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    @Override
+    public ResourcePayload vreadPayload(FHIRPersistenceContext context, Class<? extends Resource> resourceType, String logicalId, String versionId)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "vreadPayload";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            int version = Integer.parseInt(versionId);
+            com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO =
+                    this.getResourceDao().versionRead(logicalId, resourceType.getSimpleName(), version);
+            if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
+                throw new FHIRPersistenceResourceDeletedException("Resource '" +
+                        resourceType.getSimpleName() + "/" + logicalId + "' version " + versionId + " is deleted.");
+            }
+            return this.convertResourceDTOToPayload(resourceDTO);
+        }
+        catch(FHIRPersistenceResourceDeletedException e) {
+            throw e;
+        }
+        catch (NumberFormatException e) {
+            throw new FHIRPersistenceException("Invalid version id specified for vread operation: " + versionId);
+        }
+        catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a version read operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    @Override
+    public ResourceMetadata readMetadata(FHIRPersistenceContext context, Class<? extends Resource> resourceType, String logicalId)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "readMetadata";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO =
+                    this.getResourceDao().readCurrentMetadata(logicalId, resourceType.getSimpleName());
+            if (resourceDTO == null) {
+                return null;
+            }
+            if (resourceDTO.isDeleted() && !context.includeDeleted()) {
+                throw new FHIRPersistenceResourceDeletedException("Resource '" +
+                        resourceType.getSimpleName() + "/" + logicalId + "' is deleted.");
+            }
+            return new ResourceMetadata(logicalId, resourceDTO.getVersionId(), resourceDTO.getLastUpdated().toInstant(),
+                    resourceDTO.isDeleted());
+        }
+        catch(FHIRPersistenceResourceDeletedException e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a read operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    @Override
+    public int export(FHIRPersistenceContext context, Class<? extends Resource> resourceType, java.time.Instant fromLastUpdated,
+            java.time.Instant toLastUpdated, java.time.Instant afterLastUpdated, long afterResourceId, int maxResults,
+            ResourcePayloadConsumer consumer) throws FHIRPersistenceException {
+        final String METHODNAME = "export";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            return this.getResourceDao().export(resourceType.getSimpleName(),
+                    fromLastUpdated == null ? null : Timestamp.from(fromLastUpdated),
+                    toLastUpdated == null ? null : Timestamp.from(toLastUpdated),
+                    afterLastUpdated == null ? null : Timestamp.from(afterLastUpdated),
+                    afterResourceId, maxResults, consumer);
+        }
+        catch(FHIRPersistenceException e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing an export operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
     /**
-     * This method takes the passed list of sorted Resource ids, acquires the Resource corresponding to each id, and returns those Resources in a List,
-     * sorted according to the input sorted ids.
-     * @param context - The FHIR persistence context for the current request.
-     * @param resourceType - The type of Resource that each id in the passed list represents.
-     * @param sortedIdList - A list of Resource ids representing the proper sort order for the list of Resources to be returned.
-     * @param elements - An optional list of element names to include in the resources. If null, filtering will be skipped.
-     * @return List<Resource> - A list of Resources of the passed resourceType, sorted according the order of ids in the passed sortedIdList.
-     * @throws FHIRPersistenceException
-     * @throws IOException
+     * Returns the Resource DTOs corresponding to the passed list of Resource IDs, in the order of the list.
+     * @param resourceType The type of resource being queried.
+     * @param sortedIdList A sorted list of Resource IDs.
+     * @return List - A list of ResourceDTOs, in the order of the passed ids
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
      */
-    protected List<Resource> buildSortedFhirResources(FHIRPersistenceContext context, Class<? extends Resource> resourceType, List<Long> sortedIdList,
-            List<String> elements) throws FHIRException, FHIRPersistenceException, IOException {
-        final String METHOD_NAME = "buildSortedFhirResources";
+    private List<com.ibm.fhir.persistence.jdbc.dto.Resource> getSortedResourceDTOs(Class<? extends Resource> resourceType,
+            List<Long> sortedIdList) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHOD_NAME = "getSortedResourceDTOs";
         log.entering(this.getClass().getName(), METHOD_NAME);
 
-        long resourceId;
-        Resource[] sortedFhirResources = new Resource[sortedIdList.size()];
-        Resource fhirResource;
-        int sortIndex;
-        List<Resource> sortedResourceList = new ArrayList<>();
-        List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList;
+        com.ibm.fhir.persistence.jdbc.dto.Resource[] sortedResourceDTOs = new com.ibm.fhir.persistence.jdbc.dto.Resource[sortedIdList.size()];
+        List<com.ibm.fhir.persistence.jdbc.dto.Resource> sortedResourceDTOList = new ArrayList<>(sortedIdList.size());
         Map<Long,Integer> idPositionMap = new HashMap<>();
 
         // This loop builds a Map where key=resourceId, and value=its proper position in the returned sorted collection.
         for(int i = 0; i < sortedIdList.size(); i++) {
-            resourceId = sortedIdList.get(i);
-            idPositionMap.put(new Long(resourceId), new Integer(i));
+            idPositionMap.put(sortedIdList.get(i), i);
         }
 
-        resourceDTOList = this.getResourceDTOs(resourceType, sortedIdList);
-
-
-        // Convert the returned JPA Resources to FHIR Resources, and store each FHIRResource in its proper position
-        // in the returned sorted resource list.
-        for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : resourceDTOList) {
-            fhirResource = this.convertResourceDTO(resourceDTO, resourceType, elements);
-            if (fhirResource != null) {
-                sortIndex = idPositionMap.get(resourceDTO.getId());
-                sortedFhirResources[sortIndex] = fhirResource;
-            }
+        // Store each Resource DTO in its proper position in the returned sorted list.
+        for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : this.getResourceDTOs(resourceType, sortedIdList)) {
+            sortedResourceDTOs[idPositionMap.get(resourceDTO.getId())] = resourceDTO;
         }
 
-        for (int i = 0; i <sortedFhirResources.length; i++) {
-            if (sortedFhirResources[i] != null) {
-                sortedResourceList.add(sortedFhirResources[i]);
+        for (int i = 0; i < sortedResourceDTOs.length; i++) {
+            if (sortedResourceDTOs[i] != null) {
+                sortedResourceDTOList.add(sortedResourceDTOs[i]);
             }
         }
         log.exiting(this.getClass().getName(), METHOD_NAME);
-        return sortedResourceList;
+        return sortedResourceDTOList;
     }
 
     /**
@@ -1000,10 +1631,128 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         diags.append(ParameterNamesCache.dumpCacheContents()).append(ParameterNamesCache.reportCacheDiscrepancies(this.parameterDao));
         diags.append(CodeSystemsCache.dumpCacheContents()).append(CodeSystemsCache.reportCacheDiscrepancies(this.parameterDao));
         diags.append(ResourceTypesCache.dumpCacheContents()).append(ResourceTypesCache.reportCacheDiscrepancies(this.resourceDao));
+        diags.append(ResourceCache.dumpCacheContents());
+        diags.append(SearchResultCache.dumpCacheContents());
 
         return diags.toString();
     }
 
+    /**
+     * Computes the fingerprint of the passed resource, to be stored with the new version, if unchanged updates are skipped.
+     * @param resource - The resource being persisted
+     * @return The salt and hash of the resource content as a String, or null if unchanged updates are not skipped
+     */
+    private String computeFingerprint(Resource resource) {
+        if (!skipUnchangedUpdates) {
+            return null;
+        }
+        ResourceFingerprintVisitor visitor = new ResourceFingerprintVisitor();
+        resource.accept(visitor);
+        return visitor.getSaltAndHash().toString();
+    }
+
+    /**
+     * Compares the fingerprint of the passed resource with the stored fingerprint of the current version of the resource,
+     * which doesn't require the current version to be read. The fingerprint ignores the id, meta.versionId and
+     * meta.lastUpdated elements.
+     * @param context - The persistence context of the update
+     * @param logicalId - The logical id of the resource
+     * @param resource - The new content of the resource
+     * @return The current version of the resource, if it is not deleted and has the same content as the passed resource,
+     *         otherwise null
+     * @throws Exception
+     */
+    private <T extends Resource> T getUnchangedCurrentVersion(FHIRPersistenceContext context, String logicalId, T resource) throws Exception {
+        @SuppressWarnings("unchecked")
+        Class<T> resourceType = (Class<T>) resource.getClass();
+        com.ibm.fhir.persistence.jdbc.dto.Resource currentResourceDTO =
+                this.getResourceDao().readCurrentFingerprint(logicalId, resourceType.getSimpleName());
+        if (currentResourceDTO == null || currentResourceDTO.isDeleted() || currentResourceDTO.getFingerprint() == null) {
+            return null;
+        }
+
+        SaltHash currentFingerprint = new SaltHash(currentResourceDTO.getFingerprint());
+        ResourceFingerprintVisitor visitor = new ResourceFingerprintVisitor(currentFingerprint);
+        resource.accept(visitor);
+        if (!currentFingerprint.equals(visitor.getSaltAndHash())) {
+            return null;
+        }
+
+        // Use the pre-fetched 'previous' resource if it is the version we compared with.
+        String currentVersion = Integer.toString(currentResourceDTO.getVersionId());
+        if (context.getPersistenceEvent() != null && context.getPersistenceEvent().isPrevFhirResourceSet()) {
+            Resource existingResource = context.getPersistenceEvent().getPrevFhirResource();
+            if (resourceType.isInstance(existingResource) && existingResource.getMeta() != null
+                    && existingResource.getMeta().getVersionId() != null
+                    && currentVersion.equals(existingResource.getMeta().getVersionId().getValue())) {
+                return resourceType.cast(existingResource);
+            }
+        }
+        currentResourceDTO = this.getResourceDao().versionRead(logicalId, resourceType.getSimpleName(), currentResourceDTO.getVersionId());
+        return (currentResourceDTO == null) ? null : this.convertResourceDTO(currentResourceDTO, resourceType, null);
+    }
+
+    /**
+     * Removes the resource which was just written from the ResourceCache, invalidates the cached search results for its
+     * type, and registers a ResourceCacheInvalidator to do both again when the current transaction completes.
+     * @param resourceDTO - The Resource DTO which was persisted
+     * @throws FHIRPersistenceException
+     */
+    private void invalidateCachedResource(com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO) throws FHIRPersistenceException {
+        // This runs whether or not the caches of the current tenant-datastore are enabled: its configuration may change
+        // while a read which started before this write is still running
+        String tenantDatastoreCacheName = ResourceCache.getCacheNameForTenantDatastore();
+        ResourceCache.invalidate(tenantDatastoreCacheName, resourceDTO.getResourceType(), resourceDTO.getLogicalId(), null);
+        SearchResultCache.invalidate(tenantDatastoreCacheName, resourceDTO.getResourceType());
+        if (this.trxSynchRegistry != null) {
+            try {
+                this.trxSynchRegistry.registerInterposedSynchronization(new ResourceCacheInvalidator(tenantDatastoreCacheName,
+                        resourceDTO.getResourceType(), resourceDTO.getLogicalId(), resourceDTO.getVersionId()));
+                getWrittenResources(true).add(resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId());
+            } catch (Throwable e) {
+                throw new FHIRPersistenceException("Failure registering ResourceCacheInvalidator", e);
+            }
+        }
+    }
+
+    /**
+     * A resource written by the current transaction must not be put in the ResourceCache until the transaction
+     * completes: other threads would read the uncommitted version from the cache, even if the transaction rolls back.
+     * @param resourceType The resource type name.
+     * @param logicalId The logical id of the resource.
+     * @return true if the resource was created, updated or deleted by the current transaction
+     */
+    private boolean isWrittenByCurrentTransaction(String resourceType, String logicalId) {
+        Set<String> writtenResources = getWrittenResources(false);
+        return writtenResources != null && writtenResources.contains(resourceType + "/" + logicalId);
+    }
+
+    /**
+     * @return true if the current transaction has created, updated or deleted any resource
+     */
+    private boolean hasCurrentTransactionWritten() {
+        Set<String> writtenResources = getWrittenResources(false);
+        return writtenResources != null && !writtenResources.isEmpty();
+    }
+
+    /**
+     * @param create true to create the set if the current transaction has not written any resources yet
+     * @return the "resourceType/logicalId" of the resources written by the current transaction, or null if there is
+     *         no current transaction, or if it has not written any resources and create is false
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> getWrittenResources(boolean create) {
+        if (this.trxSynchRegistry == null || this.trxSynchRegistry.getTransactionKey() == null) {
+            return null;
+        }
+        Set<String> writtenResources = (Set<String>) this.trxSynchRegistry.getResource(WRITTEN_RESOURCES_KEY);
+        if (writtenResources == null && create) {
+            writtenResources = ConcurrentHashMap.newKeySet();
+            this.trxSynchRegistry.putResource(WRITTEN_RESOURCES_KEY, writtenResources);
+        }
+        return writtenResources;
+    }
+
     /**
      * Looks up and returns an instance of TransactionSynchronizationRegistry, which is used in support of writing committed
      * data to JDBC PL in-memory caches.
@@ -1547,6 +2296,19 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         return resource;
     }
 
+    /**
+     * Wraps the stored data of the passed Resource DTO without parsing it.
+     * @param resourceDTO - A Resource DTO, or null
+     * @return ResourcePayload - The payload of the DTO, or null if the DTO is null
+     */
+    private ResourcePayload convertResourceDTOToPayload(com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO) {
+        if (resourceDTO == null) {
+            return null;
+        }
+        return new ResourcePayload(resourceDTO.getLogicalId(), resourceDTO.getVersionId(), resourceDTO.getLastUpdated().toInstant(),
+                resourceDTO.getId(), resourceDTO.getData());
+    }
+
     @Override
     public boolean isTransactional() {
         return true;
@@ -1562,6 +2324,31 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         return true;
     }
 
+    @Override
+    public boolean isCreateOrUpdateBatchSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isExportSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadPayloadSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadMetadataSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isSearchPayloadSupported() {
+        return true;
+    }
+
     private FHIRDbDAO getBaseDao() {
         return baseDao;
     }
@@ -51,7 +51,7 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
 
     private static final PostgreSqlTranslator translator = new PostgreSqlTranslator();
     private static final String SQL_READ_RESOURCE_TYPE = "{CALL %s.add_resource_type(?, ?)}";
-    private static final String SQL_INSERT_WITH_PARAMETERS = "{CALL %s.add_any_resource(?,?,?,?,?,?,?,?)}";
+    private static final String SQL_INSERT_WITH_PARAMETERS = "{CALL %s.add_any_resource(?,?,?,?,?,?,?,?,?)}";
 
     // DAO used to obtain sequence values from FHIR_REF_SEQUENCE
     private FhirRefSequenceDAO fhirRefSequenceDAO;
@@ -64,6 +64,19 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
         super(trxSynchRegistry);
     }
 
+    @Override
+    protected String getInsertCall(String schemaName) {
+        return String.format(SQL_INSERT_WITH_PARAMETERS, schemaName);
+    }
+
+    @Override
+    protected ParameterVisitorBatchDAO createParameterVisitor(Connection connection, String resourceType, long logicalResourceId,
+            ParameterDAO parameterDao) throws SQLException {
+        // postgresql doesn't support partitioned multi-tenancy, so we disable it on the DAO:
+        return new ParameterVisitorBatchDAO(connection, null, resourceType, false, logicalResourceId, 100,
+                new ParameterNameCacheAdapter(parameterDao), new CodeSystemCacheAdapter(parameterDao), isMultiRowParameterInserts());
+    }
+
     /**
      * Inserts the passed FHIR Resource and associated search parameters to a postgresql FHIR database.
      * @param resource The FHIR Resource to be inserted.
@@ -116,13 +129,14 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
             stmt.setString(5, resource.isDeleted() ? "Y": "N");
             stmt.setString(6, UUID.randomUUID().toString());
             stmt.setInt(7, resource.getVersionId());
-            stmt.registerOutParameter(8, Types.BIGINT);
+            stmt.setString(8, resource.getFingerprint());
+            stmt.registerOutParameter(9, Types.BIGINT);
 
             dbCallStartTime = System.nanoTime();
             stmt.execute();
             dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
 
-            resource.setId(stmt.getLong(8));
+            resource.setId(stmt.getLong(9));
 
             // Parameter time
             // To keep things simple for the postgresql use-case, we just use a visitor to
@@ -131,7 +145,7 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
             if (parameters != null) {
                 // postgresql doesn't support partitioned multi-tenancy, so we disable it on the DAO:
                 try (ParameterVisitorBatchDAO pvd = new ParameterVisitorBatchDAO(connection, null, resource.getResourceType(), false, resource.getId(), 100,
-                    new ParameterNameCacheAdapter(parameterDao), new CodeSystemCacheAdapter(parameterDao))) {
+                    new ParameterNameCacheAdapter(parameterDao), new CodeSystemCacheAdapter(parameterDao), isMultiRowParameterInserts())) {
                     for (ExtractedParameterValue p: parameters) {
                         p.accept(pvd);
                     }
@@ -191,9 +191,9 @@ public class InclusionQuerySegmentAggregator extends QuerySegmentAggregator {
 
         // Add ordering
         queryString.append(ORDERING);
-        this.addPaginationClauses(queryString);
+        this.addPaginationClauses(queryString, allBindVariables);
         queryString.append(") RESULT ");
-        this.processIncludeParameters(queryString, allBindVariables);
+        this.processIncludeParameters(queryString);
         this.processRevIncludeParameters(queryString, allBindVariables);
 
         queryString.append(COMBINED_RESULTS);
@@ -208,8 +208,7 @@ public class InclusionQuerySegmentAggregator extends QuerySegmentAggregator {
      * ({@code ('Patient/<resource_id>', 'Patient/<resource_id>' ...)}) to the
      * queryString
      */
-    private void executeIncludeSubQuery(StringBuilder queryString, InclusionParameter includeParm,
-            List<Object> bindVariables) throws Exception {
+    private void executeIncludeSubQuery(StringBuilder queryString, InclusionParameter includeParm) throws Exception {
         StringBuilder subQueryString = new StringBuilder();
         // SELECT P1.STR_VALUE FROM OBSERVATION_STR_VALUES P1 WHERE
         subQueryString.append("SELECT P1.STR_VALUE FROM ")
@@ -230,12 +229,16 @@ public class InclusionQuerySegmentAggregator extends QuerySegmentAggregator {
         buildFromClause(subQueryString, resourceType.getSimpleName());
 
         // Add WHERE clause for "root" resource type
+        List<Object> bindVariables = new ArrayList<>();
+        bindVariables.addAll(this.idsObjects);
+        bindVariables.addAll(this.lastUpdatedObjects);
+        this.addBindVariables(bindVariables);
         buildWhereClause(subQueryString, null);
 
         // ORDER BY R.LOGICAL_RESOURCE_ID ASC
         subQueryString.append(ORDERING);
         // Only include resources related to the required page of the main resources.
-        this.addPaginationClauses(subQueryString);
+        this.addPaginationClauses(subQueryString, bindVariables);
         subQueryString.append(RIGHT_PAREN);
 
         queryString.append(LEFT_PAREN);
@@ -279,7 +282,7 @@ public class InclusionQuerySegmentAggregator extends QuerySegmentAggregator {
 
     }
 
-    private void processIncludeParameters(StringBuilder queryString, List<Object> bindVariables) throws Exception {
+    private void processIncludeParameters(StringBuilder queryString) throws Exception {
         final String METHODNAME = "processIncludeParameters";
         log.entering(CLASSNAME, METHODNAME);
 
@@ -300,7 +303,7 @@ public class InclusionQuerySegmentAggregator extends QuerySegmentAggregator {
 
             // Execute sub query to get the string values for constructing the query string.
             // This avoids DB engine to run this sub query once for each record in the previously joined tables.
-            executeIncludeSubQuery(queryString, includeParm, bindVariables);
+            executeIncludeSubQuery(queryString, includeParm);
             queryString.append(RIGHT_PAREN);
         }
         log.exiting(CLASSNAME, METHODNAME);
@@ -346,7 +349,7 @@ public class InclusionQuerySegmentAggregator extends QuerySegmentAggregator {
             // ORDER BY R.LOGICAL_RESOURCE_ID ASC
             queryString.append(ORDERING);
             // Only include resources related to the required page of the main resources.
-            this.addPaginationClauses(queryString);
+            this.addPaginationClauses(queryString, bindVariables);
 
             queryString.append(RIGHT_PAREN);
         }
@@ -194,6 +194,10 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
 
         int pageSize = searchContext.getPageSize();
         int offset = (searchContext.getPageNumber() - 1) * pageSize;
+        if (!searchContext.isTotalCountKnown()) {
+            // Without a total count, one extra row tells the caller whether there is a next page
+            pageSize++;
+        }
         QuerySegmentAggregator helper;
         boolean isValidQuery = true;
 
@@ -8,6 +8,7 @@ package com.ibm.fhir.persistence.jdbc.util;
 
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants.COMBINED_RESULTS;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants.DEFAULT_ORDERING;
+import static com.ibm.fhir.persistence.jdbc.JDBCConstants.DEFAULT_ORDERING_REVERSED;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants.FROM;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants.JOIN;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants.LEFT_PAREN;
@@ -31,6 +32,7 @@ import com.ibm.fhir.persistence.jdbc.dao.api.ResourceDAO;
 import com.ibm.fhir.persistence.jdbc.util.type.LastUpdatedParmBehaviorUtil;
 import com.ibm.fhir.search.SearchConstants.Modifier;
 import com.ibm.fhir.search.SearchConstants.Type;
+import com.ibm.fhir.search.parameters.KeysetCursor;
 import com.ibm.fhir.search.parameters.QueryParameter;
 import com.ibm.fhir.search.parameters.QueryParameterValue;
 
@@ -52,6 +54,8 @@ public class QuerySegmentAggregator {
     protected static final String SYSTEM_LEVEL_SELECT_COUNT_ROOT = "SELECT SUM(CNT) ";
     protected static final String SYSTEM_LEVEL_SUBSELECT_COUNT_ROOT = " SELECT COUNT(LR.LOGICAL_RESOURCE_ID) AS CNT ";
     protected static final String WHERE_CLAUSE_ROOT = "WHERE R.IS_DELETED <> 'Y'";
+    protected static final String KEYSET_NEXT_PREDICATE = "R.RESOURCE_ID > ? ";
+    protected static final String KEYSET_PREVIOUS_PREDICATE = "R.RESOURCE_ID < ? ";
 
     // Enables the SKIP_WHERE of WHERE clauses. 
     public static final String ID = "_id";
@@ -81,6 +85,12 @@ public class QuerySegmentAggregator {
 
     private int offset;
     private int pageSize;
+
+    // used for keyset (seek) pagination in place of the offset
+    private KeysetCursor cursor = null;
+
+    // true if the last where clause built already has a WHERE keyword (from a :missing=true parameter)
+    private boolean whereKeywordAppended = false;
     protected ParameterDAO parameterDao;
     protected ResourceDAO resourceDao;
 
@@ -107,6 +117,18 @@ public class QuerySegmentAggregator {
         this.resourceTypes = resourceTypes;
     }
 
+    /**
+     * Switches this aggregator to keyset (seek) pagination. Instead of skipping over
+     * the rows of the preceding pages with an offset, the generated query seeks past
+     * the RESOURCE_ID carried by the cursor, which is consistent with the default ordering.
+     *
+     * @param cursor the cursor identifying the page to fetch
+     */
+    public void setKeysetCursor(KeysetCursor cursor) {
+        this.cursor = cursor;
+        this.offset = 0;
+    }
+
     /**
      * Adds a query segment, which is a where clause segment corresponding to the
      * passed query Parameter and its encapsulated search values.
@@ -162,9 +184,12 @@ public class QuerySegmentAggregator {
                 allBindVariables.addAll(querySegment.getBindVariables());
             }
 
+            // Add the seek predicate (if any) after the where clause segments
+            this.addKeysetPredicate(queryString, allBindVariables);
+
             // Add default ordering
-            queryString.append(DEFAULT_ORDERING);
-            this.addPaginationClauses(queryString);
+            queryString.append(this.getDefaultOrdering());
+            this.addPaginationClauses(queryString, allBindVariables);
             queryData = new SqlQueryData(queryString.toString(), allBindVariables);
         }
 
@@ -273,6 +298,11 @@ public class QuerySegmentAggregator {
                 for (SqlQueryData querySegment : this.querySegments) {
                     allBindVariables.addAll(querySegment.getBindVariables());
                 }
+
+                // The seek predicate is applied within each sub-select so that each table is range scanned
+                if (addFinalClauses) {
+                    this.addKeysetPredicate(queryString, allBindVariables);
+                }
             }
         }
 
@@ -281,8 +311,8 @@ public class QuerySegmentAggregator {
 
         // Add Ordering and Pagination
         if (addFinalClauses) {
-            queryString.append(DEFAULT_ORDERING);
-            this.addPaginationClauses(queryString);
+            queryString.append(this.getDefaultOrdering());
+            this.addPaginationClauses(queryString, allBindVariables);
         }
 
         SqlQueryData queryData = new SqlQueryData(queryString.toString(), allBindVariables);
@@ -406,6 +436,7 @@ public class QuerySegmentAggregator {
         }
 
         String whereClauseSegment;
+        whereKeywordAppended = false;
 
         for (int i = 0; i < this.querySegments.size(); i++) {
             SqlQueryData querySegment = this.querySegments.get(i);
@@ -420,6 +451,10 @@ public class QuerySegmentAggregator {
                 if (Modifier.MISSING.equals(param.getModifier())) {
                     whereClauseSegment = querySegment.getQueryString().replaceAll(PARAMETER_TABLE_ALIAS + "\\.", "");
                     whereClause.append(whereClauseSegment);
+                    if (isMissingTrue(param)) {
+                        // the segment ends with "WHERE TEMP.LOGICAL_RESOURCE_ID is NULL"
+                        whereKeywordAppended = true;
+                    }
                 } else {
                     if (!Type.COMPOSITE.equals(param.getType())) {
                         whereClauseSegment =
@@ -518,21 +553,68 @@ public class QuerySegmentAggregator {
         return Resource.class.equals(this.resourceType);
     }
 
+    /**
+     * @return true if the passed :missing parameter selects the resources which are missing the parameter, in which
+     *         case its query segment includes a WHERE clause
+     * @see JDBCQueryBuilder
+     */
+    private static boolean isMissingTrue(QueryParameter param) {
+        return param.getValues().isEmpty() || Boolean.parseBoolean(param.getValues().get(0).getValueCode());
+    }
+
+    /**
+     * Adds the keyset (seek) predicate to the passed query string buffer, when
+     * a cursor is set. Must be called right after {@link #buildWhereClause(StringBuilder, String)}.
+     *
+     * @param queryString A query string buffer.
+     * @param bindVariables The bind variables of the query
+     */
+    protected void addKeysetPredicate(StringBuilder queryString, List<Object> bindVariables) {
+        if (this.cursor != null) {
+            queryString.append(whereKeywordAppended ? JDBCConstants.AND : JDBCConstants.WHERE);
+            if (KeysetCursor.Direction.PREVIOUS.equals(this.cursor.getDirection())) {
+                queryString.append(KEYSET_PREVIOUS_PREDICATE);
+            } else {
+                queryString.append(KEYSET_NEXT_PREDICATE);
+            }
+            bindVariables.add(this.cursor.getKey());
+        }
+    }
+
+    /**
+     * A cursor seeking backwards must read the rows nearest to its key first; those
+     * rows are put back into ascending order once they have been fetched.
+     *
+     * @return the ORDER BY clause for unsorted searches
+     */
+    protected String getDefaultOrdering() {
+        if (this.cursor != null && KeysetCursor.Direction.PREVIOUS.equals(this.cursor.getDirection())) {
+            return DEFAULT_ORDERING_REVERSED;
+        }
+        return DEFAULT_ORDERING;
+    }
+
     /**
      * Adds the appropriate pagination clauses to the passed query string buffer,
      * based on the type
      * of database we're running against.
+     * The offset and page size are bind variables, so that every page of a search
+     * has the same query text and can reuse the same prepared statement and access plan.
      * 
      * @param queryString A query string buffer.
+     * @param bindVariables The bind variables of the query
      * @throws Exception
      */
-    protected void addPaginationClauses(StringBuilder queryString) throws Exception {
+    protected void addPaginationClauses(StringBuilder queryString, List<Object> bindVariables) throws Exception {
 
         if (this.parameterDao.isDb2Database()) {
-            queryString.append(" LIMIT ").append(this.pageSize).append(" OFFSET ").append(this.offset);
+            queryString.append(" LIMIT ? OFFSET ?");
+            bindVariables.add(this.pageSize);
+            bindVariables.add(this.offset);
         } else {
-            queryString.append(" OFFSET ").append(this.offset).append(" ROWS")
-                    .append(" FETCH NEXT ").append(this.pageSize).append(" ROWS ONLY");
+            queryString.append(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+            bindVariables.add(this.offset);
+            bindVariables.add(this.pageSize);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2018,2019
+ * (C) Copyright IBM Corp. 2018, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -46,9 +46,28 @@ public class QuerySegmentAggregatorFactory {
             qsa.setResourceTypes(searchContext.getSearchResourceTypes());
         }
         
+        if (isKeysetPagingApplicable(searchContext) && searchContext.getCursor() != null) {
+            qsa.setKeysetCursor(searchContext.getCursor());
+        }
+        
         log.exiting(CLASSNAME, METHODNAME);
         return qsa;
         
     }
     
+    /**
+     * Keyset pagination relies on the default ordering by RESOURCE_ID, so it is only applied
+     * to searches which are neither sorted nor return included resources; all other searches
+     * page with an offset.
+     * 
+     * @param searchContext
+     * @return true if the search should be paged using a keyset cursor
+     */
+    public static boolean isKeysetPagingApplicable(FHIRSearchContext searchContext) {
+        return searchContext.isKeysetPaging()
+                && !searchContext.hasSortParameters()
+                && !searchContext.hasIncludeParameters()
+                && !searchContext.hasRevIncludeParameters();
+    }
+    
 }
@@ -0,0 +1,256 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.core.util.BoundedCache;
+import com.ibm.fhir.model.resource.Resource;
+
+/**
+ * This class provides a static, size-bounded cache of the parsed FHIR Resources returned by read and vread.
+ * <br>
+ * Each FHIR tenant/datastore combination has its own cache, which is enabled and sized by the configuration of that
+ * tenant, so the configuration of one tenant never disables or empties the cache of another. Entries keyed by resource
+ * type, logical id and version
+ * never change once the version is committed. Entries for the current version of a resource (used by read) are removed
+ * whenever this server writes a new version of that resource; because other servers cannot invalidate them, the cache
+ * should only be enabled when this server is the only writer to the datastore.
+ * <br>
+ * Resources are immutable, so cached instances are shared between requests.
+ */
+public class ResourceCache {
+    private static final String CLASSNAME = ResourceCache.class.getName();
+    private static final Logger log = Logger.getLogger(CLASSNAME);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    // The caches of the tenant-datastores which have the cache enabled, keyed by tenant-datastore cache name
+    private static final ConcurrentHashMap<String, BoundedCache<String, CachedResource>> caches = new ConcurrentHashMap<>();
+
+    // Incremented by each invalidation; a read only caches the current version of a resource if no invalidation
+    // happened while it was reading from the database, so a concurrent write can't be masked by a stale entry.
+    private static final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * A cached resource, along with whether the version is a deleted version.
+     */
+    public static class CachedResource {
+        private final Resource resource;
+        private final boolean deleted;
+
+        public CachedResource(Resource resource, boolean deleted) {
+            this.resource = resource;
+            this.deleted = deleted;
+        }
+
+        public Resource getResource() {
+            return resource;
+        }
+
+        public boolean isDeleted() {
+            return deleted;
+        }
+    }
+
+    /**
+     * Returns a String containing a combination of the current tenantId and datastoreId.
+     * @return
+     */
+    public static String getCacheNameForTenantDatastore() {
+        return ResourceTypesCache.getCacheNameForTenantDatastore();
+    }
+
+    /**
+     * Retrieves the cached current version of the resource, for the current tenant-datastore.
+     * @param resourceType The resource type name.
+     * @param logicalId The logical id of the resource.
+     * @return The cached resource, or null if it is not cached or the cache is disabled.
+     */
+    public static CachedResource getCurrentVersion(String resourceType, String logicalId) {
+        String tenantDatastoreCacheName = getCacheNameForTenantDatastore();
+        BoundedCache<String, CachedResource> cache = caches.get(tenantDatastoreCacheName);
+        return cache != null ? cache.get(currentKey(tenantDatastoreCacheName, resourceType, logicalId)) : null;
+    }
+
+    /**
+     * Retrieves the cached version of the resource, for the current tenant-datastore.
+     * @param resourceType The resource type name.
+     * @param logicalId The logical id of the resource.
+     * @param version The version of the resource.
+     * @return The cached resource, or null if it is not cached or the cache is disabled.
+     */
+    public static CachedResource getVersion(String resourceType, String logicalId, int version) {
+        String tenantDatastoreCacheName = getCacheNameForTenantDatastore();
+        BoundedCache<String, CachedResource> cache = caches.get(tenantDatastoreCacheName);
+        return cache != null ? cache.get(versionKey(tenantDatastoreCacheName, resourceType, logicalId, version)) : null;
+    }
+
+    /**
+     * Adds the passed resource to the current tenant-datastore cache as the current version of the resource, unless the
+     * cache has been invalidated since the passed invalidation stamp was obtained.
+     * The resource is also cached under its version.
+     * @param stamp The value of {@link #getInvalidationStamp()} before the resource was read from the database.
+     * @param resourceType The resource type name.
+     * @param logicalId The logical id of the resource.
+     * @param version The version of the resource.
+     * @param cachedResource The resource to cache.
+     */
+    public static void putCurrentVersion(long stamp, String resourceType, String logicalId, int version, CachedResource cachedResource) {
+        String tenantDatastoreCacheName = getCacheNameForTenantDatastore();
+        BoundedCache<String, CachedResource> cache = caches.get(tenantDatastoreCacheName);
+        if (cache != null) {
+            cache.put(versionKey(tenantDatastoreCacheName, resourceType, logicalId, version), cachedResource);
+            if (stamp == invalidationCount.get()) {
+                cache.put(currentKey(tenantDatastoreCacheName, resourceType, logicalId), cachedResource);
+                // an invalidation may have raced with the put, in which case the entry can't be trusted
+                if (stamp != invalidationCount.get()) {
+                    cache.remove(currentKey(tenantDatastoreCacheName, resourceType, logicalId));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the passed resource version to the current tenant-datastore cache.
+     * @param resourceType The resource type name.
+     * @param logicalId The logical id of the resource.
+     * @param version The version of the resource.
+     * @param cachedResource The resource to cache.
+     */
+    public static void putVersion(String resourceType, String logicalId, int version, CachedResource cachedResource) {
+        String tenantDatastoreCacheName = getCacheNameForTenantDatastore();
+        BoundedCache<String, CachedResource> cache = caches.get(tenantDatastoreCacheName);
+        if (cache != null) {
+            cache.put(versionKey(tenantDatastoreCacheName, resourceType, logicalId, version), cachedResource);
+        }
+    }
+
+    /**
+     * @return A stamp to pass to {@link #putCurrentVersion(long, String, String, int, CachedResource)}.
+     */
+    public static long getInvalidationStamp() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * Removes the cached current version of the resource from the passed tenant-datastore cache, along with the passed
+     * version if that version was never committed. This must be called for every write, whether or not the cache is
+     * enabled, so that a read which started before the write can't cache the previous version.
+     * @param tenantDatastoreCacheName The name of the datastore-specific cache.
+     * @param resourceType The resource type name.
+     * @param logicalId The logical id of the resource.
+     * @param version The version of the resource which was written, or null to only remove the current version.
+     */
+    public static void invalidate(String tenantDatastoreCacheName, String resourceType, String logicalId, Integer version) {
+        invalidationCount.incrementAndGet();
+        BoundedCache<String, CachedResource> cache = caches.get(tenantDatastoreCacheName);
+        if (cache != null) {
+            cache.remove(currentKey(tenantDatastoreCacheName, resourceType, logicalId));
+            if (version != null) {
+                cache.remove(versionKey(tenantDatastoreCacheName, resourceType, logicalId, version));
+            }
+        }
+    }
+
+    /**
+     * @return The number of lookups which found a cached resource, over all tenant-datastores.
+     */
+    public static long getHitCount() {
+        long hitCount = 0;
+        for (BoundedCache<String, CachedResource> cache : caches.values()) {
+            hitCount += cache.getHitCount();
+        }
+        return hitCount;
+    }
+
+    /**
+     * @return The number of lookups which did not find a cached resource, over all tenant-datastores.
+     */
+    public static long getMissCount() {
+        long missCount = 0;
+        for (BoundedCache<String, CachedResource> cache : caches.values()) {
+            missCount += cache.getMissCount();
+        }
+        return missCount;
+    }
+
+    /**
+     * @return The fraction of lookups which found a cached resource, or 0 if there have been no lookups.
+     */
+    public static double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * @return A formatted summary of the caches managed by this class.
+     */
+    public static String dumpCacheContents() {
+        StringBuilder dump = new StringBuilder();
+        dump.append(CacheUtil.NEWLINE).append("ResourceCache: hitRate=").append(String.format("%.3f", getHitRate()))
+            .append(CacheUtil.NEWLINE);
+        for (Map.Entry<String, BoundedCache<String, CachedResource>> entry : caches.entrySet()) {
+            dump.append("    ").append(entry.getKey()).append(": ").append(entry.getValue()).append(CacheUtil.NEWLINE);
+        }
+        return dump.toString();
+    }
+
+    /**
+     * @return true if the cache is enabled for the current tenant-datastore
+     */
+    public static boolean isEnabled() {
+        return caches.containsKey(getCacheNameForTenantDatastore());
+    }
+
+    /**
+     * Enables or disables the cache of the current tenant-datastore, and sets its maximum number of cached resources.
+     * Changing the size empties the cache of the current tenant-datastore; the caches of the other tenant-datastores
+     * are not affected.
+     * @param enabled
+     * @param maxEntries
+     */
+    public static void configure(boolean enabled, int maxEntries) {
+        String tenantDatastoreCacheName = getCacheNameForTenantDatastore();
+        if (!enabled) {
+            caches.remove(tenantDatastoreCacheName);
+            return;
+        }
+        BoundedCache<String, CachedResource> cache = caches.get(tenantDatastoreCacheName);
+        if (cache == null || cache.getMaxEntries() != maxEntries) {
+            caches.compute(tenantDatastoreCacheName, (k, current) -> {
+                if (current != null && current.getMaxEntries() == maxEntries) {
+                    return current;
+                }
+                log.fine("configure() - Creating ResourceCache of " + maxEntries + " entries for tenantDatastore=" + k);
+                return BoundedCache.createBoundedCache(maxEntries);
+            });
+        }
+    }
+
+    /**
+     * Removes all entries from the caches of all tenant-datastores.
+     */
+    public static void clear() {
+        invalidationCount.incrementAndGet();
+        for (BoundedCache<String, CachedResource> cache : caches.values()) {
+            cache.clear();
+        }
+    }
+
+    private static String currentKey(String tenantDatastoreCacheName, String resourceType, String logicalId) {
+        return tenantDatastoreCacheName + "~" + resourceType + "/" + logicalId;
+    }
+
+    private static String versionKey(String tenantDatastoreCacheName, String resourceType, String logicalId, int version) {
+        return tenantDatastoreCacheName + "~" + resourceType + "/" + logicalId + "/_history/" + version;
+    }
+}
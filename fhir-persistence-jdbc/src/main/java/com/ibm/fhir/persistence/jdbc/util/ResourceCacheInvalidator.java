@@ -0,0 +1,51 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.util.logging.Logger;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * This synchronization removes a resource which was written by the current transaction from the ResourceCache, and
+ * invalidates the SearchResultCache entries for its type, once the transaction completes. Entries for the current version are always removed, because a read in another thread may
+ * have cached the previous version before the transaction committed. The written version is also removed if the
+ * transaction did not commit, because that version number will be reused.
+ */
+public class ResourceCacheInvalidator implements Synchronization {
+    private static final String CLASSNAME = ResourceCacheInvalidator.class.getName();
+    private static final Logger log = Logger.getLogger(CLASSNAME);
+
+    private final String tenantDatastoreCacheName;
+    private final String resourceType;
+    private final String logicalId;
+    private final int version;
+
+    public ResourceCacheInvalidator(String tenantDatastoreCacheName, String resourceType, String logicalId, int version) {
+        this.tenantDatastoreCacheName = tenantDatastoreCacheName;
+        this.resourceType = resourceType;
+        this.logicalId = logicalId;
+        this.version = version;
+    }
+
+    @Override
+    public void afterCompletion(int completionStatus) {
+        final String METHODNAME = "afterCompletion";
+        log.entering(CLASSNAME, METHODNAME);
+
+        ResourceCache.invalidate(tenantDatastoreCacheName, resourceType, logicalId,
+                completionStatus == Status.STATUS_COMMITTED ? null : version);
+        SearchResultCache.invalidate(tenantDatastoreCacheName, resourceType);
+
+        log.exiting(CLASSNAME, METHODNAME);
+    }
+
+    @Override
+    public void beforeCompletion() {
+    }
+}
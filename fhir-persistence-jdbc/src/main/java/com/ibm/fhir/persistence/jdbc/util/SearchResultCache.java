@@ -0,0 +1,347 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.core.util.BoundedCache;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.search.context.FHIRSearchContext;
+import com.ibm.fhir.search.parameters.KeysetCursor;
+import com.ibm.fhir.search.parameters.QueryParameter;
+import com.ibm.fhir.search.parameters.QueryParameterValue;
+import com.ibm.fhir.search.parameters.SortParameter;
+
+/**
+ * This class provides a static, size-bounded cache of search results, so that identical searches repeated within a
+ * short time (e.g. by dashboards polling the same query) don't rebuild and re-execute the search and count queries.
+ * <br>
+ * Each entry holds the ordered list of resource ids (one per resource version) of a page of results, along with the
+ * paging state of the search, and is keyed by the tenant/datastore, resource type and a normalized form of the search
+ * context. An entry is discarded once it is older than the configured time-to-live, or as soon as this server writes a
+ * resource of the searched type. Writes by other servers are only seen once the entry expires, so the time-to-live
+ * bounds how stale a result can be.
+ * <br>
+ * Each FHIR tenant/datastore combination has its own cache, which is enabled, sized and given its time-to-live by the
+ * configuration of that tenant, so the configuration of one tenant never disables or empties the cache of another.
+ * <br>
+ * System-level searches, searches with _include/_revinclude and chained searches depend on more than one resource type,
+ * so they are never cached.
+ */
+public class SearchResultCache {
+    private static final String CLASSNAME = SearchResultCache.class.getName();
+    private static final Logger log = Logger.getLogger(CLASSNAME);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final int DEFAULT_TTL_SECONDS = 5;
+
+    // The caches of the tenant-datastores which have the cache enabled, keyed by tenant-datastore cache name
+    private static final ConcurrentHashMap<String, TenantDatastoreCache> caches = new ConcurrentHashMap<>();
+
+    // Write counters, keyed by tenant/datastore and resource type. An entry is only valid while the counter of its
+    // type still has the value it had before the search was run.
+    private static final ConcurrentHashMap<String, AtomicLong> writeCounters = new ConcurrentHashMap<>();
+
+    /**
+     * The cache of a tenant-datastore, along with its time-to-live.
+     */
+    private static class TenantDatastoreCache {
+        private final BoundedCache<String, CachedSearchResult> cache;
+        private final long ttlNanos;
+
+        private TenantDatastoreCache(BoundedCache<String, CachedSearchResult> cache, long ttlNanos) {
+            this.cache = cache;
+            this.ttlNanos = ttlNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "ttlSeconds=" + TimeUnit.NANOSECONDS.toSeconds(ttlNanos) + ", " + cache;
+        }
+    }
+
+    /**
+     * A cached page of search results, along with the paging state computed by the search.
+     */
+    public static class CachedSearchResult {
+        private final List<Long> resourceIds;
+        private final long stamp;
+        private final long expiresAt;
+        private final int pageNumber;
+        private final int lastPageNumber;
+        private final int totalCount;
+        private final boolean totalCountKnown;
+        private final KeysetCursor nextCursor;
+        private final KeysetCursor previousCursor;
+
+        private CachedSearchResult(List<Long> resourceIds, long stamp, long ttlNanos, FHIRSearchContext searchContext) {
+            this.resourceIds = Collections.unmodifiableList(new ArrayList<>(resourceIds));
+            this.stamp = stamp;
+            this.expiresAt = System.nanoTime() + ttlNanos;
+            this.pageNumber = searchContext.getPageNumber();
+            this.lastPageNumber = searchContext.getLastPageNumber();
+            this.totalCount = searchContext.getTotalCount();
+            this.totalCountKnown = searchContext.isTotalCountKnown();
+            this.nextCursor = searchContext.getNextCursor();
+            this.previousCursor = searchContext.getPreviousCursor();
+        }
+
+        /**
+         * @return the ids of the resource versions of the page, in the order they are returned
+         */
+        public List<Long> getResourceIds() {
+            return resourceIds;
+        }
+
+        /**
+         * Sets the paging state of the passed search context to the state computed by the cached search.
+         * @param searchContext
+         */
+        public void applyTo(FHIRSearchContext searchContext) {
+            searchContext.setPageNumber(pageNumber);
+            searchContext.setLastPageNumber(lastPageNumber);
+            searchContext.setTotalCount(totalCount);
+            searchContext.setTotalCountKnown(totalCountKnown);
+            searchContext.setNextCursor(nextCursor);
+            searchContext.setPreviousCursor(previousCursor);
+        }
+    }
+
+    /**
+     * Builds the key for caching the results of the passed search.
+     * @param resourceType The type of resource being searched.
+     * @param searchContext The search context, as passed to the persistence layer.
+     * @return The key, or null if the results of the search can't be cached.
+     */
+    public static String getCacheKey(Class<? extends Resource> resourceType, FHIRSearchContext searchContext) {
+        if (Resource.class.equals(resourceType)
+                || searchContext.hasIncludeParameters()
+                || searchContext.hasRevIncludeParameters()) {
+            return null;
+        }
+
+        // The order of the search parameters doesn't change the results, so each one is serialized separately and
+        // the serializations are sorted
+        List<String> parameters = new ArrayList<>();
+        for (QueryParameter parameter : searchContext.getSearchParameters()) {
+            StringBuilder buffer = new StringBuilder();
+            for (QueryParameter p = parameter; p != null; p = p.getNextParameter()) {
+                if (p.isChained()) {
+                    return null;
+                }
+                appendParameter(buffer, p);
+                buffer.append(',');
+            }
+            parameters.add(buffer.toString());
+        }
+        Collections.sort(parameters);
+
+        StringBuilder key = new StringBuilder();
+        key.append(getCacheNameForTenantDatastore()).append('~').append(resourceType.getSimpleName()).append('?');
+        for (String parameter : parameters) {
+            key.append(parameter).append('&');
+        }
+        key.append("_sort=");
+        for (SortParameter sortParameter : searchContext.getSortParameters()) {
+            key.append(sortParameter.getDirection().value()).append(sortParameter.getCode()).append(',');
+        }
+        KeysetCursor cursor = searchContext.getCursor();
+        key.append("&_page=").append(searchContext.getPageNumber())
+           .append("&_count=").append(searchContext.getPageSize())
+           .append("&_cursor=").append(cursor == null ? "" : cursor.encode())
+           .append("&_elements=").append(searchContext.getElementsParameters())
+           .append("&_summary=").append(searchContext.getSummaryParameter())
+           .append("&_total=").append(searchContext.getTotalParameter())
+           .append("&keyset=").append(searchContext.isKeysetPaging())
+           .append("&lenient=").append(searchContext.isLenient());
+        return key.toString();
+    }
+
+    private static void appendParameter(StringBuilder buffer, QueryParameter parameter) {
+        buffer.append(parameter.getCode())
+              .append(':').append(parameter.getType())
+              .append(':').append(parameter.getModifier())
+              .append(':').append(parameter.getModifierResourceTypeName())
+              .append(':').append(parameter.isInclusionCriteria())
+              .append('=');
+        for (QueryParameterValue value : parameter.getValues()) {
+            buffer.append('[')
+                  .append(value.getPrefix()).append('|')
+                  .append(value.getValueString()).append('|')
+                  .append(value.getValueNumber()).append('|')
+                  .append(value.getValueSystem()).append('|')
+                  .append(value.getValueCode()).append('|')
+                  .append(value.getValueDateLowerBound()).append('|')
+                  .append(value.getValueDateUpperBound());
+            for (QueryParameter component : value.getComponent()) {
+                buffer.append('$');
+                appendParameter(buffer, component);
+            }
+            buffer.append(']');
+        }
+    }
+
+    /**
+     * Retrieves the cached results of a search, for the current tenant-datastore.
+     * @param resourceType The resource type name.
+     * @param key The key returned by {@link #getCacheKey(Class, FHIRSearchContext)}.
+     * @return The cached results, or null if they are not cached, have expired, or the cache is disabled.
+     */
+    public static CachedSearchResult get(String resourceType, String key) {
+        String tenantDatastoreCacheName = getCacheNameForTenantDatastore();
+        TenantDatastoreCache tenantDatastoreCache = caches.get(tenantDatastoreCacheName);
+        if (tenantDatastoreCache == null) {
+            return null;
+        }
+        CachedSearchResult result = tenantDatastoreCache.cache.get(key);
+        if (result != null
+                && (result.stamp != getWriteCounter(tenantDatastoreCacheName, resourceType).get()
+                        || System.nanoTime() - result.expiresAt > 0)) {
+            tenantDatastoreCache.cache.remove(key);
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the results of a search to the current tenant-datastore cache, unless a resource of the searched type has
+     * been written since the passed stamp was obtained.
+     * @param stamp The value of {@link #getInvalidationStamp(String)} before the search was run.
+     * @param resourceType The resource type name.
+     * @param key The key returned by {@link #getCacheKey(Class, FHIRSearchContext)}.
+     * @param resourceIds The ids of the resource versions of the page, in order.
+     * @param searchContext The search context, after the search was run.
+     */
+    public static void put(long stamp, String resourceType, String key, List<Long> resourceIds, FHIRSearchContext searchContext) {
+        String tenantDatastoreCacheName = getCacheNameForTenantDatastore();
+        TenantDatastoreCache tenantDatastoreCache = caches.get(tenantDatastoreCacheName);
+        if (tenantDatastoreCache != null) {
+            AtomicLong counter = getWriteCounter(tenantDatastoreCacheName, resourceType);
+            if (stamp == counter.get()) {
+                tenantDatastoreCache.cache.put(key,
+                        new CachedSearchResult(resourceIds, stamp, tenantDatastoreCache.ttlNanos, searchContext));
+            }
+        }
+    }
+
+    /**
+     * @param resourceType The resource type name.
+     * @return A stamp to pass to {@link #put(long, String, String, List, FHIRSearchContext)}.
+     */
+    public static long getInvalidationStamp(String resourceType) {
+        return getWriteCounter(getCacheNameForTenantDatastore(), resourceType).get();
+    }
+
+    /**
+     * Invalidates the cached results of all searches for the passed resource type in the passed tenant-datastore.
+     * This must be called for every write, whether or not the cache is enabled, so that a search which started before
+     * the write can't cache its results.
+     * @param tenantDatastoreCacheName The name of the datastore-specific cache.
+     * @param resourceType The resource type name.
+     */
+    public static void invalidate(String tenantDatastoreCacheName, String resourceType) {
+        getWriteCounter(tenantDatastoreCacheName, resourceType).incrementAndGet();
+    }
+
+    private static AtomicLong getWriteCounter(String tenantDatastoreCacheName, String resourceType) {
+        return writeCounters.computeIfAbsent(tenantDatastoreCacheName + "~" + resourceType, k -> new AtomicLong());
+    }
+
+    /**
+     * Returns a String containing a combination of the current tenantId and datastoreId.
+     * @return
+     */
+    public static String getCacheNameForTenantDatastore() {
+        return ResourceTypesCache.getCacheNameForTenantDatastore();
+    }
+
+    /**
+     * @return The number of lookups which found cached results, over all tenant-datastores.
+     */
+    public static long getHitCount() {
+        long hitCount = 0;
+        for (TenantDatastoreCache tenantDatastoreCache : caches.values()) {
+            hitCount += tenantDatastoreCache.cache.getHitCount();
+        }
+        return hitCount;
+    }
+
+    /**
+     * @return The number of lookups which did not find cached results, over all tenant-datastores.
+     */
+    public static long getMissCount() {
+        long missCount = 0;
+        for (TenantDatastoreCache tenantDatastoreCache : caches.values()) {
+            missCount += tenantDatastoreCache.cache.getMissCount();
+        }
+        return missCount;
+    }
+
+    /**
+     * @return A formatted summary of the caches managed by this class.
+     */
+    public static String dumpCacheContents() {
+        StringBuilder dump = new StringBuilder();
+        dump.append(CacheUtil.NEWLINE).append("SearchResultCache:").append(CacheUtil.NEWLINE);
+        for (Map.Entry<String, TenantDatastoreCache> entry : caches.entrySet()) {
+            dump.append("    ").append(entry.getKey()).append(": ").append(entry.getValue()).append(CacheUtil.NEWLINE);
+        }
+        return dump.toString();
+    }
+
+    /**
+     * @return true if the cache is enabled for the current tenant-datastore
+     */
+    public static boolean isEnabled() {
+        return caches.containsKey(getCacheNameForTenantDatastore());
+    }
+
+    /**
+     * Enables or disables the cache of the current tenant-datastore, and sets its maximum number of cached search
+     * results and how long they stay cached. Changing the size empties the cache of the current tenant-datastore, and
+     * entries already cached keep their original expiry time; the caches of the other tenant-datastores are not
+     * affected.
+     * @param enabled
+     * @param maxEntries
+     * @param ttlSeconds
+     */
+    public static void configure(boolean enabled, int maxEntries, int ttlSeconds) {
+        String tenantDatastoreCacheName = getCacheNameForTenantDatastore();
+        if (!enabled) {
+            caches.remove(tenantDatastoreCacheName);
+            return;
+        }
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        TenantDatastoreCache tenantDatastoreCache = caches.get(tenantDatastoreCacheName);
+        if (tenantDatastoreCache == null || tenantDatastoreCache.cache.getMaxEntries() != maxEntries
+                || tenantDatastoreCache.ttlNanos != ttlNanos) {
+            caches.compute(tenantDatastoreCacheName, (k, current) -> {
+                if (current != null && current.cache.getMaxEntries() == maxEntries) {
+                    return current.ttlNanos == ttlNanos ? current : new TenantDatastoreCache(current.cache, ttlNanos);
+                }
+                log.fine("configure() - Creating SearchResultCache of " + maxEntries + " entries for tenantDatastore=" + k);
+                return new TenantDatastoreCache(BoundedCache.createBoundedCache(maxEntries), ttlNanos);
+            });
+        }
+    }
+
+    /**
+     * Removes all entries from the caches of all tenant-datastores.
+     */
+    public static void clear() {
+        for (TenantDatastoreCache tenantDatastoreCache : caches.values()) {
+            tenantDatastoreCache.cache.clear();
+        }
+    }
+}
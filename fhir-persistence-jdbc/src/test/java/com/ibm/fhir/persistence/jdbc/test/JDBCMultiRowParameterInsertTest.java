@@ -0,0 +1,161 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Location;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.RiskAssessment;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.model.type.Identifier;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.SingleResourceResult;
+import com.ibm.fhir.persistence.jdbc.impl.FHIRPersistenceJDBCImpl;
+import com.ibm.fhir.persistence.jdbc.test.util.DerbyInitializer;
+import com.ibm.fhir.persistence.test.common.AbstractPersistenceTest;
+
+/**
+ * Tests that search parameter values written using multi-row inserts can be searched.
+ */
+public class JDBCMultiRowParameterInsertTest extends AbstractPersistenceTest {
+    private static final String IDENTIFIER_SYSTEM = "http://example.com/multirow";
+
+    // more than the 100 rows written by one statement, so we get full and partial statements
+    private static final int IDENTIFIER_COUNT = 250;
+
+    // other tests may have stored matching resources, so look at enough of the results to find ours
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private Properties testProps;
+    private Patient patient;
+    private Observation observation;
+    private RiskAssessment riskAssessment;
+    private Location location;
+    private List<Resource> batchResources = new ArrayList<>();
+
+    public JDBCMultiRowParameterInsertTest() throws Exception {
+        this.testProps = TestUtil.readTestProperties("test.jdbc.properties");
+        this.testProps.setProperty("multiRowParameterInserts", "true");
+    }
+
+    @Override
+    public void bootstrapDatabase() throws Exception {
+        DerbyInitializer derbyInit;
+        String dbDriverName = this.testProps.getProperty("dbDriverName");
+        if (dbDriverName != null && dbDriverName.contains("derby")) {
+            derbyInit = new DerbyInitializer(this.testProps);
+            derbyInit.bootstrapDb(false);
+        }
+    }
+
+    @Override
+    public FHIRPersistence getPersistenceImpl() throws Exception {
+        return new FHIRPersistenceJDBCImpl(this.testProps);
+    }
+
+    @BeforeClass
+    public void createResources() throws Exception {
+        Patient patient = TestUtil.readExampleResource("json/spec/patient-example.json");
+        Patient.Builder builder = patient.toBuilder();
+        for (int i = 0; i < IDENTIFIER_COUNT; i++) {
+            builder.identifier(Identifier.builder()
+                    .system(Uri.of(IDENTIFIER_SYSTEM))
+                    .value(com.ibm.fhir.model.type.String.of("value-" + i))
+                    .build());
+        }
+        this.patient = persistence.create(getDefaultPersistenceContext(), builder.build()).getResource();
+
+        Observation observation = TestUtil.readExampleResource("json/spec/observation-example.json");
+        this.observation = persistence.create(getDefaultPersistenceContext(), observation).getResource();
+
+        RiskAssessment riskAssessment = TestUtil.readExampleResource("json/spec/riskassessment-example-cardiac.json");
+        this.riskAssessment = persistence.create(getDefaultPersistenceContext(), riskAssessment).getResource();
+
+        Location location = TestUtil.readExampleResource("json/spec/location-example.json");
+        this.location = persistence.create(getDefaultPersistenceContext(), location).getResource();
+
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            resources.add(patient.toBuilder()
+                    .id(UUID.randomUUID().toString())
+                    .identifier(Identifier.builder()
+                        .system(Uri.of(IDENTIFIER_SYSTEM))
+                        .value(com.ibm.fhir.model.type.String.of("batch-" + i))
+                        .build())
+                    .build());
+        }
+        for (SingleResourceResult<Resource> result : persistence.createOrUpdateBatch(getDefaultPersistenceContext(), resources)) {
+            batchResources.add(result.getResource());
+        }
+    }
+
+    @Test
+    public void testStringAndDateParameters() throws Exception {
+        assertTrue(containsResource(runQueryTest(Patient.class, "family", "Chalmers", MAX_PAGE_SIZE), patient));
+        assertTrue(containsResource(runQueryTest(Patient.class, "birthdate", "1974-12-25", MAX_PAGE_SIZE), patient));
+        assertFalse(containsResource(runQueryTest(Patient.class, "birthdate", "1975-12-25", MAX_PAGE_SIZE), patient));
+    }
+
+    @Test
+    public void testTokenParameters() throws Exception {
+        assertTrue(containsResource(runQueryTest(Patient.class, "gender", "male", MAX_PAGE_SIZE), patient));
+        assertTrue(containsResource(runQueryTest(Patient.class, "identifier", IDENTIFIER_SYSTEM + "|value-0", MAX_PAGE_SIZE), patient));
+        assertTrue(containsResource(runQueryTest(Patient.class, "identifier", IDENTIFIER_SYSTEM + "|value-149", MAX_PAGE_SIZE), patient));
+        assertTrue(containsResource(runQueryTest(Patient.class, "identifier", IDENTIFIER_SYSTEM + "|value-" + (IDENTIFIER_COUNT - 1), MAX_PAGE_SIZE), patient));
+        assertFalse(containsResource(runQueryTest(Patient.class, "identifier", IDENTIFIER_SYSTEM + "|value-" + IDENTIFIER_COUNT, MAX_PAGE_SIZE), patient));
+    }
+
+    @Test
+    public void testQuantityParameters() throws Exception {
+        assertTrue(containsResource(runQueryTest(Observation.class, "value-quantity", "185|http://unitsofmeasure.org|[lb_av]", MAX_PAGE_SIZE), observation));
+        assertFalse(containsResource(runQueryTest(Observation.class, "value-quantity", "186|http://unitsofmeasure.org|[lb_av]", MAX_PAGE_SIZE), observation));
+    }
+
+    @Test
+    public void testNumberParameters() throws Exception {
+        assertTrue(containsResource(runQueryTest(RiskAssessment.class, "probability", "0.02", MAX_PAGE_SIZE), riskAssessment));
+        assertFalse(containsResource(runQueryTest(RiskAssessment.class, "probability", "0.5", MAX_PAGE_SIZE), riskAssessment));
+    }
+
+    @Test
+    public void testLocationParameters() throws Exception {
+        assertTrue(containsResource(runQueryTest(Location.class, "near", "42.25475478|-83.6945691|1|km", MAX_PAGE_SIZE), location));
+    }
+
+    @Test
+    public void testBatchParameters() throws Exception {
+        assertEquals(batchResources.size(), 3);
+        for (int i = 0; i < batchResources.size(); i++) {
+            List<Resource> results = runQueryTest(Patient.class, "identifier", IDENTIFIER_SYSTEM + "|batch-" + i);
+            assertEquals(results.size(), 1);
+            assertEquals(results.get(0).getId(), batchResources.get(i).getId());
+        }
+    }
+
+    private boolean containsResource(List<Resource> resources, Resource resource) {
+        for (Resource r : resources) {
+            if (r.getId().equals(resource.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
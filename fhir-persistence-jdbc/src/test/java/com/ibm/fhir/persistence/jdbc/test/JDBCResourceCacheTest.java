@@ -0,0 +1,168 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Properties;
+
+import javax.transaction.Status;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.model.resource.Device;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceDeletedException;
+import com.ibm.fhir.persistence.jdbc.impl.FHIRPersistenceJDBCImpl;
+import com.ibm.fhir.persistence.jdbc.test.util.DerbyInitializer;
+import com.ibm.fhir.persistence.jdbc.test.util.TestTransactionSynchronizationRegistry;
+import com.ibm.fhir.persistence.jdbc.util.ResourceCache;
+import com.ibm.fhir.persistence.test.common.AbstractPersistenceTest;
+
+/**
+ * Tests the read/vread resource cache of the JDBC persistence layer.
+ */
+public class JDBCResourceCacheTest extends AbstractPersistenceTest {
+
+    private Properties testProps;
+    private String deviceId;
+
+    public JDBCResourceCacheTest() throws Exception {
+        this.testProps = TestUtil.readTestProperties("test.jdbc.properties");
+    }
+
+    @Override
+    public void bootstrapDatabase() throws Exception {
+        DerbyInitializer derbyInit;
+        String dbDriverName = this.testProps.getProperty("dbDriverName");
+        if (dbDriverName != null && dbDriverName.contains("derby")) {
+            derbyInit = new DerbyInitializer(this.testProps);
+            derbyInit.bootstrapDb(false);
+        }
+    }
+
+    @Override
+    public FHIRPersistence getPersistenceImpl() throws Exception {
+        return new FHIRPersistenceJDBCImpl(this.testProps);
+    }
+
+    @BeforeClass
+    public void createResources() throws Exception {
+        ResourceCache.clear();
+        ResourceCache.configure(true, ResourceCache.DEFAULT_MAX_ENTRIES);
+
+        Device device = TestUtil.readExampleResource("json/ibm/minimal/Device-1.json");
+        this.deviceId = persistence.create(getDefaultPersistenceContext(), device).getResource().getId();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void disableCache() {
+        ResourceCache.configure(false, ResourceCache.DEFAULT_MAX_ENTRIES);
+        ResourceCache.clear();
+    }
+
+    @Test
+    public void testReadIsCached() throws Exception {
+        Device device1 = persistence.read(getDefaultPersistenceContext(), Device.class, deviceId).getResource();
+        assertNotNull(device1);
+
+        long hits = ResourceCache.getHitCount();
+        Device device2 = persistence.read(getDefaultPersistenceContext(), Device.class, deviceId).getResource();
+        assertSame(device2, device1);
+        assertEquals(ResourceCache.getHitCount(), hits + 1);
+    }
+
+    @Test(dependsOnMethods = { "testReadIsCached" })
+    public void testUpdateInvalidatesRead() throws Exception {
+        Device device = persistence.read(getDefaultPersistenceContext(), Device.class, deviceId).getResource();
+        device = device.toBuilder().language(Code.of("en-US")).build();
+        persistence.update(getDefaultPersistenceContext(), deviceId, device);
+
+        Device updated = persistence.read(getDefaultPersistenceContext(), Device.class, deviceId).getResource();
+        assertEquals(updated.getMeta().getVersionId().getValue(), "2");
+        assertEquals(updated.getLanguage().getValue(), "en-US");
+    }
+
+    @Test(dependsOnMethods = { "testUpdateInvalidatesRead" })
+    public void testVreadIsCached() throws Exception {
+        Device version1 = persistence.vread(getDefaultPersistenceContext(), Device.class, deviceId, "1").getResource();
+        assertEquals(version1.getMeta().getVersionId().getValue(), "1");
+
+        long hits = ResourceCache.getHitCount();
+        assertSame(persistence.vread(getDefaultPersistenceContext(), Device.class, deviceId, "1").getResource(), version1);
+        assertEquals(ResourceCache.getHitCount(), hits + 1);
+    }
+
+    @Test
+    public void testUncommittedWriteIsNotCached() throws Exception {
+        Device device = TestUtil.readExampleResource("json/ibm/minimal/Device-1.json");
+        String id = persistence.create(getDefaultPersistenceContext(), device).getResource().getId();
+
+        TestTransactionSynchronizationRegistry registry = new TestTransactionSynchronizationRegistry();
+        TestTransactionSynchronizationRegistry.setTrxSynchRegistry(persistence, registry);
+        try {
+            registry.begin();
+            device = persistence.read(getDefaultPersistenceContext(), Device.class, id).getResource();
+            persistence.update(getDefaultPersistenceContext(), id, device.toBuilder().language(Code.of("en-US")).build());
+
+            // reads within the transaction see the new version, but don't cache it
+            Device updated = persistence.read(getDefaultPersistenceContext(), Device.class, id).getResource();
+            assertEquals(updated.getMeta().getVersionId().getValue(), "2");
+            persistence.vread(getDefaultPersistenceContext(), Device.class, id, "2");
+            assertNull(ResourceCache.getCurrentVersion("Device", id));
+            assertNull(ResourceCache.getVersion("Device", id, 2));
+
+            registry.complete(Status.STATUS_COMMITTED);
+        } finally {
+            TestTransactionSynchronizationRegistry.setTrxSynchRegistry(persistence, null);
+        }
+
+        // once the transaction has completed, the new version is cached again
+        persistence.read(getDefaultPersistenceContext(), Device.class, id);
+        assertEquals(ResourceCache.getCurrentVersion("Device", id).getResource().getMeta().getVersionId().getValue(), "2");
+    }
+
+    @Test
+    public void testOtherTenantConfiguration() throws Exception {
+        Device device = TestUtil.readExampleResource("json/ibm/minimal/Device-1.json");
+        String id = persistence.create(getDefaultPersistenceContext(), device).getResource().getId();
+        device = persistence.read(getDefaultPersistenceContext(), Device.class, id).getResource();
+
+        // configuring the cache of another tenant neither empties nor disables the cache of this one
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+        try {
+            FHIRRequestContext.set(new FHIRRequestContext("other"));
+            ResourceCache.configure(true, 10);
+            ResourceCache.configure(false, 10);
+            assertNull(ResourceCache.getCurrentVersion("Device", id));
+        } finally {
+            FHIRRequestContext.set(requestContext);
+        }
+        assertTrue(ResourceCache.isEnabled());
+        assertSame(ResourceCache.getCurrentVersion("Device", id).getResource(), device);
+
+        // so a write in this tenant still invalidates its cached resource
+        persistence.update(getDefaultPersistenceContext(), id, device.toBuilder().language(Code.of("en-US")).build());
+        Device updated = persistence.read(getDefaultPersistenceContext(), Device.class, id).getResource();
+        assertEquals(updated.getMeta().getVersionId().getValue(), "2");
+    }
+
+    @Test(dependsOnMethods = { "testVreadIsCached" }, expectedExceptions = FHIRPersistenceResourceDeletedException.class)
+    public void testDeleteInvalidatesRead() throws Exception {
+        persistence.delete(getDefaultPersistenceContext(), Device.class, deviceId);
+        persistence.read(getDefaultPersistenceContext(), Device.class, deviceId);
+    }
+}
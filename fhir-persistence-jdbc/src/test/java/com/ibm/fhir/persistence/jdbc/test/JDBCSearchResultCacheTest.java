@@ -0,0 +1,176 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import javax.transaction.Status;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.model.type.HumanName;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.jdbc.impl.FHIRPersistenceJDBCImpl;
+import com.ibm.fhir.persistence.jdbc.test.util.DerbyInitializer;
+import com.ibm.fhir.persistence.jdbc.test.util.TestTransactionSynchronizationRegistry;
+import com.ibm.fhir.persistence.jdbc.util.SearchResultCache;
+import com.ibm.fhir.persistence.test.common.AbstractPersistenceTest;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * Tests the search result cache of the JDBC persistence layer.
+ */
+public class JDBCSearchResultCacheTest extends AbstractPersistenceTest {
+
+    private Properties testProps;
+    private Patient template;
+    private String family;
+
+    public JDBCSearchResultCacheTest() throws Exception {
+        this.testProps = TestUtil.readTestProperties("test.jdbc.properties");
+    }
+
+    @Override
+    public void bootstrapDatabase() throws Exception {
+        DerbyInitializer derbyInit;
+        String dbDriverName = this.testProps.getProperty("dbDriverName");
+        if (dbDriverName != null && dbDriverName.contains("derby")) {
+            derbyInit = new DerbyInitializer(this.testProps);
+            derbyInit.bootstrapDb(false);
+        }
+    }
+
+    @Override
+    public FHIRPersistence getPersistenceImpl() throws Exception {
+        return new FHIRPersistenceJDBCImpl(this.testProps);
+    }
+
+    @BeforeClass
+    public void createResources() throws Exception {
+        SearchResultCache.clear();
+        SearchResultCache.configure(true, SearchResultCache.DEFAULT_MAX_ENTRIES, SearchResultCache.DEFAULT_TTL_SECONDS);
+
+        // a family name no other test uses, so we know exactly which patients match
+        this.family = "Cache" + UUID.randomUUID().toString().replace("-", "");
+        Patient patient = TestUtil.readExampleResource("json/ibm/minimal/Patient-1.json");
+        this.template = patient.toBuilder()
+                .name(HumanName.builder().family(com.ibm.fhir.model.type.String.of(family)).build())
+                .build();
+        persistence.create(getDefaultPersistenceContext(), template);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void disableCache() {
+        SearchResultCache.configure(false, SearchResultCache.DEFAULT_MAX_ENTRIES, SearchResultCache.DEFAULT_TTL_SECONDS);
+        SearchResultCache.clear();
+    }
+
+    @Test
+    public void testSearchIsCached() throws Exception {
+        List<Resource> results1 = runQueryTest(Patient.class, "family", family);
+        assertEquals(results1.size(), 1);
+
+        long hits = SearchResultCache.getHitCount();
+        List<Resource> results2 = runQueryTest(Patient.class, "family", family);
+        assertEquals(SearchResultCache.getHitCount(), hits + 1);
+        assertEquals(results2.size(), 1);
+        assertEquals(results2.get(0).getId(), results1.get(0).getId());
+    }
+
+    @Test(dependsOnMethods = { "testSearchIsCached" })
+    public void testCreateInvalidatesSearch() throws Exception {
+        persistence.create(getDefaultPersistenceContext(), template);
+
+        List<Resource> results = runQueryTest(Patient.class, "family", family);
+        assertEquals(results.size(), 2);
+    }
+
+    @Test(dependsOnMethods = { "testCreateInvalidatesSearch" })
+    public void testPagesAreCachedSeparately() throws Exception {
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        queryParameters.put("family", Collections.singletonList(family));
+        queryParameters.put("_page", Collections.singletonList("2"));
+        List<Resource> page2 = runQueryTest(Patient.class, queryParameters, 1);
+        assertEquals(page2.size(), 1);
+
+        queryParameters.put("_page", Collections.singletonList("1"));
+        List<Resource> page1 = runQueryTest(Patient.class, queryParameters, 1);
+        assertEquals(page1.size(), 1);
+        assertNotEquals(page1.get(0).getId(), page2.get(0).getId());
+    }
+
+    @Test(dependsOnMethods = { "testPagesAreCachedSeparately" })
+    public void testSearchAfterUncommittedWriteIsNotCached() throws Exception {
+        TestTransactionSynchronizationRegistry registry = new TestTransactionSynchronizationRegistry();
+        TestTransactionSynchronizationRegistry.setTrxSynchRegistry(persistence, registry);
+        try {
+            registry.begin();
+            persistence.create(getDefaultPersistenceContext(), template);
+
+            // searches within the transaction see the new patient, but don't use or fill the cache
+            long hits = SearchResultCache.getHitCount();
+            assertEquals(runQueryTest(Patient.class, "family", family).size(), 3);
+            assertEquals(runQueryTest(Patient.class, "family", family).size(), 3);
+            assertEquals(SearchResultCache.getHitCount(), hits);
+
+            registry.complete(Status.STATUS_COMMITTED);
+        } finally {
+            TestTransactionSynchronizationRegistry.setTrxSynchRegistry(persistence, null);
+        }
+
+        runQueryTest(Patient.class, "family", family);
+        long hits = SearchResultCache.getHitCount();
+        assertEquals(runQueryTest(Patient.class, "family", family).size(), 3);
+        assertEquals(SearchResultCache.getHitCount(), hits + 1);
+    }
+
+    @Test(dependsOnMethods = { "testSearchAfterUncommittedWriteIsNotCached" })
+    public void testOtherTenantConfiguration() throws Exception {
+        runQueryTest(Patient.class, "family", family);
+
+        // configuring the cache of another tenant neither empties nor disables the cache of this one
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+        try {
+            FHIRRequestContext.set(new FHIRRequestContext("other"));
+            SearchResultCache.configure(true, 10, 1);
+            SearchResultCache.configure(false, 10, 1);
+        } finally {
+            FHIRRequestContext.set(requestContext);
+        }
+        long hits = SearchResultCache.getHitCount();
+        assertEquals(runQueryTest(Patient.class, "family", family).size(), 3);
+        assertEquals(SearchResultCache.getHitCount(), hits + 1);
+
+        // so a write in this tenant still invalidates its cached results
+        persistence.create(getDefaultPersistenceContext(), template);
+        assertEquals(runQueryTest(Patient.class, "family", family).size(), 4);
+    }
+
+    @Test
+    public void testChainedSearchIsNotCached() throws Exception {
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        queryParameters.put("subject:Patient.family", Collections.singletonList(family));
+        assertNull(SearchResultCache.getCacheKey(Observation.class,
+            SearchUtil.parseQueryParameters(Observation.class, queryParameters)));
+    }
+}
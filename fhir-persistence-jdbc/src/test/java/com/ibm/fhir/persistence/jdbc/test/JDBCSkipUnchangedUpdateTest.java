@@ -0,0 +1,111 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.Properties;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Device;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.model.type.Identifier;
+import com.ibm.fhir.model.type.code.IssueSeverity;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.SingleResourceResult;
+import com.ibm.fhir.persistence.jdbc.impl.FHIRPersistenceJDBCImpl;
+import com.ibm.fhir.persistence.jdbc.test.util.DerbyInitializer;
+import com.ibm.fhir.persistence.test.common.AbstractPersistenceTest;
+
+/**
+ * Tests that the JDBC persistence layer skips updates which don't change the resource, when configured to.
+ */
+public class JDBCSkipUnchangedUpdateTest extends AbstractPersistenceTest {
+
+    private Properties testProps;
+    private Device device;
+
+    public JDBCSkipUnchangedUpdateTest() throws Exception {
+        this.testProps = TestUtil.readTestProperties("test.jdbc.properties");
+        this.testProps.setProperty("skipUnchangedUpdates", "true");
+    }
+
+    @Override
+    public void bootstrapDatabase() throws Exception {
+        DerbyInitializer derbyInit;
+        String dbDriverName = this.testProps.getProperty("dbDriverName");
+        if (dbDriverName != null && dbDriverName.contains("derby")) {
+            derbyInit = new DerbyInitializer(this.testProps);
+            derbyInit.bootstrapDb(false);
+        }
+    }
+
+    @Override
+    public FHIRPersistence getPersistenceImpl() throws Exception {
+        return new FHIRPersistenceJDBCImpl(this.testProps);
+    }
+
+    @BeforeClass
+    public void createResources() throws Exception {
+        Device device = TestUtil.readExampleResource("json/ibm/minimal/Device-1.json");
+        this.device = persistence.create(getDefaultPersistenceContext(), device).getResource();
+    }
+
+    @Test
+    public void testUnchangedUpdateIsSkipped() throws Exception {
+        SingleResourceResult<Device> result = persistence.update(getDefaultPersistenceContext(), device.getId(), device);
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), "1");
+        assertEquals(result.getResource().getMeta().getLastUpdated(), device.getMeta().getLastUpdated());
+        assertNotNull(result.getOutcome());
+        assertEquals(result.getOutcome().getIssue().get(0).getSeverity(), IssueSeverity.INFORMATION);
+
+        // versionId and lastUpdated are ignored
+        Device withoutVersion = device.toBuilder()
+                .meta(device.getMeta().toBuilder().versionId(null).lastUpdated(null).build())
+                .build();
+        result = persistence.update(getDefaultPersistenceContext(), device.getId(), withoutVersion);
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), "1");
+        Device current = persistence.read(getDefaultPersistenceContext(), Device.class, device.getId()).getResource();
+        assertEquals(current.getMeta().getVersionId().getValue(), "1");
+    }
+
+    @Test(dependsOnMethods = { "testUnchangedUpdateIsSkipped" })
+    public void testChangedUpdateIsStored() throws Exception {
+        Device changed = device.toBuilder().language(Code.of("en-US")).build();
+        SingleResourceResult<Device> result = persistence.update(getDefaultPersistenceContext(), device.getId(), changed);
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), "2");
+        assertNull(result.getOutcome());
+
+        result = persistence.update(getDefaultPersistenceContext(), device.getId(), changed);
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), "2");
+        assertEquals(result.getResource().getLanguage().getValue(), "en-US");
+    }
+
+    @Test(dependsOnMethods = { "testChangedUpdateIsStored" })
+    public void testChangedIdentifierIsStored() throws Exception {
+        // Device.identifier must not be mistaken for the (ignored) Device.id
+        Device current = persistence.read(getDefaultPersistenceContext(), Device.class, device.getId()).getResource();
+        Device changed = current.toBuilder()
+                .identifier(Identifier.builder().value(com.ibm.fhir.model.type.String.of("abc")).build())
+                .build();
+        SingleResourceResult<Device> result = persistence.update(getDefaultPersistenceContext(), device.getId(), changed);
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), "3");
+    }
+
+    @Test(dependsOnMethods = { "testChangedIdentifierIsStored" })
+    public void testUpdateOfDeletedResourceIsStored() throws Exception {
+        Device current = persistence.read(getDefaultPersistenceContext(), Device.class, device.getId()).getResource();
+        persistence.delete(getDefaultPersistenceContext(), Device.class, device.getId());
+        SingleResourceResult<Device> result = persistence.update(getDefaultPersistenceContext(), device.getId(), current);
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), "5");
+    }
+}
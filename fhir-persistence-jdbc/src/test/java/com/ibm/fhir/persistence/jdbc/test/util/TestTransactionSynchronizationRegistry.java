@@ -0,0 +1,106 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.jdbc.impl.FHIRPersistenceJDBCImpl;
+
+/**
+ * A TransactionSynchronizationRegistry for a single, explicitly completed transaction, used to test the behavior of
+ * the JDBC persistence layer inside a JTA transaction outside of a web container.
+ */
+public class TestTransactionSynchronizationRegistry implements TransactionSynchronizationRegistry {
+    private Object transactionKey = null;
+    private final Map<Object, Object> resources = new HashMap<>();
+    private final List<Synchronization> synchronizations = new ArrayList<>();
+
+    /**
+     * Sets the TransactionSynchronizationRegistry used by the passed JDBC persistence implementation, which otherwise
+     * only gets one from JNDI when it runs in a web container.
+     * @param persistence a FHIRPersistenceJDBCImpl
+     * @param registry the registry to use, or null for none
+     */
+    public static void setTrxSynchRegistry(FHIRPersistence persistence, TransactionSynchronizationRegistry registry) throws Exception {
+        Field field = FHIRPersistenceJDBCImpl.class.getDeclaredField("trxSynchRegistry");
+        field.setAccessible(true);
+        field.set(persistence, registry);
+    }
+
+    /**
+     * Starts a new transaction.
+     */
+    public void begin() {
+        transactionKey = new Object();
+    }
+
+    /**
+     * Completes the current transaction with the passed status, calling the registered synchronizations.
+     * @param status a javax.transaction.Status value, e.g. STATUS_COMMITTED or STATUS_ROLLEDBACK
+     */
+    public void complete(int status) {
+        for (Synchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+        synchronizations.clear();
+        resources.clear();
+        transactionKey = null;
+    }
+
+    @Override
+    public Object getTransactionKey() {
+        return transactionKey;
+    }
+
+    @Override
+    public void putResource(Object key, Object value) {
+        requireTransaction();
+        resources.put(key, value);
+    }
+
+    @Override
+    public Object getResource(Object key) {
+        requireTransaction();
+        return resources.get(key);
+    }
+
+    @Override
+    public void registerInterposedSynchronization(Synchronization sync) {
+        requireTransaction();
+        synchronizations.add(sync);
+    }
+
+    @Override
+    public int getTransactionStatus() {
+        return transactionKey == null ? Status.STATUS_NO_TRANSACTION : Status.STATUS_ACTIVE;
+    }
+
+    @Override
+    public void setRollbackOnly() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getRollbackOnly() {
+        return false;
+    }
+
+    private void requireTransaction() {
+        if (transactionKey == null) {
+            throw new IllegalStateException("No transaction is active");
+        }
+    }
+}
@@ -18,6 +18,8 @@ import static com.ibm.fhir.schema.control.FhirSchemaConstants.DATA;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.DATE_END;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.DATE_START;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.DATE_VALUE_DROPPED_COLUMN;
+import static com.ibm.fhir.schema.control.FhirSchemaConstants.FINGERPRINT;
+import static com.ibm.fhir.schema.control.FhirSchemaConstants.FINGERPRINT_BYTES;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.FK;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.IDX;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.IS_DELETED;
@@ -61,6 +63,7 @@ import java.util.Set;
 import com.ibm.fhir.database.utils.api.IDatabaseStatement;
 import com.ibm.fhir.database.utils.common.AddColumn;
 import com.ibm.fhir.database.utils.common.AddForeignKeyConstraint;
+import com.ibm.fhir.database.utils.common.CreateIndex;
 import com.ibm.fhir.database.utils.common.DropColumn;
 import com.ibm.fhir.database.utils.common.DropForeignKeyConstraint;
 import com.ibm.fhir.database.utils.common.DropIndex;
@@ -223,9 +226,11 @@ public class FhirResourceTableGroup {
   version_id                INT             NOT NULL,
   last_updated        TIMESTAMP             NOT NULL,
   is_deleted               CHAR(1)          NOT NULL,
-  data                     BLOB(2147483647) INLINE LENGTH 10240;
+  data                     BLOB(2147483647) INLINE LENGTH 10240,
+  fingerprint           VARCHAR(128 OCTETS);
 
   CREATE UNIQUE INDEX device_resource_prf_in1    ON device_resources (resource_id) INCLUDE (logical_resource_id, version_id, is_deleted);
+  CREATE INDEX idx_device_resources_lupd        ON device_resources (last_updated, resource_id);
      * </pre>
      * @param group
      * @param prefix
@@ -238,6 +243,7 @@ public class FhirResourceTableGroup {
         final String tableName = prefix + _RESOURCES;
 
         Table tbl = Table.builder(schemaName, tableName)
+                .setVersion(3)
                 .setTenantColumnName(MT_ID)
                 .addTag(FhirSchemaTags.RESOURCE_TYPE, prefix)
                 .addBigIntColumn(        RESOURCE_ID,              false)
@@ -246,12 +252,31 @@ public class FhirResourceTableGroup {
                 .addTimestampColumn(    LAST_UPDATED,              false)
                 .addCharColumn(           IS_DELETED,           1, false)
                 .addBlobColumn(                 DATA,  2147483647,  10240,   true)
+                .addVarcharColumn(       FINGERPRINT, FINGERPRINT_BYTES,  true)
                 .addUniqueIndex(tableName + "_PRF_IN1", prfIndexCols, prfIncludeCols)
                 .addIndex(IDX + tableName + LOGICAL_RESOURCE_ID, LOGICAL_RESOURCE_ID)
+                .addIndex(IDX + tableName + "_LUPD", LAST_UPDATED, RESOURCE_ID)
                 .addPrimaryKey(tableName + "_PK", RESOURCE_ID)
                 .setTablespace(fhirTablespace)
                 .addPrivileges(resourceTablePrivileges)
                 .enableAccessControl(this.sessionVariable)
+                .addMigration(priorVersion -> {
+                    List<IDatabaseStatement> statements = new ArrayList<>();
+                    if (priorVersion < 2) {
+                        // Supports the (LAST_UPDATED, RESOURCE_ID) seek used by bulk export
+                        statements.add(new CreateIndex(schemaName, tableName, IDX + tableName + "_LUPD", MT_ID, LAST_UPDATED, RESOURCE_ID));
+                    }
+                    if (priorVersion < 3) {
+                        // Supports skipping updates which don't change the resource
+                        List<ColumnBase> columns = new ColumnDefBuilder()
+                                .addVarcharColumn(FINGERPRINT, FINGERPRINT_BYTES, true)
+                                .buildColumns();
+                        for (ColumnBase column : columns) {
+                            statements.add(new AddColumn(schemaName, tableName, column));
+                        }
+                    }
+                    return statements;
+                })
                 .build(model);
 
         group.add(tbl);
@@ -19,10 +19,14 @@ public class FhirSchemaConstants {
     public static final int MAX_SEARCH_STRING_BYTES = 1024;
     public static final int MAX_TOKEN_VALUE_BYTES = 1024;
     public static final int LOGICAL_ID_BYTES = 255;
+    public static final int FINGERPRINT_BYTES = 128;
 
     // The first version of every object
     public static final int INITIAL_VERSION = 1;
 
+    // version 2 of add_any_resource stores the resource fingerprint
+    public static final int ADD_ANY_RESOURCE_VERSION = 2;
+
     // Default tablespace
     public static final String FHIR_TS = "FHIR_TS";
     public static final int FHIR_TS_EXTENT_KB = 128;
@@ -73,6 +77,7 @@ public class FhirSchemaConstants {
     public static final String VERSION_ID = "VERSION_ID";
     public static final String IS_DELETED = "IS_DELETED";
     public static final String LAST_UPDATED = "LAST_UPDATED";
+    public static final String FINGERPRINT = "FINGERPRINT";
     public static final String PARAMETER_NAME = "PARAMETER_NAME";
     public static final String PARAMETER_NAME_ID = "PARAMETER_NAME_ID";
     public static final String STR_VALUE = "STR_VALUE";
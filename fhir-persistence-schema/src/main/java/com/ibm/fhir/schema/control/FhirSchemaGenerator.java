@@ -392,7 +392,7 @@ public class FhirSchemaGenerator {
 
         pd = model.addProcedureAndFunctions(this.schemaName,
                 ADD_ANY_RESOURCE,
-                FhirSchemaConstants.INITIAL_VERSION,
+                FhirSchemaConstants.ADD_ANY_RESOURCE_VERSION,
                 () -> SchemaGeneratorUtil.readTemplate(adminSchemaName, schemaName, ADD_ANY_RESOURCE.toLowerCase() + ".sql", null),
                 Arrays.asList(fhirSequence, resourceTypesTable, allTablesComplete),
                 procedurePrivileges,
@@ -431,7 +431,7 @@ public class FhirSchemaGenerator {
 
         pd = model.addProcedureAndFunctions(this.schemaName,
                 ADD_ANY_RESOURCE + "_pg",
-                FhirSchemaConstants.INITIAL_VERSION,
+                FhirSchemaConstants.ADD_ANY_RESOURCE_VERSION,
                 () -> SchemaGeneratorUtil.readTemplate(adminSchemaName, schemaName, ADD_ANY_RESOURCE.toLowerCase()
                         + "_" + DbType.POSTGRESQL.value() + ".sql", null),
                 Arrays.asList(fhirSequence, resourceTypesTable, allTablesComplete),
@@ -13,6 +13,7 @@
 -- p_last_updated the last_updated time given by the FHIR server
 -- p_is_deleted: the soft delete flag
 -- p_version_id: the version id if this is a replicated message
+-- p_fingerprint: the salted hash of the resource content, or NULL
 -- o_resource_id: output field returning the newly assigned resource_id value
 -- ----------------------------------------------------------------------------
     ( IN p_resource_type                 VARCHAR( 36),
@@ -22,6 +23,7 @@
       IN p_is_deleted                       CHAR(  1),
       IN p_source_key                    VARCHAR( 64),
       IN p_version                           INT,
+      IN p_fingerprint                   VARCHAR(128),
       OUT o_logical_resource_id            BIGINT)
     LANGUAGE plpgsql
      AS $$
@@ -158,9 +160,9 @@ BEGIN
   SELECT NEXTVAL('{{SCHEMA_NAME}}.fhir_sequence') INTO v_resource_id;
 
   EXECUTE
-         'INSERT INTO ' || v_schema_name || '.' || p_resource_type || '_resources (resource_id, logical_resource_id, version_id, data, last_updated, is_deleted) '
-      || ' VALUES ($1, $2, $3, $4, $5, $6)'
-    USING v_resource_id, v_logical_resource_id, v_insert_version, p_payload, p_last_updated, p_is_deleted;
+         'INSERT INTO ' || v_schema_name || '.' || p_resource_type || '_resources (resource_id, logical_resource_id, version_id, data, last_updated, is_deleted, fingerprint) '
+      || ' VALUES ($1, $2, $3, $4, $5, $6, $7)'
+    USING v_resource_id, v_logical_resource_id, v_insert_version, p_payload, p_last_updated, p_is_deleted, p_fingerprint;
 
   IF p_version IS NULL OR p_version > v_version
   THEN
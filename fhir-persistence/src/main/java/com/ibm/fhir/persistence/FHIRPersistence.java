@@ -6,6 +6,9 @@
 
 package com.ibm.fhir.persistence;
 
+import java.time.Instant;
+import java.util.List;
+
 import com.ibm.fhir.model.resource.OperationOutcome;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
@@ -69,6 +72,27 @@ public interface FHIRPersistence {
      */
     <T extends Resource> SingleResourceResult<T> update(FHIRPersistenceContext context, String logicalId, T resource) throws FHIRPersistenceException;
 
+    /**
+     * Stores a new version of each of the specified FHIR Resources in the datastore, creating the Resource if it
+     * doesn't exist yet. Implementations write the whole list with as few database round-trips as they can, so this
+     * is meant for callers which store many resources at once, like bulk import.
+     * <p>A resource which can't be stored, e.g. because it has no logical id, or because it doesn't exist and create on
+     * update is disabled, is not written and gets an unsuccessful SingleResourceResult; the other resources are still
+     * stored. An exception means that writing the batch failed, possibly after some of its resources were written, so
+     * the caller must roll back the transaction rather than store the resources again.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resources the FHIR Resources to be stored
+     * @return a list with a SingleResourceResult for each of the passed resources, in the same order, with a copy of the
+     *         resource with fields updated by the persistence layer and/or an OperationOutcome with hints, warnings, or
+     *         errors related to the interaction
+     * @throws FHIRPersistenceException if writing the batch failed
+     */
+    default List<SingleResourceResult<Resource>> createOrUpdateBatch(FHIRPersistenceContext context, List<Resource> resources)
+            throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'createOrUpdateBatch' operation is not supported by this persistence implementation");
+    }
+
     /**
      * Deletes the specified FHIR Resource from the datastore.
      *
@@ -106,6 +130,95 @@ public interface FHIRPersistence {
      */
     MultiResourceResult<Resource> search(FHIRPersistenceContext context, Class<? extends Resource> resourceType) throws FHIRPersistenceException;
 
+    /**
+     * Retrieves the stored payload of the most recent version of a FHIR Resource from the datastore, without
+     * parsing it. This allows callers which return the resource as JSON unchanged to skip the parse and regenerate.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resourceType the resource type of the Resource instance to be retrieved
+     * @param logicalId the logical id of the Resource instance to be retrieved
+     * @return the ResourcePayload, or null if the resource doesn't exist
+     * @throws FHIRPersistenceException
+     */
+    default ResourcePayload readPayload(FHIRPersistenceContext context, Class<? extends Resource> resourceType, String logicalId)
+            throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'readPayload' operation is not supported by this persistence implementation");
+    }
+
+    /**
+     * Retrieves the stored payload of the specified version of a FHIR Resource from the datastore, without parsing it.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resourceType the resource type of the Resource instance to be retrieved
+     * @param logicalId the logical id of the Resource instance to be retrieved
+     * @param versionId the version of the Resource instance to be retrieved
+     * @return the ResourcePayload, or null if the resource version doesn't exist
+     * @throws FHIRPersistenceException
+     */
+    default ResourcePayload vreadPayload(FHIRPersistenceContext context, Class<? extends Resource> resourceType, String logicalId, String versionId)
+            throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'vreadPayload' operation is not supported by this persistence implementation");
+    }
+
+    /**
+     * Performs a search like {@link #search(FHIRPersistenceContext, Class)}, but returns the stored payload of each
+     * resource in the search result set instead of parsing it. This allows callers which return the resources as JSON
+     * unchanged to write each one as it is without building them in memory.
+     * <br>
+     * The payload is always the whole resource, so callers must not use this for searches with the _elements or
+     * _summary parameters.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resourceType the resource type which is the target of the search
+     * @return the payloads of the resources in the search result set, in order
+     * @throws FHIRPersistenceException
+     */
+    default List<ResourcePayload> searchPayloads(FHIRPersistenceContext context, Class<? extends Resource> resourceType)
+            throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'searchPayloads' operation is not supported by this persistence implementation");
+    }
+
+    /**
+     * Retrieves the version id, last updated time and deleted flag of the most recent version of a FHIR Resource
+     * from the datastore, without reading the resource itself. This allows conditional reads of a resource which
+     * hasn't changed to be answered without reading and parsing it.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resourceType the resource type of the Resource instance
+     * @param logicalId the logical id of the Resource instance
+     * @return the ResourceMetadata, or null if the resource doesn't exist
+     * @throws FHIRPersistenceException
+     */
+    default ResourceMetadata readMetadata(FHIRPersistenceContext context, Class<? extends Resource> resourceType, String logicalId)
+            throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'readMetadata' operation is not supported by this persistence implementation");
+    }
+
+    /**
+     * Streams the stored payload of the current, non-deleted version of each resource of the specified type
+     * to the passed consumer, in ascending order of lastUpdated and then resource key.
+     * <br>
+     * Unlike {@link #search(FHIRPersistenceContext, Class)}, this does not count the matching resources and
+     * does not page by offset. Callers resume a large export by passing the lastUpdated and resource key of the
+     * last payload they received, so the cost of reading each block of resources does not depend on how far
+     * into the export the caller is.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resourceType the resource type of the Resource instances to be exported
+     * @param fromLastUpdated if not null, only resources last updated at or after this instant are exported
+     * @param toLastUpdated if not null, only resources last updated before this instant are exported
+     * @param afterLastUpdated if not null, export resumes after the payload with this lastUpdated value and afterResourceId
+     * @param afterResourceId the resource key of the last payload received; ignored if afterLastUpdated is null
+     * @param maxResults the maximum number of payloads to pass to the consumer
+     * @param consumer the consumer which receives each payload
+     * @return the number of payloads passed to the consumer
+     * @throws FHIRPersistenceException
+     */
+    default int export(FHIRPersistenceContext context, Class<? extends Resource> resourceType, Instant fromLastUpdated, Instant toLastUpdated,
+            Instant afterLastUpdated, long afterResourceId, int maxResults, ResourcePayloadConsumer consumer) throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'export' operation is not supported by this persistence implementation");
+    }
+
     /**
      * Returns true iff the persistence layer implementation supports transactions.
      */
@@ -130,4 +243,39 @@ public interface FHIRPersistence {
     default boolean isDeleteSupported() {
         return false;
     }
+
+    /**
+     * Returns true iff the persistence layer implementation supports the "createOrUpdateBatch" operation.
+     */
+    default boolean isCreateOrUpdateBatchSupported() {
+        return false;
+    }
+
+    /**
+     * Returns true iff the persistence layer implementation supports the "export" operation.
+     */
+    default boolean isExportSupported() {
+        return false;
+    }
+
+    /**
+     * Returns true iff the persistence layer implementation supports the "readPayload" and "vreadPayload" operations.
+     */
+    default boolean isReadPayloadSupported() {
+        return false;
+    }
+
+    /**
+     * Returns true iff the persistence layer implementation supports the "searchPayloads" operation.
+     */
+    default boolean isSearchPayloadSupported() {
+        return false;
+    }
+
+    /**
+     * Returns true iff the persistence layer implementation supports the "readMetadata" operation.
+     */
+    default boolean isReadMetadataSupported() {
+        return false;
+    }
 }
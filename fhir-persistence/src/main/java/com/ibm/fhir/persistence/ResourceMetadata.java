@@ -0,0 +1,50 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence;
+
+import java.time.Instant;
+
+/**
+ * The version id, last updated time and deleted flag of a single FHIR resource version, as read from the datastore
+ * without reading the resource itself. This is enough to answer a conditional read (If-None-Match or
+ * If-Modified-Since) for a resource which hasn't changed.
+ */
+public class ResourceMetadata {
+    private final String logicalId;
+    private final int versionId;
+    private final Instant lastUpdated;
+    private final boolean deleted;
+
+    /**
+     * @param logicalId the logical id of the resource
+     * @param versionId the version of the resource
+     * @param lastUpdated the last updated time of this version of the resource
+     * @param deleted true if this version of the resource is a deletion marker
+     */
+    public ResourceMetadata(String logicalId, int versionId, Instant lastUpdated, boolean deleted) {
+        this.logicalId = logicalId;
+        this.versionId = versionId;
+        this.lastUpdated = lastUpdated;
+        this.deleted = deleted;
+    }
+
+    public String getLogicalId() {
+        return logicalId;
+    }
+
+    public int getVersionId() {
+        return versionId;
+    }
+
+    public Instant getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
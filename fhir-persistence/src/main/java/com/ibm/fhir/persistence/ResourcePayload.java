@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.zip.GZIPInputStream;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.parser.exception.FHIRParserException;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+
+/**
+ * The stored representation of a single FHIR resource version, as read from the datastore without
+ * parsing it into the model.
+ * <br>
+ * The payload is the GZIP-compressed JSON form of the resource, exactly as it was written by the
+ * persistence layer (including the Meta.versionId and Meta.lastUpdated values). Callers which only need
+ * to return the resource as JSON can copy the payload without parsing it; the resource is parsed on the
+ * first call to {@link #getResource(Class)} and the result is kept for subsequent calls.
+ */
+public class ResourcePayload {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String logicalId;
+    private final int versionId;
+    private final Instant lastUpdated;
+    private final long resourceId;
+    private final byte[] compressedPayload;
+
+    // The parsed resource, only populated on demand
+    private Resource resource;
+
+    /**
+     * @param logicalId the logical id of the resource
+     * @param versionId the version of the resource
+     * @param lastUpdated the last updated time of this version of the resource
+     * @param resourceId the datastore-specific key of this version of the resource
+     * @param compressedPayload the GZIP-compressed JSON of this version of the resource
+     */
+    public ResourcePayload(String logicalId, int versionId, Instant lastUpdated, long resourceId, byte[] compressedPayload) {
+        this.logicalId = logicalId;
+        this.versionId = versionId;
+        this.lastUpdated = lastUpdated;
+        this.resourceId = resourceId;
+        this.compressedPayload = compressedPayload;
+    }
+
+    public String getLogicalId() {
+        return logicalId;
+    }
+
+    public int getVersionId() {
+        return versionId;
+    }
+
+    public Instant getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * @return the datastore-specific key which, together with lastUpdated, identifies the position of
+     *         this payload within an export
+     */
+    public long getResourceId() {
+        return resourceId;
+    }
+
+    /**
+     * @return a stream over the uncompressed JSON of the resource
+     * @throws IOException
+     */
+    public InputStream getInputStream() throws IOException {
+        return new GZIPInputStream(new ByteArrayInputStream(compressedPayload), BUFFER_SIZE);
+    }
+
+    /**
+     * Write the uncompressed JSON of the resource to the passed stream, without parsing it.
+     *
+     * @param out the stream to write to; it is not closed by this method
+     * @return the number of bytes written
+     * @throws IOException
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = getInputStream()) {
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Write the GZIP-compressed JSON of the resource to the passed stream, as stored.
+     *
+     * @param out the stream to write to; it is not closed by this method
+     * @throws IOException
+     */
+    public void transferCompressedTo(OutputStream out) throws IOException {
+        out.write(compressedPayload);
+    }
+
+    /**
+     * Parse the payload into a resource of the passed type. The payload is parsed at most once.
+     *
+     * @param resourceType the expected type of the resource
+     * @return the parsed resource
+     * @throws FHIRPersistenceException if the payload cannot be parsed
+     */
+    public <T extends Resource> T getResource(Class<T> resourceType) throws FHIRPersistenceException {
+        if (resource == null) {
+            try (InputStream in = getInputStream()) {
+                resource = FHIRParser.parser(Format.JSON).parse(in);
+            } catch (FHIRParserException | IOException e) {
+                throw new FHIRPersistenceException("Unable to parse the stored payload of resource '" + logicalId + "'", e);
+            }
+        }
+        return resourceType.cast(resource);
+    }
+}
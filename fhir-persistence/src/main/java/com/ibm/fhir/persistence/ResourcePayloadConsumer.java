@@ -0,0 +1,25 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence;
+
+import java.io.IOException;
+
+/**
+ * Receives the resource payloads streamed by
+ * {@link FHIRPersistence#export(com.ibm.fhir.persistence.context.FHIRPersistenceContext, Class, java.time.Instant, java.time.Instant, java.time.Instant, long, int, ResourcePayloadConsumer)}.
+ */
+@FunctionalInterface
+public interface ResourcePayloadConsumer {
+
+    /**
+     * Process the next payload; called once per resource, in export order.
+     *
+     * @param payload
+     * @throws IOException
+     */
+    void accept(ResourcePayload payload) throws IOException;
+}
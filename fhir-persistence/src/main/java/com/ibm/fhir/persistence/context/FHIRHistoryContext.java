@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,6 +11,7 @@ import java.util.Map;
 
 import com.ibm.fhir.core.context.FHIRPagingContext;
 import com.ibm.fhir.model.type.Instant;
+import com.ibm.fhir.search.TotalValueSet;
 
 public interface FHIRHistoryContext extends FHIRPagingContext {
     
@@ -32,4 +33,51 @@ public interface FHIRHistoryContext extends FHIRPagingContext {
      * @param deletedResources
      */
     void setDeletedResources(Map<String,List<Integer>> deletedResources);
+
+    /**
+     * @return true if the history should be paged by seeking on (lastUpdated, resourceId) rather than by offset
+     */
+    boolean isKeysetPaging();
+
+    /**
+     * @param keysetPaging true if the history should be paged by seeking on (lastUpdated, resourceId) rather than by offset
+     */
+    void setKeysetPaging(boolean keysetPaging);
+
+    /**
+     * @return the cursor requested by the client via the _cursor parameter, or null
+     */
+    HistoryCursor getCursor();
+
+    /**
+     * @param cursor the cursor requested by the client via the _cursor parameter
+     */
+    void setCursor(HistoryCursor cursor);
+
+    /**
+     * @return the cursor for the next page of versions, or null if there are no more versions or keyset paging was not applied
+     */
+    HistoryCursor getNextCursor();
+
+    /**
+     * @param nextCursor the cursor for the next page of versions
+     */
+    void setNextCursor(HistoryCursor nextCursor);
+
+    /**
+     * @return the value of the _total parameter, or null if it wasn't specified
+     */
+    TotalValueSet getTotalParameter();
+
+    /**
+     * @param total the value of the _total parameter
+     */
+    void setTotalParameter(TotalValueSet total);
+
+    /**
+     * Keyset paging doesn't need the total count to page through the history, so it is only counted
+     * when the client asks for it with _total=accurate.
+     * @return true if the total number of versions should be counted
+     */
+    boolean isTotalCountRequired();
 }
@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.context;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+
+import com.ibm.fhir.search.parameters.CursorUtil;
+
+/**
+ * An opaque continuation token used for keyset (seek) pagination of history results.
+ * <br>
+ * Keyset history pages are ordered oldest first by (lastUpdated, resourceId), and the cursor carries that key
+ * for the last version of the page it was generated from. The next page is fetched with a seek
+ * predicate on the key, so every page costs the same no matter how far into the history the
+ * client goes, and versions written while the client is paging simply show up on a later page.
+ * <br>
+ * The page number is carried along with the key so that the paging context (and therefore the
+ * Bundle links) remains consistent with offset-based paging.
+ */
+public class HistoryCursor {
+
+    private final int pageNumber;
+    private final Instant lastUpdated;
+    private final long resourceId;
+
+    /**
+     * @param pageNumber the number of the page following the version with the given key
+     * @param lastUpdated the last updated time of the last version of the current page
+     * @param resourceId the resource id of the last version of the current page
+     */
+    public HistoryCursor(int pageNumber, Instant lastUpdated, long resourceId) {
+        this.pageNumber = pageNumber;
+        this.lastUpdated = lastUpdated;
+        this.resourceId = resourceId;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public Instant getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public long getResourceId() {
+        return resourceId;
+    }
+
+    /**
+     * @return the URL-safe, opaque representation of this cursor
+     */
+    public String encode() {
+        return CursorUtil.encode(pageNumber, lastUpdated.getEpochSecond(), lastUpdated.getNano(), resourceId);
+    }
+
+    /**
+     * Decode a cursor previously produced by {@link #encode()}.
+     *
+     * @param value the opaque cursor value
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the value is not a valid cursor
+     */
+    public static HistoryCursor decode(String value) {
+        String[] parts = CursorUtil.decode(value, 4);
+        try {
+            int pageNumber = Integer.parseInt(parts[0]);
+            if (pageNumber < 1) {
+                throw new IllegalArgumentException("Invalid cursor page number: " + pageNumber);
+            }
+            Instant lastUpdated = Instant.ofEpochSecond(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            return new HistoryCursor(pageNumber, lastUpdated, Long.parseLong(parts[3]));
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + value, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryCursor [pageNumber=" + pageNumber + ", lastUpdated=" + lastUpdated + ", resourceId=" + resourceId + "]";
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -13,10 +13,16 @@ import java.util.Map;
 import com.ibm.fhir.core.context.impl.FHIRPagingContextImpl;
 import com.ibm.fhir.model.type.Instant;
 import com.ibm.fhir.persistence.context.FHIRHistoryContext;
+import com.ibm.fhir.persistence.context.HistoryCursor;
+import com.ibm.fhir.search.TotalValueSet;
 
 public class FHIRHistoryContextImpl extends FHIRPagingContextImpl implements FHIRHistoryContext {
     private Instant since = null;
     private Map<String,List<Integer>> deletedResources = new HashMap<>();
+    private boolean keysetPaging = false;
+    private HistoryCursor cursor = null;
+    private HistoryCursor nextCursor = null;
+    private TotalValueSet totalParameter = null;
     
     public FHIRHistoryContextImpl() {
     }
@@ -42,4 +48,49 @@ public class FHIRHistoryContextImpl extends FHIRPagingContextImpl implements FHI
         this.deletedResources = deletedResources;
         
     }
+
+    @Override
+    public boolean isKeysetPaging() {
+        return keysetPaging;
+    }
+
+    @Override
+    public void setKeysetPaging(boolean keysetPaging) {
+        this.keysetPaging = keysetPaging;
+    }
+
+    @Override
+    public HistoryCursor getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public void setCursor(HistoryCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public HistoryCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public void setNextCursor(HistoryCursor nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public TotalValueSet getTotalParameter() {
+        return totalParameter;
+    }
+
+    @Override
+    public void setTotalParameter(TotalValueSet totalParameter) {
+        this.totalParameter = totalParameter;
+    }
+
+    @Override
+    public boolean isTotalCountRequired() {
+        return !keysetPaging || TotalValueSet.ACCURATE.equals(totalParameter);
+    }
 }
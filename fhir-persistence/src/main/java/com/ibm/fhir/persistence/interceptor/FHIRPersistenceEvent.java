@@ -8,8 +8,11 @@ package com.ibm.fhir.persistence.interceptor;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.persistence.ResourcePayload;
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.model.util.ModelSupport;
 import com.ibm.fhir.persistence.FHIRPersistence;
 
@@ -57,6 +60,9 @@ public class FHIRPersistenceEvent {
     public static final String PROPNAME_PATCH = "PATCH";
     
     private Resource fhirResource;
+    private Class<? extends Resource> fhirResourcePayloadType = null;
+    private ResourcePayload fhirResourcePayload = null;
+    private Callable<? extends Resource> fhirResourceLoader = null;
     private Resource prevFhirResource = null;
     private boolean  prevFhirResourceSet = false;
     private Map<String, Object> properties;
@@ -83,6 +89,23 @@ public class FHIRPersistenceEvent {
      * and will be non-null after a read, vread, history or search operation.
      */
     public Resource getFhirResource() {
+        if (fhirResource == null && fhirResourceLoader != null) {
+            // The resource was not built by the operation; load it now that it is actually needed.
+            try {
+                fhirResource = fhirResourceLoader.call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            fhirResourceLoader = null;
+        }
+        if (fhirResource == null && fhirResourcePayload != null) {
+            // The resource was read as a stored payload; parse it now that it is actually needed.
+            try {
+                fhirResource = fhirResourcePayload.getResource(fhirResourcePayloadType);
+            } catch (FHIRPersistenceException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
         return fhirResource;
     }
     
@@ -92,6 +115,32 @@ public class FHIRPersistenceEvent {
      */
     public void setFhirResource(Resource resource) {
         this.fhirResource = resource;
+        this.fhirResourcePayloadType = null;
+        this.fhirResourcePayload = null;
+        this.fhirResourceLoader = null;
+    }
+
+    /**
+     * Sets the specific resource in 'this' as a stored payload, which is only parsed if
+     * {@link #getFhirResource()} is called.
+     * Interceptor implementations should *not* call this method.  This method is reserved for use by the FHIR Server.
+     */
+    public void setFhirResource(Class<? extends Resource> resourceType, ResourcePayload payload) {
+        this.fhirResource = null;
+        this.fhirResourcePayloadType = resourceType;
+        this.fhirResourcePayload = payload;
+        this.fhirResourceLoader = null;
+    }
+
+    /**
+     * Sets the specific resource in 'this' as a loader, which is only called if {@link #getFhirResource()} is called.
+     * Interceptor implementations should *not* call this method.  This method is reserved for use by the FHIR Server.
+     */
+    public void setFhirResourceLoader(Callable<? extends Resource> resourceLoader) {
+        this.fhirResource = null;
+        this.fhirResourcePayloadType = null;
+        this.fhirResourcePayload = null;
+        this.fhirResourceLoader = resourceLoader;
     }
     
     /**
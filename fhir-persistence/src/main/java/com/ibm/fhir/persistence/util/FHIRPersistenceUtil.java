@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,13 +11,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
+import com.ibm.fhir.config.FHIRConfigHelper;
+import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.type.DateTime;
 import com.ibm.fhir.model.type.Instant;
 import com.ibm.fhir.model.type.Meta;
 import com.ibm.fhir.persistence.context.FHIRHistoryContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
+import com.ibm.fhir.persistence.context.HistoryCursor;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+import com.ibm.fhir.search.SearchConstants;
+import com.ibm.fhir.search.TotalValueSet;
 
 public class FHIRPersistenceUtil {
     private static final Logger log = Logger.getLogger(FHIRPersistenceUtil.class.getName());
@@ -31,13 +36,28 @@ public class FHIRPersistenceUtil {
         log.entering(FHIRPersistenceUtil.class.getName(), "parseHistoryParameters");
         FHIRHistoryContext context = FHIRPersistenceContextFactory.createHistoryContext();
         context.setLenient(lenient);
+        context.setKeysetPaging(FHIRConfigHelper.getBooleanProperty(FHIRConfiguration.PROPERTY_HISTORY_KEYSET_PAGING, false));
         try {
             for (String name : queryParameters.keySet()) {
                 List<String> values = queryParameters.get(name);
                 String first = values.get(0);
                 if ("_page".equals(name)) {
-                    int pageNumber = Integer.parseInt(first);
-                    context.setPageNumber(pageNumber);
+                    // a _cursor carries its own page number and takes precedence over _page
+                    if (context.getCursor() == null) {
+                        int pageNumber = Integer.parseInt(first);
+                        context.setPageNumber(pageNumber);
+                    }
+                } else if (SearchConstants.CURSOR.equals(name)) {
+                    HistoryCursor cursor = HistoryCursor.decode(first);
+                    context.setCursor(cursor);
+                    context.setPageNumber(cursor.getPageNumber());
+                    context.setKeysetPaging(true);
+                } else if (SearchConstants.TOTAL.equals(name)) {
+                    try {
+                        context.setTotalParameter(TotalValueSet.from(first));
+                    } catch (IllegalArgumentException e) {
+                        throw new FHIRPersistenceException("Invalid '_total' parameter value: '" + first + "'");
+                    }
                 } else if ("_count".equals(name)) {
                     int pageSize = Integer.parseInt(first);
                     context.setPageSize(pageSize);
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -126,8 +126,10 @@ public class ResourceFingerprintVisitor extends PathAwareVisitor {
     @Override
     public void visit(java.lang.String elementName, java.lang.Integer value) {
         if (includePath()) {
+            digest.update(getPath().getBytes(StandardCharsets.UTF_8));
             ByteBuffer bb = ByteBuffer.allocate(4);
             bb.putInt(value);
+            bb.flip();
             digest.update(bb);
         }
     }
@@ -195,7 +197,19 @@ public class ResourceFingerprintVisitor extends PathAwareVisitor {
         String versionIdName = currentResourceName + ".meta.versionId";
         String lastUpdatedName = currentResourceName + ".meta.lastUpdated";
         String path = getPath();
-        return !path.startsWith(idName) && !path.startsWith(versionIdName) && !path.startsWith(lastUpdatedName);
+        return !isPathOrChild(path, idName) && !isPathOrChild(path, versionIdName) && !isPathOrChild(path, lastUpdatedName);
         
     }
+
+    /**
+     * Test whether the path is the given element path or the path of one of its children (e.g. its extensions),
+     * without matching siblings which share the same prefix (e.g. Patient.identifier for Patient.id)
+     * @param path
+     * @param elementPath
+     * @return
+     */
+    private boolean isPathOrChild(String path, String elementPath) {
+        return path.startsWith(elementPath)
+                && (path.length() == elementPath.length() || path.charAt(elementPath.length()) == '.');
+    }
 }
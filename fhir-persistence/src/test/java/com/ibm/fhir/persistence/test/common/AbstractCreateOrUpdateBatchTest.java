@@ -0,0 +1,85 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.test.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Account;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.persistence.SingleResourceResult;
+
+/**
+ * This class contains tests for storing a list of resources with a single createOrUpdateBatch call.
+ */
+public abstract class AbstractCreateOrUpdateBatchTest extends AbstractPersistenceTest {
+
+    @Test
+    public void testCreateOrUpdateBatchSupported() {
+        assertTrue(persistence.isCreateOrUpdateBatchSupported());
+    }
+
+    @Test
+    public void testCreateOrUpdateBatch() throws Exception {
+        Account account = TestUtil.readExampleResource("json/ibm/minimal/Account-1.json");
+        String id1 = UUID.randomUUID().toString();
+        String id2 = UUID.randomUUID().toString();
+        Account account1 = account.toBuilder().id(id1).build();
+        Account account2 = account.toBuilder().id(id2).build();
+
+        // Both resources are new
+        List<SingleResourceResult<Resource>> results =
+                persistence.createOrUpdateBatch(getDefaultPersistenceContext(), Arrays.asList(account1, account2));
+        assertEquals(results.size(), 2);
+        assertVersion(results.get(0), id1, "1");
+        assertVersion(results.get(1), id2, "1");
+
+        // The same resource may appear more than once, and each occurrence stores a new version
+        results = persistence.createOrUpdateBatch(getDefaultPersistenceContext(), Arrays.asList(account1, account2, account1));
+        assertEquals(results.size(), 3);
+        assertVersion(results.get(0), id1, "2");
+        assertVersion(results.get(1), id2, "2");
+        assertVersion(results.get(2), id1, "3");
+
+        Account current = persistence.read(getDefaultPersistenceContext(), Account.class, id1).getResource();
+        assertNotNull(current);
+        assertEquals(current.getMeta().getVersionId().getValue(), "3");
+        assertEquals(persistence.vread(getDefaultPersistenceContext(), Account.class, id2, "2").getResource().getId(), id2);
+    }
+
+    @Test
+    public void testCreateOrUpdateBatchWithoutId() throws Exception {
+        Account account = TestUtil.readExampleResource("json/ibm/minimal/Account-1.json");
+        String id = UUID.randomUUID().toString();
+
+        // A resource which can't be stored fails on its own, and the rest of the batch is still stored
+        List<SingleResourceResult<Resource>> results = persistence.createOrUpdateBatch(getDefaultPersistenceContext(),
+            Arrays.asList(account.toBuilder().id(null).build(), account.toBuilder().id(id).build()));
+        assertEquals(results.size(), 2);
+        assertFalse(results.get(0).isSuccess());
+        assertNull(results.get(0).getResource());
+        assertFalse(results.get(0).getOutcome().getIssue().isEmpty());
+        assertVersion(results.get(1), id, "1");
+        assertNotNull(persistence.read(getDefaultPersistenceContext(), Account.class, id).getResource());
+    }
+
+    private void assertVersion(SingleResourceResult<Resource> result, String logicalId, String versionId) {
+        assertTrue(result.isSuccess());
+        assertEquals(result.getResource().getId(), logicalId);
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), versionId);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.test.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Basic;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.persistence.ResourceMetadata;
+import com.ibm.fhir.persistence.ResourcePayload;
+import com.ibm.fhir.search.context.FHIRSearchContext;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * This class contains tests for the export read path, which streams stored payloads
+ * in (lastUpdated, resource key) order and resumes from the last key read, and for
+ * reading the stored payload of a single resource or of a page of search results.
+ */
+public abstract class AbstractExportTest extends AbstractPersistenceTest {
+    private static final int NUM_RESOURCES = 5;
+
+    private Instant start;
+    private List<String> createdIds = new ArrayList<>();
+
+    @BeforeClass
+    public void createResources() throws Exception {
+        // Only export resources created by this test
+        start = Instant.now().minusSeconds(1);
+
+        Basic basic = TestUtil.readExampleResource("json/ibm/minimal/Basic-1.json");
+        for (int i = 0; i < NUM_RESOURCES; i++) {
+            Basic created = persistence.create(getDefaultPersistenceContext(), basic).getResource();
+            assertNotNull(created.getId());
+            createdIds.add(created.getId());
+        }
+    }
+
+    @Test
+    public void testExportSupported() {
+        assertTrue(persistence.isExportSupported());
+    }
+
+    @Test
+    public void testExportAll() throws Exception {
+        List<ResourcePayload> payloads = new ArrayList<>();
+        int count = persistence.export(getDefaultPersistenceContext(), Basic.class, start, null, null, 0, NUM_RESOURCES + 10, payloads::add);
+        assertEquals(count, NUM_RESOURCES);
+        assertEquals(logicalIds(payloads), createdIds);
+
+        // The payload is the stored resource, including its meta
+        try (InputStream in = payloads.get(0).getInputStream()) {
+            Basic basic = FHIRParser.parser(Format.JSON).parse(in);
+            assertEquals(basic.getId(), createdIds.get(0));
+            assertEquals(basic.getMeta().getVersionId().getValue(), "1");
+        }
+    }
+
+    @Test
+    public void testExportResumeAfterLastKey() throws Exception {
+        List<ResourcePayload> all = new ArrayList<>();
+        List<ResourcePayload> page = new ArrayList<>();
+        Instant afterLastUpdated = null;
+        long afterResourceId = 0;
+        int pages = 0;
+        do {
+            page.clear();
+            persistence.export(getDefaultPersistenceContext(), Basic.class, start, null, afterLastUpdated, afterResourceId, 2, page::add);
+            if (!page.isEmpty()) {
+                ResourcePayload last = page.get(page.size() - 1);
+                afterLastUpdated = last.getLastUpdated();
+                afterResourceId = last.getResourceId();
+                all.addAll(page);
+            }
+            pages++;
+        } while (!page.isEmpty());
+
+        // 2 + 2 + 1 and then an empty page
+        assertEquals(pages, 4);
+        assertEquals(logicalIds(all), createdIds);
+    }
+
+    @Test
+    public void testExportUpperBound() throws Exception {
+        List<ResourcePayload> payloads = new ArrayList<>();
+        int count = persistence.export(getDefaultPersistenceContext(), Basic.class, start, start, null, 0, NUM_RESOURCES, payloads::add);
+        assertEquals(count, 0);
+        assertTrue(payloads.isEmpty());
+    }
+
+    @Test
+    public void testReadPayload() throws Exception {
+        assertTrue(persistence.isReadPayloadSupported());
+        String logicalId = createdIds.get(0);
+
+        ResourcePayload payload = persistence.readPayload(getDefaultPersistenceContext(), Basic.class, logicalId);
+        assertNotNull(payload);
+        assertEquals(payload.getLogicalId(), logicalId);
+        assertEquals(payload.getVersionId(), 1);
+        Basic basic = payload.getResource(Basic.class);
+        assertEquals(basic.getId(), logicalId);
+        assertEquals(basic.getMeta().getLastUpdated().getValue().toInstant(), payload.getLastUpdated());
+
+        payload = persistence.vreadPayload(getDefaultPersistenceContext(), Basic.class, logicalId, "1");
+        assertNotNull(payload);
+        assertEquals(payload.getVersionId(), 1);
+
+        assertNull(persistence.vreadPayload(getDefaultPersistenceContext(), Basic.class, logicalId, "2"));
+        assertNull(persistence.readPayload(getDefaultPersistenceContext(), Basic.class, "does-not-exist"));
+    }
+
+    @Test
+    public void testReadPayloadLastUpdatedInOtherTimeZone() throws Exception {
+        // LAST_UPDATED is stored as a UTC timestamp, so it must be read back as one whatever the JVM's time zone is,
+        // or the payload would not agree with the meta.lastUpdated of the resource it holds
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("GMT+05:00"));
+            Basic basic = TestUtil.readExampleResource("json/ibm/minimal/Basic-1.json");
+            Basic created = persistence.create(getDefaultPersistenceContext(), basic).getResource();
+
+            ResourcePayload payload = persistence.readPayload(getDefaultPersistenceContext(), Basic.class, created.getId());
+            assertNotNull(payload);
+            assertEquals(payload.getLastUpdated(), created.getMeta().getLastUpdated().getValue().toInstant());
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void testReadMetadata() throws Exception {
+        assertTrue(persistence.isReadMetadataSupported());
+        String logicalId = createdIds.get(0);
+
+        ResourceMetadata metadata = persistence.readMetadata(getDefaultPersistenceContext(), Basic.class, logicalId);
+        assertNotNull(metadata);
+        assertEquals(metadata.getLogicalId(), logicalId);
+        assertEquals(metadata.getVersionId(), 1);
+        assertFalse(metadata.isDeleted());
+
+        // The metadata matches the stored resource
+        ResourcePayload payload = persistence.readPayload(getDefaultPersistenceContext(), Basic.class, logicalId);
+        assertEquals(metadata.getLastUpdated(), payload.getLastUpdated());
+
+        assertNull(persistence.readMetadata(getDefaultPersistenceContext(), Basic.class, "does-not-exist"));
+    }
+
+    @Test
+    public void testSearchPayloads() throws Exception {
+        assertTrue(persistence.isSearchPayloadSupported());
+        Map<String, List<String>> queryParms = new HashMap<>();
+        queryParms.put("_id", Collections.singletonList(String.join(",", createdIds)));
+        queryParms.put("_sort", Collections.singletonList("_id"));
+
+        FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParms);
+        List<ResourcePayload> payloads = persistence.searchPayloads(getPersistenceContextForSearch(searchContext), Basic.class);
+        assertEquals(searchContext.getTotalCount(), NUM_RESOURCES);
+
+        // The payloads match the resources returned by a search, in the same order
+        List<Resource> resources = runQueryTest(Basic.class, queryParms);
+        assertEquals(payloads.size(), resources.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            assertEquals(payloads.get(i).getLogicalId(), resources.get(i).getId());
+            assertEquals(payloads.get(i).getResource(Basic.class), resources.get(i));
+        }
+    }
+
+    private List<String> logicalIds(List<ResourcePayload> payloads) {
+        List<String> logicalIds = new ArrayList<>();
+        for (ResourcePayload payload : payloads) {
+            logicalIds.add(payload.getLogicalId());
+        }
+        return logicalIds;
+    }
+}
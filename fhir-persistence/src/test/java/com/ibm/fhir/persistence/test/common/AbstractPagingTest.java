@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -8,6 +8,7 @@ package com.ibm.fhir.persistence.test.common;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.assertNotNull;
 import static com.ibm.fhir.model.test.TestUtil.isResourceInResponse;
@@ -38,6 +39,7 @@ import com.ibm.fhir.persistence.MultiResourceResult;
 import com.ibm.fhir.persistence.context.FHIRHistoryContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
+import com.ibm.fhir.persistence.util.FHIRPersistenceUtil;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.util.SearchUtil;
 
@@ -120,6 +122,141 @@ public abstract class AbstractPagingTest extends AbstractPersistenceTest {
         assertTrue(isResourceInResponse(resource3, results));
     }
     
+    @Test
+    public void testSearchKeysetPaging() throws Exception {
+        Map<String, List<String>> queryParameters;
+        FHIRSearchContext searchContext;
+        MultiResourceResult<Resource> result;
+
+        queryParameters = new HashMap<>();
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        searchContext.setKeysetPaging(true);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource1, result.getResource()));
+        assertNotNull(searchContext.getNextCursor());
+        assertEquals(searchContext.getPreviousCursor(), null);
+
+        // follow the 'next' cursor to the second page
+        queryParameters = new HashMap<>();
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        queryParameters.put("_cursor", Collections.singletonList(searchContext.getNextCursor().encode()));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(searchContext.getPageNumber(), 2);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource2, result.getResource()));
+
+        // and on to the third
+        queryParameters = new HashMap<>();
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        queryParameters.put("_cursor", Collections.singletonList(searchContext.getNextCursor().encode()));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(searchContext.getPageNumber(), 3);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource3, result.getResource()));
+
+        // then follow the 'previous' cursor back to the second page
+        queryParameters = new HashMap<>();
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        queryParameters.put("_cursor", Collections.singletonList(searchContext.getPreviousCursor().encode()));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(searchContext.getPageNumber(), 2);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource2, result.getResource()));
+    }
+    
+    // the seek predicate must be combined with the WHERE clause of a :missing=true parameter
+    @Test
+    public void testSearchKeysetPagingWithMissing() throws Exception {
+        Map<String, List<String>> queryParameters;
+        FHIRSearchContext searchContext;
+        MultiResourceResult<Resource> result;
+
+        queryParameters = new HashMap<>();
+        queryParameters.put("subject:missing", Collections.singletonList("true"));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        searchContext.setKeysetPaging(true);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        String firstId = result.getResource().get(0).getId();
+        assertNotNull(searchContext.getNextCursor());
+
+        // follow the 'next' cursor to the second page
+        queryParameters.put("_cursor", Collections.singletonList(searchContext.getNextCursor().encode()));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(searchContext.getPageNumber(), 2);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertFalse(firstId.equals(result.getResource().get(0).getId()));
+
+        // and follow the 'previous' cursor back to the first
+        queryParameters.put("_cursor", Collections.singletonList(searchContext.getPreviousCursor().encode()));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(searchContext.getPageNumber(), 1);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertEquals(result.getResource().get(0).getId(), firstId);
+    }
+
+    @Test
+    public void testSearchPagingWithoutTotal() throws Exception {
+        Map<String, List<String>> queryParameters;
+        FHIRSearchContext searchContext;
+        MultiResourceResult<Resource> result;
+
+        // with _total=none the matches aren't counted, but we still know whether there is a next page
+        queryParameters = new HashMap<>();
+        queryParameters.put("_sort", Collections.singletonList("integer"));
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        queryParameters.put("_total", Collections.singletonList("none"));
+        queryParameters.put("_page", Collections.singletonList("1"));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource1, result.getResource()));
+        assertFalse(searchContext.isTotalCountKnown());
+        assertEquals(searchContext.getLastPageNumber(), 2);
+
+        queryParameters.put("_page", Collections.singletonList("3"));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 1);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource3, result.getResource()));
+        assertFalse(searchContext.isTotalCountKnown());
+        assertEquals(searchContext.getLastPageNumber(), 3);
+
+        // with _total=estimate, reaching the last page gives us the exact total
+        queryParameters.put("_total", Collections.singletonList("estimate"));
+        queryParameters.put("_page", Collections.singletonList("2"));
+        searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        result = runQueryTest(searchContext, Basic.class, queryParameters, 2);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource3, result.getResource()));
+        assertTrue(searchContext.isTotalCountKnown());
+        assertEquals(searchContext.getTotalCount(), 3);
+        assertEquals(searchContext.getLastPageNumber(), 2);
+    }
+
+    @Test
+    public void testSearchPagingWithoutTotalPastTheEnd() throws Exception {
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        queryParameters.put("_sort", Collections.singletonList("integer"));
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        queryParameters.put("_total", Collections.singletonList("estimate"));
+        queryParameters.put("_page", Collections.singletonList("10"));
+        FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        MultiResourceResult<Resource> result = runQueryTest(searchContext, Basic.class, queryParameters, 10);
+
+        // an empty page past the end tells us nothing about the total, and must not lead to a next page
+        assertTrue(result.getResource().isEmpty());
+        assertFalse(searchContext.isTotalCountKnown());
+        assertTrue(searchContext.getLastPageNumber() < searchContext.getPageNumber() + 1);
+    }
+    
     // history results should be sorted with oldest versions last
     @Test
     public void testHistoryPaging() throws Exception {
@@ -229,6 +366,99 @@ public abstract class AbstractPagingTest extends AbstractPersistenceTest {
         assertEquals(outcome.getIssue().get(0).getCode(), IssueType.INVALID);
     }
     
+    // keyset history results are sorted with oldest versions first
+    @Test
+    public void testHistoryKeysetPaging() throws Exception {
+        Map<String, List<String>> queryParameters;
+        FHIRHistoryContext historyContext;
+        MultiResourceResult<? extends Basic> result;
+
+        queryParameters = new HashMap<>();
+        queryParameters.put("_count", Collections.singletonList("1"));
+        historyContext = FHIRPersistenceUtil.parseHistoryParameters(queryParameters, false);
+        historyContext.setKeysetPaging(true);
+        result = persistence.history(this.getPersistenceContextForHistory(historyContext), resource3.getClass(), resource3.getId());
+        assertTrue(result.isSuccess());
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertEquals(result.getResource().get(0).getMeta().getVersionId().getValue(), "1", "expected version");
+        assertFalse(historyContext.isTotalCountRequired());
+        assertEquals(historyContext.getTotalCount(), 0);
+        assertNotNull(historyContext.getNextCursor());
+
+        // follow the 'next' cursor to the second page, asking for the total this time
+        queryParameters.put("_cursor", Collections.singletonList(historyContext.getNextCursor().encode()));
+        queryParameters.put("_total", Collections.singletonList("accurate"));
+        historyContext = FHIRPersistenceUtil.parseHistoryParameters(queryParameters, false);
+        result = persistence.history(this.getPersistenceContextForHistory(historyContext), resource3.getClass(), resource3.getId());
+        assertTrue(result.isSuccess());
+        assertEquals(historyContext.getPageNumber(), 2);
+        assertEquals(historyContext.getTotalCount(), 3);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertEquals(result.getResource().get(0).getMeta().getVersionId().getValue(), "2", "expected version");
+        assertNotNull(historyContext.getNextCursor());
+
+        // and on to the third, which is the last
+        queryParameters.remove("_total");
+        queryParameters.put("_cursor", Collections.singletonList(historyContext.getNextCursor().encode()));
+        historyContext = FHIRPersistenceUtil.parseHistoryParameters(queryParameters, false);
+        result = persistence.history(this.getPersistenceContextForHistory(historyContext), resource3.getClass(), resource3.getId());
+        assertTrue(result.isSuccess());
+        assertEquals(historyContext.getPageNumber(), 3);
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertEquals(result.getResource().get(0).getMeta().getVersionId().getValue(), "3", "expected version");
+        assertNull(historyContext.getNextCursor());
+        assertEquals(historyContext.getLastPageNumber(), 3);
+
+        // a page number can't be used without a cursor
+        queryParameters = new HashMap<>();
+        queryParameters.put("_count", Collections.singletonList("1"));
+        queryParameters.put("_page", Collections.singletonList("2"));
+        historyContext = FHIRPersistenceUtil.parseHistoryParameters(queryParameters, false);
+        historyContext.setKeysetPaging(true);
+        result = persistence.history(this.getPersistenceContextForHistory(historyContext), resource3.getClass(), resource3.getId());
+        assertFalse(result.isSuccess());
+        assertEquals(result.getOutcome().getIssue().get(0).getSeverity(), IssueSeverity.ERROR);
+    }
+
+    // a version written while a client follows the keyset history cursor shows up on a later page
+    @Test
+    public void testHistoryKeysetPagingWithWriteWhilePaging() throws Exception {
+        Basic resource = TestUtil.readExampleResource("json/ibm/minimal/Basic-1.json");
+        resource = persistence.create(getDefaultPersistenceContext(), resource.toBuilder().meta(tag("historyPagingTest")).build()).getResource();
+        resource = persistence.update(getDefaultPersistenceContext(), resource.getId(), resource).getResource();
+
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        queryParameters.put("_count", Collections.singletonList("1"));
+        FHIRHistoryContext historyContext = FHIRPersistenceUtil.parseHistoryParameters(queryParameters, false);
+        historyContext.setKeysetPaging(true);
+        MultiResourceResult<? extends Basic> result =
+                persistence.history(this.getPersistenceContextForHistory(historyContext), resource.getClass(), resource.getId());
+        assertTrue(result.isSuccess());
+        assertEquals(result.getResource().get(0).getMeta().getVersionId().getValue(), "1", "expected version");
+
+        resource = persistence.update(getDefaultPersistenceContext(), resource.getId(), resource).getResource();
+
+        queryParameters.put("_cursor", Collections.singletonList(historyContext.getNextCursor().encode()));
+        historyContext = FHIRPersistenceUtil.parseHistoryParameters(queryParameters, false);
+        result = persistence.history(this.getPersistenceContextForHistory(historyContext), resource.getClass(), resource.getId());
+        assertTrue(result.isSuccess());
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertEquals(result.getResource().get(0).getMeta().getVersionId().getValue(), "2", "expected version");
+        assertNotNull(historyContext.getNextCursor());
+
+        queryParameters.put("_cursor", Collections.singletonList(historyContext.getNextCursor().encode()));
+        historyContext = FHIRPersistenceUtil.parseHistoryParameters(queryParameters, false);
+        result = persistence.history(this.getPersistenceContextForHistory(historyContext), resource.getClass(), resource.getId());
+        assertTrue(result.isSuccess());
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertEquals(result.getResource().get(0).getMeta().getVersionId().getValue(), "3", "expected version");
+        assertNull(historyContext.getNextCursor());
+
+        if (persistence.isDeleteSupported()) {
+            persistence.delete(getDefaultPersistenceContext(), Basic.class, resource.getId());
+        }
+    }
+
     public void testPageSizeEqualsZero() throws Exception {
         Map<String, List<String>> queryParameters;
         queryParameters = new HashMap<>();
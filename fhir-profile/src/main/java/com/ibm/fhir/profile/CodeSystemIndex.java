@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.profile;
+
+import static com.ibm.fhir.core.util.BoundedCache.createBoundedCache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.fhir.core.util.BoundedCache;
+import com.ibm.fhir.model.resource.CodeSystem;
+import com.ibm.fhir.model.resource.CodeSystem.Concept;
+import com.ibm.fhir.model.type.Code;
+
+/**
+ * An index over the concepts of a FHIR code system, built once per code system instance.
+ * <br>
+ * Concepts are numbered in pre-order (depth first) and each concept records the number one past the last concept of
+ * its subtree, so the concepts of a subtree occupy a contiguous interval. This makes a code lookup a single hash map
+ * lookup and a subsumption test two integer comparisons, instead of a recursive scan of the concept tree.
+ */
+public final class CodeSystemIndex {
+    private static final int MAX_CACHE_ENTRIES = 256;
+    private static final BoundedCache<java.lang.String, CodeSystemIndex> CODE_SYSTEM_INDEX_CACHE = createBoundedCache(MAX_CACHE_ENTRIES);
+
+    private final CodeSystem codeSystem;
+    private final List<Concept> concepts;
+    private final Map<java.lang.String, java.lang.Integer> positions;
+    private final int[] subtreeEnd;
+
+    private CodeSystemIndex(CodeSystem codeSystem) {
+        this.codeSystem = codeSystem;
+        int count = (codeSystem.getCount() != null && codeSystem.getCount().getValue() != null) ? codeSystem.getCount().getValue() : 16;
+        List<Concept> concepts = new ArrayList<>(count);
+        Map<java.lang.String, java.lang.Integer> positions = new HashMap<>();
+        List<java.lang.Integer> ends = new ArrayList<>(count);
+
+        // iterative pre-order traversal; a frame holds the position of a concept and the index of its next child
+        Deque<int[]> stack = new ArrayDeque<>();
+        Deque<Concept> path = new ArrayDeque<>();
+        for (Concept root : codeSystem.getConcept()) {
+            visit(root, concepts, positions, ends);
+            stack.push(new int[] { concepts.size() - 1, 0 });
+            path.push(root);
+            while (!stack.isEmpty()) {
+                int[] frame = stack.peek();
+                List<Concept> children = path.peek().getConcept();
+                if (frame[1] < children.size()) {
+                    Concept child = children.get(frame[1]++);
+                    visit(child, concepts, positions, ends);
+                    stack.push(new int[] { concepts.size() - 1, 0 });
+                    path.push(child);
+                } else {
+                    ends.set(frame[0], concepts.size());
+                    stack.pop();
+                    path.pop();
+                }
+            }
+        }
+
+        this.concepts = Collections.unmodifiableList(concepts);
+        this.positions = positions;
+        this.subtreeEnd = new int[ends.size()];
+        for (int i = 0; i < subtreeEnd.length; i++) {
+            subtreeEnd[i] = ends.get(i);
+        }
+    }
+
+    private static void visit(Concept concept, List<Concept> concepts, Map<java.lang.String, java.lang.Integer> positions, List<java.lang.Integer> ends) {
+        int position = concepts.size();
+        concepts.add(concept);
+        ends.add(position + 1);
+        java.lang.String code = (concept.getCode() != null) ? concept.getCode().getValue() : null;
+        if (code != null) {
+            // keep the first occurrence, consistent with a depth first search of the concept tree
+            positions.putIfAbsent(code, position);
+        }
+    }
+
+    /**
+     * Get the index for the provided code system. Indexes of code systems with a url are cached by url and version
+     * and are rebuilt if the registry returns a different instance for the same url and version.
+     *
+     * @param codeSystem
+     *     the code system
+     * @return
+     *     the index for the provided code system
+     */
+    public static CodeSystemIndex of(CodeSystem codeSystem) {
+        if (codeSystem.getUrl() == null || codeSystem.getUrl().getValue() == null) {
+            return new CodeSystemIndex(codeSystem);
+        }
+        java.lang.String key = codeSystem.getUrl().getValue();
+        if (codeSystem.getVersion() != null && codeSystem.getVersion().getValue() != null) {
+            key = key + "|" + codeSystem.getVersion().getValue();
+        }
+        CodeSystemIndex index = CODE_SYSTEM_INDEX_CACHE.computeIfAbsent(key, k -> new CodeSystemIndex(codeSystem));
+        if (index.codeSystem != codeSystem) {
+            index = new CodeSystemIndex(codeSystem);
+            CODE_SYSTEM_INDEX_CACHE.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return
+     *     the code system this index was built from
+     */
+    public CodeSystem getCodeSystem() {
+        return codeSystem;
+    }
+
+    /**
+     * @return
+     *     an unmodifiable list of all concepts in the code system, flattened in pre-order
+     */
+    public List<Concept> getConcepts() {
+        return concepts;
+    }
+
+    /**
+     * Find the concept that matches the specified code.
+     *
+     * @param code
+     *     the code to match
+     * @return
+     *     the concept that matches the specified code, or null if no such concept exists
+     */
+    public Concept findConcept(Code code) {
+        int position = positionOf(code);
+        return (position != -1) ? concepts.get(position) : null;
+    }
+
+    /**
+     * Determine whether the concept identified by codeA subsumes (is equal to or an ancestor of) the concept
+     * identified by codeB in the concept hierarchy of the code system.
+     *
+     * @param codeA
+     *     the code of the potential ancestor
+     * @param codeB
+     *     the code of the potential descendant
+     * @return
+     *     true if both codes are in the code system and codeA subsumes codeB, false otherwise
+     */
+    public boolean subsumes(Code codeA, Code codeB) {
+        return subsumes(positionOf(codeA), positionOf(codeB));
+    }
+
+    /**
+     * @param code
+     *     the code
+     * @return
+     *     the pre-order position of the concept that matches the specified code, or -1 if no such concept exists
+     */
+    int positionOf(Code code) {
+        if (code == null || code.getValue() == null) {
+            return -1;
+        }
+        java.lang.Integer position = positions.get(code.getValue());
+        return (position != null) ? position : -1;
+    }
+
+    /**
+     * @return
+     *     true if the concept at position a is equal to or an ancestor of the concept at position b
+     */
+    boolean subsumes(int a, int b) {
+        return a != -1 && b != -1 && a <= b && b < subtreeEnd[a];
+    }
+}
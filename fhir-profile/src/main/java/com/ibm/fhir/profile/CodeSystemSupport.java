@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -33,14 +33,7 @@ public final class CodeSystemSupport {
      *     the code system concept that matches the specified code, or null if no such concept exists
      */
     public static Concept findConcept(CodeSystem codeSystem, Code code) {
-        Concept result = null;
-        for (Concept concept : codeSystem.getConcept()) {
-            result = findConcept(concept, code);
-            if (result != null) {
-                break;
-            }
-        }
-        return result;
+        return CodeSystemIndex.of(codeSystem).findConcept(code);
     }
 
     /**
@@ -142,11 +135,7 @@ public final class CodeSystemSupport {
      *     flattened list of Concept instances for the given code system
      */
     public static Set<Concept> getConcepts(CodeSystem codeSystem) {
-        Set<Concept> concepts = (codeSystem.getCount() != null) ? new LinkedHashSet<>(codeSystem.getCount().getValue()) : new LinkedHashSet<>();
-        for (Concept concept : codeSystem.getConcept()) {
-            concepts.addAll(getConcepts(concept));
-        }
-        return concepts;
+        return new LinkedHashSet<>(CodeSystemIndex.of(codeSystem).getConcepts());
     }
 
     /**
@@ -199,4 +188,21 @@ public final class CodeSystemSupport {
     public static boolean hasConceptProperty(Concept concept, Code code) {
         return getConceptProperty(concept, code) != null;
     }
+
+    /**
+     * Determine whether the concept identified by codeA subsumes (is equal to or an ancestor of)
+     * the concept identified by codeB in the provided code system.
+     * 
+     * @param codeSystem
+     *     the code system
+     * @param codeA
+     *     the code of the potential ancestor
+     * @param codeB
+     *     the code of the potential descendant
+     * @return
+     *     true if both codes are in the code system and codeA subsumes codeB, false otherwise
+     */
+    public static boolean subsumes(CodeSystem codeSystem, Code codeA, Code codeB) {
+        return CodeSystemIndex.of(codeSystem).subsumes(codeA, codeB);
+    }
 }
\ No newline at end of file
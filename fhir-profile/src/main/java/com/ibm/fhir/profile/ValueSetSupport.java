@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -10,7 +10,6 @@ import static com.ibm.fhir.model.type.String.string;
 import static com.ibm.fhir.profile.CodeSystemSupport.findConcept;
 import static com.ibm.fhir.profile.CodeSystemSupport.getCodeSystem;
 import static com.ibm.fhir.profile.CodeSystemSupport.getConceptPropertyValue;
-import static com.ibm.fhir.profile.CodeSystemSupport.getConcepts;
 import static com.ibm.fhir.profile.CodeSystemSupport.hasCodeSystemProperty;
 import static com.ibm.fhir.profile.CodeSystemSupport.hasConceptProperty;
 
@@ -276,7 +275,7 @@ public final class ValueSetSupport {
         if ("concept".equals(filter.getProperty().getValue()) && CodeSystemHierarchyMeaning.IS_A.equals(codeSystem.getHierarchyMeaning())) {
             Concept concept = findConcept(codeSystem, code(filter.getValue()));
             if (concept != null) {
-                return new DescendentOfFilter(concept);
+                return new DescendentOfFilter(CodeSystemIndex.of(codeSystem), concept);
             }
         }
         return null;
@@ -305,7 +304,7 @@ public final class ValueSetSupport {
         if ("concept".equals(filter.getProperty().getValue()) && CodeSystemHierarchyMeaning.IS_A.equals(codeSystem.getHierarchyMeaning())) {
             Concept concept = findConcept(codeSystem, code(filter.getValue()));
             if (concept != null) {
-                return new GeneralizesFilter(concept);
+                return new GeneralizesFilter(CodeSystemIndex.of(codeSystem), concept);
             }
         }
         return null;
@@ -325,7 +324,7 @@ public final class ValueSetSupport {
         if ("concept".equals(filter.getProperty().getValue()) && CodeSystemHierarchyMeaning.IS_A.equals(codeSystem.getHierarchyMeaning())) {
             Concept concept = findConcept(codeSystem, code(filter.getValue()));
             if (concept != null) {
-                return new IsAFilter(concept);
+                return new IsAFilter(CodeSystemIndex.of(codeSystem), concept);
             }
         }
         return null;
@@ -335,7 +334,7 @@ public final class ValueSetSupport {
         if ("concept".equals(filter.getProperty().getValue()) && CodeSystemHierarchyMeaning.IS_A.equals(codeSystem.getHierarchyMeaning())) {
             Concept concept = findConcept(codeSystem, code(filter.getValue()));
             if (concept != null) {
-                return new IsNotAFilter(concept);
+                return new IsNotAFilter(CodeSystemIndex.of(codeSystem), concept);
             }
         }
         return null;
@@ -408,7 +407,7 @@ public final class ValueSetSupport {
                 if (hasResource(url, CodeSystem.class)) {
                     CodeSystem codeSystem = getCodeSystem(url);
                     List<ConceptFilter> conceptFilters = buildConceptFilters(codeSystem, includeOrExclude.getFilter());
-                    for (Concept concept : getConcepts(codeSystem)) {
+                    for (Concept concept : CodeSystemIndex.of(codeSystem).getConcepts()) {
                         if (accept(conceptFilters, concept)) {
                             Contains contains = buildContains(system, version, concept);
                             if (contains != null) {
@@ -467,17 +466,18 @@ public final class ValueSetSupport {
     }
 
     private static class DescendentOfFilter implements ConceptFilter {
-        private final Set<Concept> descendants;
+        private final CodeSystemIndex index;
+        private final int position;
 
-        public DescendentOfFilter(Concept concept) {
-            Set<Concept> descendants = getConcepts(concept);
-            descendants.remove(concept);
-            this.descendants = descendants;
+        public DescendentOfFilter(CodeSystemIndex index, Concept concept) {
+            this.index = index;
+            this.position = index.positionOf(concept.getCode());
         }
 
         @Override
         public boolean accept(Concept concept) {
-            return descendants.contains(concept);
+            int position = index.positionOf(concept.getCode());
+            return position != this.position && index.subsumes(this.position, position);
         }
     }
 
@@ -536,15 +536,17 @@ public final class ValueSetSupport {
     }
 
     private static class GeneralizesFilter implements ConceptFilter {
-        private final Concept concept;
+        private final CodeSystemIndex index;
+        private final int position;
 
-        public GeneralizesFilter(Concept concept) {
-            this.concept = concept;
+        public GeneralizesFilter(CodeSystemIndex index, Concept concept) {
+            this.index = index;
+            this.position = index.positionOf(concept.getCode());
         }
 
         @Override
         public boolean accept(Concept concept) {
-            return getConcepts(concept).contains(this.concept);
+            return index.subsumes(index.positionOf(concept.getCode()), position);
         }
     }
 
@@ -566,21 +568,23 @@ public final class ValueSetSupport {
     }
 
     private static class IsAFilter implements ConceptFilter {
-        protected final Set<Concept> descendantsAndSelf;
+        protected final CodeSystemIndex index;
+        protected final int position;
 
-        public IsAFilter(Concept concept) {
-            descendantsAndSelf = getConcepts(concept);
+        public IsAFilter(CodeSystemIndex index, Concept concept) {
+            this.index = index;
+            this.position = index.positionOf(concept.getCode());
         }
 
         @Override
         public boolean accept(Concept concept) {
-            return descendantsAndSelf.contains(concept);
+            return index.subsumes(position, index.positionOf(concept.getCode()));
         }
     }
 
     private static class IsNotAFilter extends IsAFilter {
-        public IsNotAFilter(Concept concept) {
-            super(concept);
+        public IsNotAFilter(CodeSystemIndex index, Concept concept) {
+            super(index, concept);
         }
 
         @Override
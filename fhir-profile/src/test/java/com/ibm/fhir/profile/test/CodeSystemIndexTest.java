@@ -0,0 +1,80 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.profile.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.CodeSystem;
+import com.ibm.fhir.model.resource.CodeSystem.Concept;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.CodeSystemContentMode;
+import com.ibm.fhir.model.type.code.PublicationStatus;
+import com.ibm.fhir.profile.CodeSystemIndex;
+
+public class CodeSystemIndexTest {
+    // a
+    // +- b
+    // |  +- c
+    // |  +- d
+    // +- e
+    // f
+    private static final CodeSystem CODE_SYSTEM = CodeSystem.builder()
+            .url(Uri.of("http://ibm.com/fhir/CodeSystem/index-test"))
+            .status(PublicationStatus.ACTIVE)
+            .content(CodeSystemContentMode.COMPLETE)
+            .concept(concept("a",
+                concept("b", concept("c"), concept("d")),
+                concept("e")))
+            .concept(concept("f"))
+            .build();
+
+    private static Concept concept(String code, Concept... children) {
+        return Concept.builder()
+                .code(Code.of(code))
+                .concept(children)
+                .build();
+    }
+
+    @Test
+    public void testGetConcepts() {
+        List<String> actual = CodeSystemIndex.of(CODE_SYSTEM).getConcepts().stream()
+                .map(concept -> concept.getCode().getValue())
+                .collect(Collectors.toList());
+        Assert.assertEquals(actual, Arrays.asList("a", "b", "c", "d", "e", "f"));
+    }
+
+    @Test
+    public void testFindConcept() {
+        CodeSystemIndex index = CodeSystemIndex.of(CODE_SYSTEM);
+        Assert.assertEquals(index.findConcept(Code.of("d")).getCode(), Code.of("d"));
+        Assert.assertNull(index.findConcept(Code.of("z")));
+    }
+
+    @Test
+    public void testSubsumes() {
+        CodeSystemIndex index = CodeSystemIndex.of(CODE_SYSTEM);
+        Assert.assertTrue(index.subsumes(Code.of("a"), Code.of("a")));
+        Assert.assertTrue(index.subsumes(Code.of("a"), Code.of("d")));
+        Assert.assertTrue(index.subsumes(Code.of("b"), Code.of("c")));
+        Assert.assertFalse(index.subsumes(Code.of("b"), Code.of("e")));
+        Assert.assertFalse(index.subsumes(Code.of("c"), Code.of("d")));
+        Assert.assertFalse(index.subsumes(Code.of("d"), Code.of("a")));
+        Assert.assertFalse(index.subsumes(Code.of("a"), Code.of("f")));
+        Assert.assertFalse(index.subsumes(Code.of("a"), Code.of("z")));
+    }
+
+    @Test
+    public void testIndexIsCached() {
+        Assert.assertSame(CodeSystemIndex.of(CODE_SYSTEM), CodeSystemIndex.of(CODE_SYSTEM));
+    }
+}
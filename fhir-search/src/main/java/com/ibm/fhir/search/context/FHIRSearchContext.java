@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -10,7 +10,9 @@ import java.util.List;
 
 import com.ibm.fhir.core.context.FHIRPagingContext;
 import com.ibm.fhir.search.SummaryValueSet;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.parameters.InclusionParameter;
+import com.ibm.fhir.search.parameters.KeysetCursor;
 import com.ibm.fhir.search.parameters.QueryParameter;
 import com.ibm.fhir.search.parameters.SortParameter;
 
@@ -83,4 +85,65 @@ public interface FHIRSearchContext extends FHIRPagingContext {
      * Set the value of the summary parameter.
      */
     void setSummaryParameter(SummaryValueSet summary);
+
+    /**
+     * @return true if keyset (seek) pagination should be used for this search, where supported
+     */
+    boolean isKeysetPaging();
+
+    /**
+     * @param keysetPaging whether keyset (seek) pagination should be used for this search, where supported
+     */
+    void setKeysetPaging(boolean keysetPaging);
+
+    /**
+     * @return the cursor requested by the client via the _cursor parameter, or null
+     */
+    KeysetCursor getCursor();
+
+    /**
+     * @param cursor the cursor requested by the client via the _cursor parameter
+     */
+    void setCursor(KeysetCursor cursor);
+
+    /**
+     * @return the cursor for the next page of results, or null if keyset pagination was not applied
+     */
+    KeysetCursor getNextCursor();
+
+    /**
+     * @param nextCursor the cursor for the next page of results
+     */
+    void setNextCursor(KeysetCursor nextCursor);
+
+    /**
+     * @return the cursor for the previous page of results, or null if keyset pagination was not applied
+     */
+    KeysetCursor getPreviousCursor();
+
+    /**
+     * @param previousCursor the cursor for the previous page of results
+     */
+    void setPreviousCursor(KeysetCursor previousCursor);
+
+    /**
+     * @return the value of the _total parameter, or the tenant's default; null means an accurate total
+     */
+    TotalValueSet getTotalParameter();
+
+    /**
+     * @param total the value of the _total parameter
+     */
+    void setTotalParameter(TotalValueSet total);
+
+    /**
+     * @return false if the persistence layer skipped counting the matching resources, in which case the total count
+     *         must not be reported to the client; the last page number then only tells whether there is a next page
+     */
+    boolean isTotalCountKnown();
+
+    /**
+     * @param totalCountKnown whether the total count was computed for this search
+     */
+    void setTotalCountKnown(boolean totalCountKnown);
 }
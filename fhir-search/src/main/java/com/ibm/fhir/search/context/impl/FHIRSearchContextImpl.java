@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,8 +11,10 @@ import java.util.List;
 
 import com.ibm.fhir.core.context.impl.FHIRPagingContextImpl;
 import com.ibm.fhir.search.SummaryValueSet;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.parameters.InclusionParameter;
+import com.ibm.fhir.search.parameters.KeysetCursor;
 import com.ibm.fhir.search.parameters.QueryParameter;
 import com.ibm.fhir.search.parameters.SortParameter;
 
@@ -25,6 +27,12 @@ public class FHIRSearchContextImpl extends FHIRPagingContextImpl implements FHIR
     private List<InclusionParameter> revIncludeParameters = new ArrayList<>();
     private List<String> elementsParameters = null;
     private SummaryValueSet summaryParameter = null; 
+    private boolean keysetPaging = false;
+    private KeysetCursor cursor = null;
+    private KeysetCursor nextCursor = null;
+    private KeysetCursor previousCursor = null;
+    private TotalValueSet totalParameter = null;
+    private boolean totalCountKnown = true;
 
     public FHIRSearchContextImpl() {
         searchParameters = new ArrayList<>();
@@ -134,4 +142,64 @@ public class FHIRSearchContextImpl extends FHIRPagingContextImpl implements FHIR
         this.searchResourceTypes = searchResourceTypes;
 
     }
+
+    @Override
+    public boolean isKeysetPaging() {
+        return this.keysetPaging;
+    }
+
+    @Override
+    public void setKeysetPaging(boolean keysetPaging) {
+        this.keysetPaging = keysetPaging;
+    }
+
+    @Override
+    public KeysetCursor getCursor() {
+        return this.cursor;
+    }
+
+    @Override
+    public void setCursor(KeysetCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public KeysetCursor getNextCursor() {
+        return this.nextCursor;
+    }
+
+    @Override
+    public void setNextCursor(KeysetCursor nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public KeysetCursor getPreviousCursor() {
+        return this.previousCursor;
+    }
+
+    @Override
+    public void setPreviousCursor(KeysetCursor previousCursor) {
+        this.previousCursor = previousCursor;
+    }
+
+    @Override
+    public TotalValueSet getTotalParameter() {
+        return this.totalParameter;
+    }
+
+    @Override
+    public void setTotalParameter(TotalValueSet totalParameter) {
+        this.totalParameter = totalParameter;
+    }
+
+    @Override
+    public boolean isTotalCountKnown() {
+        return this.totalCountKnown;
+    }
+
+    @Override
+    public void setTotalCountKnown(boolean totalCountKnown) {
+        this.totalCountKnown = totalCountKnown;
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.parameters;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The opaque encoding shared by the keyset paging cursors: the fields of the cursor joined with a
+ * separator, in URL-safe base64.
+ */
+public final class CursorUtil {
+
+    private static final char SEPARATOR = '.';
+
+    private CursorUtil() {
+        // No Operation
+    }
+
+    /**
+     * @param fields the fields of the cursor, none of which may contain '.'
+     * @return the URL-safe, opaque representation of the fields
+     */
+    public static String encode(Object... fields) {
+        StringBuilder raw = new StringBuilder();
+        for (Object field : fields) {
+            if (raw.length() > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(field);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor value previously produced by {@link #encode(Object...)}.
+     *
+     * @param value the opaque cursor value
+     * @param fieldCount the number of fields the cursor is expected to have
+     * @return the fields of the cursor
+     * @throws IllegalArgumentException if the value is not a valid cursor with that number of fields
+     */
+    public static String[] decode(String value, int fieldCount) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + value, e);
+        }
+
+        String[] fields = raw.split("\\" + SEPARATOR);
+        if (fields.length != fieldCount) {
+            throw new IllegalArgumentException("Invalid cursor: " + value);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.parameters;
+
+/**
+ * An opaque continuation token used for keyset (seek) pagination of search results.
+ * <br>
+ * Rather than paging with an offset, which requires the database to scan and discard every row
+ * before the requested page, the cursor carries the key of the row at the boundary of the page
+ * it was generated from. The next page is then fetched with a seek predicate on that key, so the
+ * cost of fetching a page stays the same no matter how deep into the result set the client goes.
+ * <br>
+ * The page number is carried along with the key so that the paging context (and therefore the
+ * Bundle links) remains consistent with offset-based paging.
+ */
+public class KeysetCursor {
+
+    /**
+     * The direction in which the cursor seeks relative to its key.
+     */
+    public enum Direction {
+        /** rows with a key greater than the cursor key */
+        NEXT('n'),
+        /** rows with a key less than the cursor key */
+        PREVIOUS('p');
+
+        private final char code;
+
+        Direction(char code) {
+            this.code = code;
+        }
+
+        public char getCode() {
+            return code;
+        }
+
+        public static Direction from(char code) {
+            for (Direction direction : Direction.values()) {
+                if (direction.code == code) {
+                    return direction;
+                }
+            }
+            throw new IllegalArgumentException("Invalid cursor direction: " + code);
+        }
+    }
+
+    private final Direction direction;
+    private final int pageNumber;
+    private final long key;
+
+    public KeysetCursor(Direction direction, int pageNumber, long key) {
+        this.direction  = direction;
+        this.pageNumber = pageNumber;
+        this.key        = key;
+    }
+
+    /**
+     * @param pageNumber the number of the page following the page which ended with the given key
+     * @param key the key of the last row of the current page
+     * @return a cursor for the page following the key
+     */
+    public static KeysetCursor next(int pageNumber, long key) {
+        return new KeysetCursor(Direction.NEXT, pageNumber, key);
+    }
+
+    /**
+     * @param pageNumber the number of the page preceding the page which started with the given key
+     * @param key the key of the first row of the current page
+     * @return a cursor for the page preceding the key
+     */
+    public static KeysetCursor previous(int pageNumber, long key) {
+        return new KeysetCursor(Direction.PREVIOUS, pageNumber, key);
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * @return the URL-safe, opaque representation of this cursor
+     */
+    public String encode() {
+        return CursorUtil.encode(direction.getCode(), pageNumber, key);
+    }
+
+    /**
+     * Decode a cursor previously produced by {@link #encode()}.
+     *
+     * @param value the opaque cursor value
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the value is not a valid cursor
+     */
+    public static KeysetCursor decode(String value) {
+        String[] parts = CursorUtil.decode(value, 3);
+        if (parts[0].length() != 1) {
+            throw new IllegalArgumentException("Invalid cursor: " + value);
+        }
+
+        try {
+            int pageNumber = Integer.parseInt(parts[1]);
+            if (pageNumber < 1) {
+                throw new IllegalArgumentException("Invalid cursor page number: " + pageNumber);
+            }
+            return new KeysetCursor(Direction.from(parts[0].charAt(0)), pageNumber, Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + value, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor [direction=" + direction + ", pageNumber=" + pageNumber + ", key=" + key + "]";
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.parameters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathType;
+
+/**
+ * A precompiled plan for extracting the values of the search parameters which apply to a resource type.
+ * <br>
+ * Most search parameter expressions are simple paths like {@code Observation.code}, or unions of simple paths like
+ * {@code Patient.name | Practitioner.name}. Rather than handing each of them to the FHIRPath evaluator, the plan merges
+ * these paths into a tree of path segments, so that each distinct path prefix is navigated once for all of the search
+ * parameters which share it, in a single pass over the resource. Union members which are rooted at a different resource
+ * type can never match, so they are dropped when the plan is compiled.
+ * <br>
+ * Navigation follows the same rules as member invocation in the FHIRPath evaluator, so the values extracted for a
+ * parameter are the same as the result of evaluating its expression. Expressions which are not simple paths (functions,
+ * type operators, etc.) are not part of the plan and still need to be evaluated by the caller.
+ */
+public class ParameterExtractionPlan {
+
+    // One or more '|' separated paths, where each path is a type name followed by '.' separated member names
+    private static final Pattern SIMPLE_PATHS = Pattern.compile(
+            "\\s*[A-Z][A-Za-z0-9_]*(\\s*\\.\\s*[A-Za-z][A-Za-z0-9_]*)*(\\s*\\|\\s*[A-Z][A-Za-z0-9_]*(\\s*\\.\\s*[A-Za-z][A-Za-z0-9_]*)*)*\\s*");
+
+    private static final String SYSTEM_NAMESPACE = "System";
+
+    // The type names which a member invocation on a node of each type matches, as computed by the FHIRPath evaluator
+    private static final Map<FHIRPathType, Set<String>> CLOSURES = new EnumMap<>(FHIRPathType.class);
+    static {
+        for (FHIRPathType type : FHIRPathType.values()) {
+            CLOSURES.put(type, computeClosure(type));
+        }
+    }
+
+    private final List<SearchParameter> parameters;
+
+    // For each parameter, the number of paths in its expression which are part of the plan, or -1 if the expression is
+    // not made of simple paths
+    private final int[] pathCounts;
+
+    // For each parameter, whether the results of its paths are combined with the union operator
+    private final boolean[] unions;
+
+    private final Segment root = new Segment(null);
+
+    private ParameterExtractionPlan(List<SearchParameter> parameters) {
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+        this.pathCounts = new int[parameters.size()];
+        this.unions = new boolean[parameters.size()];
+    }
+
+    /**
+     * Compile the extraction plan for the passed resource type and search parameters.
+     *
+     * @param resourceType
+     *            the resource type which the plan extracts values from
+     * @param parameters
+     *            the search parameters which apply to the resource type
+     * @return the compiled plan
+     */
+    public static ParameterExtractionPlan compile(Class<? extends Resource> resourceType, List<SearchParameter> parameters) {
+        ParameterExtractionPlan plan = new ParameterExtractionPlan(parameters);
+        FHIRPathType rootType = FHIRPathType.from(resourceType);
+
+        for (int i = 0; i < parameters.size(); i++) {
+            com.ibm.fhir.model.type.String expression = parameters.get(i).getExpression();
+            if (rootType == null || expression == null || expression.getValue() == null
+                    || !SIMPLE_PATHS.matcher(expression.getValue()).matches()) {
+                plan.pathCounts[i] = -1;
+                continue;
+            }
+
+            String[] paths = expression.getValue().split("\\|");
+            plan.unions[i] = paths.length > 1;
+            for (String path : paths) {
+                String[] identifiers = path.replaceAll("\\s", "").split("\\.");
+                if (!CLOSURES.get(rootType).contains(identifiers[0])) {
+                    // rooted at another resource type, so this path never matches
+                    continue;
+                }
+                Segment segment = plan.root;
+                for (String identifier : identifiers) {
+                    segment = segment.child(identifier);
+                }
+                segment.targets.add(new Target(i, plan.pathCounts[i]++));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @return the search parameters the plan was compiled for, in the order they were passed to
+     *         {@link #compile(Class, List)}
+     */
+    public List<SearchParameter> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @param parameters
+     *            the search parameters which currently apply to the resource type
+     * @return true if this plan was compiled from the same search parameter instances, in the same order
+     */
+    public boolean isCompiledFrom(List<SearchParameter> parameters) {
+        if (parameters.size() != this.parameters.size()) {
+            return false;
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.get(i) != this.parameters.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Navigate all of the paths in the plan, starting at the root node of a resource.
+     *
+     * @param root
+     *            the root node of the resource, e.g. from {@code EvaluationContext.getTree().getRoot()}
+     * @return a list with one entry per search parameter, in the same order as {@link #getParameters()}; the entry is
+     *         the extracted values for parameters which are part of the plan, or null for parameters whose expression
+     *         must be evaluated by the caller
+     */
+    public List<List<FHIRPathNode>> extract(FHIRPathNode root) {
+        // the nodes reached by each path of each parameter
+        List<List<Collection<FHIRPathNode>>> pathResults = new ArrayList<>(parameters.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            pathResults.add(pathCounts[i] > 0 ? new ArrayList<>(Collections.nCopies(pathCounts[i], Collections.emptyList())) : null);
+        }
+
+        walk(this.root, Collections.singletonList(root), pathResults);
+
+        List<List<FHIRPathNode>> result = new ArrayList<>(parameters.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            if (pathCounts[i] < 0) {
+                result.add(null);
+            } else if (pathCounts[i] == 0) {
+                result.add(new ArrayList<>());
+            } else if (!unions[i]) {
+                result.add(new ArrayList<>(pathResults.get(i).get(0)));
+            } else {
+                // the union operator eliminates duplicates
+                Set<FHIRPathNode> union = new LinkedHashSet<>();
+                for (Collection<FHIRPathNode> nodes : pathResults.get(i)) {
+                    union.addAll(nodes);
+                }
+                result.add(new ArrayList<>(union));
+            }
+        }
+        return result;
+    }
+
+    private void walk(Segment segment, Collection<FHIRPathNode> context, List<List<Collection<FHIRPathNode>>> pathResults) {
+        for (Segment child : segment.children.values()) {
+            Collection<FHIRPathNode> nodes = navigate(context, child.identifier);
+            if (nodes.isEmpty()) {
+                continue;
+            }
+            for (Target target : child.targets) {
+                pathResults.get(target.parameterIndex).set(target.pathIndex, nodes);
+            }
+            walk(child, nodes, pathResults);
+        }
+    }
+
+    /**
+     * Member invocation, as implemented by the FHIRPath evaluator: an identifier which names the type of a singleton
+     * context (or one of its base types) selects the context itself, otherwise it selects the children with that name.
+     */
+    private static Collection<FHIRPathNode> navigate(Collection<FHIRPathNode> context, String identifier) {
+        if (context.size() == 1) {
+            FHIRPathNode node = context.iterator().next();
+            if (CLOSURES.get(node.type()).contains(identifier)) {
+                return context;
+            }
+        }
+        List<FHIRPathNode> result = new ArrayList<>();
+        for (FHIRPathNode node : context) {
+            for (FHIRPathNode child : node.children()) {
+                if (identifier.equals(child.name())) {
+                    result.add(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> computeClosure(FHIRPathType type) {
+        if (SYSTEM_NAMESPACE.equals(type.namespace())) {
+            return Collections.emptySet();
+        }
+        Set<String> closure = new HashSet<>();
+        while (type != null && !FHIRPathType.FHIR_ANY.equals(type)) {
+            closure.add(type.getName());
+            type = type.baseType();
+        }
+        return closure;
+    }
+
+    /**
+     * A member name in the tree of paths; the root segment has no identifier.
+     */
+    private static class Segment {
+        private final String identifier;
+        private final Map<String, Segment> children = new LinkedHashMap<>();
+        // the paths which end at this segment
+        private final List<Target> targets = new ArrayList<>();
+
+        private Segment(String identifier) {
+            this.identifier = identifier;
+        }
+
+        private Segment child(String identifier) {
+            return children.computeIfAbsent(identifier, Segment::new);
+        }
+    }
+
+    /**
+     * Identifies a path within the expression of one of the search parameters.
+     */
+    private static class Target {
+        private final int parameterIndex;
+        private final int pathIndex;
+
+        private Target(int parameterIndex, int pathIndex) {
+            this.parameterIndex = parameterIndex;
+            this.pathIndex = pathIndex;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,6 +48,7 @@ import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.search.SearchConstants.Modifier;
 import com.ibm.fhir.search.SearchConstants.Type;
 import com.ibm.fhir.search.SummaryValueSet;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.compartment.CompartmentUtil;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.context.FHIRSearchContextFactory;
@@ -54,6 +56,8 @@ import com.ibm.fhir.search.date.DateTimeHandler;
 import com.ibm.fhir.search.exception.FHIRSearchException;
 import com.ibm.fhir.search.exception.SearchExceptionUtil;
 import com.ibm.fhir.search.parameters.InclusionParameter;
+import com.ibm.fhir.search.parameters.KeysetCursor;
+import com.ibm.fhir.search.parameters.ParameterExtractionPlan;
 import com.ibm.fhir.search.parameters.ParametersMap;
 import com.ibm.fhir.search.parameters.ParametersUtil;
 import com.ibm.fhir.search.parameters.QueryParameter;
@@ -124,6 +128,12 @@ public class SearchUtil {
      */
     private static TenantSpecificSearchParameterCache searchParameterCache = new TenantSpecificSearchParameterCache();
 
+    /*
+     * The compiled search parameter extraction plans, keyed by tenant-id and resource type. A plan is recompiled when
+     * the search parameters which apply to the resource type for the tenant change.
+     */
+    private static final Map<String, ParameterExtractionPlan> extractionPlanCache = new ConcurrentHashMap<>();
+
     private SearchUtil() {
         // No Operation
         // Hides the Initialization
@@ -544,7 +554,12 @@ public class SearchUtil {
 
         List<SearchParameter> parameters = getApplicableSearchParameters(resourceType.getSimpleName());
 
-        for (SearchParameter parameter : parameters) {
+        // Extract the values of all the parameters with simple path expressions in one pass
+        List<List<FHIRPathNode>> planResults =
+                getExtractionPlan(resource.getClass(), parameters).extract(evaluationContext.getTree().getRoot());
+
+        for (int i = 0; i < parameters.size(); i++) {
+            SearchParameter parameter = parameters.get(i);
 
             com.ibm.fhir.model.type.String expression = parameter.getExpression();
 
@@ -566,7 +581,10 @@ public class SearchUtil {
                 continue;
             }
             try {
-                Collection<FHIRPathNode> tmpResults = evaluator.evaluate(evaluationContext, expression.getValue());
+                Collection<FHIRPathNode> tmpResults = planResults.get(i);
+                if (tmpResults == null) {
+                    tmpResults = evaluator.evaluate(evaluationContext, expression.getValue());
+                }
 
                 if (log.isLoggable(Level.FINEST)) {
                     log.finest("Expression [" + expression.getValue() + "] parameter-code ["
@@ -588,6 +606,24 @@ public class SearchUtil {
         return result;
     }
 
+    /**
+     * Returns the extraction plan for the passed resource type and search parameters, compiling it if the current tenant
+     * has no plan for the resource type yet or if the search parameters have changed since the plan was compiled.
+     *
+     * @param resourceType
+     * @param parameters the search parameters which apply to the resource type
+     * @return the extraction plan
+     */
+    private static ParameterExtractionPlan getExtractionPlan(Class<? extends Resource> resourceType, List<SearchParameter> parameters) {
+        String key = FHIRRequestContext.get().getTenantId() + "/" + resourceType.getSimpleName();
+        ParameterExtractionPlan plan = extractionPlanCache.get(key);
+        if (plan == null || !plan.isCompiledFrom(parameters)) {
+            plan = ParameterExtractionPlan.compile(resourceType, parameters);
+            extractionPlanCache.put(key, plan);
+        }
+        return plan;
+    }
+
     public static FHIRSearchContext parseQueryParameters(Class<?> resourceType,
             Map<String, List<String>> queryParameters)
             throws Exception {
@@ -600,6 +636,8 @@ public class SearchUtil {
 
         FHIRSearchContext context = FHIRSearchContextFactory.createSearchContext();
         context.setLenient(lenient);
+        context.setKeysetPaging(FHIRConfigHelper.getBooleanProperty(FHIRConfiguration.PROPERTY_SEARCH_KEYSET_PAGING, false));
+        context.setTotalParameter(getDefaultTotalParameter());
         List<QueryParameter> parameters = new ArrayList<>();
 
         // Retrieve the SearchParameters that will apply to this resource type (including those for Resource.class).
@@ -1063,6 +1101,21 @@ public class SearchUtil {
         return returnPrefix;
     }
 
+    /**
+     * @return the tenant's default for the _total parameter, or null if it has none
+     */
+    private static TotalValueSet getDefaultTotalParameter() {
+        String defaultTotal = FHIRConfigHelper.getStringProperty(FHIRConfiguration.PROPERTY_SEARCH_DEFAULT_TOTAL, null);
+        if (defaultTotal != null) {
+            try {
+                return TotalValueSet.from(defaultTotal);
+            } catch (IllegalArgumentException e) {
+                log.warning("Ignoring invalid value for " + FHIRConfiguration.PROPERTY_SEARCH_DEFAULT_TOTAL + ": '" + defaultTotal + "'");
+            }
+        }
+        return null;
+    }
+
     public static boolean isSearchResultParameter(String name) {
         return SearchConstants.SEARCH_RESULT_PARAMETER_NAMES.contains(name);
     }
@@ -1094,8 +1147,16 @@ public class SearchUtil {
                     context.setPageSize(pageSize);
                 }
             } else if (SearchConstants.PAGE.equals(name)) {
-                int pageNumber = Integer.parseInt(first);
-                context.setPageNumber(pageNumber);
+                // a _cursor carries its own page number and takes precedence over _page
+                if (context.getCursor() == null) {
+                    int pageNumber = Integer.parseInt(first);
+                    context.setPageNumber(pageNumber);
+                }
+            } else if (SearchConstants.CURSOR.equals(name)) {
+                KeysetCursor cursor = KeysetCursor.decode(first);
+                context.setCursor(cursor);
+                context.setPageNumber(cursor.getPageNumber());
+                context.setKeysetPaging(true);
             } else if (SearchConstants.SORT.equals(name)) {
                 // in R4, we only look for _sort
                 sort.parseSortParameter(resourceTypeName, context, values, lenient);
@@ -1105,6 +1166,8 @@ public class SearchUtil {
                 parseElementsParameter(resourceType, context, values, lenient);
             } else if (SearchConstants.SUMMARY.equals(name) && first != null) {
                 context.setSummaryParameter(SummaryValueSet.from(first));
+            } else if (SearchConstants.TOTAL.equals(name) && first != null) {
+                context.setTotalParameter(TotalValueSet.from(first));
             }
         } catch (FHIRSearchException se) {
             throw se;
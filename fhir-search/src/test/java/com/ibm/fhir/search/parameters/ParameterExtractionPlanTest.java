@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.parameters;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.examples.Index;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * Tests that the values extracted by a compiled ParameterExtractionPlan match the result of
+ * evaluating each search parameter expression with the FHIRPath evaluator.
+ */
+public class ParameterExtractionPlanTest {
+
+    @BeforeClass
+    public void setup() throws Exception {
+        FHIRConfiguration.setConfigHome("target/test-classes");
+        FHIRRequestContext.set(new FHIRRequestContext("default"));
+    }
+
+    @Test
+    public void testPlanMatchesEvaluator() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        int planned = 0;
+
+        for (String file : readExampleIndex()) {
+            Resource resource;
+            try (Reader reader = ExamplesUtil.resourceReader(file)) {
+                resource = FHIRParser.parser(Format.JSON).parse(reader);
+            }
+            List<SearchParameter> parameters = SearchUtil.getApplicableSearchParameters(resource.getClass().getSimpleName());
+            ParameterExtractionPlan plan = ParameterExtractionPlan.compile(resource.getClass(), parameters);
+
+            EvaluationContext evaluationContext = new EvaluationContext(resource);
+            List<List<FHIRPathNode>> results = plan.extract(evaluationContext.getTree().getRoot());
+            assertEquals(results.size(), parameters.size());
+
+            for (int i = 0; i < parameters.size(); i++) {
+                if (results.get(i) != null) {
+                    String expression = parameters.get(i).getExpression().getValue();
+                    Collection<FHIRPathNode> expected = evaluator.evaluate(evaluationContext, expression);
+                    assertEquals(results.get(i), new ArrayList<>(expected), file + " " + expression);
+                    planned++;
+                }
+            }
+        }
+        assertTrue(planned > 0);
+    }
+
+    @Test
+    public void testCompile() throws Exception {
+        List<SearchParameter> parameters = SearchUtil.getApplicableSearchParameters("Observation");
+        ParameterExtractionPlan plan = ParameterExtractionPlan.compile(Observation.class, parameters);
+        assertTrue(plan.isCompiledFrom(parameters));
+        assertTrue(!plan.isCompiledFrom(parameters.subList(1, parameters.size())));
+
+        Observation observation = Observation.builder()
+                .status(com.ibm.fhir.model.type.code.ObservationStatus.FINAL)
+                .code(com.ibm.fhir.model.type.CodeableConcept.builder()
+                    .text(com.ibm.fhir.model.type.String.of("test"))
+                    .build())
+                .build();
+        List<List<FHIRPathNode>> results = plan.extract(new EvaluationContext(observation).getTree().getRoot());
+        for (int i = 0; i < parameters.size(); i++) {
+            String code = parameters.get(i).getCode().getValue();
+            String expression = parameters.get(i).getExpression() == null ? null : parameters.get(i).getExpression().getValue();
+            if ("status".equals(code)) {
+                // Observation.status is a simple path
+                assertNotNull(results.get(i));
+                assertEquals(results.get(i).size(), 1);
+            } else if (expression != null && expression.contains("(")) {
+                // functions are left to the evaluator
+                assertNull(results.get(i));
+            }
+        }
+    }
+
+    private List<String> readExampleIndex() throws Exception {
+        List<String> files = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(ExamplesUtil.indexReader(Index.MINIMAL_JSON))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length == 2 && "OK".equals(tokens[0])) {
+                    files.add(tokens[1]);
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -7,6 +7,7 @@
 package com.ibm.fhir.server.listener;
 
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_CHECK_REFERENCE_TYPES;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_DEFINITION_WARM_UP_ENABLED;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_BOOTSTRAP_DB;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_KAFKA_CONNECTIONPROPS;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_KAFKA_ENABLED;
@@ -26,11 +27,15 @@ import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_WEBSOCKET_ENABLED;
 
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.naming.InitialContext;
 import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
@@ -45,7 +50,10 @@ import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.config.PropertyGroup;
 import com.ibm.fhir.config.PropertyGroup.PropertyEntry;
 import com.ibm.fhir.model.config.FHIRModelConfig;
+import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.util.FHIRUtil;
+import com.ibm.fhir.model.util.ModelSupport;
+import com.ibm.fhir.notification.FHIRNotificationService;
 import com.ibm.fhir.notification.websocket.impl.FHIRNotificationServiceEndpointConfig;
 import com.ibm.fhir.notifications.kafka.impl.FHIRNotificationKafkaPublisher;
 import com.ibm.fhir.notifications.nats.impl.FHIRNotificationNATSPublisher;
@@ -53,6 +61,7 @@ import com.ibm.fhir.operation.registry.FHIROperationRegistry;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
 import com.ibm.fhir.persistence.interceptor.impl.FHIRPersistenceInterceptorMgr;
 import com.ibm.fhir.persistence.jdbc.util.DerbyBootstrapper;
+import com.ibm.fhir.profile.ProfileSupport;
 import com.ibm.fhir.registry.FHIRRegistry;
 import com.ibm.fhir.search.util.SearchUtil;
 import com.ibm.fhir.server.registry.ServerRegistryResourceProvider;
@@ -66,38 +75,51 @@ public class FHIRServletContextListener implements ServletContextListener {
     private static final String DEFAULT_NATS_CHANNEL = "fhirNotifications";
     private static final String DEFAULT_NATS_CLUSTER = "nats-streaming";
     private static final String DEFAULT_NATS_CLIENT = "fhir-server";
+    private static final String WARM_UP_EXECUTOR_JNDI_NAME = "java:comp/DefaultManagedExecutorService";
     public static final String FHIR_SERVER_INIT_COMPLETE = "com.ibm.fhir.webappInitComplete";
     private static FHIRNotificationKafkaPublisher kafkaPublisher = null;
     private static FHIRNotificationNATSPublisher natsPublisher = null;
+    private static boolean websocketEnabled = false;
+    private static Future<?> definitionWarmUp = null;
 
     @Override
     public void contextInitialized(ServletContextEvent event) {
         if (log.isLoggable(Level.FINER)) {
             log.entering(FHIRServletContextListener.class.getName(), "contextInitialized");
         }
+        final long initStart = System.nanoTime();
         try {
             // Initialize our "initComplete" flag to false.
             event.getServletContext().setAttribute(FHIR_SERVER_INIT_COMPLETE, Boolean.FALSE);
 
+            long phaseStart = System.nanoTime();
             PropertyGroup fhirConfig = FHIRConfiguration.getInstance().loadConfiguration();
             if (fhirConfig == null) {
                 throw new IllegalStateException("No FHIRConfiguration was found");
             }
+            phaseStart = logPhase("FHIRConfiguration", phaseStart);
 
             log.fine("Current working directory: " + Encode.forHtml(System.getProperty("user.dir")));
 
             /*
-             * The following inits are intended to load the FHIRUtil and SearchUtil into the classloader.
+             * The following inits are intended to load ModelSupport, FHIRUtil and SearchUtil into the classloader.
              * Subsequently, the code activates the static values (and maps).
              */
+            log.fine("Initializing ModelSupport...");
+            ModelSupport.getResourceTypes();
+            phaseStart = logPhase("ModelSupport", phaseStart);
+
             log.fine("Initializing FHIRUtil...");
             FHIRUtil.init();
+            phaseStart = logPhase("FHIRUtil", phaseStart);
 
             log.fine("Initializing SearchUtil...");
             SearchUtil.init();
+            phaseStart = logPhase("SearchUtil", phaseStart);
 
             log.fine("Initializing FHIROperationRegistry...");
             FHIROperationRegistry.getInstance();
+            phaseStart = logPhase("FHIROperationRegistry", phaseStart);
 
             // For any singleton resources that need to be shared among our resource class instances,
             // we'll add them to our servlet context so that the resource class can easily retrieve them.
@@ -108,7 +130,7 @@ public class FHIRServletContextListener implements ServletContextListener {
             log.fine("Set shared persistence helper on servlet context.");
 
             // If websocket notifications are enabled, then initialize the endpoint.
-            Boolean websocketEnabled = fhirConfig.getBooleanProperty(PROPERTY_WEBSOCKET_ENABLED, Boolean.FALSE);
+            websocketEnabled = fhirConfig.getBooleanProperty(PROPERTY_WEBSOCKET_ENABLED, Boolean.FALSE);
             if (websocketEnabled) {
                 log.info("Initializing WebSocket notification publisher.");
                 ServerContainer container = (ServerContainer) event.getServletContext().getAttribute(ATTRNAME_WEBSOCKET_SERVERCONTAINER);
@@ -166,11 +188,13 @@ public class FHIRServletContextListener implements ServletContextListener {
             } else {
                 log.info("Bypassing NATS notification init.");
             }
+            phaseStart = logPhase("notification publishers", phaseStart);
 
             Boolean checkReferenceTypes = fhirConfig.getBooleanProperty(PROPERTY_CHECK_REFERENCE_TYPES, Boolean.TRUE);
             FHIRModelConfig.setCheckReferenceTypes(checkReferenceTypes);
 
             bootstrapDerbyDatabases(fhirConfig);
+            phaseStart = logPhase("Derby database bootstrapping", phaseStart);
 
             log.fine("Initializing FHIRRegistry...");
             FHIRRegistry.getInstance();
@@ -182,9 +206,23 @@ public class FHIRServletContextListener implements ServletContextListener {
                 FHIRRegistry.getInstance().register(provider);
                 FHIRPersistenceInterceptorMgr.getInstance().addInterceptor(provider);
             }
+            logPhase("FHIRRegistry", phaseStart);
+
+            Boolean definitionWarmUpEnabled = fhirConfig.getBooleanProperty(PROPERTY_DEFINITION_WARM_UP_ENABLED, Boolean.FALSE);
+            if (definitionWarmUpEnabled) {
+                try {
+                    ExecutorService executor = (ExecutorService) new InitialContext().lookup(WARM_UP_EXECUTOR_JNDI_NAME);
+                    log.info("Starting the definition warm-up in the background.");
+                    definitionWarmUp = executor.submit(FHIRServletContextListener::warmUpDefinitions);
+                } catch (NamingException e) {
+                    log.warning("Unable to look up '" + WARM_UP_EXECUTOR_JNDI_NAME + "'; skipping the definition warm-up: "
+                            + e.getMessage());
+                }
+            }
 
             // Finally, set our "initComplete" flag to true.
             event.getServletContext().setAttribute(FHIR_SERVER_INIT_COMPLETE, Boolean.TRUE);
+            log.info("FHIR Server initialization completed in " + elapsedMillis(initStart) + "ms");
         } catch(Throwable t) {
             String msg = "Encountered an exception while initializing the servlet context.";
             log.log(Level.SEVERE, msg, t);
@@ -196,6 +234,44 @@ public class FHIRServletContextListener implements ServletContextListener {
         }
     }
 
+    /**
+     * Logs the time taken by a phase of the server initialization.
+     *
+     * @return the start time of the next phase
+     */
+    private static long logPhase(String phase, long phaseStart) {
+        log.info("Initialized " + phase + " in " + elapsedMillis(phaseStart) + "ms");
+        return System.nanoTime();
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Loads the base StructureDefinition of each resource type, along with the element definition and binding maps
+     * that the validator builds from it, so that the first requests of each type don't pay for parsing them.
+     */
+    private static void warmUpDefinitions() {
+        long start = System.nanoTime();
+        int count = 0;
+        try {
+            for (Class<? extends Resource> resourceType : ModelSupport.getResourceTypes()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    log.info("Definition warm-up stopped after " + count + " resource types");
+                    return;
+                }
+                ProfileSupport.getElementDefinitionMap(resourceType);
+                ProfileSupport.getBindingMap(ProfileSupport.HL7_STRUCTURE_DEFINITION_URL_PREFIX + ModelSupport.getTypeName(resourceType));
+                count++;
+            }
+            log.info("Warmed up the definitions of " + count + " resource types in " + elapsedMillis(start) + "ms");
+        } catch (Throwable t) {
+            // The definitions are still loaded on first use
+            log.log(Level.WARNING, "Definition warm-up failed after " + count + " resource types", t);
+        }
+    }
+
     /**
      * Bootstraps derby databases during server startup if requested.
      */
@@ -258,6 +334,17 @@ public class FHIRServletContextListener implements ServletContextListener {
             // Set our "initComplete" flag back to false.
             event.getServletContext().setAttribute(FHIR_SERVER_INIT_COMPLETE, Boolean.FALSE);
 
+            // If the definition warm-up is still running, then stop it.
+            if (definitionWarmUp != null) {
+                definitionWarmUp.cancel(true);
+                definitionWarmUp = null;
+            }
+
+            // Deliver any queued notification events before shutting down the publishers.
+            if (websocketEnabled || kafkaPublisher != null || natsPublisher != null) {
+                FHIRNotificationService.getInstance().shutdown();
+            }
+
             // If we previously initialized the Kafka publisher, then shut it down now.
             if (kafkaPublisher != null) {
                 kafkaPublisher.shutdown();
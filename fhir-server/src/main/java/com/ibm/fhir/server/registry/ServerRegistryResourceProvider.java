@@ -17,12 +17,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
 import com.ibm.fhir.config.FHIRRequestContext;
-import com.ibm.fhir.core.util.LRUCache;
+import com.ibm.fhir.core.util.BoundedCache;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.resource.SearchParameter;
 import com.ibm.fhir.model.resource.StructureDefinition;
@@ -40,11 +47,36 @@ import com.ibm.fhir.registry.spi.FHIRRegistryResourceProvider;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.util.SearchUtil;
 
+/**
+ * A registry resource provider which looks up the definitional resources (profiles, value sets, search parameters, ...)
+ * stored in the tenant's datastore.
+ * <br>
+ * Lookups are cached per tenant/datastore, by canonical URL and by query, so that resolving the same definitional
+ * resource again doesn't search the database. The cache entries for a URL are dropped whenever a resource with that URL
+ * is created, updated or deleted through this server, and the cached query results are dropped whenever any
+ * definitional resource is written. Because the write is only visible to other requests once its transaction commits,
+ * the entries are dropped again when that transaction completes. Results are loaded lazily on first use.
+ */
 public class ServerRegistryResourceProvider implements FHIRRegistryResourceProvider, FHIRPersistenceInterceptor {
     public static final Logger log = Logger.getLogger(ServerRegistryResourceProvider.class.getName());
 
+    private static final int MAX_CACHE_ENTRIES = 1024;
+    private static final String TRX_SYNCH_REG_JNDI_NAME = "java:comp/TransactionSynchronizationRegistry";
+
     private final PersistenceHelper persistenceHelper;
-    private final Map<String, Map<String, List<FHIRRegistryResource>>> registryResourceMap = new ConcurrentHashMap<>();
+    private final Map<String, TenantCache> tenantCacheMap = new ConcurrentHashMap<>();
+
+    /**
+     * The cached lookups of a single tenant/datastore.
+     */
+    private static class TenantCache {
+        // registry resources by url, sorted by version
+        private final BoundedCache<String, List<FHIRRegistryResource>> registryResourceMap = BoundedCache.createBoundedCache(MAX_CACHE_ENTRIES);
+        // registry resources by resource type and query
+        private final BoundedCache<String, Collection<FHIRRegistryResource>> queryResultMap = BoundedCache.createBoundedCache(MAX_CACHE_ENTRIES);
+        // incremented on each write of a definitional resource, so that a lookup which overlaps a write isn't cached
+        private final AtomicLong generation = new AtomicLong();
+    }
 
     public ServerRegistryResourceProvider(PersistenceHelper persistenceHelper) {
         try {
@@ -56,12 +88,10 @@ public class ServerRegistryResourceProvider implements FHIRRegistryResourceProvi
 
     @Override
     public FHIRRegistryResource getRegistryResource(Class<? extends Resource> resourceType, String url, String version) {
-        String tenantId = FHIRRequestContext.get().getTenantId();
-        String dataStoreId = FHIRRequestContext.get().getDataStoreId();
-        String key = tenantId + ":" + dataStoreId;
-        List<FHIRRegistryResource> registryResources = registryResourceMap.computeIfAbsent(key, k -> LRUCache.createLRUCache(1024))
-                .computeIfAbsent(url, k -> computeRegistryResources(resourceType, url));
-        if (!registryResources.isEmpty()) {
+        TenantCache tenantCache = getTenantCache();
+        List<FHIRRegistryResource> registryResources = lookup(tenantCache, tenantCache.registryResourceMap, url,
+            () -> computeRegistryResources(resourceType, url));
+        if (registryResources != null && !registryResources.isEmpty()) {
             if (version != null) {
                 Version v = Version.from(version);
                 for (FHIRRegistryResource resource : registryResources) {
@@ -123,6 +153,28 @@ public class ServerRegistryResourceProvider implements FHIRRegistryResourceProvi
         updateRegistryResourceMap(event);
     }
 
+    private TenantCache getTenantCache() {
+        String tenantId = FHIRRequestContext.get().getTenantId();
+        String dataStoreId = FHIRRequestContext.get().getDataStoreId();
+        return tenantCacheMap.computeIfAbsent(tenantId + ":" + dataStoreId, k -> new TenantCache());
+    }
+
+    /**
+     * Get the cached value for the key, or compute and cache it. The computed value is only cached if no definitional
+     * resource was written while it was being computed; a null value (a failed lookup) is never cached.
+     */
+    private <T> T lookup(TenantCache tenantCache, BoundedCache<String, T> cache, String key, Supplier<T> supplier) {
+        T value = cache.get(key);
+        if (value == null) {
+            long generation = tenantCache.generation.get();
+            value = supplier.get();
+            if (value != null && generation == tenantCache.generation.get()) {
+                cache.put(key, value);
+            }
+        }
+        return value;
+    }
+
     private List<FHIRRegistryResource> computeRegistryResources(Class<? extends Resource> resourceType, String url) {
         FHIRTransactionHelper transactionHelper = null;
         try {
@@ -154,10 +206,18 @@ public class ServerRegistryResourceProvider implements FHIRRegistryResourceProvi
                 transactionHelper.rollback();
             }
         }
-        return Collections.emptyList();
+        return null;
     }
 
     private Collection<FHIRRegistryResource> getRegistryResources(Class<? extends Resource> resourceType, Map<String, List<String>> queryParameters) {
+        TenantCache tenantCache = getTenantCache();
+        String key = resourceType.getSimpleName() + "?" + queryParameters;
+        Collection<FHIRRegistryResource> registryResources = lookup(tenantCache, tenantCache.queryResultMap, key,
+            () -> computeRegistryResources(resourceType, queryParameters));
+        return (registryResources != null) ? registryResources : Collections.emptyList();
+    }
+
+    private Collection<FHIRRegistryResource> computeRegistryResources(Class<? extends Resource> resourceType, Map<String, List<String>> queryParameters) {
         FHIRTransactionHelper transactionHelper = null;
         try {
             FHIRPersistence persistence = persistenceHelper.getFHIRPersistenceImplementation();
@@ -202,23 +262,61 @@ public class ServerRegistryResourceProvider implements FHIRRegistryResourceProvi
             }
         }
 
-        return Collections.emptyList();
+        return null;
     }
 
     private void updateRegistryResourceMap(FHIRPersistenceEvent event) {
         if (event == null || event.getFhirResource() == null || !isDefinitionalResource(event.getFhirResource())) {
             return;
         }
-        Resource resource = event.getFhirResource();
-        String url = getUrl(resource);
+        TenantCache tenantCache = getTenantCache();
+        String url = getUrl(event.getFhirResource());
+        invalidate(tenantCache, url);
+
+        // A lookup which runs between this event and the commit still finds the previous definition, so invalidate
+        // again once the transaction completes
+        TransactionSynchronizationRegistry trxSynchRegistry = getTrxSynchRegistry();
+        if (trxSynchRegistry != null && trxSynchRegistry.getTransactionKey() != null) {
+            trxSynchRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(tenantCache, url);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drop the cached query results and the cached resources with the passed url, and make sure that no lookup which
+     * is in progress caches its result.
+     */
+    private void invalidate(TenantCache tenantCache, String url) {
+        tenantCache.generation.incrementAndGet();
+        tenantCache.queryResultMap.clear();
         if (url != null) {
-            String tenantId = FHIRRequestContext.get().getTenantId();
-            String dataStoreId = FHIRRequestContext.get().getDataStoreId();
-            String key = tenantId + ":" + dataStoreId;
-            List<FHIRRegistryResource> previous = registryResourceMap.getOrDefault(key, Collections.emptyMap()).remove(url);
+            List<FHIRRegistryResource> previous = tenantCache.registryResourceMap.remove(url);
             if (previous != null && !previous.isEmpty()) {
                 log.fine("Removed registry resource(s) with url '" + url + "' from the ServerRegistryResourceProvider cache");
             }
         }
     }
+
+    /**
+     * @return the container's TransactionSynchronizationRegistry, or null if it is not available (in which case the
+     *         cache entries are only dropped when the write happens)
+     */
+    private TransactionSynchronizationRegistry getTrxSynchRegistry() {
+        try {
+            return (TransactionSynchronizationRegistry) new InitialContext().lookup(TRX_SYNCH_REG_JNDI_NAME);
+        } catch (NamingException e) {
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Unable to look up '" + TRX_SYNCH_REG_JNDI_NAME + "': " + e.getMessage());
+            }
+            return null;
+        }
+    }
 }
@@ -73,7 +73,7 @@ public class Batch extends FHIRResource {
                 throw buildRestException(msg, IssueType.INVALID);
             }
 
-            FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
+            FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl(), getPersistenceHelper());
             responseBundle = helper.doBundle(inputBundle, null);
             status = Status.OK;
             return Response.ok(responseBundle).build();
@@ -19,8 +19,11 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,15 +31,18 @@ import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.config.PropertyGroup;
+import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.format.Format;
 import com.ibm.fhir.model.generator.FHIRGenerator;
@@ -48,11 +54,15 @@ import com.ibm.fhir.model.type.code.IssueSeverity;
 import com.ibm.fhir.model.type.code.IssueType;
 import com.ibm.fhir.model.util.FHIRUtil;
 import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.ResourcePayload;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
 import com.ibm.fhir.persistence.helper.PersistenceHelper;
+import com.ibm.fhir.provider.FHIRProvider;
+import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.server.exception.FHIRRestBundledRequestException;
 import com.ibm.fhir.server.listener.FHIRServletContextListener;
+import com.ibm.fhir.server.util.PayloadBundle;
 
 /**
  * The base class for JAX-RS "Resource" classes which implement the FHIR HTTP API
@@ -73,6 +83,12 @@ public class FHIRResource {
 
     protected static final String AUDIT_LOGGING_ERR_MSG = "An error occurred while writing the audit log message.";
 
+    private static final String GZIP = "gzip";
+
+    // The query parameters which don't prevent a stored resource payload from being returned as-is;
+    // _format is mapped to the Accept header and _pretty is checked separately.
+    private static final Set<String> PAYLOAD_QUERY_PARAMETERS = new HashSet<>(Arrays.asList("_format", "_pretty"));
+
     private PersistenceHelper persistenceHelper = null;
     private FHIRPersistence persistence = null;
 
@@ -94,6 +110,9 @@ public class FHIRResource {
     @Context
     protected SecurityContext securityContext;
 
+    @Context
+    protected HttpHeaders httpHeaders;
+
     protected PropertyGroup fhirConfig = null;
 
     /**
@@ -210,6 +229,120 @@ public class FHIRResource {
         return "W/\"" + resource.getMeta().getVersionId().getValue() + "\"";
     }
 
+    /**
+     * Adds the Etag and Last-Modified headers for the specified stored resource payload to the response object.
+     */
+    protected ResponseBuilder addHeaders(ResponseBuilder rb, ResourcePayload payload) {
+        return rb.header(HttpHeaders.ETAG, "W/\"" + payload.getVersionId() + "\"")
+                .lastModified(Date.from(payload.getLastUpdated()));
+    }
+
+    /**
+     * Returns the media type to use for returning a stored resource payload to the client as-is, or null if
+     * the response must be generated from the parsed resource. The payload is stored as compact JSON, so it can only
+     * be returned as-is for a JSON response which is not pretty-printed and not filtered by _summary or _elements
+     * (or by any other query parameter).
+     */
+    protected MediaType getPayloadMediaType() throws FHIRPersistenceException {
+        if (!getPersistenceImpl().isReadPayloadSupported() || FHIRProvider.isPretty(httpHeaders, uriInfo)) {
+            return null;
+        }
+        for (String queryParameter : uriInfo.getQueryParameters().keySet()) {
+            if (!PAYLOAD_QUERY_PARAMETERS.contains(queryParameter)) {
+                return null;
+            }
+        }
+        return getAcceptedJsonMediaType();
+    }
+
+    /**
+     * Returns the media type to use for returning a search result Bundle built from the stored resource payloads, or
+     * null if the Bundle must be generated from the parsed resources. This is only possible for a JSON response which
+     * is not pretty-printed and whose resources are not filtered by _summary or _elements. A search with _include or
+     * _revinclude, or a whole-system search, can still not be answered from the payloads; for those
+     * {@link com.ibm.fhir.server.util.FHIRRestHelper#doSearchPayloads} returns null and the caller falls back to
+     * the regular search.
+     */
+    protected MediaType getSearchPayloadMediaType() throws FHIRPersistenceException {
+        if (!getPersistenceImpl().isSearchPayloadSupported() || FHIRProvider.isPretty(httpHeaders, uriInfo)) {
+            return null;
+        }
+        Set<String> queryParameters = uriInfo.getQueryParameters().keySet();
+        if (queryParameters.contains(SearchConstants.ELEMENTS) || queryParameters.contains(SearchConstants.SUMMARY)) {
+            return null;
+        }
+        return getAcceptedJsonMediaType();
+    }
+
+    /**
+     * Returns the JSON media type preferred by the client, or null if the client prefers XML.
+     */
+    private MediaType getAcceptedJsonMediaType() {
+        // The acceptable media types are sorted by preference and contain */* if there is no Accept header
+        for (MediaType mediaType : httpHeaders.getAcceptableMediaTypes()) {
+            if (mediaType.isCompatible(FHIRMediaType.APPLICATION_FHIR_JSON_TYPE)) {
+                return FHIRMediaType.APPLICATION_FHIR_JSON_TYPE;
+            } else if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return MediaType.APPLICATION_JSON_TYPE;
+            } else if (mediaType.isCompatible(FHIRMediaType.APPLICATION_FHIR_XML_TYPE)
+                    || mediaType.isCompatible(MediaType.APPLICATION_XML_TYPE)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the stored resource payload as the entity of the response object, along with its Etag and Last-Modified
+     * headers. If the client accepts the gzip content coding, the compressed payload is returned exactly as stored;
+     * otherwise it is decompressed as it is written.
+     */
+    protected ResponseBuilder payloadResponse(ResponseBuilder rb, ResourcePayload payload, MediaType mediaType) {
+        if (isGzipAccepted()) {
+            rb = rb.entity((StreamingOutput) payload::transferCompressedTo)
+                    .header(HttpHeaders.CONTENT_ENCODING, GZIP);
+        } else {
+            rb = rb.entity((StreamingOutput) payload::transferTo);
+        }
+        rb = rb.type(mediaType).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        return addHeaders(rb, payload);
+    }
+
+    /**
+     * Sets the search result Bundle built from the stored resource payloads as the entity of the response object.
+     * The Bundle is written as the response is sent, one payload at a time.
+     */
+    protected ResponseBuilder payloadBundleResponse(ResponseBuilder rb, PayloadBundle payloadBundle, MediaType mediaType) {
+        return rb.entity((StreamingOutput) payloadBundle::writeTo).type(mediaType);
+    }
+
+    /**
+     * Returns true iff the Accept-Encoding request header includes gzip with a non-zero quality value.
+     */
+    private boolean isGzipAccepted() {
+        String acceptEncoding = httpHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected Response exceptionResponse(FHIRRestBundledRequestException e) {
         Response response;
         if (e.getResponseBundle() != null) {
@@ -298,7 +431,7 @@ public class FHIRResource {
     /**
      * Retrieves the shared persistence helper object from the servlet context.
      */
-    private synchronized PersistenceHelper getPersistenceHelper() {
+    protected synchronized PersistenceHelper getPersistenceHelper() {
         if (persistenceHelper == null) {
             persistenceHelper =
                     (PersistenceHelper) context.getAttribute(FHIRPersistenceHelper.class.getName());
@@ -34,6 +34,8 @@ import org.eclipse.microprofile.jwt.JsonWebToken;
 import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.persistence.ResourceMetadata;
+import com.ibm.fhir.persistence.ResourcePayload;
 import com.ibm.fhir.rest.FHIRRestOperationResponse;
 import com.ibm.fhir.server.util.FHIRRestHelper;
 import com.ibm.fhir.server.util.RestAuditLogger;
@@ -72,8 +74,6 @@ public class Read extends FHIRResource {
             MultivaluedMap<String, String> queryParameters = uriInfo.getQueryParameters();
             long modifiedSince = parseIfModifiedSince();
 
-            FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
-            Resource resource = helper.doRead(type, id, true, false, null, null, queryParameters);
             int version2Match = -1;
             // Support ETag value with or without " (and W/)
             // e.g:  1, "1", W/1, W/"1" (the first format is used by TouchStone)
@@ -95,25 +95,47 @@ public class Read extends FHIRResource {
                 modifiedTime2Compare = Instant.ofEpochMilli(modifiedSince);
             }
 
-            boolean isModified = true;
-            // check if-not-match first
-            if (version2Match != -1) {
-                if (version2Match == Integer.parseInt(resource.getMeta().getVersionId().getValue())) {
-                    isModified = false;
+            FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
+            // For a conditional read, check the version and last updated time first, so that
+            // the resource is only read (and parsed) if it has actually been modified.
+            // The read interceptors are invoked for this check, so they are not invoked again for the read.
+            boolean invokeInterceptors = true;
+            if ((version2Match != -1 || modifiedTime2Compare != null) && getPersistenceImpl().isReadMetadataSupported()) {
+                ResourceMetadata metadata = helper.doReadMetadata(type, id, null);
+                if (!isModified(version2Match, modifiedTime2Compare, metadata.getVersionId(), metadata.getLastUpdated())) {
+                    status = Status.NOT_MODIFIED;
+                    return Response.status(Response.Status.NOT_MODIFIED).build();
                 }
+                invokeInterceptors = false;
             }
-            // then check if-modified-since
-            if(isModified && modifiedTime2Compare != null) {
-                if (resource.getMeta().getLastUpdated().getValue().toInstant().isBefore(modifiedTime2Compare)) {
-                    isModified = false;
-                }
+
+            // Return the stored payload as-is when the response would just be its compact JSON serialization
+            MediaType payloadMediaType = getPayloadMediaType();
+            Resource resource = null;
+            ResourcePayload payload = null;
+            int versionId;
+            Instant lastUpdated;
+            if (payloadMediaType != null) {
+                payload = helper.doReadPayload(type, id, null, invokeInterceptors);
+                versionId = payload.getVersionId();
+                lastUpdated = payload.getLastUpdated();
+            } else {
+                resource = helper.doRead(type, id, true, false, null, null, queryParameters, invokeInterceptors);
+                versionId = Integer.parseInt(resource.getMeta().getVersionId().getValue());
+                lastUpdated = resource.getMeta().getLastUpdated().getValue().toInstant();
             }
 
+            boolean isModified = isModified(version2Match, modifiedTime2Compare, versionId, lastUpdated);
+
             ResponseBuilder response;
             if (isModified) {
                 status = Status.OK;
-                response = Response.ok().entity(resource);
-                response = addHeaders(response, resource);
+                if (payload != null) {
+                    response = payloadResponse(Response.ok(), payload, payloadMediaType);
+                } else {
+                    response = Response.ok().entity(resource);
+                    response = addHeaders(response, resource);
+                }
             } else {
                 status = Status.NOT_MODIFIED;
                 response = Response.status(Response.Status.NOT_MODIFIED);
@@ -137,4 +159,25 @@ public class Read extends FHIRResource {
             log.exiting(this.getClass().getName(), "read(String,String)");
         }
     }
+
+    /**
+     * @param version2Match the version from the If-None-Match header, or -1
+     * @param modifiedTime2Compare the time from the If-Modified-Since header, or null
+     * @return false if the resource version matches either condition, true otherwise
+     */
+    private boolean isModified(int version2Match, Instant modifiedTime2Compare, int versionId, Instant lastUpdated) {
+        // check if-not-match first
+        if (version2Match != -1) {
+            if (version2Match == versionId) {
+                return false;
+            }
+        }
+        // then check if-modified-since
+        if (modifiedTime2Compare != null) {
+            if (lastUpdated.isBefore(modifiedTime2Compare)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
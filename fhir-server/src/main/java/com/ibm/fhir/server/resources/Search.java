@@ -32,6 +32,7 @@ import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.resource.Bundle;
 import com.ibm.fhir.server.util.FHIRRestHelper;
+import com.ibm.fhir.server.util.PayloadBundle;
 import com.ibm.fhir.server.util.RestAuditLogger;
 
 @Path("/")
@@ -68,6 +69,15 @@ public class Search extends FHIRResource {
 
             queryParameters = uriInfo.getQueryParameters();
             FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
+            MediaType payloadMediaType = getSearchPayloadMediaType();
+            if (payloadMediaType != null) {
+                PayloadBundle payloadBundle = helper.doSearchPayloads(type, null, null, queryParameters, getRequestUri(), null);
+                if (payloadBundle != null) {
+                    bundle = payloadBundle.getEnvelope();
+                    status = Status.OK;
+                    return payloadBundleResponse(Response.status(status), payloadBundle, payloadMediaType).build();
+                }
+            }
             bundle = helper.doSearch(type, null, null, queryParameters, getRequestUri(), null, null);
             status = Status.OK;
             return Response.status(status).entity(bundle).build();
@@ -104,6 +114,15 @@ public class Search extends FHIRResource {
 
             queryParameters = uriInfo.getQueryParameters();
             FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
+            MediaType payloadMediaType = getSearchPayloadMediaType();
+            if (payloadMediaType != null) {
+                PayloadBundle payloadBundle = helper.doSearchPayloads(type, compartment, compartmentId, queryParameters, getRequestUri(), null);
+                if (payloadBundle != null) {
+                    bundle = payloadBundle.getEnvelope();
+                    status = Status.OK;
+                    return payloadBundleResponse(Response.status(status), payloadBundle, payloadMediaType).build();
+                }
+            }
             bundle = helper.doSearch(type, compartment, compartmentId, queryParameters, getRequestUri(), null, null);
             status = Status.OK;
             return Response.status(status).entity(bundle).build();
@@ -140,6 +159,15 @@ public class Search extends FHIRResource {
 
             queryParameters = uriInfo.getQueryParameters();
             FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
+            MediaType payloadMediaType = getSearchPayloadMediaType();
+            if (payloadMediaType != null) {
+                PayloadBundle payloadBundle = helper.doSearchPayloads(type, null, null, queryParameters, getRequestUri(), null);
+                if (payloadBundle != null) {
+                    bundle = payloadBundle.getEnvelope();
+                    status = Status.OK;
+                    return payloadBundleResponse(Response.status(status), payloadBundle, payloadMediaType).build();
+                }
+            }
             bundle = helper.doSearch(type, null, null, queryParameters, getRequestUri(), null, null);
             status = Status.OK;
             return Response.status(status).entity(bundle).build();
@@ -30,6 +30,7 @@ import org.eclipse.microprofile.jwt.JsonWebToken;
 import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.persistence.ResourcePayload;
 import com.ibm.fhir.rest.FHIRRestOperationResponse;
 import com.ibm.fhir.server.util.FHIRRestHelper;
 import com.ibm.fhir.server.util.RestAuditLogger;
@@ -66,10 +67,18 @@ public class VRead extends FHIRResource {
             checkInitComplete();
 
             FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
-            Resource resource = helper.doVRead(type, id, vid, null);
+            // Return the stored payload as-is when the response would just be its compact JSON serialization
+            MediaType payloadMediaType = getPayloadMediaType();
+            ResponseBuilder response;
+            if (payloadMediaType != null) {
+                ResourcePayload payload = helper.doVReadPayload(type, id, vid, null);
+                response = payloadResponse(Response.ok(), payload, payloadMediaType);
+            } else {
+                Resource resource = helper.doVRead(type, id, vid, null);
+                response = Response.ok().entity(resource);
+                response = addHeaders(response, resource);
+            }
             status = Status.OK;
-            ResponseBuilder response = Response.ok().entity(resource);
-            response = addHeaders(response, resource);
             return response.build();
         } catch (FHIROperationException e) {
             status = issueListToStatus(e.getIssues());
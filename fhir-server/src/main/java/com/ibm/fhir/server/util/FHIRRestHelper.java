@@ -22,12 +22,20 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -51,6 +59,7 @@ import com.ibm.fhir.model.resource.Parameters;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.type.CodeableConcept;
 import com.ibm.fhir.model.type.Extension;
+import com.ibm.fhir.model.type.Reference;
 import com.ibm.fhir.model.type.UnsignedInt;
 import com.ibm.fhir.model.type.Uri;
 import com.ibm.fhir.model.type.Url;
@@ -58,6 +67,7 @@ import com.ibm.fhir.model.type.code.BundleType;
 import com.ibm.fhir.model.type.code.HTTPVerb;
 import com.ibm.fhir.model.type.code.IssueSeverity;
 import com.ibm.fhir.model.type.code.IssueType;
+import com.ibm.fhir.model.util.CollectingVisitor;
 import com.ibm.fhir.model.util.FHIRUtil;
 import com.ibm.fhir.model.util.ModelSupport;
 import com.ibm.fhir.model.util.ReferenceMappingVisitor;
@@ -67,14 +77,18 @@ import com.ibm.fhir.operation.registry.FHIROperationRegistry;
 import com.ibm.fhir.operation.util.FHIROperationUtil;
 import com.ibm.fhir.persistence.FHIRPersistence;
 import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
+import com.ibm.fhir.persistence.ResourceMetadata;
+import com.ibm.fhir.persistence.ResourcePayload;
 import com.ibm.fhir.persistence.SingleResourceResult;
 import com.ibm.fhir.persistence.context.FHIRHistoryContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
+import com.ibm.fhir.persistence.context.HistoryCursor;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceDeletedException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceNotFoundException;
 import com.ibm.fhir.persistence.helper.FHIRTransactionHelper;
+import com.ibm.fhir.persistence.helper.PersistenceHelper;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
 import com.ibm.fhir.persistence.interceptor.impl.FHIRPersistenceInterceptorMgr;
 import com.ibm.fhir.persistence.util.FHIRPersistenceUtil;
@@ -85,6 +99,7 @@ import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.search.SummaryValueSet;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.exception.FHIRSearchException;
+import com.ibm.fhir.search.parameters.KeysetCursor;
 import com.ibm.fhir.search.util.SearchUtil;
 import com.ibm.fhir.server.exception.FHIRRestBundledRequestException;
 import com.ibm.fhir.validation.FHIRValidator;
@@ -100,6 +115,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
     private static final String EXTENSION_URL = "http://ibm.com/fhir/extension";
     private static final String LOCAL_REF_PREFIX = "urn:";
+    private static final String BATCH_EXECUTOR_JNDI_NAME = "java:comp/DefaultManagedExecutorService";
 
     public static final DateTimeFormatter PARSER_FORMATTER = new DateTimeFormatterBuilder()
             .appendPattern("EEE")
@@ -114,6 +130,9 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
     private FHIRPersistence persistence = null;
 
+    // Used to obtain additional persistence instances when processing batch entries in parallel; may be null
+    private PersistenceHelper persistenceHelper = null;
+
     // These values are used for correlating requests within a bundle.
     private String bundleTransactionCorrelationId = null;
     private String bundleRequestCorrelationId = null;
@@ -122,6 +141,18 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         this.persistence = persistence;
     }
 
+    /**
+     * @param persistence
+     *            the persistence implementation to use for the current request
+     * @param persistenceHelper
+     *            used to obtain a separate persistence implementation for each worker when the entries of a 'batch'
+     *            request bundle are processed in parallel
+     */
+    public FHIRRestHelper(FHIRPersistence persistence, PersistenceHelper persistenceHelper) {
+        this.persistence = persistence;
+        this.persistenceHelper = persistenceHelper;
+    }
+
     @Override
     public FHIRRestOperationResponse doCreate(String type, Resource resource, String ifNoneExist,
             Map<String, String> requestProperties) throws Exception {
@@ -669,6 +700,27 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
     public Resource doRead(String type, String id, boolean throwExcOnNull, boolean includeDeleted,
             Map<String, String> requestProperties, Resource contextResource, MultivaluedMap<String, String> queryParameters)
             throws Exception {
+        return doRead(type, id, throwExcOnNull, includeDeleted, requestProperties, contextResource, queryParameters, true);
+    }
+
+    /**
+     * Performs a 'read' operation to retrieve a Resource.
+     *
+     * @param type
+     *            the resource type associated with the Resource to be retrieved
+     * @param id
+     *            the id of the Resource to be retrieved
+     * @param requestProperties
+     *            additional request properties which supplement the HTTP headers associated with this request
+     * @param invokeInterceptors
+     *            false if the 'beforeRead' and 'afterRead' interceptors were already invoked for this read, e.g. by
+     *            {@link #doReadMetadata}
+     * @return the Resource
+     * @throws Exception
+     */
+    public Resource doRead(String type, String id, boolean throwExcOnNull, boolean includeDeleted,
+            Map<String, String> requestProperties, Resource contextResource, MultivaluedMap<String, String> queryParameters,
+            boolean invokeInterceptors) throws Exception {
         log.entering(this.getClass().getName(), "doRead");
 
         FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
@@ -697,7 +749,9 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             // First, invoke the 'beforeRead' interceptor methods.
             FHIRPersistenceEvent event =
                     new FHIRPersistenceEvent(contextResource, buildPersistenceEventProperties(type, id, null, requestProperties));
-            getInterceptorMgr().fireBeforeReadEvent(event);
+            if (invokeInterceptors) {
+                getInterceptorMgr().fireBeforeReadEvent(event);
+            }
 
             FHIRPersistenceContext persistenceContext =
                     FHIRPersistenceContextFactory.createPersistenceContext(event, includeDeleted, searchContext);
@@ -709,7 +763,9 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             event.setFhirResource(resource);
 
             // Invoke the 'afterRead' interceptor methods.
-            getInterceptorMgr().fireAfterReadEvent(event);
+            if (invokeInterceptors) {
+                getInterceptorMgr().fireAfterReadEvent(event);
+            }
 
             // Commit our transaction if we started one before.
             txn.commit();
@@ -729,6 +785,238 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         }
     }
 
+    /**
+     * Performs a 'read' operation to retrieve the stored payload of a Resource without parsing it.
+     * The 'beforeRead' and 'afterRead' interceptors are invoked as for {@link #doRead}; the resource
+     * is only parsed if an interceptor asks the event for it.
+     *
+     * @param type
+     *            the resource type associated with the Resource to be retrieved
+     * @param id
+     *            the id of the Resource to be retrieved
+     * @param requestProperties
+     *            additional request properties which supplement the HTTP headers associated with this request
+     * @return the ResourcePayload
+     * @throws Exception
+     */
+    public ResourcePayload doReadPayload(String type, String id, Map<String, String> requestProperties) throws Exception {
+        return doReadPayload(type, id, requestProperties, true);
+    }
+
+    /**
+     * Performs a 'read' operation to retrieve the stored payload of a Resource without parsing it.
+     *
+     * @param type
+     *            the resource type associated with the Resource to be retrieved
+     * @param id
+     *            the id of the Resource to be retrieved
+     * @param requestProperties
+     *            additional request properties which supplement the HTTP headers associated with this request
+     * @param invokeInterceptors
+     *            false if the 'beforeRead' and 'afterRead' interceptors were already invoked for this read, e.g. by
+     *            {@link #doReadMetadata}
+     * @return the ResourcePayload
+     * @throws Exception
+     */
+    public ResourcePayload doReadPayload(String type, String id, Map<String, String> requestProperties, boolean invokeInterceptors)
+            throws Exception {
+        log.entering(this.getClass().getName(), "doReadPayload");
+
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
+        ResourcePayload payload = null;
+
+        // Save the current request context.
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+
+        try {
+            if (!ModelSupport.isResourceType(type)) {
+                throw buildUnsupportedResourceTypeException(type, IssueType.NOT_SUPPORTED);
+            }
+
+            Class<? extends Resource> resourceType = getResourceType(type);
+
+            // Start a new txn in the persistence layer if one is not already active.
+            txn.begin();
+
+            // First, invoke the 'beforeRead' interceptor methods.
+            FHIRPersistenceEvent event =
+                    new FHIRPersistenceEvent(null, buildPersistenceEventProperties(type, id, null, requestProperties));
+            if (invokeInterceptors) {
+                getInterceptorMgr().fireBeforeReadEvent(event);
+            }
+
+            FHIRPersistenceContext persistenceContext = FHIRPersistenceContextFactory.createPersistenceContext(event);
+            payload = persistence.readPayload(persistenceContext, resourceType, id);
+            if (payload == null) {
+                throw new FHIRPersistenceResourceNotFoundException("Resource '" + type + "/" + id + "' not found.");
+            }
+
+            event.setFhirResource(resourceType, payload);
+
+            // Invoke the 'afterRead' interceptor methods.
+            if (invokeInterceptors) {
+                getInterceptorMgr().fireAfterReadEvent(event);
+            }
+
+            // Commit our transaction if we started one before.
+            txn.commit();
+            txn = null;
+
+            return payload;
+        } finally {
+            // Restore the original request context.
+            FHIRRequestContext.set(requestContext);
+
+            // If we previously started a transaction and it's still active, we need to rollback due to an error.
+            if (txn != null) {
+                txn.rollback();
+            }
+
+            log.exiting(this.getClass().getName(), "doReadPayload");
+        }
+    }
+
+    /**
+     * Performs a 'read' operation which only retrieves the version id and last updated time of a Resource, so that a
+     * conditional read of an unchanged resource can be answered without reading the resource itself.
+     * The 'beforeRead' and 'afterRead' interceptors are invoked as for {@link #doRead}; the resource is only read
+     * and parsed if an interceptor asks the event for it. If the caller goes on to read the resource, it should not
+     * invoke the interceptors again.
+     *
+     * @param type
+     *            the resource type associated with the Resource to be retrieved
+     * @param id
+     *            the id of the Resource to be retrieved
+     * @param requestProperties
+     *            additional request properties which supplement the HTTP headers associated with this request
+     * @return the ResourceMetadata
+     * @throws Exception
+     */
+    public ResourceMetadata doReadMetadata(String type, String id, Map<String, String> requestProperties) throws Exception {
+        log.entering(this.getClass().getName(), "doReadMetadata");
+
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
+        ResourceMetadata metadata = null;
+
+        // Save the current request context.
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+
+        try {
+            if (!ModelSupport.isResourceType(type)) {
+                throw buildUnsupportedResourceTypeException(type, IssueType.NOT_SUPPORTED);
+            }
+
+            Class<? extends Resource> resourceType = getResourceType(type);
+
+            // Start a new txn in the persistence layer if one is not already active.
+            txn.begin();
+
+            // First, invoke the 'beforeRead' interceptor methods.
+            FHIRPersistenceEvent event =
+                    new FHIRPersistenceEvent(null, buildPersistenceEventProperties(type, id, null, requestProperties));
+            getInterceptorMgr().fireBeforeReadEvent(event);
+
+            FHIRPersistenceContext persistenceContext = FHIRPersistenceContextFactory.createPersistenceContext(event);
+            metadata = persistence.readMetadata(persistenceContext, resourceType, id);
+            if (metadata == null) {
+                throw new FHIRPersistenceResourceNotFoundException("Resource '" + type + "/" + id + "' not found.");
+            }
+
+            event.setFhirResourceLoader(() -> {
+                ResourcePayload payload = persistence.readPayload(persistenceContext, resourceType, id);
+                return (payload != null) ? payload.getResource(resourceType) : null;
+            });
+
+            // Invoke the 'afterRead' interceptor methods.
+            getInterceptorMgr().fireAfterReadEvent(event);
+
+            // Commit our transaction if we started one before.
+            txn.commit();
+            txn = null;
+
+            return metadata;
+        } finally {
+            // Restore the original request context.
+            FHIRRequestContext.set(requestContext);
+
+            // If we previously started a transaction and it's still active, we need to rollback due to an error.
+            if (txn != null) {
+                txn.rollback();
+            }
+
+            log.exiting(this.getClass().getName(), "doReadMetadata");
+        }
+    }
+
+    /**
+     * Performs a 'vread' operation to retrieve the stored payload of the specified version of a Resource
+     * without parsing it.
+     *
+     * @param type
+     *            the resource type associated with the Resource to be retrieved
+     * @param id
+     *            the id of the Resource to be retrieved
+     * @param versionId
+     *            the version id of the Resource to be retrieved
+     * @param requestProperties
+     *            additional request properties which supplement the HTTP headers associated with this request
+     * @return the ResourcePayload
+     * @throws Exception
+     */
+    public ResourcePayload doVReadPayload(String type, String id, String versionId, Map<String, String> requestProperties) throws Exception {
+        log.entering(this.getClass().getName(), "doVReadPayload");
+
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
+        ResourcePayload payload = null;
+
+        // Save the current request context.
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+
+        try {
+            if (!ModelSupport.isResourceType(type)) {
+                throw buildUnsupportedResourceTypeException(type, IssueType.NOT_SUPPORTED);
+            }
+
+            Class<? extends Resource> resourceType = getResourceType(type);
+
+            // Start a new txn in the persistence layer if one is not already active.
+            txn.begin();
+
+            // First, invoke the 'beforeVread' interceptor methods.
+            FHIRPersistenceEvent event =
+                    new FHIRPersistenceEvent(null, buildPersistenceEventProperties(type, id, versionId, requestProperties));
+            getInterceptorMgr().fireBeforeVreadEvent(event);
+
+            FHIRPersistenceContext persistenceContext = FHIRPersistenceContextFactory.createPersistenceContext(event);
+            payload = persistence.vreadPayload(persistenceContext, resourceType, id, versionId);
+            if (payload == null) {
+                throw new FHIRPersistenceResourceNotFoundException("Resource '"
+                        + resourceType.getSimpleName() + "/" + id + "' version " + versionId + " not found.");
+            }
+
+            event.setFhirResource(resourceType, payload);
+
+            // Invoke the 'afterVread' interceptor methods.
+            getInterceptorMgr().fireAfterVreadEvent(event);
+
+            // Commit our transaction if we started one before.
+            txn.commit();
+            txn = null;
+
+            return payload;
+        } finally {
+            // Restore the original request context.
+            FHIRRequestContext.set(requestContext);
+
+            // If we previously started a transaction and it's still active, we need to rollback due to an error.
+            if (txn != null) {
+                txn.rollback();
+            }
+
+            log.exiting(this.getClass().getName(), "doVReadPayload");
+        }
+    }
+
     /**
      * Performs a 'vread' operation by retrieving the specified version of a Resource.
      *
@@ -956,6 +1244,113 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         }
     }
 
+    /**
+     * Performs a search whose result Bundle is built from the stored resource payloads, so that the resources of the
+     * page are not parsed and the Bundle can be written without generating each resource again.
+     *
+     * @param type
+     *            the resource type associated with the search
+     * @param queryParameters
+     *            a Map containing the query parameters from the request URL
+     * @param requestProperties
+     *            additional request properties which supplement the HTTP headers associated with this request
+     * @return the search result Bundle, or null if this search cannot be answered from the stored payloads
+     *         (a whole-system search, or a search with _include, _revinclude, _elements or _summary), in which case
+     *         nothing has been done and the caller must use {@link #doSearch} instead
+     * @throws Exception
+     */
+    public PayloadBundle doSearchPayloads(String type, String compartment, String compartmentId,
+            MultivaluedMap<String, String> queryParameters, String requestUri,
+            Map<String, String> requestProperties) throws Exception {
+        log.entering(this.getClass().getName(), "doSearchPayloads");
+
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
+
+        // Save the current request context.
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+
+        try {
+            if (!ModelSupport.isResourceType(type)) {
+                throw buildUnsupportedResourceTypeException(type, IssueType.NOT_SUPPORTED);
+            }
+
+            Class<? extends Resource> resourceType = getResourceType(type);
+            if (!isSearchPayloadQuery(resourceType, queryParameters)) {
+                return null;
+            }
+
+            // Start a new txn in the persistence layer if one is not already active.
+            txn.begin();
+
+            // First, invoke the 'beforeSearch' interceptor methods.
+            FHIRPersistenceEvent event =
+                    new FHIRPersistenceEvent(null, buildPersistenceEventProperties(type, null, null, requestProperties));
+            getInterceptorMgr().fireBeforeSearchEvent(event);
+
+            FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(compartment, compartmentId, resourceType, queryParameters,
+                    HTTPHandlingPreference.LENIENT.equals(requestContext.getHandlingPreference()));
+
+            FHIRPersistenceContext persistenceContext =
+                    FHIRPersistenceContextFactory.createPersistenceContext(event, searchContext);
+            List<ResourcePayload> payloads = persistence.searchPayloads(persistenceContext, resourceType);
+
+            Bundle envelope = createSearchBundleBuilder(searchContext).build();
+            if (requestUri != null) {
+                envelope = addLinks(searchContext, envelope, requestUri);
+            }
+            String baseUri = getRequestBaseUri(type) + "/" + type + "/";
+            List<PayloadBundle.Entry> entries = new ArrayList<>(payloads.size());
+            for (ResourcePayload payload : payloads) {
+                entries.add(new PayloadBundle.Entry(baseUri + payload.getLogicalId(), payload));
+            }
+            PayloadBundle payloadBundle = new PayloadBundle(envelope, entries);
+
+            // The full Bundle is only built if an interceptor asks for it
+            event.setFhirResourceLoader(payloadBundle::toBundle);
+
+            // Invoke the 'afterSearch' interceptor methods.
+            getInterceptorMgr().fireAfterSearchEvent(event);
+
+            // Commit our transaction if we started one before.
+            txn.commit();
+            txn = null;
+
+            return payloadBundle;
+        } finally {
+            // Restore the original request context.
+            FHIRRequestContext.set(requestContext);
+
+            // If we previously started a transaction and it's still active, we need to rollback due to an error.
+            if (txn != null) {
+                txn.rollback();
+            }
+
+            log.exiting(this.getClass().getName(), "doSearchPayloads");
+        }
+    }
+
+    /**
+     * Checks the names of the query parameters, so that a search which can't be answered from the stored payloads
+     * falls back to {@link #doSearch} before its parameters are parsed or any interceptor is invoked.
+     * The payload does not record the resource type needed for the fullUrl of a whole-system search result,
+     * and included resources come from separate queries.
+     *
+     * @return true if the search can be answered from the stored payloads
+     */
+    private boolean isSearchPayloadQuery(Class<? extends Resource> resourceType, MultivaluedMap<String, String> queryParameters) {
+        if (Resource.class.equals(resourceType)) {
+            return false;
+        }
+        for (String name : queryParameters.keySet()) {
+            String parameterName = name.split(":")[0];
+            if (SearchConstants.INCLUDE.equals(parameterName) || SearchConstants.REVINCLUDE.equals(parameterName)
+                    || SearchConstants.ELEMENTS.equals(parameterName) || SearchConstants.SUMMARY.equals(parameterName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Helper method which invokes a custom operation.
      *
@@ -1551,382 +1946,564 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             }
 
             // Now visit each of the request entries using the list of indices obtained above.
-            // Use hashmap to store both the index and the according updated response bundle entry.
-            HashMap<Integer, Bundle.Entry> responseIndexAndEntries =
-                    new HashMap<Integer, Bundle.Entry>();
-            for (Integer entryIndex : entryIndices) {
-                Bundle.Entry requestEntry = requestBundle.getEntry().get(entryIndex);
-                Bundle.Entry responseEntry = responseBundle.getEntry().get(entryIndex);
-                Bundle.Entry.Builder responseEntryBuilder = responseEntry.toBuilder();
-
-                Bundle.Entry.Request request = requestEntry.getRequest();
-                Bundle.Entry.Response response = responseEntry.getResponse();
-
-                StringBuffer requestDescription = new StringBuffer();
-                long initialTime = System.currentTimeMillis();
-                try {
-                    FHIRUrlParser requestURL = new FHIRUrlParser(request.getUrl().getValue());
-
-                    String path = requestURL.getPath();
-                    String query = requestURL.getQuery();
-                    if (log.isLoggable(Level.FINER)) {
-                        log.finer("Processing bundle request entry " + entryIndex + "; method="
-                                + request.getMethod().getValue() + ", url="
-                                + request.getUrl().getValue());
-                        log.finer("--> path: " + path);
-                        log.finer("--> query: " + query);
-                    }
+            // Use a map to store both the index and the according updated response bundle entry;
+            // entries of a batch may be processed concurrently, so the map must be thread-safe.
+            Map<Integer, Bundle.Entry> responseIndexAndEntries = new ConcurrentHashMap<>();
+
+            // For a 'batch' interaction, entries which are not linked to other entries by local references
+            // may be processed in parallel; the rest are processed in order on this thread.
+            List<Integer> serialIndices = entryIndices;
+            List<Future<Void>> futures = Collections.emptyList();
+            if (!failFast) {
+                List<Integer> independentIndices = getIndependentEntryIndices(requestBundle, entryIndices);
+                futures = submitBundleEntries(requestBundle, responseBundle, independentIndices,
+                        responseIndexAndEntries, bundleRequestCorrelationId);
+                if (!futures.isEmpty()) {
+                    serialIndices = new ArrayList<>(entryIndices);
+                    serialIndices.removeAll(independentIndices);
+                }
+            }
 
-                    // Log our initial info message for this request.
-                    requestDescription.append("entryIndex:[");
-                    requestDescription.append(entryIndex);
-                    requestDescription.append("] correlationId:[");
-                    requestDescription.append(bundleRequestCorrelationId);
-                    requestDescription.append("] method:[");
-                    requestDescription.append(request.getMethod().getValue());
-                    requestDescription.append("] uri:[");
-                    requestDescription.append(request.getUrl().getValue());
-                    requestDescription.append("]");
-                    log.info("Received bundle request: " + requestDescription.toString());
-
-                    String[] pathTokens = requestURL.getPathTokens();
-                    MultivaluedMap<String, String> queryParams = requestURL.getQueryParameters();
-
-                    // Construct the absolute requestUri to be used for any response bundles associated
-                    // with history and search requests.
-                    String absoluteUri =
-                            getAbsoluteUri(getRequestUri(), request.getUrl().getValue());
-
-                    if (request.getMethod().equals(HTTPVerb.GET)) {
-                        Resource resource = null;
-                        int httpStatus = SC_OK;
-
-                        // Process a GET (read, vread, history, search, etc.).
-                        // Determine the type of request from the path tokens.
-                        if (pathTokens.length > 0
-                                && pathTokens[pathTokens.length - 1].startsWith("$")) {
-                            // This is a custom operation request
-
-                            // Chop off the '$' and save the name
-                            String operationName = pathTokens[pathTokens.length - 1].substring(1);
-
-                            // FHIROperationContext operationContext;
-                            switch (pathTokens.length) {
-                            case 1: {
-                                FHIROperationContext operationContext =
-                                        FHIROperationContext.createSystemOperationContext();
-                                resource =
-                                        doInvoke(operationContext, null, null, null, operationName, null, queryParams, null);
-                            }
-                                break;
-                            case 2: {
-                                FHIROperationContext operationContext =
-                                        FHIROperationContext.createResourceTypeOperationContext();
-                                resource =
-                                        doInvoke(operationContext, pathTokens[0], null, null, operationName, null, queryParams, null);
-                            }
-                                break;
-                            case 3: {
-                                FHIROperationContext operationContext =
-                                        FHIROperationContext.createInstanceOperationContext();
-                                resource =
-                                        doInvoke(operationContext, pathTokens[0], pathTokens[1], null, operationName, null, queryParams, null);
-                            }
-                                break;
-                            default:
-                                String msg = "Invalid URL for custom operation '"
-                                        + pathTokens[pathTokens.length - 1] + "'";
-                                throw buildRestException(msg, IssueType.NOT_FOUND);
-                            }
-                        } else if (pathTokens.length == 1) {
-                            // This is a 'search' request.
-                            if ("_search".equals(pathTokens[0])) {
-                                resource =
-                                        doSearch("Resource", null, null, queryParams, absoluteUri, null, null);
-                            } else {
-                                resource =
-                                        doSearch(pathTokens[0], null, null, queryParams, absoluteUri, null, null);
-                            }
-                        } else if (pathTokens.length == 2) {
-                            // This is a 'read' request.
-                            resource =
-                                    doRead(pathTokens[0], pathTokens[1], true, false, null, null);
-                        } else if (pathTokens.length == 3) {
-                            if ("_history".equals(pathTokens[2])) {
-                                // This is a 'history' request.
-                                resource =
-                                        doHistory(pathTokens[0], pathTokens[1], queryParams, absoluteUri, null);
-                            } else {
-                                // This is a compartment based search
-                                resource =
-                                        doSearch(pathTokens[2], pathTokens[0], pathTokens[1], queryParams, absoluteUri, null, null);
-                            }
-                        } else if (pathTokens.length == 4 && pathTokens[2].equals("_history")) {
-                            // This is a 'vread' request.
-                            resource = doVRead(pathTokens[0], pathTokens[1], pathTokens[3], null);
-                        } else {
-                            String msg = "Unrecognized path in request URL: " + path;
-                            throw buildRestException(msg, IssueType.NOT_FOUND);
-                        }
+            try {
+                for (Integer entryIndex : serialIndices) {
+                    processBundleEntry(requestBundle, responseBundle, entryIndex, failFast, localRefMap,
+                            responseIndexAndEntries, bundleRequestCorrelationId);
+                }
+            } catch (Exception e) {
+                // don't leave any entries running once we've given up on the bundle
+                awaitBundleEntries(futures, false);
+                throw e;
+            }
+            awaitBundleEntries(futures, true);
 
-                        // Save the results of the operation in the bundle response field.
-                        Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                        responseBuilder.status(string(Integer.toString(httpStatus)));
-                        setBundleResponseStatus(response, httpStatus, requestDescription.toString(), initialTime);
-
-                        responseIndexAndEntries.put(entryIndex, responseEntryBuilder.resource(resource).response(responseBuilder.build()).build());
-                    } else if (request.getMethod().equals(HTTPVerb.POST)) {
-                        // Process a POST (create or search, or custom operation).
-                        if (pathTokens.length > 0
-                                && pathTokens[pathTokens.length - 1].startsWith("$")) {
-                            // This is a custom operation request
-
-                            // Chop off the '$' and save the name
-                            String operationName = pathTokens[pathTokens.length - 1].substring(1);
-
-                            // Retrieve the resource from the request entry.
-                            Resource resource = requestEntry.getResource();
-
-                            FHIROperationContext operationContext;
-                            Resource result;
-                            switch (pathTokens.length) {
-                            case 1:
-                                operationContext =
-                                        FHIROperationContext.createSystemOperationContext();
-                                result = doInvoke(operationContext, null, null, null, operationName, resource, queryParams, null);
-                                break;
-                            case 2:
-                                operationContext =
-                                        FHIROperationContext.createResourceTypeOperationContext();
-                                result = doInvoke(operationContext, pathTokens[0], null, null, operationName, resource, queryParams, null);
-                                break;
-                            case 3:
-                                operationContext =
-                                        FHIROperationContext.createInstanceOperationContext();
-                                result = doInvoke(operationContext, pathTokens[0], pathTokens[1], null, operationName, resource, queryParams, null);
-                                break;
-                            default:
-                                String msg = "Invalid URL for custom operation '"
-                                        + pathTokens[pathTokens.length - 1] + "'";
-                                throw buildRestException(msg, IssueType.NOT_FOUND);
-                            }
+            // Now, let's re-construct the responseBundle
+            responseBundle = reconstructResponseBundle(responseBundle, responseIndexAndEntries);
+            return responseBundle;
 
-                            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                            // Add warning and hint issues to response outcome if any.
-                            if (result instanceof OperationOutcome) {
-                                if (((OperationOutcome) result).getIssue() != null) {
-                                    responseBuilder.outcome(result);
-                                }
-                            }
+        } finally {
+            log.exiting(this.getClass().getName(), "processEntriesForMethod");
+        }
+    }
 
-                            responseBuilder.status(string(Integer.toString(SC_OK)));
-                            responseIndexAndEntries.put(entryIndex, responseEntryBuilder
-                                    .resource(result)
-                                    .response(responseBuilder.build())
-                                    .build());
-                            setBundleResponseStatus(response, SC_OK, requestDescription.toString(), initialTime);
-
-                        } else if (pathTokens.length == 2 && "_search".equals(pathTokens[1])) {
-                            // This is a 'search' request.
-                            Bundle searchResults =
-                                    doSearch(pathTokens[0], null, null, queryParams, absoluteUri, null, null);
-
-                            // Save the results of the operation in the bundle response field.
-                            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                            responseBuilder.status(string(Integer.toString(SC_OK)));
-
-                            responseIndexAndEntries.put(entryIndex, responseEntryBuilder
-                                    .resource(searchResults)
-                                    .response(responseBuilder.build())
-                                    .build());
-
-                            setBundleResponseStatus(response, SC_OK, requestDescription.toString(), initialTime);
-                        } else if (pathTokens.length == 1) {
-                            // This is a 'create' request.
-
-                            // Retrieve the local identifier from the request entry (if present).
-                            String localIdentifier =
-                                    retrieveLocalIdentifier(requestEntry, localRefMap);
-
-                            // Retrieve the resource from the request entry.
-                            Resource resource = requestEntry.getResource();
-                            if (resource == null) {
-                                String msg =
-                                        "BundleEntry.resource is required for bundled create requests.";
-                                throw buildRestException(msg, IssueType.NOT_FOUND);
-                            }
+    /**
+     * Processes the request entry at the specified index of the request bundle and stores the corresponding
+     * response entry in 'responseIndexAndEntries'.
+     *
+     * @param requestBundle
+     *            the bundle containing the request entries
+     * @param responseBundle
+     *            the bundle containing the corresponding response entries
+     * @param entryIndex
+     *            the index of the request entry to process
+     * @param failFast
+     *            whether an error should fail the whole bundle instead of being recorded in the response entry
+     * @param localRefMap
+     *            the Map containing the local-to-external reference mappings
+     * @param responseIndexAndEntries
+     *            the map in which to store the response entry, keyed by entry index
+     */
+    private void processBundleEntry(Bundle requestBundle, Bundle responseBundle, Integer entryIndex,
+            boolean failFast, Map<String, String> localRefMap, Map<Integer, Bundle.Entry> responseIndexAndEntries,
+            String bundleRequestCorrelationId) throws Exception {
+        Bundle.Entry requestEntry = requestBundle.getEntry().get(entryIndex);
+        Bundle.Entry responseEntry = responseBundle.getEntry().get(entryIndex);
+        Bundle.Entry.Builder responseEntryBuilder = responseEntry.toBuilder();
+
+        Bundle.Entry.Request request = requestEntry.getRequest();
+        Bundle.Entry.Response response = responseEntry.getResponse();
 
-                            // Convert any local references found within the resource to their
-                            // corresponding external reference.
-
-                            ReferenceMappingVisitor<Resource> visitor =
-                                    new ReferenceMappingVisitor<Resource>(localRefMap);
-                            resource.accept(visitor);
-                            resource = visitor.getResult();
-
-                            // Perform the 'create' operation.
-                            String ifNoneExist = request.getIfNoneExist() != null
-                                    ? request.getIfNoneExist().getValue() : null;
-                            FHIRRestOperationResponse ior =
-                                    doCreate(pathTokens[0], resource, ifNoneExist, null);
-
-                            // Get the updated resource from FHIRRestOperationResponse which has the correct ID, meta
-                            // etc.
-                            resource = ior.getResource();
-
-                            // Process and replace bundler Entry
-                            Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, resource, ior.getOperationOutcome(),
-                                    ior.getLocationURI(), ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
-
-                            responseIndexAndEntries.put(entryIndex, resultEntry);
-
-                            // Next, if a local identifier was present, we'll need to map this to the
-                            // correct external identifier (e.g. Patient/12345).
-                            addLocalRefMapping(localRefMap, localIdentifier, resource);
-                        } else {
-                            String msg =
-                                    "Request URL for bundled create requests should have a path with exactly one token (<resourceType>).";
-                            throw buildRestException(msg, IssueType.NOT_FOUND);
-                        }
-                    } else if (request.getMethod().equals(HTTPVerb.PUT)) {
-                        String type = null;
-                        String id = null;
-
-                        // Process a PUT (update).
-                        if (pathTokens.length == 1) {
-                            // A single-part url would be a conditional update: <type>?<query>
-                            type = pathTokens[0];
-                            if (query == null || query.isEmpty()) {
-                                String msg =
-                                        "A search query string is required for a conditional update operation.";
-                                throw buildRestException(msg, IssueType.INVALID);
-                            }
-                        } else if (pathTokens.length == 2) {
-                            // A two-part url would be a normal update: <type>/<id>.
-                            type = pathTokens[0];
-                            id = pathTokens[1];
-                        } else {
-                            // A url with any other pattern is an error.
-                            String msg = "Request URL for bundled PUT request should have path part with either one or two tokens "
-                                    + "(<resourceType> or <resourceType>/<id>).";
-                            throw buildRestException(msg, IssueType.INVALID);
-                        }
+        StringBuffer requestDescription = new StringBuffer();
+        long initialTime = System.currentTimeMillis();
+        try {
+            FHIRUrlParser requestURL = new FHIRUrlParser(request.getUrl().getValue());
 
-                        // Retrieve the resource from the request entry.
-                        Resource resource = requestEntry.getResource();
+            String path = requestURL.getPath();
+            String query = requestURL.getQuery();
+            if (log.isLoggable(Level.FINER)) {
+                log.finer("Processing bundle request entry " + entryIndex + "; method="
+                        + request.getMethod().getValue() + ", url="
+                        + request.getUrl().getValue());
+                log.finer("--> path: " + path);
+                log.finer("--> query: " + query);
+            }
+
+            // Log our initial info message for this request.
+            requestDescription.append("entryIndex:[");
+            requestDescription.append(entryIndex);
+            requestDescription.append("] correlationId:[");
+            requestDescription.append(bundleRequestCorrelationId);
+            requestDescription.append("] method:[");
+            requestDescription.append(request.getMethod().getValue());
+            requestDescription.append("] uri:[");
+            requestDescription.append(request.getUrl().getValue());
+            requestDescription.append("]");
+            log.info("Received bundle request: " + requestDescription.toString());
+
+            String[] pathTokens = requestURL.getPathTokens();
+            MultivaluedMap<String, String> queryParams = requestURL.getQueryParameters();
+
+            // Construct the absolute requestUri to be used for any response bundles associated
+            // with history and search requests.
+            String absoluteUri =
+                    getAbsoluteUri(getRequestUri(), request.getUrl().getValue());
+
+            if (request.getMethod().equals(HTTPVerb.GET)) {
+                Resource resource = null;
+                int httpStatus = SC_OK;
+
+                // Process a GET (read, vread, history, search, etc.).
+                // Determine the type of request from the path tokens.
+                if (pathTokens.length > 0
+                        && pathTokens[pathTokens.length - 1].startsWith("$")) {
+                    // This is a custom operation request
+
+                    // Chop off the '$' and save the name
+                    String operationName = pathTokens[pathTokens.length - 1].substring(1);
+
+                    // FHIROperationContext operationContext;
+                    switch (pathTokens.length) {
+                    case 1: {
+                        FHIROperationContext operationContext =
+                                FHIROperationContext.createSystemOperationContext();
+                        resource =
+                                doInvoke(operationContext, null, null, null, operationName, null, queryParams, null);
+                    }
+                        break;
+                    case 2: {
+                        FHIROperationContext operationContext =
+                                FHIROperationContext.createResourceTypeOperationContext();
+                        resource =
+                                doInvoke(operationContext, pathTokens[0], null, null, operationName, null, queryParams, null);
+                    }
+                        break;
+                    case 3: {
+                        FHIROperationContext operationContext =
+                                FHIROperationContext.createInstanceOperationContext();
+                        resource =
+                                doInvoke(operationContext, pathTokens[0], pathTokens[1], null, operationName, null, queryParams, null);
+                    }
+                        break;
+                    default:
+                        String msg = "Invalid URL for custom operation '"
+                                + pathTokens[pathTokens.length - 1] + "'";
+                        throw buildRestException(msg, IssueType.NOT_FOUND);
+                    }
+                } else if (pathTokens.length == 1) {
+                    // This is a 'search' request.
+                    if ("_search".equals(pathTokens[0])) {
+                        resource =
+                                doSearch("Resource", null, null, queryParams, absoluteUri, null, null);
+                    } else {
+                        resource =
+                                doSearch(pathTokens[0], null, null, queryParams, absoluteUri, null, null);
+                    }
+                } else if (pathTokens.length == 2) {
+                    // This is a 'read' request.
+                    resource =
+                            doRead(pathTokens[0], pathTokens[1], true, false, null, null);
+                } else if (pathTokens.length == 3) {
+                    if ("_history".equals(pathTokens[2])) {
+                        // This is a 'history' request.
+                        resource =
+                                doHistory(pathTokens[0], pathTokens[1], queryParams, absoluteUri, null);
+                    } else {
+                        // This is a compartment based search
+                        resource =
+                                doSearch(pathTokens[2], pathTokens[0], pathTokens[1], queryParams, absoluteUri, null, null);
+                    }
+                } else if (pathTokens.length == 4 && pathTokens[2].equals("_history")) {
+                    // This is a 'vread' request.
+                    resource = doVRead(pathTokens[0], pathTokens[1], pathTokens[3], null);
+                } else {
+                    String msg = "Unrecognized path in request URL: " + path;
+                    throw buildRestException(msg, IssueType.NOT_FOUND);
+                }
 
-                        // Convert any local references found within the resource to their
-                        // corresponding external reference.
-                        ReferenceMappingVisitor<Resource> visitor =
-                                new ReferenceMappingVisitor<Resource>(localRefMap);
-                        resource.accept(visitor);
-                        resource = visitor.getResult();
-
-                        // Perform the 'update' operation.
-                        String ifMatchBundleValue = null;
-                        if (request.getIfMatch() != null) {
-                            ifMatchBundleValue = request.getIfMatch().getValue();
-                        }
-                        FHIRRestOperationResponse ior =
-                                doUpdate(type, id, resource, ifMatchBundleValue, query, null);
-
-                        // Process and replace bundler Entry
-                        Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, ior.getResource(), ior.getOperationOutcome(),
-                                ior.getLocationURI(), ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
-
-                        responseIndexAndEntries.put(entryIndex, resultEntry);
-
-                    } else if (request.getMethod().equals(HTTPVerb.DELETE)) {
-                        String type = null;
-                        String id = null;
-
-                        // Process a DELETE.
-                        if (pathTokens.length == 1) {
-                            // A single-part url would be a conditional delete: <type>?<query>
-                            type = pathTokens[0];
-                            if (query == null || query.isEmpty()) {
-                                String msg =
-                                        "A search query string is required for a conditional delete operation.";
-                                throw buildRestException(msg, IssueType.INVALID);
-                            }
-                        } else if (pathTokens.length == 2) {
-                            type = pathTokens[0];
-                            id = pathTokens[1];
-                        } else {
-                            String msg = "Request URL for bundled DELETE request should have path part with one or two tokens "
-                                    + "(<resourceType> or <resourceType>/<id>).";
-                            throw buildRestException(msg, IssueType.INVALID);
-                        }
+                // Save the results of the operation in the bundle response field.
+                Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
+                responseBuilder.status(string(Integer.toString(httpStatus)));
+                setBundleResponseStatus(response, httpStatus, requestDescription.toString(), initialTime);
 
-                        // Perform the 'delete' operation.
-                        FHIRRestOperationResponse ior = doDelete(type, id, query, null);
+                responseIndexAndEntries.put(entryIndex, responseEntryBuilder.resource(resource).response(responseBuilder.build()).build());
+            } else if (request.getMethod().equals(HTTPVerb.POST)) {
+                // Process a POST (create or search, or custom operation).
+                if (pathTokens.length > 0
+                        && pathTokens[pathTokens.length - 1].startsWith("$")) {
+                    // This is a custom operation request
 
-                        // Process and replace bundler Entry
-                        Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, ior.getResource(), ior.getOperationOutcome(),
-                                null, ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
+                    // Chop off the '$' and save the name
+                    String operationName = pathTokens[pathTokens.length - 1].substring(1);
 
-                        responseIndexAndEntries.put(entryIndex, resultEntry);
-                    } else {
-                        // Internal error, should not get here!
-                        throw new IllegalStateException("Internal Server Error: reached an unexpected code location.");
-                    }
-                } catch (FHIRPersistenceResourceNotFoundException e) {
-                    if (failFast) {
-                        String msg = "Error while processing request bundle.";
-                        throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+                    // Retrieve the resource from the request entry.
+                    Resource resource = requestEntry.getResource();
+
+                    FHIROperationContext operationContext;
+                    Resource result;
+                    switch (pathTokens.length) {
+                    case 1:
+                        operationContext =
+                                FHIROperationContext.createSystemOperationContext();
+                        result = doInvoke(operationContext, null, null, null, operationName, resource, queryParams, null);
+                        break;
+                    case 2:
+                        operationContext =
+                                FHIROperationContext.createResourceTypeOperationContext();
+                        result = doInvoke(operationContext, pathTokens[0], null, null, operationName, resource, queryParams, null);
+                        break;
+                    case 3:
+                        operationContext =
+                                FHIROperationContext.createInstanceOperationContext();
+                        result = doInvoke(operationContext, pathTokens[0], pathTokens[1], null, operationName, resource, queryParams, null);
+                        break;
+                    default:
+                        String msg = "Invalid URL for custom operation '"
+                                + pathTokens[pathTokens.length - 1] + "'";
+                        throw buildRestException(msg, IssueType.NOT_FOUND);
                     }
+
                     Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                    responseBuilder.status(string(Integer.toString(SC_NOT_FOUND)));
+                    // Add warning and hint issues to response outcome if any.
+                    if (result instanceof OperationOutcome) {
+                        if (((OperationOutcome) result).getIssue() != null) {
+                            responseBuilder.outcome(result);
+                        }
+                    }
 
+                    responseBuilder.status(string(Integer.toString(SC_OK)));
                     responseIndexAndEntries.put(entryIndex, responseEntryBuilder
-                            .resource(FHIRUtil.buildOperationOutcome(e, false))
+                            .resource(result)
                             .response(responseBuilder.build())
                             .build());
+                    setBundleResponseStatus(response, SC_OK, requestDescription.toString(), initialTime);
 
-                    setBundleResponseStatus(response, SC_NOT_FOUND, requestDescription.toString(), initialTime);
-                } catch (FHIRPersistenceResourceDeletedException e) {
-                    if (failFast) {
-                        String msg = "Error while processing request bundle.";
-                        throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
-                    }
+                } else if (pathTokens.length == 2 && "_search".equals(pathTokens[1])) {
+                    // This is a 'search' request.
+                    Bundle searchResults =
+                            doSearch(pathTokens[0], null, null, queryParams, absoluteUri, null, null);
+
+                    // Save the results of the operation in the bundle response field.
                     Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                    responseBuilder.status(string(Integer.toString(SC_GONE)));
+                    responseBuilder.status(string(Integer.toString(SC_OK)));
 
                     responseIndexAndEntries.put(entryIndex, responseEntryBuilder
-                            .resource(FHIRUtil.buildOperationOutcome(e, false))
+                            .resource(searchResults)
                             .response(responseBuilder.build())
                             .build());
 
-                    setBundleResponseStatus(response, SC_GONE, requestDescription.toString(), initialTime);
-                } catch (FHIROperationException e) {
-                    if (failFast) {
-                        String msg = "Error while processing request bundle.";
-                        throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+                    setBundleResponseStatus(response, SC_OK, requestDescription.toString(), initialTime);
+                } else if (pathTokens.length == 1) {
+                    // This is a 'create' request.
+
+                    // Retrieve the local identifier from the request entry (if present).
+                    String localIdentifier =
+                            retrieveLocalIdentifier(requestEntry, localRefMap);
+
+                    // Retrieve the resource from the request entry.
+                    Resource resource = requestEntry.getResource();
+                    if (resource == null) {
+                        String msg =
+                                "BundleEntry.resource is required for bundled create requests.";
+                        throw buildRestException(msg, IssueType.NOT_FOUND);
                     }
 
-                    Status status;
-                    if (e instanceof FHIRSearchException) {
-                        status = Status.BAD_REQUEST;
-                    } else {
-                        status = IssueTypeToHttpStatusMapper.issueListToStatus(e.getIssues());
+                    // Convert any local references found within the resource to their
+                    // corresponding external reference.
+
+                    ReferenceMappingVisitor<Resource> visitor =
+                            new ReferenceMappingVisitor<Resource>(localRefMap);
+                    resource.accept(visitor);
+                    resource = visitor.getResult();
+
+                    // Perform the 'create' operation.
+                    String ifNoneExist = request.getIfNoneExist() != null
+                            ? request.getIfNoneExist().getValue() : null;
+                    FHIRRestOperationResponse ior =
+                            doCreate(pathTokens[0], resource, ifNoneExist, null);
+
+                    // Get the updated resource from FHIRRestOperationResponse which has the correct ID, meta
+                    // etc.
+                    resource = ior.getResource();
+
+                    // Process and replace bundler Entry
+                    Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, resource, ior.getOperationOutcome(),
+                            ior.getLocationURI(), ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
+
+                    responseIndexAndEntries.put(entryIndex, resultEntry);
+
+                    // Next, if a local identifier was present, we'll need to map this to the
+                    // correct external identifier (e.g. Patient/12345).
+                    addLocalRefMapping(localRefMap, localIdentifier, resource);
+                } else {
+                    String msg =
+                            "Request URL for bundled create requests should have a path with exactly one token (<resourceType>).";
+                    throw buildRestException(msg, IssueType.NOT_FOUND);
+                }
+            } else if (request.getMethod().equals(HTTPVerb.PUT)) {
+                String type = null;
+                String id = null;
+
+                // Process a PUT (update).
+                if (pathTokens.length == 1) {
+                    // A single-part url would be a conditional update: <type>?<query>
+                    type = pathTokens[0];
+                    if (query == null || query.isEmpty()) {
+                        String msg =
+                                "A search query string is required for a conditional update operation.";
+                        throw buildRestException(msg, IssueType.INVALID);
                     }
+                } else if (pathTokens.length == 2) {
+                    // A two-part url would be a normal update: <type>/<id>.
+                    type = pathTokens[0];
+                    id = pathTokens[1];
+                } else {
+                    // A url with any other pattern is an error.
+                    String msg = "Request URL for bundled PUT request should have path part with either one or two tokens "
+                            + "(<resourceType> or <resourceType>/<id>).";
+                    throw buildRestException(msg, IssueType.INVALID);
+                }
 
-                    Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                    responseBuilder.status(string(Integer.toString(status.getStatusCode())));
+                // Retrieve the resource from the request entry.
+                Resource resource = requestEntry.getResource();
 
-                    responseIndexAndEntries.put(entryIndex, responseEntryBuilder.resource(FHIRUtil.buildOperationOutcome(e, false))
-                            .response(responseBuilder.build()).build());
+                // Convert any local references found within the resource to their
+                // corresponding external reference.
+                ReferenceMappingVisitor<Resource> visitor =
+                        new ReferenceMappingVisitor<Resource>(localRefMap);
+                resource.accept(visitor);
+                resource = visitor.getResult();
 
-                    setBundleResponseStatus(response, status.getStatusCode(), requestDescription.toString(), initialTime);
+                // Perform the 'update' operation.
+                String ifMatchBundleValue = null;
+                if (request.getIfMatch() != null) {
+                    ifMatchBundleValue = request.getIfMatch().getValue();
                 }
-            } // end foreach entry
+                FHIRRestOperationResponse ior =
+                        doUpdate(type, id, resource, ifMatchBundleValue, query, null);
 
-            // Now, let's re-construct the responseBundle
-            responseBundle = reconstructResponseBundle(responseBundle, responseIndexAndEntries);
-            return responseBundle;
+                // Process and replace bundler Entry
+                Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, ior.getResource(), ior.getOperationOutcome(),
+                        ior.getLocationURI(), ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
 
-        } finally {
-            log.exiting(this.getClass().getName(), "processEntriesForMethod");
+                responseIndexAndEntries.put(entryIndex, resultEntry);
+
+            } else if (request.getMethod().equals(HTTPVerb.DELETE)) {
+                String type = null;
+                String id = null;
+
+                // Process a DELETE.
+                if (pathTokens.length == 1) {
+                    // A single-part url would be a conditional delete: <type>?<query>
+                    type = pathTokens[0];
+                    if (query == null || query.isEmpty()) {
+                        String msg =
+                                "A search query string is required for a conditional delete operation.";
+                        throw buildRestException(msg, IssueType.INVALID);
+                    }
+                } else if (pathTokens.length == 2) {
+                    type = pathTokens[0];
+                    id = pathTokens[1];
+                } else {
+                    String msg = "Request URL for bundled DELETE request should have path part with one or two tokens "
+                            + "(<resourceType> or <resourceType>/<id>).";
+                    throw buildRestException(msg, IssueType.INVALID);
+                }
+
+                // Perform the 'delete' operation.
+                FHIRRestOperationResponse ior = doDelete(type, id, query, null);
+
+                // Process and replace bundler Entry
+                Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, ior.getResource(), ior.getOperationOutcome(),
+                        null, ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
+
+                responseIndexAndEntries.put(entryIndex, resultEntry);
+            } else {
+                // Internal error, should not get here!
+                throw new IllegalStateException("Internal Server Error: reached an unexpected code location.");
+            }
+        } catch (FHIRPersistenceResourceNotFoundException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
+            responseBuilder.status(string(Integer.toString(SC_NOT_FOUND)));
+
+            responseIndexAndEntries.put(entryIndex, responseEntryBuilder
+                    .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(responseBuilder.build())
+                    .build());
+
+            setBundleResponseStatus(response, SC_NOT_FOUND, requestDescription.toString(), initialTime);
+        } catch (FHIRPersistenceResourceDeletedException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
+            responseBuilder.status(string(Integer.toString(SC_GONE)));
+
+            responseIndexAndEntries.put(entryIndex, responseEntryBuilder
+                    .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(responseBuilder.build())
+                    .build());
+
+            setBundleResponseStatus(response, SC_GONE, requestDescription.toString(), initialTime);
+        } catch (FHIROperationException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+
+            Status status;
+            if (e instanceof FHIRSearchException) {
+                status = Status.BAD_REQUEST;
+            } else {
+                status = IssueTypeToHttpStatusMapper.issueListToStatus(e.getIssues());
+            }
+
+            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
+            responseBuilder.status(string(Integer.toString(status.getStatusCode())));
+
+            responseIndexAndEntries.put(entryIndex, responseEntryBuilder.resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(responseBuilder.build()).build());
+
+            setBundleResponseStatus(response, status.getStatusCode(), requestDescription.toString(), initialTime);
+        }
+    }
+
+    /**
+     * Returns the indices of the request entries which can be processed independently of the other entries in the
+     * bundle; that is, entries which neither define a local identifier (a fullUrl of the form 'urn:...') nor contain
+     * a local reference to another entry.
+     *
+     * @param requestBundle
+     *            the bundle containing the request entries
+     * @param entryIndices
+     *            the indices of the request entries to consider
+     * @return the indices of the independent entries, in the same order as 'entryIndices'
+     */
+    List<Integer> getIndependentEntryIndices(Bundle requestBundle, List<Integer> entryIndices) {
+        List<Integer> independentIndices = new ArrayList<>();
+        for (Integer entryIndex : entryIndices) {
+            Bundle.Entry requestEntry = requestBundle.getEntry().get(entryIndex);
+            if (requestEntry.getFullUrl() != null && requestEntry.getFullUrl().getValue() != null
+                    && requestEntry.getFullUrl().getValue().startsWith(LOCAL_REF_PREFIX)) {
+                continue;
+            }
+            if (requestEntry.getResource() != null && containsLocalReference(requestEntry.getResource())) {
+                continue;
+            }
+            independentIndices.add(entryIndex);
+        }
+        return independentIndices;
+    }
+
+    private boolean containsLocalReference(Resource resource) {
+        CollectingVisitor<Reference> visitor = new CollectingVisitor<>(Reference.class);
+        resource.accept(visitor);
+        for (Reference reference : visitor.getResult()) {
+            if (reference.getReference() != null && reference.getReference().getValue() != null
+                    && reference.getReference().getValue().startsWith(LOCAL_REF_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Submits the specified request entries of a 'batch' request bundle for parallel processing, if parallel
+     * processing is enabled via the 'fhirServer/core/batchParallelism' property.
+     *
+     * <p>At most 'batchParallelism' workers are submitted to the managed executor. Each worker uses its own
+     * persistence implementation (and therefore its own transactions) and takes entries from a shared queue until
+     * there are none left. The response entries are stored by index, so the order of the response bundle is not
+     * affected by the order in which entries complete.
+     *
+     * @return the futures of the submitted workers, or an empty list if the entries were not submitted and must be
+     *         processed serially by the caller
+     */
+    private List<Future<Void>> submitBundleEntries(Bundle requestBundle, Bundle responseBundle, List<Integer> entryIndices,
+            Map<Integer, Bundle.Entry> responseIndexAndEntries, String bundleRequestCorrelationId) {
+        int parallelism = FHIRConfigHelper.getIntProperty(FHIRConfiguration.PROPERTY_BATCH_PARALLELISM, 1);
+        if (parallelism < 2 || entryIndices.size() < 2 || persistenceHelper == null) {
+            return Collections.emptyList();
+        }
+
+        ExecutorService executor = getBatchExecutor();
+        if (executor == null) {
+            return Collections.emptyList();
+        }
+
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>(entryIndices);
+        int workers = Math.min(parallelism, entryIndices.size());
+        if (log.isLoggable(Level.FINE)) {
+            log.fine("Processing " + entryIndices.size() + " independent bundle request entries with " + workers
+                    + " workers, request-correlation-id=" + bundleRequestCorrelationId);
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(() -> {
+                FHIRRequestContext.set(requestContext);
+                try {
+                    FHIRRestHelper helper = new FHIRRestHelper(persistenceHelper.getFHIRPersistenceImplementation(), persistenceHelper);
+                    helper.bundleRequestCorrelationId = bundleRequestCorrelationId;
+                    Integer entryIndex;
+                    while ((entryIndex = queue.poll()) != null) {
+                        helper.processBundleEntry(requestBundle, responseBundle, entryIndex, false, Collections.emptyMap(),
+                                responseIndexAndEntries, bundleRequestCorrelationId);
+                    }
+                    return null;
+                } catch (Exception e) {
+                    // stop the other workers from taking any more entries
+                    queue.clear();
+                    throw e;
+                } finally {
+                    FHIRRequestContext.remove();
+                }
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * Waits for the workers submitted by {@link #submitBundleEntries} to complete.
+     *
+     * @param futures
+     *            the futures of the submitted workers
+     * @param rethrow
+     *            whether to rethrow the first exception thrown by a worker
+     */
+    private void awaitBundleEntries(List<Future<Void>> futures, boolean rethrow) throws Exception {
+        Exception exception = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (exception == null) {
+                    exception = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (exception != null && rethrow) {
+            throw exception;
+        }
+    }
+
+    /**
+     * @return the container-managed executor used to process batch entries in parallel, or null if it is not
+     *         available (in which case batch entries are processed serially)
+     */
+    ExecutorService getBatchExecutor() {
+        try {
+            return (ExecutorService) new InitialContext().lookup(BATCH_EXECUTOR_JNDI_NAME);
+        } catch (NamingException e) {
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Unable to look up '" + BATCH_EXECUTOR_JNDI_NAME + "'; batch entries will be processed serially: "
+                        + e.getMessage());
+            }
+            return null;
         }
     }
 
@@ -1936,7 +2513,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
      * @return
      */
     private Bundle reconstructResponseBundle(Bundle responseBundle,
-        HashMap<Integer, Bundle.Entry> responseIndexAndEntries) {
+        Map<Integer, Bundle.Entry> responseIndexAndEntries) {
         // Re-construct the responseBundle
         List<Bundle.Entry> responseEntries = new ArrayList<Bundle.Entry>();
         for (int i = 0; i < responseBundle.getEntry().size(); i++) {
@@ -2186,13 +2763,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
     private Bundle createSearchBundle(List<Resource> resources, FHIRSearchContext searchContext, String type)
         throws Exception {
 
-        // throws if we have a count of more than 2,147,483,647 resources
-        UnsignedInt totalCount = UnsignedInt.of(searchContext.getTotalCount());
-        // generate ID for this bundle and set total
-        Bundle.Builder bundleBuider = Bundle.builder()
-                                            .type(BundleType.SEARCHSET)
-                                            .id(UUID.randomUUID().toString())
-                                            .total(totalCount);
+        Bundle.Builder bundleBuider = createSearchBundleBuilder(searchContext);
 
         for (Resource resource : resources) {
             if (resource.getId() == null) {
@@ -2217,6 +2788,25 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         return bundle;
     }
 
+    /**
+     * Creates a search result bundle builder with a generated id and, if it is known, the total.
+     *
+     * @param searchContext
+     *            the FHIRSearchContext object associated with the search
+     * @return the bundle builder
+     */
+    private Bundle.Builder createSearchBundleBuilder(FHIRSearchContext searchContext) {
+        // generate ID for this bundle and set total
+        Bundle.Builder bundleBuider = Bundle.builder()
+                                            .type(BundleType.SEARCHSET)
+                                            .id(UUID.randomUUID().toString());
+        if (searchContext.isTotalCountKnown()) {
+            // throws if we have a count of more than 2,147,483,647 resources
+            bundleBuider.total(UnsignedInt.of(searchContext.getTotalCount()));
+        }
+        return bundleBuider;
+    }
+
     /**
      * Creates a bundle that will hold the results of a history operation.
      *
@@ -2232,13 +2822,16 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
     private Bundle createHistoryBundle(List<? extends Resource> resources, FHIRHistoryContext historyContext, String type)
             throws Exception {
 
-        // throws if we have a count of more than 2,147,483,647 resources
-        UnsignedInt totalCount = UnsignedInt.of(historyContext.getTotalCount());
         // generate ID for this bundle and set the "total" field for the bundle
         Bundle.Builder bundleBuilder = Bundle.builder()
                                              .type(BundleType.HISTORY)
-                                             .id(UUID.randomUUID().toString())
-                                             .total(totalCount);
+                                             .id(UUID.randomUUID().toString());
+
+        // keyset paging only counts the versions when the client asks for the total
+        if (historyContext.isTotalCountRequired()) {
+            // throws if we have a count of more than 2,147,483,647 resources
+            bundleBuilder.total(UnsignedInt.of(historyContext.getTotalCount()));
+        }
 
         Map<String, List<Integer>> deletedResourcesMap = historyContext.getDeletedResources();
 
@@ -2295,16 +2888,31 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
     private Bundle addLinks(FHIRPagingContext context, Bundle responseBundle, String requestUri) throws Exception {
         String selfUri = null;
         SummaryValueSet summaryParameter = null;
+        String currentCursor = null;
+        String nextCursor = null;
+        String previousCursor = null;
+        boolean previousLinkSupported = true;
         Bundle.Builder bundleBuilder = responseBundle.toBuilder();
 
         if (context instanceof FHIRSearchContext) {
             FHIRSearchContext searchContext = (FHIRSearchContext) context;
             summaryParameter = searchContext.getSummaryParameter();
+            currentCursor = encode(searchContext.getCursor());
+            nextCursor = encode(searchContext.getNextCursor());
+            previousCursor = encode(searchContext.getPreviousCursor());
             try {
                 selfUri = SearchUtil.buildSearchSelfUri(requestUri, searchContext);
             } catch (Exception e) {
                 log.log(Level.WARNING, "Unable to construct self link for search result bundle; using the request URI instead.", e);
             }
+        } else if (context instanceof FHIRHistoryContext) {
+            FHIRHistoryContext historyContext = (FHIRHistoryContext) context;
+            if (historyContext.isKeysetPaging()) {
+                currentCursor = encode(historyContext.getCursor());
+                nextCursor = encode(historyContext.getNextCursor());
+                // keyset history pages can only be followed forwards
+                previousLinkSupported = false;
+            }
         }
         if (selfUri == null) {
             selfUri = requestUri;
@@ -2320,26 +2928,15 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             if (nextPageNumber <= context.getLastPageNumber()) {
 
                 // starting with the self URI
-                String nextLinkUrl = selfUri;
-
-                // remove existing _page parameters from the query string
-                nextLinkUrl =
-                        nextLinkUrl.replace("&_page=" + context.getPageNumber(), "").replace("_page="
-                                + context.getPageNumber() + "&", "").replace("_page="
-                                        + context.getPageNumber(), "");
-
-                if (nextLinkUrl.contains("?")) {
-                    if (!nextLinkUrl.endsWith("?")) {
-                        // there are other parameters in the query string
-                        nextLinkUrl += "&";
-                    }
+                String nextLinkUrl = removePagingParameters(selfUri, context.getPageNumber(), currentCursor);
+
+                // add new _cursor or _page parameter to the query string
+                if (nextCursor != null) {
+                    nextLinkUrl = appendQueryParameter(nextLinkUrl, SearchConstants.CURSOR, nextCursor);
                 } else {
-                    nextLinkUrl += "?";
+                    nextLinkUrl = appendQueryParameter(nextLinkUrl, SearchConstants.PAGE, Integer.toString(nextPageNumber));
                 }
 
-                // add new _page parameter to the query string
-                nextLinkUrl += "_page=" + nextPageNumber;
-
                 // create 'next' link
                 Bundle.Link nextLink =
                         Bundle.Link.builder().relation(string("next")).url(Url.of(nextLinkUrl)).build();
@@ -2347,29 +2944,18 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             }
 
             int prevPageNumber = context.getPageNumber() - 1;
-            if (prevPageNumber > 0) {
+            if (prevPageNumber > 0 && previousLinkSupported) {
 
                 // starting with the original request URI
-                String prevLinkUrl = requestUri;
-
-                // remove existing _page parameters from the query string
-                prevLinkUrl =
-                        prevLinkUrl.replace("&_page=" + context.getPageNumber(), "").replace("_page="
-                                + context.getPageNumber() + "&", "").replace("_page="
-                                        + context.getPageNumber(), "");
-
-                if (prevLinkUrl.contains("?")) {
-                    if (!prevLinkUrl.endsWith("?")) {
-                        // there are other parameters in the query string
-                        prevLinkUrl += "&";
-                    }
+                String prevLinkUrl = removePagingParameters(requestUri, context.getPageNumber(), currentCursor);
+
+                // add new _cursor or _page parameter to the query string
+                if (previousCursor != null) {
+                    prevLinkUrl = appendQueryParameter(prevLinkUrl, SearchConstants.CURSOR, previousCursor);
                 } else {
-                    prevLinkUrl += "?";
+                    prevLinkUrl = appendQueryParameter(prevLinkUrl, SearchConstants.PAGE, Integer.toString(prevPageNumber));
                 }
 
-                // add new _page parameter to the query string
-                prevLinkUrl += "_page=" + prevPageNumber;
-
                 // create 'previous' link
                 Bundle.Link prevLink =
                         Bundle.Link.builder().relation(string("previous")).url(Url.of(prevLinkUrl)).build();
@@ -2380,6 +2966,42 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         return bundleBuilder.build();
     }
 
+    /**
+     * Remove the existing _page and _cursor parameters from the query string of the passed URI.
+     */
+    private String removePagingParameters(String uri, int pageNumber, String cursor) {
+        uri = removeQueryParameter(uri, SearchConstants.PAGE, Integer.toString(pageNumber));
+        if (cursor != null) {
+            uri = removeQueryParameter(uri, SearchConstants.CURSOR, cursor);
+        }
+        return uri;
+    }
+
+    private String encode(KeysetCursor cursor) {
+        return cursor != null ? cursor.encode() : null;
+    }
+
+    private String encode(HistoryCursor cursor) {
+        return cursor != null ? cursor.encode() : null;
+    }
+
+    private String removeQueryParameter(String uri, String name, String value) {
+        String parameter = name + "=" + value;
+        return uri.replace("&" + parameter, "").replace(parameter + "&", "").replace(parameter, "");
+    }
+
+    private String appendQueryParameter(String uri, String name, String value) {
+        if (uri.contains("?")) {
+            if (!uri.endsWith("?")) {
+                // there are other parameters in the query string
+                uri += "&";
+            }
+        } else {
+            uri += "?";
+        }
+        return uri + name + "=" + value;
+    }
+
     /**
      * Get the original request URI from either the HttpServletRequest or a configured Header (in case of re-writing proxies).
      *
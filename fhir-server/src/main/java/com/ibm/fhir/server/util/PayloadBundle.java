@@ -0,0 +1,150 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import javax.json.Json;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.generator.FHIRGenerator;
+import com.ibm.fhir.model.generator.exception.FHIRGeneratorException;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.persistence.ResourcePayload;
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+
+/**
+ * A search result Bundle whose entries hold the stored payloads of the resources instead of the parsed resources.
+ * <br>
+ * The Bundle is written as compact JSON by generating the envelope (everything but the entries) and then copying
+ * the payload of each entry into the output as it is, so the resources of the page are never parsed, no Bundle.Entry
+ * objects are built, and the response is not buffered as a whole. The full Bundle is only built if it is asked for,
+ * e.g. by a persistence interceptor.
+ */
+public class PayloadBundle {
+    private static final byte[] ENTRY_START = ",\"entry\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FULL_URL_START = "{\"fullUrl\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESOURCE_START = ",\"resource\":".getBytes(StandardCharsets.UTF_8);
+
+    private final Bundle envelope;
+    private final List<Entry> entries;
+
+    /**
+     * An entry of the Bundle: the fullUrl of the resource and its stored payload.
+     */
+    public static class Entry {
+        private final String fullUrl;
+        private final ResourcePayload payload;
+
+        public Entry(String fullUrl, ResourcePayload payload) {
+            this.fullUrl = Objects.requireNonNull(fullUrl);
+            this.payload = Objects.requireNonNull(payload);
+        }
+
+        public String getFullUrl() {
+            return fullUrl;
+        }
+
+        public ResourcePayload getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * @param envelope the Bundle without its entries
+     * @param entries the entries of the Bundle, in order
+     */
+    public PayloadBundle(Bundle envelope, List<Entry> entries) {
+        if (!envelope.getEntry().isEmpty()) {
+            throw new IllegalArgumentException("The envelope must not have entries");
+        }
+        this.envelope = envelope;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return the Bundle without its entries
+     */
+    public Bundle getEnvelope() {
+        return envelope;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Builds the full Bundle, parsing the payload of each entry.
+     *
+     * @return the Bundle
+     * @throws FHIRPersistenceException if a payload cannot be parsed
+     */
+    public Bundle toBundle() throws FHIRPersistenceException {
+        Bundle.Builder bundleBuilder = envelope.toBuilder();
+        for (Entry entry : entries) {
+            bundleBuilder.entry(Bundle.Entry.builder()
+                    .fullUrl(Uri.of(entry.getFullUrl()))
+                    .resource(entry.getPayload().getResource(Resource.class))
+                    .build());
+        }
+        return bundleBuilder.build();
+    }
+
+    /**
+     * Writes the Bundle to the passed stream as compact JSON.
+     *
+     * @param out the stream to write to; it is not closed by this method
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] envelopeBytes = generateEnvelope();
+        if (entries.isEmpty()) {
+            out.write(envelopeBytes);
+            return;
+        }
+
+        // Entry is the last element of a Bundle that can be present (a search result is not signed), so the
+        // entries go just before the closing brace of the envelope
+        int end = envelopeBytes.length - 1;
+        while (end >= 0 && envelopeBytes[end] != '}') {
+            end--;
+        }
+        out.write(envelopeBytes, 0, end);
+        out.write(ENTRY_START);
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(FULL_URL_START);
+            out.write(Json.createValue(entry.getFullUrl()).toString().getBytes(StandardCharsets.UTF_8));
+            out.write(RESOURCE_START);
+            entry.getPayload().transferTo(out);
+            out.write('}');
+        }
+        out.write(']');
+        out.write('}');
+    }
+
+    private byte[] generateEnvelope() throws IOException {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            FHIRGenerator.generator(Format.JSON, false).generate(envelope, buffer);
+            return buffer.toByteArray();
+        } catch (FHIRGeneratorException e) {
+            throw new IOException("Unable to generate the search result bundle", e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.registry;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.model.resource.OperationOutcome;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.ValueSet;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.PublicationStatus;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
+import com.ibm.fhir.persistence.MultiResourceResult;
+import com.ibm.fhir.persistence.SingleResourceResult;
+import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+import com.ibm.fhir.persistence.helper.PersistenceHelper;
+import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
+import com.ibm.fhir.registry.resource.FHIRRegistryResource;
+
+/**
+ * Tests the caching of the lookups of the server registry resource provider.
+ */
+public class ServerRegistryResourceProviderTest {
+    private static final String URL = "http://example.com/fhir/ValueSet/test";
+
+    private TestPersistence persistence;
+    private ServerRegistryResourceProvider provider;
+
+    @BeforeClass
+    public void setUpClass() {
+        FHIRConfiguration.setConfigHome("target/test-classes");
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        persistence = new TestPersistence();
+        PersistenceHelper persistenceHelper = new PersistenceHelper() {
+            @Override
+            public FHIRPersistence getFHIRPersistenceImplementation() {
+                return persistence;
+            }
+
+            @Override
+            public FHIRPersistence getFHIRPersistenceImplementation(String factoryPropertyName) {
+                return persistence;
+            }
+        };
+        provider = new ServerRegistryResourceProvider(persistenceHelper);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FHIRRequestContext.remove();
+    }
+
+    @Test
+    public void testLookupIsCached() throws Exception {
+        assertEquals(getVersion(), "1");
+        assertEquals(getVersion(), "1");
+        assertEquals(persistence.searchCount.get(), 1);
+    }
+
+    @Test
+    public void testWriteInvalidatesLookup() throws Exception {
+        assertEquals(getVersion(), "1");
+
+        persistence.version = "2";
+        provider.afterUpdate(new FHIRPersistenceEvent(valueSet("2"), Collections.emptyMap()));
+
+        assertEquals(getVersion(), "2");
+        assertEquals(persistence.searchCount.get(), 2);
+    }
+
+    @Test
+    public void testLookupOverlappingWriteIsNotCached() throws Exception {
+        // the write happens while the lookup is searching, so the result of the lookup may already be stale
+        persistence.duringSearch = () -> provider.afterUpdate(new FHIRPersistenceEvent(valueSet("2"), Collections.emptyMap()));
+        assertEquals(getVersion(), "1");
+
+        persistence.duringSearch = null;
+        persistence.version = "2";
+        assertEquals(getVersion(), "2");
+        assertEquals(getVersion(), "2");
+        assertEquals(persistence.searchCount.get(), 2);
+    }
+
+    @Test
+    public void testFailedLookupIsNotCached() throws Exception {
+        persistence.fail = true;
+        assertNull(provider.getRegistryResource(ValueSet.class, URL, null));
+
+        persistence.fail = false;
+        assertEquals(getVersion(), "1");
+        assertEquals(persistence.searchCount.get(), 2);
+    }
+
+    private String getVersion() {
+        FHIRRegistryResource registryResource = provider.getRegistryResource(ValueSet.class, URL, null);
+        assertNotNull(registryResource);
+        return registryResource.getVersion().toString();
+    }
+
+    private static ValueSet valueSet(String version) {
+        return ValueSet.builder()
+                .id("test")
+                .url(Uri.of(URL))
+                .version(com.ibm.fhir.model.type.String.of(version))
+                .status(PublicationStatus.ACTIVE)
+                .build();
+    }
+
+    /**
+     * A persistence implementation which only supports search, and returns the current version of a single ValueSet.
+     */
+    private static class TestPersistence implements FHIRPersistence {
+        private final AtomicInteger searchCount = new AtomicInteger();
+        private volatile String version = "1";
+        private volatile boolean fail = false;
+        private volatile Runnable duringSearch = null;
+
+        @Override
+        public MultiResourceResult<Resource> search(FHIRPersistenceContext context, Class<? extends Resource> resourceType)
+                throws FHIRPersistenceException {
+            searchCount.incrementAndGet();
+            if (fail) {
+                throw new FHIRPersistenceException("Unable to search");
+            }
+            ValueSet valueSet = valueSet(version);
+            if (duringSearch != null) {
+                duringSearch.run();
+            }
+            return new MultiResourceResult.Builder<Resource>()
+                    .success(true)
+                    .resource(Collections.singletonList(valueSet))
+                    .build();
+        }
+
+        @Override
+        public <T extends Resource> SingleResourceResult<T> create(FHIRPersistenceContext context, T resource) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Resource> SingleResourceResult<T> read(FHIRPersistenceContext context, Class<T> resourceType, String logicalId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Resource> SingleResourceResult<T> vread(FHIRPersistenceContext context, Class<T> resourceType, String logicalId,
+                String versionId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Resource> SingleResourceResult<T> update(FHIRPersistenceContext context, String logicalId, T resource) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Resource> MultiResourceResult<T> history(FHIRPersistenceContext context, Class<T> resourceType, String logicalId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isTransactional() {
+            return true;
+        }
+
+        @Override
+        public FHIRPersistenceTransaction getTransaction() {
+            return null;
+        }
+
+        @Override
+        public OperationOutcome getHealth() {
+            return null;
+        }
+    }
+}
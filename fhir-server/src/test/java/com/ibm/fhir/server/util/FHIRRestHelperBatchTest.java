@@ -0,0 +1,310 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.OperationOutcome;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.Id;
+import com.ibm.fhir.model.type.Instant;
+import com.ibm.fhir.model.type.Meta;
+import com.ibm.fhir.model.type.Reference;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.model.type.code.HTTPVerb;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
+import com.ibm.fhir.persistence.MultiResourceResult;
+import com.ibm.fhir.persistence.SingleResourceResult;
+import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+import com.ibm.fhir.persistence.helper.PersistenceHelper;
+import com.ibm.fhir.server.exception.FHIRRestBundledRequestException;
+
+/**
+ * Tests the parallel processing of the entries of a 'batch' request bundle.
+ */
+public class FHIRRestHelperBatchTest {
+    private static final String BASE_URI = "https://localhost:9443/fhir-server/api/v4";
+
+    // a read of this id fails with a FHIRPersistenceException, which is reported in the entry's response
+    private static final String ERROR_ID = "error";
+
+    // a read of this id fails with an unexpected exception, which fails the worker
+    private static final String CRASH_ID = "crash";
+
+    private ExecutorService executor;
+    private TestPersistence persistence;
+    private FHIRRestHelper helper;
+
+    @BeforeClass
+    public void setUpClass() {
+        FHIRConfiguration.setConfigHome("target/test-classes");
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterClass
+    public void tearDownClass() {
+        executor.shutdownNow();
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        FHIRRequestContext.get().setOriginalRequestUri(BASE_URI);
+        persistence = new TestPersistence();
+        PersistenceHelper persistenceHelper = new PersistenceHelper() {
+            @Override
+            public FHIRPersistence getFHIRPersistenceImplementation() {
+                return persistence;
+            }
+
+            @Override
+            public FHIRPersistence getFHIRPersistenceImplementation(String factoryPropertyName) {
+                return persistence;
+            }
+        };
+        helper = new FHIRRestHelper(persistence, persistenceHelper) {
+            @Override
+            ExecutorService getBatchExecutor() {
+                return executor;
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FHIRRequestContext.remove();
+    }
+
+    @Test
+    public void testResponseOrder() throws Exception {
+        // the earlier entries take longer to read, so they complete last
+        List<String> ids = Arrays.asList("p1", "p2", "p3", "p4", "p5", "p6");
+        for (int i = 0; i < ids.size(); i++) {
+            persistence.delays.put(ids.get(i), (ids.size() - i) * 20L);
+        }
+
+        Bundle response = helper.doBundle(readBundle(BundleType.BATCH, ids), null);
+
+        assertEquals(response.getEntry().size(), ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Bundle.Entry entry = response.getEntry().get(i);
+            assertEquals(entry.getResponse().getStatus().getValue(), "200");
+            assertEquals(entry.getResource().getId(), ids.get(i));
+        }
+        assertTrue(persistence.readOnWorkerThread.get() > 0, "expected the entries to be read by the workers");
+    }
+
+    @Test
+    public void testLocalIdentifierEntriesAreSerial() throws Exception {
+        Bundle request = readBundle(BundleType.BATCH, Arrays.asList("p1", "p2", "p3"));
+        Bundle.Entry localEntry = request.getEntry().get(1).toBuilder()
+                .fullUrl(Uri.of("urn:uuid:53fefa32-fcbb-4ff8-8a92-55ee120877b7"))
+                .build();
+        request = request.toBuilder()
+                .entry(Arrays.asList(request.getEntry().get(0), localEntry, request.getEntry().get(2)))
+                .build();
+
+        Bundle response = helper.doBundle(request, null);
+
+        assertEquals(response.getEntry().size(), 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(response.getEntry().get(i).getResource().getId(), "p" + (i + 1));
+        }
+        assertEquals(persistence.readThreads.get("p2"), Thread.currentThread().getName());
+        assertNotEquals(persistence.readThreads.get("p1"), Thread.currentThread().getName());
+        assertNotEquals(persistence.readThreads.get("p3"), Thread.currentThread().getName());
+    }
+
+    @Test
+    public void testIndependentEntryIndices() throws Exception {
+        Patient independent = patient("p1");
+        Patient referencing = independent.toBuilder()
+                .id("p2")
+                .generalPractitioner(Reference.builder()
+                    .reference(com.ibm.fhir.model.type.String.of("urn:uuid:53fefa32-fcbb-4ff8-8a92-55ee120877b7"))
+                    .build())
+                .build();
+        Bundle request = Bundle.builder()
+                .type(BundleType.BATCH)
+                .entry(postEntry(independent, null))
+                .entry(postEntry(referencing, null))
+                .entry(postEntry(patient("p3"), "urn:uuid:53fefa32-fcbb-4ff8-8a92-55ee120877b7"))
+                .entry(postEntry(patient("p4"), BASE_URI + "/Patient/p4"))
+                .build();
+
+        assertEquals(helper.getIndependentEntryIndices(request, Arrays.asList(0, 1, 2, 3)), Arrays.asList(0, 3));
+    }
+
+    @Test
+    public void testFailingEntryInBatch() throws Exception {
+        Bundle response = helper.doBundle(readBundle(BundleType.BATCH, Arrays.asList("p1", ERROR_ID, "p3")), null);
+
+        // the failure is reported for its own entry only
+        assertEquals(response.getEntry().get(0).getResponse().getStatus().getValue(), "200");
+        assertEquals(response.getEntry().get(1).getResponse().getStatus().getValue(), "500");
+        assertTrue(response.getEntry().get(1).getResource() instanceof OperationOutcome);
+        assertEquals(response.getEntry().get(2).getResponse().getStatus().getValue(), "200");
+    }
+
+    @Test
+    public void testFailingWorkerInBatch() throws Exception {
+        try {
+            helper.doBundle(readBundle(BundleType.BATCH, Arrays.asList("p1", CRASH_ID, "p3")), null);
+            fail("Expected the failure of the worker to fail the bundle");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), CRASH_ID);
+        }
+    }
+
+    @Test
+    public void testFailingEntryInTransaction() throws Exception {
+        try {
+            helper.doBundle(readBundle(BundleType.TRANSACTION, Arrays.asList("p1", ERROR_ID, "p3")), null);
+            fail("Expected the failure of an entry to fail the transaction");
+        } catch (FHIRRestBundledRequestException e) {
+            // expected
+        }
+        // the entries of a transaction are never handed to the workers
+        assertEquals(persistence.readOnWorkerThread.get(), 0);
+        assertFalse(persistence.readThreads.containsKey("p3"), "expected the transaction to stop at the failed entry");
+    }
+
+    private Bundle readBundle(BundleType type, List<String> ids) {
+        Bundle.Builder builder = Bundle.builder().type(type);
+        for (String id : ids) {
+            builder.entry(Bundle.Entry.builder()
+                .request(Bundle.Entry.Request.builder()
+                    .method(HTTPVerb.GET)
+                    .url(Uri.of("Patient/" + id))
+                    .build())
+                .build());
+        }
+        return builder.build();
+    }
+
+    private Bundle.Entry postEntry(Patient patient, String fullUrl) {
+        return Bundle.Entry.builder()
+                .fullUrl(fullUrl != null ? Uri.of(fullUrl) : null)
+                .resource(patient)
+                .request(Bundle.Entry.Request.builder()
+                    .method(HTTPVerb.POST)
+                    .url(Uri.of("Patient"))
+                    .build())
+                .build();
+    }
+
+    private static Patient patient(String id) {
+        return Patient.builder()
+                .id(id)
+                .meta(Meta.builder()
+                    .versionId(Id.of("1"))
+                    .lastUpdated(Instant.of(ZonedDateTime.now()))
+                    .build())
+                .build();
+    }
+
+    /**
+     * A persistence implementation which only supports read, and records the thread each resource is read on.
+     */
+    private static class TestPersistence implements FHIRPersistence {
+        private final Map<String, Long> delays = new ConcurrentHashMap<>();
+        private final Map<String, String> readThreads = new ConcurrentHashMap<>();
+        private final AtomicInteger readOnWorkerThread = new AtomicInteger();
+        private final String testThread = Thread.currentThread().getName();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Resource> SingleResourceResult<T> read(FHIRPersistenceContext context, Class<T> resourceType, String logicalId)
+                throws FHIRPersistenceException {
+            readThreads.put(logicalId, Thread.currentThread().getName());
+            if (!testThread.equals(Thread.currentThread().getName())) {
+                readOnWorkerThread.incrementAndGet();
+            }
+            if (ERROR_ID.equals(logicalId)) {
+                throw new FHIRPersistenceException("Unable to read '" + logicalId + "'");
+            }
+            if (CRASH_ID.equals(logicalId)) {
+                throw new IllegalStateException(CRASH_ID);
+            }
+            try {
+                Thread.sleep(delays.getOrDefault(logicalId, 0L));
+            } catch (InterruptedException e) {
+                throw new FHIRPersistenceException("Interrupted");
+            }
+            return new SingleResourceResult.Builder<T>()
+                    .success(true)
+                    .resource((T) patient(logicalId))
+                    .build();
+        }
+
+        @Override
+        public <T extends Resource> SingleResourceResult<T> create(FHIRPersistenceContext context, T resource) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Resource> SingleResourceResult<T> vread(FHIRPersistenceContext context, Class<T> resourceType, String logicalId,
+                String versionId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Resource> SingleResourceResult<T> update(FHIRPersistenceContext context, String logicalId, T resource) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Resource> MultiResourceResult<T> history(FHIRPersistenceContext context, Class<T> resourceType, String logicalId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MultiResourceResult<Resource> search(FHIRPersistenceContext context, Class<? extends Resource> resourceType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isTransactional() {
+            return true;
+        }
+
+        @Override
+        public FHIRPersistenceTransaction getTransaction() {
+            return null;
+        }
+
+        @Override
+        public OperationOutcome getHealth() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.generator.FHIRGenerator;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.type.HumanName;
+import com.ibm.fhir.model.type.Id;
+import com.ibm.fhir.model.type.Instant;
+import com.ibm.fhir.model.type.Meta;
+import com.ibm.fhir.model.type.UnsignedInt;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.persistence.ResourcePayload;
+
+/**
+ * Tests that the search result Bundle written from the stored payloads is the same as the Bundle built from the
+ * parsed resources.
+ */
+public class PayloadBundleTest {
+    private static final String BASE_URI = "https://localhost:9443/fhir-server/api/v4/Patient/";
+
+    @Test
+    public void testEmptyPage() throws Exception {
+        Bundle envelope = Bundle.builder()
+                .type(BundleType.SEARCHSET)
+                .total(UnsignedInt.of(0))
+                .link(link("self", BASE_URI + "?_count=10&_page=1"))
+                .build();
+        PayloadBundle payloadBundle = new PayloadBundle(envelope, Collections.emptyList());
+
+        String json = write(payloadBundle);
+        assertFalse(Json.createReader(new StringReader(json)).readObject().containsKey("entry"));
+        assertWrittenBundle(payloadBundle, json);
+    }
+
+    @Test
+    public void testLinksAndTotal() throws Exception {
+        Bundle envelope = Bundle.builder()
+                .type(BundleType.SEARCHSET)
+                .total(UnsignedInt.of(25))
+                .link(link("self", BASE_URI + "?_count=2&_page=2"))
+                .link(link("next", BASE_URI + "?_count=2&_page=3"))
+                .link(link("previous", BASE_URI + "?_count=2&_page=1"))
+                .build();
+        List<PayloadBundle.Entry> entries = new ArrayList<>();
+        entries.add(entry(BASE_URI + "p1", patient("p1", "Alpha")));
+        entries.add(entry(BASE_URI + "p2", patient("p2", "Beta")));
+        PayloadBundle payloadBundle = new PayloadBundle(envelope, entries);
+
+        String json = write(payloadBundle);
+        JsonObject jsonObject = Json.createReader(new StringReader(json)).readObject();
+        assertEquals(jsonObject.getJsonArray("entry").size(), 2);
+        assertEquals(jsonObject.getJsonArray("link").size(), 3);
+        assertEquals(jsonObject.getInt("total"), 25);
+        assertWrittenBundle(payloadBundle, json);
+    }
+
+    @Test
+    public void testFullUrlEscaping() throws Exception {
+        Bundle envelope = Bundle.builder()
+                .type(BundleType.SEARCHSET)
+                .build();
+        String fullUrl = BASE_URI + "p\"1\\xé";
+        PayloadBundle payloadBundle = new PayloadBundle(envelope,
+            Collections.singletonList(entry(fullUrl, patient("p1", "Quote\"Back\\slash"))));
+
+        String json = write(payloadBundle);
+        JsonObject jsonObject = Json.createReader(new StringReader(json)).readObject();
+        assertEquals(jsonObject.getJsonArray("entry").getJsonObject(0).getString("fullUrl"), fullUrl);
+        assertWrittenBundle(payloadBundle, json);
+    }
+
+    private void assertWrittenBundle(PayloadBundle payloadBundle, String json) throws Exception {
+        Bundle written = FHIRParser.parser(Format.JSON).parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        Bundle expected = payloadBundle.toBundle();
+        assertEquals(written, expected);
+    }
+
+    private String write(PayloadBundle payloadBundle) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        payloadBundle.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Bundle.Link link(String relation, String url) {
+        return Bundle.Link.builder()
+                .relation(com.ibm.fhir.model.type.String.of(relation))
+                .url(Uri.of(url))
+                .build();
+    }
+
+    private static PayloadBundle.Entry entry(String fullUrl, Patient patient) throws Exception {
+        // the payload is stored as GZIP-compressed compact JSON
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            FHIRGenerator.generator(Format.JSON, false).generate(patient, out);
+        }
+        ResourcePayload payload = new ResourcePayload(patient.getId(), 1, java.time.Instant.now(), 1, compressed.toByteArray());
+        return new PayloadBundle.Entry(fullUrl, payload);
+    }
+
+    private static Patient patient(String id, String family) {
+        return Patient.builder()
+                .id(id)
+                .meta(Meta.builder()
+                    .versionId(Id.of("1"))
+                    .lastUpdated(Instant.of(ZonedDateTime.now()))
+                    .build())
+                .name(HumanName.builder()
+                    .family(com.ibm.fhir.model.type.String.of(family))
+                    .build())
+                .build();
+    }
+}
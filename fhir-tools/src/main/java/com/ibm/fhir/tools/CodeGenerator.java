@@ -2492,12 +2492,16 @@ public class CodeGenerator {
         cb._import("javax.annotation.Generated");
         cb._import("javax.json.Json");
         cb._import("javax.json.JsonArray");
+        cb._import("javax.json.JsonBuilderFactory");
         cb._import("javax.json.JsonNumber");
         cb._import("javax.json.JsonObject");
+        cb._import("javax.json.JsonObjectBuilder");
         cb._import("javax.json.JsonReader");
         cb._import("javax.json.JsonReaderFactory");
         cb._import("javax.json.JsonString");
         cb._import("javax.json.JsonValue");
+        cb._import("javax.json.stream.JsonParser");
+        cb._import("javax.json.stream.JsonParserFactory");
         cb.newLine();
 
         cb._import("com.ibm.fhir.model.parser.FHIRParser");
@@ -2520,6 +2524,8 @@ public class CodeGenerator {
         cb._class(mods("public"), "FHIRJsonParser", "FHIRAbstractParser");
         cb.field(mods("public", "static"), "boolean", "DEBUG", "false");
         cb.field(mods("private", "static", "final"), "JsonReaderFactory", "JSON_READER_FACTORY", "Json.createReaderFactory(null)");
+        cb.field(mods("private", "static", "final"), "JsonParserFactory", "JSON_PARSER_FACTORY", "Json.createParserFactory(null)");
+        cb.field(mods("private", "static", "final"), "JsonBuilderFactory", "JSON_BUILDER_FACTORY", "Json.createBuilderFactory(null)");
         cb.newLine();
 
         cb.field(mods("private", "final"), "Stack<java.lang.String>", "stack", _new("Stack<>"));
@@ -2539,6 +2545,15 @@ public class CodeGenerator {
 
         // public <T extends Resource> T parseAndFilter(InputStream in, java.util.List<java.lang.String> elementsToInclude) throws FHIRException
         cb.method(mods("public"), "<T extends Resource> T", "parseAndFilter", params("InputStream in", "Collection<java.lang.String> elementsToInclude"), throwsExceptions("FHIRParserException"))
+                ._if("isStreaming()")
+                ._try("JsonParser jsonParser = JSON_PARSER_FACTORY.createParser(nonClosingInputStream(in), StandardCharsets.UTF_8)")
+                ._return("parseAndFilter(jsonParser, elementsToInclude)")
+                ._catch("FHIRParserException e")
+                ._throw("e")
+                ._catch("Exception e")
+                ._throw("new FHIRParserException(e.getMessage(), getPath(), e)")
+                ._end()
+                ._end()
                 ._try("JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingInputStream(in), StandardCharsets.UTF_8)")
                 .assign("JsonObject jsonObject", "jsonReader.readObject()")
                 ._return("parseAndFilter(jsonObject, elementsToInclude)")
@@ -2559,6 +2574,15 @@ public class CodeGenerator {
 
         // public <T extends Resource> T parseAndFilter(Reader reader, java.util.List<java.lang.String> elementsToInclude) throws FHIRException
         cb.method(mods("public"), "<T extends Resource> T", "parseAndFilter", params("Reader reader", "Collection<java.lang.String> elementsToInclude"), throwsExceptions("FHIRParserException"))
+                ._if("isStreaming()")
+                ._try("JsonParser jsonParser = JSON_PARSER_FACTORY.createParser(nonClosingReader(reader))")
+                ._return("parseAndFilter(jsonParser, elementsToInclude)")
+                ._catch("FHIRParserException e")
+                ._throw("e")
+                ._catch("Exception e")
+                ._throw("new FHIRParserException(e.getMessage(), getPath(), e)")
+                ._end()
+                ._end()
                 ._try("JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingReader(reader))")
                 .assign("JsonObject jsonObject", "jsonReader.readObject()")
                 ._return("parseAndFilter(jsonObject, elementsToInclude)")
@@ -2592,6 +2616,69 @@ public class CodeGenerator {
                 .end();
         cb.newLine();
 
+        // private <T extends Resource> T parseAndFilter(JsonParser jsonParser, java.util.List<java.lang.String> elementsToInclude)
+        // reads the top-level object from the event stream; the entries of a Bundle are parsed as they are read
+        cb.annotation("SuppressWarnings", quote("unchecked"));
+        cb.method(mods("private"), "<T extends Resource> T", "parseAndFilter", params("JsonParser jsonParser", "Collection<java.lang.String> elementsToInclude"), throwsExceptions("FHIRParserException"))
+                ._try()
+                .invoke("reset", args())
+                ._if("jsonParser.next() != JsonParser.Event.START_OBJECT")
+                ._throw("new IllegalArgumentException(\"Expected a JSON object\")")
+                ._end()
+                .assign("JsonObjectBuilder jsonObjectBuilder", "JSON_BUILDER_FACTORY.createObjectBuilder()")
+                .assign("boolean bundle", "false")
+                .assign("java.util.List<Bundle.Entry> entries", "null")
+                ._while("jsonParser.next() == JsonParser.Event.KEY_NAME")
+                .assign("java.lang.String key", "jsonParser.getString()")
+                .assign("JsonParser.Event event", "jsonParser.next()")
+                ._if("bundle && entries == null && \"entry\".equals(key) && event == JsonParser.Event.START_ARRAY")
+                ._if("elementsToInclude != null && !new ElementFilter(Bundle.class, elementsToInclude).includes(key)")
+                .invoke("jsonParser", "skipArray", args())
+                ._else()
+                .assign("entries", "parseBundleEntries(jsonParser)")
+                ._end()
+                ._continue()
+                ._end()
+                .assign("JsonValue jsonValue", "jsonParser.getValue()")
+                ._if("\"resourceType\".equals(key) && jsonValue instanceof JsonString")
+                .assign("bundle", "\"Bundle\".equals(((JsonString) jsonValue).getString())")
+                ._end()
+                .invoke("jsonObjectBuilder", "add", args("key", "jsonValue"))
+                ._end()
+                .assign("JsonObject jsonObject", "jsonObjectBuilder.build()")
+                .assign("Class<?> resourceType", "getResourceType(jsonObject)")
+                ._if("elementsToInclude != null")
+                .assign("ElementFilter elementFilter", "new ElementFilter(resourceType, elementsToInclude)")
+                .assign("jsonObject", "elementFilter.apply(jsonObject)")
+                ._end()
+                .assign("Resource resource", "parseResource(resourceType.getSimpleName(), jsonObject, -1)")
+                ._if("entries != null")
+                .assign("resource", "((Bundle) resource).toBuilder().entry(entries).build()")
+                ._end()
+                ._return("(T) resource")
+                ._catch("Exception e")
+                ._throw("new FHIRParserException(e.getMessage(), getPath(), e)")
+                ._end()
+                .end();
+        cb.newLine();
+
+        cb.method(mods("private"), "java.util.List<Bundle.Entry>", "parseBundleEntries", params("JsonParser jsonParser"))
+                .assign("java.util.List<Bundle.Entry> entries", "new java.util.ArrayList<>()")
+                .invoke("stackPush", args(quote("Bundle"), "-1"))
+                .assign("int i", "0")
+                ._while("jsonParser.next() != JsonParser.Event.END_ARRAY")
+                .invoke("entries", "add", args("parseBundleEntry(\"entry\", (JsonObject) jsonParser.getValue(), i++)"))
+                ._end()
+                .invoke("stackPop", args())
+                ._return("entries")
+                .end();
+        cb.newLine();
+
+        cb.method(mods("private"), "boolean", "isStreaming")
+                ._return("getPropertyOrDefault(FHIRParser.PROPERTY_STREAMING, java.lang.Boolean.FALSE, java.lang.Boolean.class)")
+                .end();
+        cb.newLine();
+
         cb.method(mods("private"), "void", "reset")
                 .invoke("stack", "clear", args())
                 .end();
@@ -2602,6 +2689,9 @@ public class CodeGenerator {
                 ._if("FHIRParser.PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS.equals(name)")
                 ._return("true")
                 ._end()
+                ._if("FHIRParser.PROPERTY_STREAMING.equals(name)")
+                ._return("true")
+                ._end()
                 ._return("false")
                 .end();
         cb.newLine();
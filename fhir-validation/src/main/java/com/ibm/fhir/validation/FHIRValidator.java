@@ -29,7 +29,6 @@ import com.ibm.fhir.model.resource.StructureDefinition;
 import com.ibm.fhir.model.type.CodeableConcept;
 import com.ibm.fhir.model.type.code.IssueSeverity;
 import com.ibm.fhir.model.type.code.IssueType;
-import com.ibm.fhir.model.util.ModelSupport;
 import com.ibm.fhir.path.FHIRPathElementNode;
 import com.ibm.fhir.path.FHIRPathNode;
 import com.ibm.fhir.path.FHIRPathResourceNode;
@@ -263,7 +262,7 @@ public class FHIRValidator {
          */
         private void validate(FHIRPathElementNode elementNode) {
             Class<?> elementType = elementNode.element().getClass();
-            validate(elementType, elementNode, ModelSupport.getConstraints(elementType));
+            validate(elementNode, ValidationPlan.forType(elementType));
         }
 
         /**
@@ -271,38 +270,38 @@ public class FHIRValidator {
          */
         private void validate(FHIRPathResourceNode resourceNode) {
             Class<?> resourceType = resourceNode.resource().getClass();
-            validate(resourceType, resourceNode, ModelSupport.getConstraints(resourceType));
+            validate(resourceNode, ValidationPlan.forType(resourceType));
             if (includeResourceAssertedProfiles) {
                 List<String> resourceAssertedProfiles = ProfileSupport.getResourceAssertedProfiles(resourceNode.resource());
                 validateProfileReferences(resourceNode, resourceAssertedProfiles, true, issues);
-                validate(resourceType, resourceNode, ProfileSupport.getConstraints(resourceAssertedProfiles, resourceType));
+                validate(resourceNode, ValidationPlan.forProfiles(resourceAssertedProfiles, resourceType));
             }
             if (!profiles.isEmpty() && !resourceNode.path().contains(".")) {
-                validate(resourceType, resourceNode, ProfileSupport.getConstraints(profiles, resourceType));
+                validate(resourceNode, ValidationPlan.forProfiles(profiles, resourceType));
             }
         }
 
         /**
-         * @throws RuntimeException if one of the passed constraints cannot be evaluated for the passed node
+         * @throws RuntimeException if one of the constraints of the passed plan cannot be evaluated for the passed node
          */
-        private void validate(Class<?> type, FHIRPathNode node, Collection<Constraint> constraints) {
-            for (Constraint constraint : constraints) {
-                if (constraint.modelChecked()) {
-                    if (log.isLoggable(Level.FINER)) {
-                        log.finer("    Constraint: " + constraint.id() + " is model-checked");
-                    }
-                    continue;
-                }
-                evaluationContext.setConstraint(constraint);
-                validate(type, node, constraint);
+        private void validate(FHIRPathNode node, ValidationPlan plan) {
+            if (plan.isEmpty()) {
+                return;
+            }
+            // the context nodes selected by each location of the plan, computed on first use
+            List<Collection<FHIRPathNode>> locationContexts = new ArrayList<>(Collections.nCopies(plan.getLocations().size(), null));
+            for (ValidationPlan.Step step : plan.getSteps()) {
+                evaluationContext.setConstraint(step.getConstraint());
+                validate(node, step, locationContexts);
                 evaluationContext.unsetConstraint();
             }
         }
 
         /**
-         * @throws RuntimeException if the passed constraint cannot be evaluated for the passed node
+         * @throws RuntimeException if the constraint of the passed step cannot be evaluated for the passed node
          */
-        private void validate(Class<?> type, FHIRPathNode node, Constraint constraint) {
+        private void validate(FHIRPathNode node, ValidationPlan.Step step, List<Collection<FHIRPathNode>> locationContexts) {
+            Constraint constraint = step.getConstraint();
             String path = node.path();
             try {
                 if (log.isLoggable(Level.FINER)) {
@@ -310,18 +309,27 @@ public class FHIRValidator {
                 }
 
                 Collection<FHIRPathNode> initialContext = singleton(node);
-                if (!Constraint.LOCATION_BASE.equals(constraint.location())) {
-                    initialContext = evaluator.evaluate(evaluationContext, constraint.location(), initialContext);
-                    issues.addAll(evaluationContext.getIssues());
-                    evaluationContext.clearIssues();
+                ValidationPlan.Location location = step.getLocation();
+                if (location != null) {
+                    initialContext = locationContexts.get(location.getIndex());
+                    if (initialContext == null) {
+                        initialContext = (location.getCompiledExpression() != null) ?
+                                evaluator.evaluate(evaluationContext, location.getCompiledExpression(), singleton(node)) :
+                                evaluator.evaluate(evaluationContext, location.getExpression(), singleton(node));
+                        issues.addAll(evaluationContext.getIssues());
+                        evaluationContext.clearIssues();
+                        locationContexts.set(location.getIndex(), initialContext);
+                    }
                 }
 
-                IssueSeverity severity = Constraint.LEVEL_WARNING.equals(constraint.level()) ? IssueSeverity.WARNING : IssueSeverity.ERROR;
+                IssueSeverity severity = step.getSeverity();
 
                 for (FHIRPathNode contextNode : initialContext) {
                     evaluationContext.setExternalConstant("rootResource", getRootResourceNode(contextNode));
                     evaluationContext.setExternalConstant("resource", getResourceNode(contextNode));
-                    Collection<FHIRPathNode> result = evaluator.evaluate(evaluationContext, constraint.expression(), singleton(contextNode));
+                    Collection<FHIRPathNode> result = (step.getCompiledExpression() != null) ?
+                            evaluator.evaluate(evaluationContext, step.getCompiledExpression(), singleton(contextNode)) :
+                            evaluator.evaluate(evaluationContext, constraint.expression(), singleton(contextNode));
                     issues.addAll(evaluationContext.getIssues());
                     evaluationContext.clearIssues();
 
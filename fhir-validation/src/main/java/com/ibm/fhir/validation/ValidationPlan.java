@@ -0,0 +1,240 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.validation;
+
+import static com.ibm.fhir.core.util.BoundedCache.createBoundedCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.fhir.core.util.BoundedCache;
+import com.ibm.fhir.model.annotation.Constraint;
+import com.ibm.fhir.model.resource.StructureDefinition;
+import com.ibm.fhir.model.type.code.IssueSeverity;
+import com.ibm.fhir.model.util.ModelSupport;
+import com.ibm.fhir.path.FHIRPathParser.ExpressionContext;
+import com.ibm.fhir.path.util.FHIRPathUtil;
+import com.ibm.fhir.profile.ProfileSupport;
+
+/**
+ * A precompiled plan for evaluating a set of constraints against nodes of a single type.
+ *
+ * <p>When the plan is built, constraints which are checked by the model (and so can never fail) are dropped, the location
+ * and expression of each remaining constraint are compiled once, and constraints which share a location refer to the same
+ * {@link Location}, so that a validator only needs to select the context nodes for each location once per node.
+ *
+ * <p>Plans are immutable and are cached per type, and per type and profile set.
+ */
+public final class ValidationPlan {
+    private static final ValidationPlan EMPTY = new ValidationPlan(Collections.emptyList(), Collections.emptyList());
+
+    private static final Map<Class<?>, ValidationPlan> TYPE_PLAN_CACHE = new ConcurrentHashMap<>();
+
+    private static final int PROFILE_PLAN_CACHE_MAX_ENTRIES = 256;
+    private static final BoundedCache<String, ValidationPlan> PROFILE_PLAN_CACHE = createBoundedCache(PROFILE_PLAN_CACHE_MAX_ENTRIES);
+
+    private final List<Location> locations;
+    private final List<Step> steps;
+
+    private ValidationPlan(List<Location> locations, List<Step> steps) {
+        this.locations = locations;
+        this.steps = steps;
+    }
+
+    /**
+     * Build a plan for the passed constraints, in the order they are passed.
+     *
+     * @param constraints
+     *     the constraints to plan
+     * @return
+     *     a new validation plan
+     */
+    public static ValidationPlan compile(Collection<Constraint> constraints) {
+        List<Location> locations = new ArrayList<>();
+        Map<String, Location> locationMap = new HashMap<>();
+        List<Step> steps = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            if (constraint.modelChecked()) {
+                continue;
+            }
+            Location location = null;
+            if (!Constraint.LOCATION_BASE.equals(constraint.location())) {
+                location = locationMap.get(constraint.location());
+                if (location == null) {
+                    location = new Location(locations.size(), constraint.location());
+                    locationMap.put(constraint.location(), location);
+                    locations.add(location);
+                }
+            }
+            steps.add(new Step(constraint, location));
+        }
+        if (steps.isEmpty()) {
+            return EMPTY;
+        }
+        return new ValidationPlan(Collections.unmodifiableList(locations), Collections.unmodifiableList(steps));
+    }
+
+    /**
+     * Get the plan for the constraints which the model defines for the passed type.
+     *
+     * @param type
+     *     the model class
+     * @return
+     *     the cached validation plan
+     */
+    public static ValidationPlan forType(Class<?> type) {
+        ValidationPlan plan = TYPE_PLAN_CACHE.get(type);
+        if (plan == null) {
+            plan = TYPE_PLAN_CACHE.computeIfAbsent(type, t -> compile(ModelSupport.getConstraints(t)));
+        }
+        return plan;
+    }
+
+    /**
+     * Get the plan for the constraints which the passed profiles define for the passed resource type.
+     *
+     * <p>Profiles are identified by url and version, so a plan is rebuilt if a new version of one of its profiles is
+     * registered.
+     *
+     * @param profiles
+     *     the profile references
+     * @param type
+     *     the resource type
+     * @return
+     *     the cached validation plan
+     */
+    public static ValidationPlan forProfiles(List<String> profiles, Class<?> type) {
+        if (profiles.isEmpty()) {
+            return EMPTY;
+        }
+        StringBuilder key = new StringBuilder(type.getName());
+        for (String url : profiles) {
+            StructureDefinition profile = ProfileSupport.getProfile(url, type);
+            key.append(' ').append(url);
+            if (profile != null && profile.getVersion() != null) {
+                key.append('|').append(profile.getVersion().getValue());
+            }
+        }
+        return PROFILE_PLAN_CACHE.computeIfAbsent(key.toString(), k -> compile(ProfileSupport.getConstraints(profiles, type)));
+    }
+
+    /**
+     * @return
+     *     the distinct constraint locations (other than the base location) in this plan, where each location has the
+     *     index of its position in the list
+     */
+    public List<Location> getLocations() {
+        return locations;
+    }
+
+    /**
+     * @return
+     *     the constraints to evaluate, in order
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return
+     *     true if there are no constraints to evaluate
+     */
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    /**
+     * A constraint location; the FHIRPath expression which selects the context nodes for one or more constraints.
+     */
+    public static final class Location {
+        private final int index;
+        private final String expression;
+        private final ExpressionContext compiledExpression;
+
+        private Location(int index, String expression) {
+            this.index = index;
+            this.expression = expression;
+            this.compiledExpression = compileOrNull(expression);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getExpression() {
+            return expression;
+        }
+
+        /**
+         * @return
+         *     the compiled expression, or null if the expression could not be compiled (in which case evaluating the
+         *     expression string reports the error)
+         */
+        public ExpressionContext getCompiledExpression() {
+            return compiledExpression;
+        }
+    }
+
+    /**
+     * A single constraint of the plan.
+     */
+    public static final class Step {
+        private final Constraint constraint;
+        private final Location location;
+        private final ExpressionContext compiledExpression;
+        private final IssueSeverity severity;
+
+        private Step(Constraint constraint, Location location) {
+            this.constraint = constraint;
+            this.location = location;
+            this.compiledExpression = compileOrNull(constraint.expression());
+            this.severity = Constraint.LEVEL_WARNING.equals(constraint.level()) ? IssueSeverity.WARNING : IssueSeverity.ERROR;
+        }
+
+        public Constraint getConstraint() {
+            return constraint;
+        }
+
+        /**
+         * @return
+         *     the location of the constraint, or null if the constraint applies to the node being validated
+         */
+        public Location getLocation() {
+            return location;
+        }
+
+        /**
+         * @return
+         *     the compiled expression, or null if the expression could not be compiled (in which case evaluating the
+         *     expression string reports the error)
+         */
+        public ExpressionContext getCompiledExpression() {
+            return compiledExpression;
+        }
+
+        /**
+         * @return
+         *     the severity of the issue to report if the constraint is not satisfied
+         */
+        public IssueSeverity getSeverity() {
+            return severity;
+        }
+    }
+
+    private static ExpressionContext compileOrNull(String expression) {
+        try {
+            return FHIRPathUtil.compile(expression);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
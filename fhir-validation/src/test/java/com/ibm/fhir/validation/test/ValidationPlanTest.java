@@ -0,0 +1,67 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.validation.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.annotation.Constraint;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.util.ModelSupport;
+import com.ibm.fhir.validation.ValidationPlan;
+
+public class ValidationPlanTest {
+    @Test
+    public void testModelCheckedConstraintsAreSkipped() {
+        ValidationPlan plan = ValidationPlan.forType(Patient.class);
+        int expected = 0;
+        for (Constraint constraint : ModelSupport.getConstraints(Patient.class)) {
+            if (!constraint.modelChecked()) {
+                expected++;
+            }
+        }
+        assertEquals(plan.getSteps().size(), expected);
+        for (ValidationPlan.Step step : plan.getSteps()) {
+            assertFalse(step.getConstraint().modelChecked());
+            assertNotNull(step.getCompiledExpression());
+        }
+    }
+
+    @Test
+    public void testLocationsAreShared() {
+        ValidationPlan plan = ValidationPlan.forType(Bundle.class);
+        Set<String> locations = new HashSet<>();
+        for (Constraint constraint : ModelSupport.getConstraints(Bundle.class)) {
+            if (!constraint.modelChecked() && !Constraint.LOCATION_BASE.equals(constraint.location())) {
+                locations.add(constraint.location());
+            }
+        }
+        assertEquals(plan.getLocations().size(), locations.size());
+        for (ValidationPlan.Step step : plan.getSteps()) {
+            if (step.getLocation() != null) {
+                assertSame(plan.getLocations().get(step.getLocation().getIndex()), step.getLocation());
+                assertEquals(step.getLocation().getExpression(), step.getConstraint().location());
+            }
+        }
+    }
+
+    @Test
+    public void testPlansAreCached() {
+        assertSame(ValidationPlan.forType(Patient.class), ValidationPlan.forType(Patient.class));
+        assertTrue(ValidationPlan.forProfiles(Collections.emptyList(), Patient.class).isEmpty());
+    }
+}